@@ -1,46 +1,79 @@
 package com.touchfish.tools;
 
-import org.redisson.api.RedissonClient;
+import com.touchfish.tools.interf.ILoadDriver;
+import com.touchfish.tools.structure.LoadProfile;
+import com.touchfish.tools.structure.LoadTestProperties;
+import com.touchfish.tools.util.JedisUtil;
+import com.touchfish.tools.util.LoadGenerator;
+import com.touchfish.tools.util.RedisUtil;
+import com.touchfish.tools.util.RedissonUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.ApplicationContextAware;
-import org.springframework.context.annotation.ComponentScan;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测工具，按loadTest.profiles依次对extraRedis中的配置施加负载并输出延迟和吞吐量
+ */
+@Slf4j
 @SpringBootApplication
-public class TestApp implements ApplicationContextAware, CommandLineRunner {
-    private ApplicationContext applicationContext;
+public class TestApp implements CommandLineRunner {
+    @Resource
+    public Map<String, RedisUtil> redis;
+    @Resource
+    public Map<String, JedisUtil> jedis;
+    @Resource
+    public Map<String, RedissonUtil> redisson;
+    @Resource
+    public LoadTestProperties loadTestProperties;
+
     public static void main(String[] args) {
         SpringApplication application = new SpringApplication(TestApp.class);
-        application.run(args);
-    }
-    public void test(String redisName, String setKey, String setValue, boolean useRedisson){
-        applicationContext.getBean(redisName, RedisTemplate.class).opsForValue().set(setKey,setValue);
-        if (useRedisson) {
-            for (String s : applicationContext.getBean(redisName+"Redisson", RedissonClient.class).getKeys().getKeys()) {
-                System.out.println(s);
-                try {
-                    System.out.println(applicationContext.getBean(redisName, RedisTemplate.class).opsForValue().get(s));
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        } else {
-            System.out.println(applicationContext.getBean(redisName, RedisTemplate.class).opsForValue().get(setKey));
-        }
-        applicationContext.getBean(redisName, RedisTemplate.class).delete(setKey);
+        System.exit(SpringApplication.exit(application.run(args)));
     }
-    @Override
-    public void setApplicationContext(ApplicationContext arg0) {
-        this.applicationContext = arg0;
+
+    @Bean
+    @ConfigurationProperties(prefix = "load-test")
+    public LoadTestProperties loadTestProperties() {
+        return new LoadTestProperties();
     }
+
     @Override
     public void run(String... args) throws Exception {
-        test("name0","lalala0","123123", true);
-        test("redisTemplate","test:lalalaTEMP","jthdgredwa", false);
-        test("name1","lalala1","2333", true);
-        test("name2","lalala2","612313", true);
+        if (loadTestProperties.profiles.isEmpty()) {
+            log.warn("No Load Profile Configured.");
+            return;
+        }
+        List<LoadGenerator.Report> reports = new ArrayList<>();
+        for (LoadProfile profile : loadTestProperties.profiles) {
+            ILoadDriver driver = driver(profile);
+            if (driver == null) {
+                log.error("Load \"" + profile.name + "\" Skipped, \"" + profile.redis + "\" Has No " + profile.client + " Client.");
+                continue;
+            }
+            reports.add(new LoadGenerator(profile.redis, profile, driver).run());
+        }
+        for (LoadGenerator.Report report : reports) {
+            System.out.println("[" + report.profile.name + "] " + report.profile.redis);
+            System.out.println(report);
+        }
+    }
+
+    private ILoadDriver driver(LoadProfile profile) {
+        switch (profile.client.toLowerCase()) {
+            case "jedis":
+                return jedis.containsKey(profile.redis) ? LoadGenerator.driver(jedis.get(profile.redis)) : null;
+            case "redisson":
+                return redisson.containsKey(profile.redis) ? LoadGenerator.driver(redisson.get(profile.redis)) : null;
+            default:
+                return redis.containsKey(profile.redis) ? LoadGenerator.driver(redis.get(profile.redis)) : null;
+        }
     }
 }
@@ -1,40 +1,58 @@
 package com.touchfish.tools.config;
 
 import com.touchfish.tools.structure.ExtraRedisProperties;
+import com.touchfish.tools.structure.LocalCachedMapProperties;
+import com.touchfish.tools.structure.MirrorProperties;
 import com.touchfish.tools.structure.RedisFactoryType;
+import com.touchfish.tools.structure.SharedResourcesProperties;
 import com.touchfish.tools.util.JedisUtil;
+import com.touchfish.tools.util.RedisMirror;
 import com.touchfish.tools.util.RedisUtil;
+import com.touchfish.tools.util.RedisWarmup;
 import com.touchfish.tools.util.RedissonUtil;
+import com.touchfish.tools.util.SharedResources;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Data
 @Slf4j
 @Component
 @Configuration
 @ConfigurationProperties(prefix = "conf")
-public class ExtraRedisConfig {
+public class ExtraRedisConfig implements DisposableBean {
     private boolean loadExtraRedis = false;
     private boolean loadExtraJedis = false;
     private boolean loadExtraRedisson = false;
+    private SharedResourcesProperties sharedResources = new SharedResourcesProperties();
     private Map<String, ExtraRedisProperties> extraRedis = new HashMap<>();
     @Autowired
     public ApplicationContext appContext;
     public static Map<String, RedisUtil> redis;
     public static Map<String, RedissonUtil> redisson;
     public static Map<String, JedisUtil> jedis;
+    public static SharedResources resources;
     @Bean("jedis")
     public Map<String, JedisUtil> jedis() {
         jedis = new HashMap<>();
@@ -42,6 +60,12 @@ public class ExtraRedisConfig {
             for (Map.Entry<String, ExtraRedisProperties> e : extraRedis.entrySet()) {
                 jedisUtilRegister(e.getKey(), e.getValue(), (ConfigurableApplicationContext) appContext);
             }
+            for (Map.Entry<String, ExtraRedisProperties> e : extraRedis.entrySet()) {
+                String shadow = shadowOf(e.getKey(), e.getValue(), jedis);
+                if (shadow != null) {
+                    jedis.get(e.getKey()).mirrorTo(jedis.get(shadow), e.getValue().mirror);
+                }
+            }
             log.info("Extra Jedis Util Initialized.  Count: " + jedis.size());
         }
         return jedis;
@@ -53,6 +77,12 @@ public class ExtraRedisConfig {
             for (Map.Entry<String, ExtraRedisProperties> e : extraRedis.entrySet()) {
                 redisTemplateRegister(e.getKey(), e.getValue(), (ConfigurableApplicationContext) appContext);
             }
+            for (Map.Entry<String, ExtraRedisProperties> e : extraRedis.entrySet()) {
+                String shadow = shadowOf(e.getKey(), e.getValue(), redis);
+                if (shadow != null) {
+                    redis.get(e.getKey()).mirrorTo(redis.get(shadow), e.getValue().mirror);
+                }
+            }
             log.info("Extra Redis Util Initialized.  Count: " + redis.size());
         }
         return redis;
@@ -69,6 +99,101 @@ public class ExtraRedisConfig {
         return redisson;
     }
 
+    /**
+     * 所有连接注册完成后再建立镜像，影子可以声明在主连接之后
+     * @return 启用镜像且影子存在时返回影子名称
+     */
+    private static String shadowOf(String name, ExtraRedisProperties properties, Map<String, ?> registered) {
+        MirrorProperties mirror = properties.mirror;
+        if (mirror == null || !mirror.enabled) {
+            return null;
+        }
+        if (mirror.shadow == null || mirror.shadow.equals(name) || !registered.containsKey(mirror.shadow)) {
+            log.error("Extra Redis \""+name+"\" Mirror Shadow \""+mirror.shadow+"\" Not Found, Mirroring Disabled.");
+            return null;
+        }
+        return mirror.shadow;
+    }
+
+    /**
+     * 每轮关闭不再是其它未关闭连接影子的连接，镜像成环时剩下的按任意顺序关闭
+     */
+    private static <T> void closeMirroredFirst(Map<String, T> utils, Function<T, RedisMirror> mirror, Consumer<T> close) {
+        Map<String, T> open = new HashMap<>(utils);
+        while (!open.isEmpty()) {
+            Set<String> shadows = new HashSet<>();
+            for (T util : open.values()) {
+                RedisMirror m = mirror.apply(util);
+                if (m != null) {
+                    shadows.add(m.shadow());
+                }
+            }
+            List<String> closable = new ArrayList<>();
+            for (String name : open.keySet()) {
+                if (!shadows.contains(name)) {
+                    closable.add(name);
+                }
+            }
+            if (closable.isEmpty()) {
+                closable.addAll(open.keySet());
+            }
+            for (String name : closable) {
+                close.accept(open.remove(name));
+            }
+        }
+    }
+
+    /**
+     * 所有extraRedis连接共用的客户端资源，未启用时返回null
+     */
+    public synchronized SharedResources sharedResources() {
+        if (resources == null && sharedResources.enabled) {
+            resources = new SharedResources(sharedResources);
+        }
+        return resources;
+    }
+
+    /**
+     * 应用关闭时刷写延迟写入和计数器并关闭所有连接
+     * 共享资源关闭前先关闭使用它的连接，避免连接在已关闭的线程上重连
+     * 镜像的主连接先于影子关闭，队列中的写入可以重放完
+     */
+    @Override
+    public synchronized void destroy() {
+        if (redisson != null) {
+            redisson.values().forEach(RedissonUtil::close);
+        }
+        if (redis != null) {
+            closeMirroredFirst(redis, RedisUtil::mirror, RedisUtil::close);
+        }
+        if (jedis != null) {
+            closeMirroredFirst(jedis, JedisUtil::mirror, JedisUtil::close);
+        }
+        if (resources != null) {
+            resources.close();
+            resources = null;
+        }
+    }
+
+    /**
+     * 预热在注册连接时同步执行，应用在预热完成后才会进入就绪状态
+     * 必需的预热失败时，将应用重新标记为不接收流量
+     */
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC || redis == null) {
+            return;
+        }
+        for (Map.Entry<String, RedisUtil> e : redis.entrySet()) {
+            RedisWarmup warmup = e.getValue().warmupState();
+            if (warmup != null && warmup.isRequired() && !warmup.isSuccess()) {
+                log.error("Extra Redis \""+e.getKey()+"\" Warmup Failed, Refusing Traffic.");
+                AvailabilityChangeEvent.publish(appContext, ReadinessState.REFUSING_TRAFFIC);
+                return;
+            }
+        }
+    }
+
     public JedisUtil jedisUtilRegister(String name, ExtraRedisProperties properties, ConfigurableApplicationContext configurableApplicationContext){
         JedisUtil bean = JedisUtil.builder()
                 .address(properties.hostInfo)
@@ -94,12 +219,24 @@ public class ExtraRedisConfig {
                 .timeout(properties.connectionTimeout)
                 .database(properties.database)
                 .master(properties.master)
+                .pubSub(properties.pubSub)
+                .topology(properties.topology)
+                .redisson(properties.redisson)
+                .sharedResources(sharedResources())
                 .type(properties.type).build(name);
 
         DefaultListableBeanFactory defaultListableBeanFactory = (DefaultListableBeanFactory) configurableApplicationContext.getAutowireCapableBeanFactory();
         if (!defaultListableBeanFactory.containsBeanDefinition(name+"Redisson")) {
             defaultListableBeanFactory.registerSingleton(name+"Redisson", bean.connect());
         }
+        if (properties.redisson != null && properties.redisson.localCachedMaps != null) {
+            for (LocalCachedMapProperties map : properties.redisson.localCachedMaps) {
+                String beanName = map.bean != null && !map.bean.isEmpty() ? map.bean : name + "." + map.name;
+                if (!defaultListableBeanFactory.containsBean(beanName)) {
+                    defaultListableBeanFactory.registerSingleton(beanName, bean.localCachedMap(map.name));
+                }
+            }
+        }
         redisson.put(name, bean);
         log.info("Extra Redisson \""+name+"\" Connected.");
         return bean;
@@ -124,6 +261,7 @@ public class ExtraRedisConfig {
                 .maxRedirects(properties.maxRedirects)
                 .password(properties.password)
                 .timeout(properties.connectionTimeout)
+                .drainTimeout(properties.drainTimeout)
                 .database(properties.database)
                 .master(properties.master)
                 .factory(factoryType)
@@ -132,6 +270,24 @@ public class ExtraRedisConfig {
                 .valueSerializer(properties.valueSerializer)
                 .hashKeySerializer(properties.hashKeySerializer)
                 .hashValueSerializer(properties.hashValueSerializer)
+                .compression(properties.compression)
+                .pubSub(properties.pubSub)
+                .stream(properties.stream)
+                .adaptivePool(properties.adaptivePool)
+                .warmup(properties.warmup)
+                .counter(properties.counter)
+                .bloomFilters(properties.bloomFilters)
+                .negativeCache(properties.negativeCache)
+                .diskCache(properties.diskCache)
+                .prewarm(properties.prewarm)
+                .bulkhead(properties.bulkhead)
+                .chunked(properties.chunked)
+                .transaction(properties.transaction)
+                .hedge(properties.hedge)
+                .tieredStorage(properties.tieredStorage)
+                .topology(properties.topology)
+                .writeBehind(properties.writeBehind)
+                .sharedResources(sharedResources())
                 .type(properties.type).build(name);
 
         DefaultListableBeanFactory defaultListableBeanFactory = (DefaultListableBeanFactory) configurableApplicationContext.getAutowireCapableBeanFactory();
@@ -75,14 +75,28 @@ public class RedisConfig {
         return stringRedisTemplate;
     }
     @Bean(name = "JedisPoolConfig")
-    public JedisPoolConfig jedisPoolConfig(@Value("${jedis.pool.config.maxTotal:100}") int maxTotal,
-                                           @Value("${jedis.pool.config.maxWaitMillis:5000}") int maxWaitMillis,
-                                           @Value("${jedis.pool.config.maxIdle:10}") int maxIdle) {
+    public JedisPoolConfig jedisPoolConfig(RedisProperties properties,
+                                           @Value("${jedis.pool.config.maxTotal:}") Integer maxTotal,
+                                           @Value("${jedis.pool.config.maxWaitMillis:}") Integer maxWaitMillis,
+                                           @Value("${jedis.pool.config.maxIdle:}") Integer maxIdle) {
         log.info("Redis连接池配置...");
+        // 默认 maxTotal 100 maxWaitMillis 5000 maxIdle 10，配置了spring.redis.jedis.pool时以它为准
         JedisPoolConfig config = new JedisPoolConfig();
-        config.setMaxTotal(maxTotal);
-        config.setMaxIdle(maxIdle);
-        config.setMaxWaitMillis(maxWaitMillis);
+        config.setMaxTotal(100);
+        config.setMaxIdle(10);
+        config.setMaxWaitMillis(5000);
+        if (properties.getJedis() != null) {
+            RedisUtil.poolConfig(config, properties.getJedis().getPool());
+        }
+        if (maxTotal != null) {
+            config.setMaxTotal(maxTotal);
+        }
+        if (maxIdle != null) {
+            config.setMaxIdle(maxIdle);
+        }
+        if (maxWaitMillis != null) {
+            config.setMaxWaitMillis(maxWaitMillis);
+        }
         return config;
     }
 
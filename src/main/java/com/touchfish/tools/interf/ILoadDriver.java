@@ -0,0 +1,10 @@
+package com.touchfish.tools.interf;
+
+/**
+ * 压测使用的客户端操作，异常视为失败的请求
+ */
+public interface ILoadDriver {
+    Object read(String key) throws Exception;
+
+    void write(String key, String value) throws Exception;
+}
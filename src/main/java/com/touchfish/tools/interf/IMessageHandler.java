@@ -0,0 +1,13 @@
+package com.touchfish.tools.interf;
+
+import com.touchfish.tools.structure.PubSubMessage;
+
+import java.util.List;
+
+public interface IMessageHandler {
+    /**
+     * 批量处理消息，同一批消息按接收顺序排列
+     * @param messages 消息列表
+     */
+    void onMessages(List<PubSubMessage> messages);
+}
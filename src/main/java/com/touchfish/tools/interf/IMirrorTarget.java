@@ -0,0 +1,18 @@
+package com.touchfish.tools.interf;
+
+import com.touchfish.tools.util.MirrorOp;
+
+import java.util.List;
+
+public interface IMirrorTarget {
+    /**
+     * 按顺序重放一批写操作，支持时使用pipeline一次写出
+     * @param ops 只包含SET和DEL
+     */
+    void replay(List<MirrorOp> ops) throws Exception;
+
+    /**
+     * 读取影子上的当前值，用于抽样比对
+     */
+    Object read(Object key) throws Exception;
+}
@@ -0,0 +1,27 @@
+package com.touchfish.tools.interf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 分层存储使用的对象存储
+ */
+public interface IObjectStore extends Closeable {
+    /**
+     * 流式写入对象
+     * @param size 对象长度，未知时为-1
+     */
+    void put(String name, InputStream in, long size) throws IOException;
+
+    /**
+     * 打开对象的读取流，由调用方关闭
+     * @return 对象不存在时返回null
+     */
+    InputStream get(String name) throws IOException;
+
+    /**
+     * 删除对象，对象不存在时忽略
+     */
+    void remove(String name) throws IOException;
+}
@@ -0,0 +1,11 @@
+package com.touchfish.tools.interf;
+
+import org.springframework.data.redis.connection.stream.MapRecord;
+
+public interface IStreamHandler {
+    /**
+     * 处理一条消息，正常返回后消息会被确认，抛出异常则保留在待处理列表中等待重试或被认领
+     * @param record 消息
+     */
+    void onRecord(MapRecord<String, Object, Object> record) throws Exception;
+}
@@ -0,0 +1,14 @@
+package com.touchfish.tools.interf;
+
+import com.touchfish.tools.util.TransactionQueue;
+import org.springframework.data.redis.core.RedisOperations;
+
+public interface ITransactionHandler {
+    /**
+     * 在WATCH之后调用，每次重试都会重新调用
+     * 通过operations读取当前值，将需要原子执行的写操作加入queue，queue为空时放弃事务
+     * @param operations 绑定了本次事务连接的RedisTemplate
+     * @param queue 在EXEC中执行的命令
+     */
+    void prepare(RedisOperations operations, TransactionQueue queue) throws Exception;
+}
@@ -0,0 +1,250 @@
+package com.touchfish.tools.server;
+
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.touchfish.tools.server.RespReply.*;
+
+/**
+ * 进程内集群，多个主节点共享同一个RespStore，槽位平均分配
+ * 访问不属于本节点的槽位返回MOVED，迁移中的槽位在源节点返回ASK
+ * 没有副本、故障转移和gossip，CLUSTER SLOTS/NODES直接由槽位表生成
+ */
+public class RespCluster implements Closeable {
+    public static final int SLOTS = 16384;
+
+    private final RespStore store = new RespStore();
+    private final List<RespServer> nodes = new ArrayList<>();
+    private final Map<RespServer, String> ids = new IdentityHashMap<>();
+    private final AtomicReferenceArray<RespServer> owners = new AtomicReferenceArray<>(SLOTS);
+    /**
+     * 迁移中的槽位的目标节点
+     */
+    private final AtomicReferenceArray<RespServer> importing = new AtomicReferenceArray<>(SLOTS);
+    private final AtomicLong epoch = new AtomicLong(1);
+
+    public RespCluster(int masters) {
+        this("127.0.0.1", masters);
+    }
+
+    public RespCluster(String host, int masters) {
+        if (masters < 1) {
+            throw new IllegalArgumentException("masters must be positive");
+        }
+        for (int i = 0; i < masters; i++) {
+            RespServer node = new RespServer(host, 0, store);
+            node.cluster = this;
+            nodes.add(node);
+            ids.put(node, nodeId());
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            owners.set(slot, nodes.get((int) ((long) slot * masters / SLOTS)));
+        }
+    }
+
+    public RespCluster start() throws IOException {
+        for (RespServer node : nodes) {
+            node.start();
+        }
+        return this;
+    }
+
+    public List<RespServer> nodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * 逗号分隔的节点地址，可直接用作集群hostInfo
+     */
+    public String addresses() {
+        StringJoiner res = new StringJoiner(",");
+        for (RespServer node : nodes) {
+            res.add(node.address());
+        }
+        return res.toString();
+    }
+
+    public RespStore store() {
+        return store;
+    }
+
+    public static int slot(String key) {
+        return JedisClusterCRC16.getSlot(RespStore.raw(key));
+    }
+
+    public RespServer owner(int slot) {
+        return owners.get(slot);
+    }
+
+    /**
+     * 将槽位直接分配给指定节点，之后访问原节点返回MOVED
+     */
+    public void moveSlot(int slot, int node) {
+        importing.set(slot, null);
+        owners.set(slot, nodes.get(node));
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * 开始迁移槽位，迁移完成前访问源节点返回ASK，目标节点只接受ASKING后的请求
+     */
+    public void migrate(int slot, int node) {
+        RespServer target = nodes.get(node);
+        if (owners.get(slot) != target) {
+            importing.set(slot, target);
+        }
+    }
+
+    /**
+     * 完成迁移，槽位归属目标节点
+     */
+    public void finishMigration(int slot) {
+        RespServer target = importing.getAndSet(slot, null);
+        if (target != null) {
+            owners.set(slot, target);
+            epoch.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return 需要重定向时返回MOVED/ASK/CROSSSLOT错误，否则返回null
+     */
+    Object route(RespServer server, RespSession session, List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return null;
+        }
+        boolean asking = session.asking;
+        session.asking = false;
+        int slot = slot(RespStore.key(keys.get(0)));
+        for (int i = 1; i < keys.size(); i++) {
+            if (slot(RespStore.key(keys.get(i))) != slot) {
+                return error("CROSSSLOT Keys in request don't hash to the same slot");
+            }
+        }
+        RespServer owner = owners.get(slot);
+        RespServer target = importing.get(slot);
+        if (owner == server) {
+            return target == null ? null : error("ASK " + slot + " " + target.address());
+        }
+        if (target == server && asking) {
+            return null;
+        }
+        return error("MOVED " + slot + " " + owner.address());
+    }
+
+    Object command(RespServer server, List<byte[]> a) {
+        if (a.size() < 2) {
+            return error("ERR wrong number of arguments for 'cluster' command");
+        }
+        String sub = RespCommands.upper(a.get(1));
+        switch (sub) {
+            case "SLOTS": {
+                List<Object> res = new ArrayList<>();
+                for (int[] range : ranges(null)) {
+                    RespServer node = owners.get(range[0]);
+                    res.add(Arrays.asList((long) range[0], (long) range[1],
+                            Arrays.asList(bulk(node.host()), (long) node.port(), bulk(ids.get(node)))));
+                }
+                return res;
+            }
+            case "NODES": {
+                StringBuilder res = new StringBuilder();
+                for (RespServer node : nodes) {
+                    res.append(ids.get(node)).append(' ')
+                            .append(node.address()).append('@').append(node.port() + 10000).append(' ')
+                            .append(node == server ? "myself,master" : "master").append(" - 0 0 ")
+                            .append(epoch.get()).append(" connected");
+                    for (int[] range : ranges(node)) {
+                        res.append(' ').append(range[0]);
+                        if (range[1] != range[0]) {
+                            res.append('-').append(range[1]);
+                        }
+                    }
+                    res.append('\n');
+                }
+                return bulk(res.toString());
+            }
+            case "INFO":
+                return bulk("cluster_state:ok\r\n"
+                        + "cluster_slots_assigned:" + SLOTS + "\r\n"
+                        + "cluster_slots_ok:" + SLOTS + "\r\n"
+                        + "cluster_slots_pfail:0\r\n"
+                        + "cluster_slots_fail:0\r\n"
+                        + "cluster_known_nodes:" + nodes.size() + "\r\n"
+                        + "cluster_size:" + nodes.size() + "\r\n"
+                        + "cluster_current_epoch:" + epoch.get() + "\r\n"
+                        + "cluster_my_epoch:" + epoch.get() + "\r\n");
+            case "MYID":
+                return bulk(ids.get(server));
+            case "KEYSLOT":
+                if (a.size() < 3) {
+                    break;
+                }
+                return (long) slot(RespStore.key(a.get(2)));
+            case "COUNTKEYSINSLOT":
+            case "GETKEYSINSLOT": {
+                if (a.size() < 3) {
+                    break;
+                }
+                int slot;
+                try {
+                    slot = Integer.parseInt(RespStore.key(a.get(2)));
+                } catch (NumberFormatException e) {
+                    return error("ERR Invalid slot");
+                }
+                List<String> keys = store.keys(0, k -> slot(k) == slot);
+                if (sub.equals("COUNTKEYSINSLOT")) {
+                    return (long) keys.size();
+                }
+                int count = a.size() > 3 ? Integer.parseInt(RespStore.key(a.get(3))) : keys.size();
+                List<Object> res = new ArrayList<>();
+                for (String key : keys.subList(0, Math.min(count, keys.size()))) {
+                    res.add(RespStore.raw(key));
+                }
+                return res;
+            }
+            default:
+        }
+        return error("ERR Unknown subcommand or wrong number of arguments for '" + RespStore.key(a.get(1)) + "'.");
+    }
+
+    /**
+     * 连续槽位区间 {start, end}
+     * @param node 为null时返回所有节点的区间
+     */
+    private List<int[]> ranges(RespServer node) {
+        List<int[]> res = new ArrayList<>();
+        int start = 0;
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            if (slot == SLOTS || owners.get(slot) != owners.get(start)) {
+                if (node == null || owners.get(start) == node) {
+                    res.add(new int[]{start, slot - 1});
+                }
+                start = slot;
+            }
+        }
+        return res;
+    }
+
+    private static String nodeId() {
+        StringBuilder res = new StringBuilder(40);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 40; i++) {
+            res.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return res.toString();
+    }
+
+    @Override
+    public void close() {
+        for (RespServer node : nodes) {
+            node.close();
+        }
+    }
+}
@@ -0,0 +1,1471 @@
+package com.touchfish.tools.server;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.touchfish.tools.server.RespReply.*;
+import static com.touchfish.tools.server.RespStore.key;
+import static com.touchfish.tools.server.RespStore.raw;
+
+/**
+ * 测试服务支持的命令
+ * 字符串、hash、list、set、zset、过期、发布订阅及连接管理命令，CLUSTER和SENTINEL命令交给RespCluster/RespSentinel处理
+ * 支持MULTI/EXEC/WATCH事务，不支持Lua脚本和stream
+ */
+final class RespCommands {
+    /**
+     * 命令的key位置 {首个key, 最后一个key(-1为到末尾), 步长}，用于集群路由
+     */
+    private static final Map<String, int[]> KEY_SPECS = new HashMap<>();
+
+    static {
+        for (String name : ("GET SET SETEX PSETEX SETNX GETSET GETDEL INCR INCRBY DECR DECRBY INCRBYFLOAT APPEND STRLEN GETRANGE SETRANGE "
+                + "TYPE EXPIRE PEXPIRE EXPIREAT PEXPIREAT TTL PTTL PERSIST "
+                + "HSET HMSET HSETNX HGET HMGET HGETALL HDEL HEXISTS HLEN HKEYS HVALS HINCRBY HINCRBYFLOAT HSCAN "
+                + "LPUSH RPUSH LPOP RPOP LRANGE LLEN LINDEX LSET LREM LTRIM "
+                + "SADD SREM SMEMBERS SISMEMBER SCARD "
+                + "ZADD ZINCRBY ZSCORE ZREM ZREMRANGEBYRANK ZCARD ZRANK ZREVRANK ZRANGE ZREVRANGE ZRANGEBYSCORE ZREVRANGEBYSCORE ZCOUNT").split(" ")) {
+            KEY_SPECS.put(name, new int[]{1, 1, 1});
+        }
+        for (String name : new String[]{"DEL", "UNLINK", "EXISTS", "MGET", "WATCH"}) {
+            KEY_SPECS.put(name, new int[]{1, -1, 1});
+        }
+        KEY_SPECS.put("MSET", new int[]{1, -1, 2});
+        KEY_SPECS.put("RENAME", new int[]{1, 2, 1});
+    }
+
+    /**
+     * 修改key的命令，执行后使WATCH该key的事务失败
+     */
+    private static final Set<String> WRITES = new HashSet<>(Arrays.asList((
+            "SET SETEX PSETEX SETNX GETSET GETDEL MSET INCR INCRBY DECR DECRBY INCRBYFLOAT APPEND SETRANGE "
+                    + "DEL UNLINK RENAME EXPIRE PEXPIRE EXPIREAT PEXPIREAT PERSIST "
+                    + "HSET HMSET HSETNX HDEL HINCRBY HINCRBYFLOAT LPUSH RPUSH LPOP RPOP LSET LREM LTRIM "
+                    + "SADD SREM ZADD ZINCRBY ZREM ZREMRANGEBYRANK").split(" ")));
+
+    /**
+     * 事务中不排队直接执行的命令
+     */
+    private static final Set<String> TRANSACTION = new HashSet<>(Arrays.asList("MULTI", "EXEC", "DISCARD", "WATCH", "QUIT", "RESET"));
+
+    private static final Set<String> SUBSCRIBED_ALLOWED = new HashSet<>(Arrays.asList(
+            "SUBSCRIBE", "PSUBSCRIBE", "UNSUBSCRIBE", "PUNSUBSCRIBE", "PING", "QUIT", "RESET"));
+
+    private final RespServer server;
+    private final RespStore store;
+
+    RespCommands(RespServer server) {
+        this.server = server;
+        this.store = server.store();
+    }
+
+    static final class CommandException extends RuntimeException {
+        CommandException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    Object execute(RespSession session, List<byte[]> args) {
+        String name = upper(args.get(0));
+        session.lastCommand = name.toLowerCase();
+        if (!session.authenticated && !name.equals("AUTH") && !name.equals("HELLO") && !name.equals("QUIT")) {
+            return error("NOAUTH Authentication required.");
+        }
+        if (session.subscribed() && !session.resp3 && !SUBSCRIBED_ALLOWED.contains(name)) {
+            return error("ERR Can't execute '" + session.lastCommand + "': only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING / QUIT are allowed in this context");
+        }
+        try {
+            if (server.cluster != null) {
+                Object redirect = server.cluster.route(server, session, keys(name, args));
+                if (redirect != null) {
+                    session.queueFailed = session.queued != null;
+                    return redirect;
+                }
+            }
+            if (session.queued != null && !TRANSACTION.contains(name)) {
+                session.queued.add(args);
+                return QUEUED;
+            }
+            synchronized (store) {
+                return run(session, name, args);
+            }
+        } catch (CommandException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    private Object run(RespSession session, String name, List<byte[]> args) {
+        Object res = dispatch(session, name, args);
+        if (WRITES.contains(name)) {
+            for (byte[] key : keys(name, args)) {
+                store.touch(session.db, key(key));
+            }
+        }
+        return res;
+    }
+
+    private static List<byte[]> keys(String name, List<byte[]> args) {
+        int[] spec = KEY_SPECS.get(name);
+        if (spec == null || args.size() <= spec[0]) {
+            return Collections.emptyList();
+        }
+        int last = spec[1] < 0 ? args.size() - 1 : Math.min(spec[1], args.size() - 1);
+        List<byte[]> res = new ArrayList<>();
+        for (int i = spec[0]; i <= last; i += spec[2]) {
+            res.add(args.get(i));
+        }
+        return res;
+    }
+
+    private Object dispatch(RespSession s, String name, List<byte[]> a) {
+        switch (name) {
+            // 连接
+            case "PING":
+                if (s.subscribed() && !s.resp3) {
+                    return Arrays.asList(bulk("pong"), a.size() > 1 ? a.get(1) : new byte[0]);
+                }
+                return a.size() > 1 ? a.get(1) : PONG;
+            case "ECHO":
+                arity(a, 2, name);
+                return a.get(1);
+            case "AUTH":
+                return auth(s, a);
+            case "HELLO":
+                return hello(s, a);
+            case "SELECT": {
+                arity(a, 2, name);
+                long index = parseLong(a.get(1));
+                if (server.cluster != null && index != 0) {
+                    return error("ERR SELECT is not allowed in cluster mode");
+                }
+                if (index < 0 || index >= RespStore.DATABASES) {
+                    return error("ERR DB index is out of range");
+                }
+                s.db = (int) index;
+                return OK;
+            }
+            case "QUIT":
+                s.quit = true;
+                return OK;
+            case "RESET":
+                store.unsubscribeAll(s);
+                store.unwatch(s);
+                s.queued = null;
+                s.queueFailed = false;
+                s.db = 0;
+                s.resp3 = false;
+                s.asking = false;
+                return new Status("RESET");
+            case "CLIENT":
+                return client(s, a);
+            // 事务
+            case "MULTI":
+                if (s.queued != null) {
+                    return error("ERR MULTI calls can not be nested");
+                }
+                s.queued = new ArrayList<>();
+                return OK;
+            case "EXEC":
+                return exec(s);
+            case "DISCARD":
+                if (s.queued == null) {
+                    return error("ERR DISCARD without MULTI");
+                }
+                s.queued = null;
+                s.queueFailed = false;
+                store.unwatch(s);
+                return OK;
+            case "WATCH":
+                if (s.queued != null) {
+                    return error("ERR WATCH inside MULTI is not allowed");
+                }
+                arity(a, 2, name);
+                for (int i = 1; i < a.size(); i++) {
+                    store.watch(s, s.db, key(a.get(i)));
+                }
+                return OK;
+            case "UNWATCH":
+                store.unwatch(s);
+                return OK;
+            case "COMMAND":
+                if (a.size() > 1 && upper(a.get(1)).equals("COUNT")) {
+                    return 0L;
+                }
+                return Collections.emptyList();
+            case "INFO":
+                return info();
+            case "ROLE":
+                if (server.sentinel != null) {
+                    return Arrays.asList(bulk("sentinel"), Collections.singletonList(bulk(server.sentinel.masterName())));
+                }
+                return Arrays.asList(bulk("master"), 0L, Collections.emptyList());
+            case "CONFIG":
+                arity(a, 2, name);
+                return upper(a.get(1)).equals("GET") ? new LinkedHashMap<>() : OK;
+            case "TIME": {
+                long micros = System.currentTimeMillis() * 1000;
+                return Arrays.asList(bulk(String.valueOf(micros / 1000000)), bulk(String.valueOf(micros % 1000000)));
+            }
+            case "DBSIZE":
+                return (long) store.keys(s.db, server::owns).size();
+            case "FLUSHDB":
+                store.flush(s.db, server::owns);
+                return OK;
+            case "FLUSHALL":
+                for (int i = 0; i < RespStore.DATABASES; i++) {
+                    store.flush(i, server::owns);
+                }
+                return OK;
+            case "READONLY":
+            case "READWRITE":
+                return OK;
+            case "ASKING":
+                s.asking = true;
+                return OK;
+            case "WAIT":
+                return 0L;
+            case "CLUSTER":
+                if (server.cluster == null) {
+                    return error("ERR This instance has cluster support disabled");
+                }
+                return server.cluster.command(server, a);
+            case "SENTINEL":
+                if (server.sentinel == null) {
+                    return unknown(name, a);
+                }
+                return server.sentinel.command(a);
+            // key
+            case "DEL":
+            case "UNLINK": {
+                arity(a, 2, name);
+                long res = 0;
+                for (int i = 1; i < a.size(); i++) {
+                    if (store.remove(s.db, key(a.get(i)))) {
+                        res++;
+                    }
+                }
+                return res;
+            }
+            case "EXISTS": {
+                arity(a, 2, name);
+                long res = 0;
+                for (int i = 1; i < a.size(); i++) {
+                    if (store.entry(s.db, key(a.get(i))) != null) {
+                        res++;
+                    }
+                }
+                return res;
+            }
+            case "TYPE": {
+                arity(a, 2, name);
+                RespStore.Entry e = store.entry(s.db, key(a.get(1)));
+                return new Status(e == null ? "none" : type(e.value));
+            }
+            case "KEYS": {
+                arity(a, 2, name);
+                String pattern = key(a.get(1));
+                List<Object> res = new ArrayList<>();
+                for (String k : store.keys(s.db, k -> server.owns(k) && RespStore.glob(pattern, k))) {
+                    res.add(raw(k));
+                }
+                return res;
+            }
+            case "SCAN":
+                return scan(s, a);
+            case "RENAME": {
+                arity(a, 3, name);
+                RespStore.Entry e = store.entry(s.db, key(a.get(1)));
+                if (e == null) {
+                    return error("ERR no such key");
+                }
+                store.remove(s.db, key(a.get(1)));
+                store.put(s.db, key(a.get(2)), e.value).expireAt = e.expireAt;
+                return OK;
+            }
+            case "EXPIRE":
+            case "PEXPIRE":
+            case "EXPIREAT":
+            case "PEXPIREAT": {
+                arity(a, 3, name);
+                long value = parseLong(a.get(2));
+                long at;
+                switch (name) {
+                    case "EXPIRE":
+                        at = System.currentTimeMillis() + value * 1000;
+                        break;
+                    case "PEXPIRE":
+                        at = System.currentTimeMillis() + value;
+                        break;
+                    case "EXPIREAT":
+                        at = value * 1000;
+                        break;
+                    default:
+                        at = value;
+                }
+                return expire(s.db, key(a.get(1)), at);
+            }
+            case "TTL":
+            case "PTTL": {
+                arity(a, 2, name);
+                RespStore.Entry e = store.entry(s.db, key(a.get(1)));
+                if (e == null) {
+                    return -2L;
+                }
+                if (e.expireAt == 0) {
+                    return -1L;
+                }
+                long ms = Math.max(0, e.expireAt - System.currentTimeMillis());
+                return name.equals("PTTL") ? ms : (ms + 500) / 1000;
+            }
+            case "PERSIST": {
+                arity(a, 2, name);
+                RespStore.Entry e = store.entry(s.db, key(a.get(1)));
+                if (e == null || e.expireAt == 0) {
+                    return 0L;
+                }
+                e.expireAt = 0;
+                return 1L;
+            }
+            // 字符串
+            case "GET":
+                arity(a, 2, name);
+                return string(s.db, a.get(1));
+            case "GETDEL": {
+                arity(a, 2, name);
+                byte[] value = string(s.db, a.get(1));
+                store.remove(s.db, key(a.get(1)));
+                return value;
+            }
+            case "SET":
+                return set(s, a);
+            case "SETEX":
+            case "PSETEX": {
+                arity(a, 4, name);
+                long ttl = parseLong(a.get(2));
+                if (ttl <= 0) {
+                    return error("ERR invalid expire time in '" + name.toLowerCase() + "' command");
+                }
+                store.put(s.db, key(a.get(1)), a.get(3)).expireAt = System.currentTimeMillis() + (name.equals("SETEX") ? ttl * 1000 : ttl);
+                return OK;
+            }
+            case "SETNX": {
+                arity(a, 3, name);
+                if (store.entry(s.db, key(a.get(1))) != null) {
+                    return 0L;
+                }
+                store.put(s.db, key(a.get(1)), a.get(2));
+                return 1L;
+            }
+            case "GETSET": {
+                arity(a, 3, name);
+                byte[] old = string(s.db, a.get(1));
+                store.put(s.db, key(a.get(1)), a.get(2));
+                return old;
+            }
+            case "MGET": {
+                arity(a, 2, name);
+                List<Object> res = new ArrayList<>(a.size() - 1);
+                for (int i = 1; i < a.size(); i++) {
+                    RespStore.Entry e = store.entry(s.db, key(a.get(i)));
+                    res.add(e != null && e.value instanceof byte[] ? e.value : null);
+                }
+                return res;
+            }
+            case "MSET":
+                if (a.size() < 3 || a.size() % 2 == 0) {
+                    throw arityError(name);
+                }
+                for (int i = 1; i < a.size(); i += 2) {
+                    store.put(s.db, key(a.get(i)), a.get(i + 1));
+                }
+                return OK;
+            case "INCR":
+                arity(a, 2, name);
+                return incrBy(s.db, a.get(1), 1);
+            case "DECR":
+                arity(a, 2, name);
+                return incrBy(s.db, a.get(1), -1);
+            case "INCRBY":
+                arity(a, 3, name);
+                return incrBy(s.db, a.get(1), parseLong(a.get(2)));
+            case "DECRBY": {
+                arity(a, 3, name);
+                long delta = parseLong(a.get(2));
+                if (delta == Long.MIN_VALUE) {
+                    return error("ERR decrement would overflow");
+                }
+                return incrBy(s.db, a.get(1), -delta);
+            }
+            case "INCRBYFLOAT": {
+                arity(a, 3, name);
+                RespStore.Entry e = store.entry(s.db, key(a.get(1)));
+                double current = e == null ? 0 : parseDouble(stringValue(e), "ERR value is not a valid float");
+                byte[] res = formatNumber(current + parseDouble(a.get(2), "ERR value is not a valid float"));
+                putKeepTtl(s.db, a.get(1), e, res);
+                return res;
+            }
+            case "APPEND": {
+                arity(a, 3, name);
+                RespStore.Entry e = store.entry(s.db, key(a.get(1)));
+                byte[] current = e == null ? new byte[0] : stringValue(e);
+                byte[] res = Arrays.copyOf(current, current.length + a.get(2).length);
+                System.arraycopy(a.get(2), 0, res, current.length, a.get(2).length);
+                putKeepTtl(s.db, a.get(1), e, res);
+                return (long) res.length;
+            }
+            case "STRLEN": {
+                arity(a, 2, name);
+                byte[] value = string(s.db, a.get(1));
+                return value == null ? 0L : (long) value.length;
+            }
+            case "GETRANGE": {
+                arity(a, 4, name);
+                byte[] value = string(s.db, a.get(1));
+                if (value == null || value.length == 0) {
+                    return new byte[0];
+                }
+                long start = parseLong(a.get(2));
+                long end = parseLong(a.get(3));
+                if (start < 0) {
+                    start = Math.max(0, value.length + start);
+                }
+                if (end < 0) {
+                    end = value.length + end;
+                }
+                end = Math.min(end, value.length - 1);
+                if (start > end || end < 0) {
+                    return new byte[0];
+                }
+                return Arrays.copyOfRange(value, (int) start, (int) end + 1);
+            }
+            case "SETRANGE": {
+                arity(a, 4, name);
+                long offset = parseLong(a.get(2));
+                if (offset < 0 || offset + a.get(3).length > 512L * 1024 * 1024) {
+                    return error("ERR offset is out of range");
+                }
+                RespStore.Entry e = store.entry(s.db, key(a.get(1)));
+                byte[] current = e == null ? new byte[0] : stringValue(e);
+                if (a.get(3).length == 0) {
+                    return (long) current.length;
+                }
+                byte[] res = Arrays.copyOf(current, Math.max(current.length, (int) offset + a.get(3).length));
+                System.arraycopy(a.get(3), 0, res, (int) offset, a.get(3).length);
+                putKeepTtl(s.db, a.get(1), e, res);
+                return (long) res.length;
+            }
+            // hash
+            case "HSET":
+            case "HMSET": {
+                if (a.size() < 4 || a.size() % 2 != 0) {
+                    throw arityError(name);
+                }
+                Map<String, byte[]> hash = hash(s.db, a.get(1), true);
+                long added = 0;
+                for (int i = 2; i < a.size(); i += 2) {
+                    if (hash.put(key(a.get(i)), a.get(i + 1)) == null) {
+                        added++;
+                    }
+                }
+                return name.equals("HSET") ? (Object) added : OK;
+            }
+            case "HSETNX": {
+                arity(a, 4, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), true);
+                if (hash.containsKey(key(a.get(2)))) {
+                    return 0L;
+                }
+                hash.put(key(a.get(2)), a.get(3));
+                return 1L;
+            }
+            case "HGET": {
+                arity(a, 3, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), false);
+                return hash == null ? null : hash.get(key(a.get(2)));
+            }
+            case "HMGET": {
+                arity(a, 3, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), false);
+                List<Object> res = new ArrayList<>(a.size() - 2);
+                for (int i = 2; i < a.size(); i++) {
+                    res.add(hash == null ? null : hash.get(key(a.get(i))));
+                }
+                return res;
+            }
+            case "HGETALL": {
+                arity(a, 2, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), false);
+                Map<Object, Object> res = new LinkedHashMap<>();
+                if (hash != null) {
+                    for (Map.Entry<String, byte[]> e : hash.entrySet()) {
+                        res.put(raw(e.getKey()), e.getValue());
+                    }
+                }
+                return res;
+            }
+            case "HDEL": {
+                arity(a, 3, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), false);
+                long res = 0;
+                if (hash != null) {
+                    for (int i = 2; i < a.size(); i++) {
+                        if (hash.remove(key(a.get(i))) != null) {
+                            res++;
+                        }
+                    }
+                    removeIfEmpty(s.db, a.get(1), hash.isEmpty());
+                }
+                return res;
+            }
+            case "HEXISTS": {
+                arity(a, 3, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), false);
+                return hash != null && hash.containsKey(key(a.get(2))) ? 1L : 0L;
+            }
+            case "HLEN": {
+                arity(a, 2, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), false);
+                return hash == null ? 0L : (long) hash.size();
+            }
+            case "HKEYS":
+            case "HVALS": {
+                arity(a, 2, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), false);
+                List<Object> res = new ArrayList<>();
+                if (hash != null) {
+                    for (Map.Entry<String, byte[]> e : hash.entrySet()) {
+                        res.add(name.equals("HKEYS") ? raw(e.getKey()) : e.getValue());
+                    }
+                }
+                return res;
+            }
+            case "HINCRBY": {
+                arity(a, 4, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), true);
+                byte[] current = hash.get(key(a.get(2)));
+                long value = current == null ? 0 : parseLong(current, "ERR hash value is not an integer");
+                long res = add(value, parseLong(a.get(3)));
+                hash.put(key(a.get(2)), String.valueOf(res).getBytes(StandardCharsets.US_ASCII));
+                return res;
+            }
+            case "HINCRBYFLOAT": {
+                arity(a, 4, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), true);
+                byte[] current = hash.get(key(a.get(2)));
+                double value = current == null ? 0 : parseDouble(current, "ERR hash value is not a float");
+                byte[] res = formatNumber(value + parseDouble(a.get(3), "ERR value is not a valid float"));
+                hash.put(key(a.get(2)), res);
+                return res;
+            }
+            case "HSCAN": {
+                arity(a, 3, name);
+                Map<String, byte[]> hash = hash(s.db, a.get(1), false);
+                String pattern = option(a, 3, "MATCH");
+                List<Object> items = new ArrayList<>();
+                if (hash != null) {
+                    for (Map.Entry<String, byte[]> e : hash.entrySet()) {
+                        if (pattern == null || RespStore.glob(pattern, e.getKey())) {
+                            items.add(raw(e.getKey()));
+                            items.add(e.getValue());
+                        }
+                    }
+                }
+                return Arrays.asList(bulk("0"), items);
+            }
+            // list
+            case "LPUSH":
+            case "RPUSH": {
+                arity(a, 3, name);
+                List<byte[]> list = list(s.db, a.get(1), true);
+                for (int i = 2; i < a.size(); i++) {
+                    if (name.equals("LPUSH")) {
+                        list.add(0, a.get(i));
+                    } else {
+                        list.add(a.get(i));
+                    }
+                }
+                return (long) list.size();
+            }
+            case "LPOP":
+            case "RPOP": {
+                arity(a, 2, name);
+                List<byte[]> list = list(s.db, a.get(1), false);
+                if (a.size() > 2) {
+                    long count = parseLong(a.get(2));
+                    if (list == null) {
+                        return NULL_ARRAY;
+                    }
+                    List<Object> res = new ArrayList<>();
+                    for (long i = 0; i < count && !list.isEmpty(); i++) {
+                        res.add(name.equals("LPOP") ? list.remove(0) : list.remove(list.size() - 1));
+                    }
+                    removeIfEmpty(s.db, a.get(1), list.isEmpty());
+                    return res;
+                }
+                if (list == null) {
+                    return null;
+                }
+                byte[] res = name.equals("LPOP") ? list.remove(0) : list.remove(list.size() - 1);
+                removeIfEmpty(s.db, a.get(1), list.isEmpty());
+                return res;
+            }
+            case "LRANGE": {
+                arity(a, 4, name);
+                List<byte[]> list = list(s.db, a.get(1), false);
+                if (list == null) {
+                    return Collections.emptyList();
+                }
+                int[] range = range(list.size(), parseLong(a.get(2)), parseLong(a.get(3)));
+                return new ArrayList<Object>(list.subList(range[0], range[1]));
+            }
+            case "LLEN": {
+                arity(a, 2, name);
+                List<byte[]> list = list(s.db, a.get(1), false);
+                return list == null ? 0L : (long) list.size();
+            }
+            case "LINDEX": {
+                arity(a, 3, name);
+                List<byte[]> list = list(s.db, a.get(1), false);
+                if (list == null) {
+                    return null;
+                }
+                long index = parseLong(a.get(2));
+                if (index < 0) {
+                    index += list.size();
+                }
+                return index < 0 || index >= list.size() ? null : list.get((int) index);
+            }
+            case "LSET": {
+                arity(a, 4, name);
+                List<byte[]> list = list(s.db, a.get(1), false);
+                if (list == null) {
+                    return error("ERR no such key");
+                }
+                long index = parseLong(a.get(2));
+                if (index < 0) {
+                    index += list.size();
+                }
+                if (index < 0 || index >= list.size()) {
+                    return error("ERR index out of range");
+                }
+                list.set((int) index, a.get(3));
+                return OK;
+            }
+            case "LREM": {
+                arity(a, 4, name);
+                List<byte[]> list = list(s.db, a.get(1), false);
+                if (list == null) {
+                    return 0L;
+                }
+                long count = parseLong(a.get(2));
+                byte[] value = a.get(3);
+                long removed = 0;
+                if (count >= 0) {
+                    for (Iterator<byte[]> it = list.iterator(); it.hasNext() && (count == 0 || removed < count); ) {
+                        if (Arrays.equals(it.next(), value)) {
+                            it.remove();
+                            removed++;
+                        }
+                    }
+                } else {
+                    for (ListIterator<byte[]> it = list.listIterator(list.size()); it.hasPrevious() && removed < -count; ) {
+                        if (Arrays.equals(it.previous(), value)) {
+                            it.remove();
+                            removed++;
+                        }
+                    }
+                }
+                removeIfEmpty(s.db, a.get(1), list.isEmpty());
+                return removed;
+            }
+            case "LTRIM": {
+                arity(a, 4, name);
+                List<byte[]> list = list(s.db, a.get(1), false);
+                if (list == null) {
+                    return OK;
+                }
+                int[] range = range(list.size(), parseLong(a.get(2)), parseLong(a.get(3)));
+                List<byte[]> kept = new ArrayList<>(list.subList(range[0], range[1]));
+                list.clear();
+                list.addAll(kept);
+                removeIfEmpty(s.db, a.get(1), list.isEmpty());
+                return OK;
+            }
+            // set
+            case "SADD": {
+                arity(a, 3, name);
+                Set<String> set = set(s.db, a.get(1), true);
+                long res = 0;
+                for (int i = 2; i < a.size(); i++) {
+                    if (set.add(key(a.get(i)))) {
+                        res++;
+                    }
+                }
+                return res;
+            }
+            case "SREM": {
+                arity(a, 3, name);
+                Set<String> set = set(s.db, a.get(1), false);
+                long res = 0;
+                if (set != null) {
+                    for (int i = 2; i < a.size(); i++) {
+                        if (set.remove(key(a.get(i)))) {
+                            res++;
+                        }
+                    }
+                    removeIfEmpty(s.db, a.get(1), set.isEmpty());
+                }
+                return res;
+            }
+            case "SMEMBERS": {
+                arity(a, 2, name);
+                Set<String> set = set(s.db, a.get(1), false);
+                List<Object> res = new ArrayList<>();
+                if (set != null) {
+                    for (String member : set) {
+                        res.add(raw(member));
+                    }
+                }
+                return res;
+            }
+            case "SISMEMBER": {
+                arity(a, 3, name);
+                Set<String> set = set(s.db, a.get(1), false);
+                return set != null && set.contains(key(a.get(2))) ? 1L : 0L;
+            }
+            case "SCARD": {
+                arity(a, 2, name);
+                Set<String> set = set(s.db, a.get(1), false);
+                return set == null ? 0L : (long) set.size();
+            }
+            // zset
+            case "ZADD":
+                return zadd(s, a);
+            case "ZINCRBY": {
+                arity(a, 4, name);
+                ZSet zset = zset(s.db, a.get(1), true);
+                String member = key(a.get(3));
+                Double current = zset.scores.get(member);
+                double res = (current == null ? 0 : current) + parseDouble(a.get(2), "ERR value is not a valid float");
+                zset.add(member, res);
+                return res;
+            }
+            case "ZSCORE": {
+                arity(a, 3, name);
+                ZSet zset = zset(s.db, a.get(1), false);
+                return zset == null ? null : zset.scores.get(key(a.get(2)));
+            }
+            case "ZREM": {
+                arity(a, 3, name);
+                ZSet zset = zset(s.db, a.get(1), false);
+                long res = 0;
+                if (zset != null) {
+                    for (int i = 2; i < a.size(); i++) {
+                        if (zset.remove(key(a.get(i)))) {
+                            res++;
+                        }
+                    }
+                    removeIfEmpty(s.db, a.get(1), zset.scores.isEmpty());
+                }
+                return res;
+            }
+            case "ZREMRANGEBYRANK": {
+                arity(a, 4, name);
+                ZSet zset = zset(s.db, a.get(1), false);
+                if (zset == null) {
+                    return 0L;
+                }
+                List<String> members = new ArrayList<>(zset.sorted);
+                int[] range = range(members.size(), parseLong(a.get(2)), parseLong(a.get(3)));
+                for (String member : members.subList(range[0], range[1])) {
+                    zset.remove(member);
+                }
+                removeIfEmpty(s.db, a.get(1), zset.scores.isEmpty());
+                return (long) (range[1] - range[0]);
+            }
+            case "ZCARD": {
+                arity(a, 2, name);
+                ZSet zset = zset(s.db, a.get(1), false);
+                return zset == null ? 0L : (long) zset.scores.size();
+            }
+            case "ZRANK":
+            case "ZREVRANK": {
+                arity(a, 3, name);
+                ZSet zset = zset(s.db, a.get(1), false);
+                String member = key(a.get(2));
+                if (zset == null || !zset.scores.containsKey(member)) {
+                    return null;
+                }
+                long rank = zset.sorted.headSet(member).size();
+                return name.equals("ZRANK") ? rank : zset.scores.size() - 1 - rank;
+            }
+            case "ZRANGE":
+            case "ZREVRANGE": {
+                arity(a, 4, name);
+                ZSet zset = zset(s.db, a.get(1), false);
+                boolean withScores = a.size() > 4 && upper(a.get(4)).equals("WITHSCORES");
+                if (zset == null) {
+                    return Collections.emptyList();
+                }
+                List<String> members = new ArrayList<>(zset.sorted);
+                if (name.equals("ZREVRANGE")) {
+                    Collections.reverse(members);
+                }
+                int[] range = range(members.size(), parseLong(a.get(2)), parseLong(a.get(3)));
+                return members(zset, members.subList(range[0], range[1]), withScores);
+            }
+            case "ZRANGEBYSCORE":
+            case "ZREVRANGEBYSCORE": {
+                arity(a, 4, name);
+                boolean reverse = name.equals("ZREVRANGEBYSCORE");
+                ZSet zset = zset(s.db, a.get(1), false);
+                Bound min = Bound.parse(a.get(reverse ? 3 : 2));
+                Bound max = Bound.parse(a.get(reverse ? 2 : 3));
+                boolean withScores = false;
+                long offset = 0;
+                long count = -1;
+                for (int i = 4; i < a.size(); i++) {
+                    String option = upper(a.get(i));
+                    if (option.equals("WITHSCORES")) {
+                        withScores = true;
+                    } else if (option.equals("LIMIT") && i + 2 < a.size()) {
+                        offset = parseLong(a.get(++i));
+                        count = parseLong(a.get(++i));
+                    } else {
+                        return error("ERR syntax error");
+                    }
+                }
+                if (zset == null) {
+                    return Collections.emptyList();
+                }
+                List<String> members = new ArrayList<>();
+                for (String member : zset.sorted) {
+                    double score = zset.scores.get(member);
+                    if (min.below(score) && max.above(score)) {
+                        members.add(member);
+                    }
+                }
+                if (reverse) {
+                    Collections.reverse(members);
+                }
+                int from = (int) Math.min(Math.max(offset, 0), members.size());
+                int to = count < 0 ? members.size() : (int) Math.min(members.size(), from + count);
+                return members(zset, members.subList(from, to), withScores);
+            }
+            case "ZCOUNT": {
+                arity(a, 4, name);
+                ZSet zset = zset(s.db, a.get(1), false);
+                Bound min = Bound.parse(a.get(2));
+                Bound max = Bound.parse(a.get(3));
+                long res = 0;
+                if (zset != null) {
+                    for (double score : zset.scores.values()) {
+                        if (min.below(score) && max.above(score)) {
+                            res++;
+                        }
+                    }
+                }
+                return res;
+            }
+            // 发布订阅
+            case "SUBSCRIBE":
+            case "PSUBSCRIBE": {
+                arity(a, 2, name);
+                boolean pattern = name.equals("PSUBSCRIBE");
+                List<Object> replies = new ArrayList<>();
+                for (int i = 1; i < a.size(); i++) {
+                    String channel = key(a.get(i));
+                    int count = pattern ? store.psubscribe(s, channel) : store.subscribe(s, channel);
+                    replies.add(new Push(bulk(name.toLowerCase()), a.get(i), (long) count));
+                }
+                return new Multiple(replies);
+            }
+            case "UNSUBSCRIBE":
+            case "PUNSUBSCRIBE": {
+                boolean pattern = name.equals("PUNSUBSCRIBE");
+                List<String> targets = new ArrayList<>();
+                if (a.size() > 1) {
+                    for (int i = 1; i < a.size(); i++) {
+                        targets.add(key(a.get(i)));
+                    }
+                } else {
+                    targets.addAll(pattern ? s.patterns : s.channels);
+                }
+                List<Object> replies = new ArrayList<>();
+                if (targets.isEmpty()) {
+                    replies.add(new Push(bulk(name.toLowerCase()), null, (long) (s.channels.size() + s.patterns.size())));
+                }
+                for (String target : targets) {
+                    int count = pattern ? store.punsubscribe(s, target) : store.unsubscribe(s, target);
+                    replies.add(new Push(bulk(name.toLowerCase()), raw(target), (long) count));
+                }
+                return new Multiple(replies);
+            }
+            case "PUBLISH":
+                arity(a, 3, name);
+                return (long) store.publish(a.get(1), a.get(2));
+            case "PUBSUB": {
+                arity(a, 2, name);
+                String sub = upper(a.get(1));
+                if (sub.equals("CHANNELS")) {
+                    String pattern = a.size() > 2 ? key(a.get(2)) : null;
+                    List<Object> res = new ArrayList<>();
+                    for (String channel : store.activeChannels()) {
+                        if (pattern == null || RespStore.glob(pattern, channel)) {
+                            res.add(raw(channel));
+                        }
+                    }
+                    return res;
+                }
+                if (sub.equals("NUMPAT")) {
+                    return 0L;
+                }
+                return Collections.emptyList();
+            }
+            default:
+                return unknown(name, a);
+        }
+    }
+
+    private Object exec(RespSession s) {
+        if (s.queued == null) {
+            return error("ERR EXEC without MULTI");
+        }
+        List<List<byte[]>> queued = s.queued;
+        boolean failed = s.queueFailed;
+        boolean dirty = s.dirty;
+        s.queued = null;
+        s.queueFailed = false;
+        store.unwatch(s);
+        if (failed) {
+            return error("EXECABORT Transaction discarded because of previous errors.");
+        }
+        if (dirty) {
+            return NULL_ARRAY;
+        }
+        List<Object> res = new ArrayList<>(queued.size());
+        for (List<byte[]> command : queued) {
+            try {
+                res.add(run(s, upper(command.get(0)), command));
+            } catch (CommandException e) {
+                res.add(error(e.getMessage()));
+            }
+        }
+        return res;
+    }
+
+    private Object auth(RespSession s, List<byte[]> a) {
+        arity(a, 2, "AUTH");
+        String expected = server.password();
+        if (expected == null) {
+            return error("ERR AUTH <password> called without any password configured for the default user. Are you sure your configuration is correct?");
+        }
+        String password = new String(a.get(a.size() - 1), StandardCharsets.UTF_8);
+        if (!expected.equals(password)) {
+            return error("WRONGPASS invalid username-password pair");
+        }
+        s.authenticated = true;
+        return OK;
+    }
+
+    private Object hello(RespSession s, List<byte[]> a) {
+        int protocol = s.resp3 ? 3 : 2;
+        if (a.size() > 1) {
+            long version = parseLong(a.get(1), "NOPROTO unsupported protocol version");
+            if (version != 2 && version != 3) {
+                return error("NOPROTO unsupported protocol version");
+            }
+            protocol = (int) version;
+        }
+        for (int i = 2; i < a.size(); i++) {
+            String option = upper(a.get(i));
+            if (option.equals("AUTH") && i + 2 < a.size()) {
+                Object res = auth(s, Arrays.asList(a.get(i), a.get(i + 1), a.get(i + 2)));
+                if (res != OK) {
+                    return res;
+                }
+                i += 2;
+            } else if (option.equals("SETNAME") && i + 1 < a.size()) {
+                s.name = new String(a.get(++i), StandardCharsets.UTF_8);
+            } else {
+                return error("ERR syntax error");
+            }
+        }
+        if (!s.authenticated) {
+            return error("NOAUTH HELLO must be called with the client already authenticated, otherwise the HELLO AUTH <user> <pass> option can be used to authenticate the client and select the RESP protocol version at the same time");
+        }
+        s.resp3 = protocol == 3;
+        Map<Object, Object> res = new LinkedHashMap<>();
+        res.put("server", "redis");
+        res.put("version", "6.2.0");
+        res.put("proto", (long) protocol);
+        res.put("id", s.id);
+        res.put("mode", server.mode());
+        res.put("role", server.sentinel != null ? "sentinel" : "master");
+        res.put("modules", Collections.emptyList());
+        return res;
+    }
+
+    private Object client(RespSession s, List<byte[]> a) {
+        arity(a, 2, "CLIENT");
+        switch (upper(a.get(1))) {
+            case "SETNAME":
+                arity(a, 3, "CLIENT|SETNAME");
+                s.name = new String(a.get(2), StandardCharsets.UTF_8);
+                return OK;
+            case "GETNAME":
+                return s.name.isEmpty() ? null : bulk(s.name);
+            case "ID":
+                return s.id;
+            case "LIST": {
+                StringBuilder res = new StringBuilder();
+                for (RespSession session : server.sessions()) {
+                    res.append(clientInfo(session)).append('\n');
+                }
+                return bulk(res.toString());
+            }
+            case "INFO":
+                return bulk(clientInfo(s) + "\n");
+            default:
+                return OK;
+        }
+    }
+
+    private static String clientInfo(RespSession session) {
+        return "id=" + session.id + " addr=" + session.address + " name=" + session.name + " db=" + session.db
+                + " sub=" + session.channels.size() + " psub=" + session.patterns.size() + " resp=" + (session.resp3 ? 3 : 2)
+                + " cmd=" + session.lastCommand;
+    }
+
+    private Object info() {
+        int keys = 0;
+        for (int i = 0; i < RespStore.DATABASES; i++) {
+            keys += store.keys(i, server::owns).size();
+        }
+        String res = "# Server\r\n"
+                + "redis_version:6.2.0\r\n"
+                + "redis_mode:" + server.mode() + "\r\n"
+                + "tcp_port:" + server.port() + "\r\n"
+                + "\r\n# Clients\r\n"
+                + "connected_clients:" + server.connectionCount() + "\r\n"
+                + "\r\n# Stats\r\n"
+                + "total_commands_processed:" + server.processedCount() + "\r\n"
+                + "\r\n# Replication\r\n"
+                + "role:master\r\n"
+                + "connected_slaves:0\r\n"
+                + "\r\n# Cluster\r\n"
+                + "cluster_enabled:" + (server.cluster != null ? 1 : 0) + "\r\n"
+                + "\r\n# Keyspace\r\n"
+                + "db0:keys=" + keys + ",expires=0,avg_ttl=0\r\n";
+        return bulk(res);
+    }
+
+    private Object scan(RespSession s, List<byte[]> a) {
+        arity(a, 2, "SCAN");
+        long cursor = parseLong(a.get(1), "ERR invalid cursor");
+        String pattern = option(a, 2, "MATCH");
+        String count = option(a, 2, "COUNT");
+        String type = option(a, 2, "TYPE");
+        int limit = count == null ? 10 : Math.max(1, Integer.parseInt(count));
+        List<String> keys = store.keys(s.db, k -> server.owns(k) && (pattern == null || RespStore.glob(pattern, k)));
+        if (type != null) {
+            keys.removeIf(k -> !type.equalsIgnoreCase(type(store.entry(s.db, k).value)));
+        }
+        // 排序后以下标作为游标，遍历期间新增的key可能会被跳过
+        Collections.sort(keys);
+        int from = (int) Math.min(Math.max(cursor, 0), keys.size());
+        int to = Math.min(keys.size(), from + limit);
+        List<Object> page = new ArrayList<>(to - from);
+        for (String k : keys.subList(from, to)) {
+            page.add(raw(k));
+        }
+        return Arrays.asList(bulk(String.valueOf(to >= keys.size() ? 0 : to)), page);
+    }
+
+    private Object set(RespSession s, List<byte[]> a) {
+        arity(a, 3, "SET");
+        long expireAt = 0;
+        boolean nx = false;
+        boolean xx = false;
+        boolean keepTtl = false;
+        boolean get = false;
+        for (int i = 3; i < a.size(); i++) {
+            String option = upper(a.get(i));
+            switch (option) {
+                case "EX":
+                case "PX":
+                case "EXAT":
+                case "PXAT": {
+                    if (i + 1 >= a.size() || expireAt != 0 || keepTtl) {
+                        return error("ERR syntax error");
+                    }
+                    long value = parseLong(a.get(++i));
+                    if (value <= 0) {
+                        return error("ERR invalid expire time in 'set' command");
+                    }
+                    long now = System.currentTimeMillis();
+                    expireAt = option.equals("EX") ? now + value * 1000 : option.equals("PX") ? now + value
+                            : option.equals("EXAT") ? value * 1000 : value;
+                    break;
+                }
+                case "NX":
+                    nx = true;
+                    break;
+                case "XX":
+                    xx = true;
+                    break;
+                case "KEEPTTL":
+                    keepTtl = true;
+                    break;
+                case "GET":
+                    get = true;
+                    break;
+                default:
+                    return error("ERR syntax error");
+            }
+        }
+        if (nx && xx || keepTtl && expireAt != 0) {
+            return error("ERR syntax error");
+        }
+        String key = key(a.get(1));
+        RespStore.Entry old = store.entry(s.db, key);
+        byte[] oldValue = get && old != null ? stringValue(old) : null;
+        if (nx && old != null || xx && old == null) {
+            return get ? oldValue : null;
+        }
+        store.put(s.db, key, a.get(2)).expireAt = keepTtl && old != null ? old.expireAt : expireAt;
+        return get ? oldValue : OK;
+    }
+
+    private Object zadd(RespSession s, List<byte[]> a) {
+        arity(a, 4, "ZADD");
+        boolean nx = false;
+        boolean xx = false;
+        boolean ch = false;
+        boolean incr = false;
+        int i = 2;
+        for (; i < a.size(); i++) {
+            String option = upper(a.get(i));
+            if (option.equals("NX")) {
+                nx = true;
+            } else if (option.equals("XX")) {
+                xx = true;
+            } else if (option.equals("CH")) {
+                ch = true;
+            } else if (option.equals("INCR")) {
+                incr = true;
+            } else {
+                break;
+            }
+        }
+        int pairs = a.size() - i;
+        if (pairs == 0 || pairs % 2 != 0) {
+            return error("ERR syntax error");
+        }
+        if (nx && xx) {
+            return error("ERR XX and NX options at the same time are not compatible");
+        }
+        if (incr && pairs != 2) {
+            return error("ERR INCR option supports a single increment-element pair");
+        }
+        double[] scores = new double[pairs / 2];
+        for (int j = 0; j < scores.length; j++) {
+            scores[j] = parseDouble(a.get(i + j * 2), "ERR value is not a valid float");
+        }
+        ZSet zset = zset(s.db, a.get(1), true);
+        long added = 0;
+        long changed = 0;
+        for (int j = 0; j < scores.length; j++) {
+            String member = key(a.get(i + j * 2 + 1));
+            Double current = zset.scores.get(member);
+            if (nx && current != null || xx && current == null) {
+                if (incr) {
+                    removeIfEmpty(s.db, a.get(1), zset.scores.isEmpty());
+                    return null;
+                }
+                continue;
+            }
+            double score = incr ? (current == null ? 0 : current) + scores[j] : scores[j];
+            if (incr) {
+                zset.add(member, score);
+                return score;
+            }
+            if (current == null) {
+                added++;
+            } else if (current != score) {
+                changed++;
+            }
+            zset.add(member, score);
+        }
+        removeIfEmpty(s.db, a.get(1), zset.scores.isEmpty());
+        return ch ? added + changed : added;
+    }
+
+    private static List<Object> members(ZSet zset, List<String> members, boolean withScores) {
+        List<Object> res = new ArrayList<>(withScores ? members.size() * 2 : members.size());
+        for (String member : members) {
+            res.add(raw(member));
+            if (withScores) {
+                res.add(zset.scores.get(member));
+            }
+        }
+        return res;
+    }
+
+    private Object expire(int db, String key, long at) {
+        RespStore.Entry e = store.entry(db, key);
+        if (e == null) {
+            return 0L;
+        }
+        if (at <= System.currentTimeMillis()) {
+            store.remove(db, key);
+        } else {
+            e.expireAt = at;
+        }
+        return 1L;
+    }
+
+    private Object incrBy(int db, byte[] rawKey, long delta) {
+        RespStore.Entry e = store.entry(db, key(rawKey));
+        long current = e == null ? 0 : parseLong(stringValue(e));
+        long res = add(current, delta);
+        putKeepTtl(db, rawKey, e, String.valueOf(res).getBytes(StandardCharsets.US_ASCII));
+        return res;
+    }
+
+    private static long add(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            throw new CommandException("ERR increment or decrement would overflow");
+        }
+    }
+
+    private void putKeepTtl(int db, byte[] rawKey, RespStore.Entry existing, byte[] value) {
+        if (existing != null) {
+            existing.value = value;
+        } else {
+            store.put(db, key(rawKey), value);
+        }
+    }
+
+    private void removeIfEmpty(int db, byte[] rawKey, boolean empty) {
+        if (empty) {
+            store.remove(db, key(rawKey));
+        }
+    }
+
+    private byte[] string(int db, byte[] rawKey) {
+        RespStore.Entry e = store.entry(db, key(rawKey));
+        return e == null ? null : stringValue(e);
+    }
+
+    private static byte[] stringValue(RespStore.Entry e) {
+        if (!(e.value instanceof byte[])) {
+            throw wrongType();
+        }
+        return (byte[]) e.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, byte[]> hash(int db, byte[] rawKey, boolean create) {
+        return (Map<String, byte[]>) container(db, rawKey, create, LinkedHashMap.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<byte[]> list(int db, byte[] rawKey, boolean create) {
+        return (List<byte[]>) container(db, rawKey, create, ArrayList.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> set(int db, byte[] rawKey, boolean create) {
+        return (Set<String>) container(db, rawKey, create, LinkedHashSet.class);
+    }
+
+    private ZSet zset(int db, byte[] rawKey, boolean create) {
+        return (ZSet) container(db, rawKey, create, ZSet.class);
+    }
+
+    private Object container(int db, byte[] rawKey, boolean create, Class<?> type) {
+        RespStore.Entry e = store.entry(db, key(rawKey));
+        if (e == null) {
+            if (!create) {
+                return null;
+            }
+            try {
+                return store.put(db, key(rawKey), type.newInstance()).value;
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        if (e.value.getClass() != type) {
+            throw wrongType();
+        }
+        return e.value;
+    }
+
+    private static String type(Object value) {
+        if (value instanceof byte[]) {
+            return "string";
+        } else if (value instanceof Map) {
+            return "hash";
+        } else if (value instanceof List) {
+            return "list";
+        } else if (value instanceof Set) {
+            return "set";
+        }
+        return "zset";
+    }
+
+    /**
+     * LRANGE/ZRANGE的下标转换为subList的[from, to)
+     */
+    private static int[] range(int size, long start, long stop) {
+        if (start < 0) {
+            start = Math.max(0, size + start);
+        }
+        if (stop < 0) {
+            stop = size + stop;
+        }
+        stop = Math.min(stop, size - 1);
+        if (start > stop || start >= size) {
+            return new int[]{0, 0};
+        }
+        return new int[]{(int) start, (int) stop + 1};
+    }
+
+    private static String option(List<byte[]> a, int from, String name) {
+        for (int i = from; i + 1 < a.size(); i++) {
+            if (upper(a.get(i)).equals(name)) {
+                return key(a.get(i + 1));
+            }
+        }
+        return null;
+    }
+
+    private static Object unknown(String name, List<byte[]> a) {
+        StringBuilder res = new StringBuilder("ERR unknown command `").append(name.toLowerCase()).append("`, with args beginning with: ");
+        for (int i = 1; i < a.size(); i++) {
+            res.append('`').append(new String(a.get(i), StandardCharsets.UTF_8)).append("`, ");
+        }
+        return error(res.toString());
+    }
+
+    private static void arity(List<byte[]> a, int min, String name) {
+        if (a.size() < min) {
+            throw arityError(name);
+        }
+    }
+
+    private static CommandException arityError(String name) {
+        return new CommandException("ERR wrong number of arguments for '" + name.toLowerCase() + "' command");
+    }
+
+    private static CommandException wrongType() {
+        return new CommandException("WRONGTYPE Operation against a key holding the wrong kind of value");
+    }
+
+    static String upper(byte[] raw) {
+        return new String(raw, StandardCharsets.ISO_8859_1).toUpperCase(Locale.ROOT);
+    }
+
+    private static long parseLong(byte[] raw) {
+        return parseLong(raw, "ERR value is not an integer or out of range");
+    }
+
+    private static long parseLong(byte[] raw, String error) {
+        try {
+            return Long.parseLong(new String(raw, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new CommandException(error);
+        }
+    }
+
+    private static double parseDouble(byte[] raw, String error) {
+        String text = new String(raw, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+        switch (text) {
+            case "inf":
+            case "+inf":
+                return Double.POSITIVE_INFINITY;
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+        }
+        try {
+            double res = Double.parseDouble(text);
+            if (Double.isNaN(res)) {
+                throw new CommandException(error);
+            }
+            return res;
+        } catch (NumberFormatException e) {
+            throw new CommandException(error);
+        }
+    }
+
+    private static byte[] formatNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new CommandException("ERR increment would produce NaN or Infinity");
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 有序集合，按分数及成员字节序排序
+     */
+    static final class ZSet {
+        final Map<String, Double> scores = new HashMap<>();
+        final TreeSet<String> sorted = new TreeSet<>((x, y) -> {
+            int res = Double.compare(scores.get(x), scores.get(y));
+            return res != 0 ? res : x.compareTo(y);
+        });
+
+        boolean add(String member, double score) {
+            Double old = scores.get(member);
+            if (old != null) {
+                if (old == score) {
+                    return false;
+                }
+                sorted.remove(member);
+            }
+            scores.put(member, score);
+            sorted.add(member);
+            return old == null;
+        }
+
+        boolean remove(String member) {
+            if (!scores.containsKey(member)) {
+                return false;
+            }
+            sorted.remove(member);
+            scores.remove(member);
+            return true;
+        }
+    }
+
+    /**
+     * ZRANGEBYSCORE的分数区间端点
+     */
+    private static final class Bound {
+        final double value;
+        final boolean exclusive;
+
+        Bound(double value, boolean exclusive) {
+            this.value = value;
+            this.exclusive = exclusive;
+        }
+
+        static Bound parse(byte[] raw) {
+            boolean exclusive = raw.length > 0 && raw[0] == '(';
+            byte[] number = exclusive ? Arrays.copyOfRange(raw, 1, raw.length) : raw;
+            return new Bound(parseDouble(number, "ERR min or max is not a float"), exclusive);
+        }
+
+        boolean below(double score) {
+            return exclusive ? value < score : value <= score;
+        }
+
+        boolean above(double score) {
+            return exclusive ? score < value : score <= value;
+        }
+    }
+}
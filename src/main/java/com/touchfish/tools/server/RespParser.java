@@ -0,0 +1,135 @@
+package com.touchfish.tools.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析客户端请求，支持 *N 数组格式和inline格式
+ */
+final class RespParser {
+    /**
+     * 单个参数最大长度，与redis的proto-max-bulk-len默认值一致
+     */
+    private static final int MAX_BULK = 512 * 1024 * 1024;
+
+    private RespParser() {
+    }
+
+    static final class ProtocolException extends Exception {
+        ProtocolException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 从读模式的buffer中解析一条命令，数据不完整时恢复position并返回null
+     */
+    static List<byte[]> parse(ByteBuffer buffer) throws ProtocolException {
+        int start = buffer.position();
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        List<byte[]> res = buffer.get(start) == '*' ? parseArray(buffer) : parseInline(buffer);
+        if (res == null) {
+            buffer.position(start);
+        }
+        return res;
+    }
+
+    private static List<byte[]> parseArray(ByteBuffer buffer) throws ProtocolException {
+        buffer.get();
+        Long count = readNumber(buffer);
+        if (count == null) {
+            return null;
+        }
+        if (count > 1024 * 1024) {
+            throw new ProtocolException("invalid multibulk length");
+        }
+        List<byte[]> res = new ArrayList<>((int) Math.max(count, 0));
+        for (long i = 0; i < count; i++) {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            if (buffer.get() != '$') {
+                throw new ProtocolException("expected '$', got '" + (char) buffer.get(buffer.position() - 1) + "'");
+            }
+            Long length = readNumber(buffer);
+            if (length == null) {
+                return null;
+            }
+            if (length < 0 || length > MAX_BULK) {
+                throw new ProtocolException("invalid bulk length");
+            }
+            if (buffer.remaining() < length + 2) {
+                return null;
+            }
+            byte[] arg = new byte[(int) (long) length];
+            buffer.get(arg);
+            if (buffer.get() != '\r' || buffer.get() != '\n') {
+                throw new ProtocolException("expected CRLF after bulk");
+            }
+            res.add(arg);
+        }
+        return res;
+    }
+
+    private static List<byte[]> parseInline(ByteBuffer buffer) {
+        int end = lineEnd(buffer);
+        if (end < 0) {
+            return null;
+        }
+        byte[] line = new byte[end - buffer.position()];
+        buffer.get(line);
+        buffer.position(end + 2);
+        List<byte[]> res = new ArrayList<>();
+        int from = -1;
+        for (int i = 0; i <= line.length; i++) {
+            boolean space = i == line.length || line[i] == ' ' || line[i] == '\t';
+            if (space && from >= 0) {
+                byte[] arg = new byte[i - from];
+                System.arraycopy(line, from, arg, 0, arg.length);
+                res.add(arg);
+                from = -1;
+            } else if (!space && from < 0) {
+                from = i;
+            }
+        }
+        return res;
+    }
+
+    private static Long readNumber(ByteBuffer buffer) throws ProtocolException {
+        int end = lineEnd(buffer);
+        if (end < 0) {
+            return null;
+        }
+        long value = 0;
+        boolean negative = false;
+        int i = buffer.position();
+        if (i < end && buffer.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end) {
+            throw new ProtocolException("invalid length");
+        }
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new ProtocolException("invalid length");
+            }
+            value = value * 10 + digit;
+        }
+        buffer.position(end + 2);
+        return negative ? -value : value;
+    }
+
+    private static int lineEnd(ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit() - 1; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
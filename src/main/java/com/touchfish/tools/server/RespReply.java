@@ -0,0 +1,154 @@
+package com.touchfish.tools.server;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 命令返回值模型及编码
+ * String 状态回复，Long 整数，byte[] 批量字符串，null 空批量字符串，List 数组，Map 字典，Double 浮点数
+ */
+final class RespReply {
+    static final Status OK = new Status("OK");
+    static final Status PONG = new Status("PONG");
+    static final Status QUEUED = new Status("QUEUED");
+    /**
+     * RESP2中的 *-1
+     */
+    static final Object NULL_ARRAY = new Object();
+    /**
+     * 命令自行发送回复或不回复
+     */
+    static final Object NONE = new Object();
+
+    private RespReply() {
+    }
+
+    static final class Status {
+        final String text;
+
+        Status(String text) {
+            this.text = text;
+        }
+    }
+
+    static final class Error {
+        final String text;
+
+        Error(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * 服务端推送，RESP3为 > 类型，RESP2为普通数组
+     */
+    static final class Push {
+        final List<Object> items;
+
+        Push(Object... items) {
+            this.items = Arrays.asList(items);
+        }
+    }
+
+    /**
+     * 一条命令对应多条回复，如订阅多个频道
+     */
+    static final class Multiple {
+        final List<Object> replies;
+
+        Multiple(List<Object> replies) {
+            this.replies = replies;
+        }
+    }
+
+    static Error error(String text) {
+        return new Error(text);
+    }
+
+    static byte[] bulk(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] encode(Object reply, boolean resp3) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        write(out, reply, resp3);
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, Object reply, boolean resp3) {
+        if (reply == null) {
+            line(out, resp3 ? "_" : "$-1");
+        } else if (reply == NULL_ARRAY) {
+            line(out, resp3 ? "_" : "*-1");
+        } else if (reply instanceof Status) {
+            line(out, "+" + ((Status) reply).text);
+        } else if (reply instanceof Error) {
+            line(out, "-" + ((Error) reply).text);
+        } else if (reply instanceof Long || reply instanceof Integer) {
+            line(out, ":" + reply);
+        } else if (reply instanceof Double) {
+            String text = formatDouble((Double) reply);
+            if (resp3) {
+                line(out, "," + text);
+            } else {
+                bulk(out, text.getBytes(StandardCharsets.US_ASCII));
+            }
+        } else if (reply instanceof byte[]) {
+            bulk(out, (byte[]) reply);
+        } else if (reply instanceof String) {
+            bulk(out, ((String) reply).getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof List) {
+            List<?> items = (List<?>) reply;
+            line(out, "*" + items.size());
+            for (Object item : items) {
+                write(out, item, resp3);
+            }
+        } else if (reply instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) reply;
+            line(out, (resp3 ? "%" : "*") + (resp3 ? map.size() : map.size() * 2));
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey(), resp3);
+                write(out, entry.getValue(), resp3);
+            }
+        } else if (reply instanceof Push) {
+            List<Object> items = ((Push) reply).items;
+            line(out, (resp3 ? ">" : "*") + items.size());
+            for (Object item : items) {
+                write(out, item, resp3);
+            }
+        } else if (reply instanceof Multiple) {
+            for (Object item : ((Multiple) reply).replies) {
+                write(out, item, resp3);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported reply type " + reply.getClass());
+        }
+    }
+
+    static String formatDouble(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "inf" : "-inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e17) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static void bulk(ByteArrayOutputStream out, byte[] value) {
+        line(out, "$" + value.length);
+        out.write(value, 0, value.length);
+        out.write('\r');
+        out.write('\n');
+    }
+
+    private static void line(ByteArrayOutputStream out, String text) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        out.write(raw, 0, raw.length);
+        out.write('\r');
+        out.write('\n');
+    }
+}
@@ -0,0 +1,117 @@
+package com.touchfish.tools.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.touchfish.tools.server.RespReply.*;
+
+/**
+ * 进程内哨兵，只监控一个主节点
+ * 支持客户端发现主节点所需的SENTINEL命令，failover切换主节点并发布+switch-master
+ */
+public class RespSentinel implements Closeable {
+    private final RespServer server;
+    private final String masterName;
+    private volatile RespServer master;
+
+    public RespSentinel(String masterName, RespServer master) {
+        this.masterName = masterName;
+        this.master = master;
+        this.server = new RespServer(master.host(), 0, new RespStore());
+        this.server.sentinel = this;
+    }
+
+    public RespSentinel start() throws IOException {
+        server.start();
+        return this;
+    }
+
+    /**
+     * 哨兵自身的地址
+     */
+    public String address() {
+        return server.address();
+    }
+
+    public RespServer server() {
+        return server;
+    }
+
+    public String masterName() {
+        return masterName;
+    }
+
+    public RespServer master() {
+        return master;
+    }
+
+    /**
+     * 切换主节点，已订阅+switch-master的客户端会收到通知
+     */
+    public void failover(RespServer newMaster) {
+        RespServer old = master;
+        master = newMaster;
+        String message = masterName + " " + old.host() + " " + old.port() + " " + newMaster.host() + " " + newMaster.port();
+        server.store().publish(bulk("+switch-master"), message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Object command(List<byte[]> a) {
+        if (a.size() < 2) {
+            return error("ERR wrong number of arguments for 'sentinel' command");
+        }
+        String sub = RespCommands.upper(a.get(1));
+        switch (sub) {
+            case "GET-MASTER-ADDR-BY-NAME":
+                if (a.size() < 3) {
+                    break;
+                }
+                if (!masterName.equals(new String(a.get(2), StandardCharsets.UTF_8))) {
+                    return NULL_ARRAY;
+                }
+                RespServer current = master;
+                return Arrays.asList(bulk(current.host()), bulk(String.valueOf(current.port())));
+            case "MASTERS":
+                return Collections.singletonList(masterInfo());
+            case "MASTER":
+                if (a.size() < 3) {
+                    break;
+                }
+                if (!masterName.equals(new String(a.get(2), StandardCharsets.UTF_8))) {
+                    return error("ERR No such master with that name");
+                }
+                return masterInfo();
+            case "SLAVES":
+            case "REPLICAS":
+            case "SENTINELS":
+                return Collections.emptyList();
+            case "MYID":
+                return bulk(String.format("%040x", server.port()));
+            default:
+        }
+        return error("ERR Unknown sentinel subcommand '" + new String(a.get(1), StandardCharsets.UTF_8) + "'");
+    }
+
+    private List<Object> masterInfo() {
+        RespServer current = master;
+        return Arrays.asList(
+                bulk("name"), bulk(masterName),
+                bulk("ip"), bulk(current.host()),
+                bulk("port"), bulk(String.valueOf(current.port())),
+                bulk("flags"), bulk("master"),
+                bulk("num-slaves"), bulk("0"),
+                bulk("num-other-sentinels"), bulk("0"),
+                bulk("quorum"), bulk("1"));
+    }
+
+    /**
+     * 只关闭哨兵，不关闭主节点
+     */
+    @Override
+    public void close() {
+        server.close();
+    }
+}
@@ -0,0 +1,327 @@
+package com.touchfish.tools.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内RESP2/RESP3服务，用于离线测试和压测
+ * 单线程NIO事件循环，数据保存在RespStore中，可单独使用，也可由RespCluster/RespSentinel组成集群或哨兵
+ * 支持注入延迟和随机断开连接
+ */
+@Slf4j
+public class RespServer implements Closeable {
+    private final String host;
+    private final int requestedPort;
+    private final RespStore store;
+    private final RespCommands commands;
+    private final Set<RespSession> sessions = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<RespSession> pendingFlush = new ConcurrentLinkedQueue<>();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile String password;
+    private volatile long latency;
+    private volatile double dropRate;
+    private volatile boolean running;
+    private int port;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread loop;
+    private ScheduledExecutorService delayer;
+    RespCluster cluster;
+    RespSentinel sentinel;
+
+    /**
+     * 监听127.0.0.1的随机端口
+     */
+    public RespServer() {
+        this(0);
+    }
+
+    /**
+     * @param port 为0时使用随机端口
+     */
+    public RespServer(int port) {
+        this("127.0.0.1", port, new RespStore());
+    }
+
+    RespServer(String host, int port, RespStore store) {
+        this.host = host;
+        this.requestedPort = port;
+        this.store = store;
+        this.commands = new RespCommands(this);
+    }
+
+    public synchronized RespServer start() throws IOException {
+        if (running) {
+            return this;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(host, requestedPort));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        delayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "resp-delay-" + port);
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        loop = new Thread(this::loop, "resp-server-" + port);
+        loop.setDaemon(true);
+        loop.start();
+        log.info("Resp Server Started On " + address() + ".");
+        return this;
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                selector.select();
+                flushPending();
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    RespSession session = (RespSession) key.attachment();
+                    if (key.isReadable()) {
+                        read(session);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        session.flush();
+                    }
+                }
+                flushPending();
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (Exception e) {
+                if (running) {
+                    log.error("Resp Server " + address() + " Event Loop Error.", e);
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            RespSession session = new RespSession(this, channel, key);
+            key.attach(session);
+            sessions.add(session);
+        }
+    }
+
+    private void read(RespSession session) {
+        try {
+            int n;
+            while ((n = session.channel.read(session.in)) > 0) {
+                if (!session.in.hasRemaining()) {
+                    ByteBuffer larger = ByteBuffer.allocate(session.in.capacity() * 2);
+                    session.in.flip();
+                    larger.put(session.in);
+                    session.in = larger;
+                }
+            }
+            if (n < 0) {
+                session.close();
+                return;
+            }
+        } catch (IOException e) {
+            session.close();
+            return;
+        }
+        session.in.flip();
+        try {
+            List<byte[]> args;
+            while (!session.isClosed() && !session.quit && (args = RespParser.parse(session.in)) != null) {
+                if (!args.isEmpty()) {
+                    handle(session, args);
+                }
+            }
+        } catch (RespParser.ProtocolException e) {
+            session.send(RespReply.encode(RespReply.error("ERR Protocol error: " + e.getMessage()), session.resp3));
+            session.closeAfterFlush();
+        }
+        if (!session.isClosed()) {
+            session.in.compact();
+        }
+    }
+
+    private void handle(RespSession session, List<byte[]> args) {
+        double rate = dropRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            dropped.increment();
+            session.close();
+            return;
+        }
+        processed.increment();
+        Object reply = commands.execute(session, args);
+        if (reply == RespReply.NONE) {
+            return;
+        }
+        byte[] encoded = RespReply.encode(reply, session.resp3);
+        long delay = latency;
+        if (delay > 0) {
+            // 所有回复延迟相同时间，同一连接内的回复顺序不变
+            delayer.schedule(() -> reply(session, encoded), delay, TimeUnit.MILLISECONDS);
+        } else {
+            reply(session, encoded);
+        }
+    }
+
+    private static void reply(RespSession session, byte[] encoded) {
+        session.send(encoded);
+        if (session.quit) {
+            session.closeAfterFlush();
+        }
+    }
+
+    void flushLater(RespSession session) {
+        pendingFlush.add(session);
+        if (Thread.currentThread() != loop && selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    private void flushPending() {
+        RespSession session;
+        while ((session = pendingFlush.poll()) != null) {
+            session.flush();
+        }
+    }
+
+    void removed(RespSession session) {
+        sessions.remove(session);
+    }
+
+    /**
+     * 为之后的每个回复增加延迟
+     * @param latency 单位 ms 0为不延迟
+     */
+    public RespServer latency(long latency) {
+        this.latency = Math.max(0, latency);
+        return this;
+    }
+
+    /**
+     * 收到命令时按概率直接断开连接且不回复
+     * @param dropRate 0到1之间
+     */
+    public RespServer dropRate(double dropRate) {
+        this.dropRate = Math.max(0, Math.min(1, dropRate));
+        return this;
+    }
+
+    /**
+     * 设置密码，之后的新连接需要AUTH
+     */
+    public RespServer password(String password) {
+        this.password = password;
+        return this;
+    }
+
+    /**
+     * 立即断开所有客户端连接
+     * @return 断开的连接数
+     */
+    public int dropConnections() {
+        List<RespSession> current = new ArrayList<>(sessions);
+        for (RespSession session : current) {
+            session.closeAfterFlush();
+        }
+        dropped.add(current.size());
+        return current.size();
+    }
+
+    public String password() {
+        return password;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    /**
+     * host:port 可直接用作hostInfo
+     */
+    public String address() {
+        return host + ":" + port;
+    }
+
+    public RespStore store() {
+        return store;
+    }
+
+    public int connectionCount() {
+        return sessions.size();
+    }
+
+    Collection<RespSession> sessions() {
+        return sessions;
+    }
+
+    /**
+     * 已处理的命令数
+     */
+    public long processedCount() {
+        return processed.sum();
+    }
+
+    /**
+     * 注入故障断开的连接数
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 集群模式下key是否属于本节点，非集群模式总是返回true
+     */
+    boolean owns(String key) {
+        return cluster == null || cluster.owner(RespCluster.slot(key)) == this;
+    }
+
+    String mode() {
+        return cluster != null ? "cluster" : sentinel != null ? "sentinel" : "standalone";
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (RespSession session : new ArrayList<>(sessions)) {
+            session.close();
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException ignored) {
+        }
+        delayer.shutdownNow();
+        log.info("Resp Server " + address() + " Stopped.");
+    }
+}
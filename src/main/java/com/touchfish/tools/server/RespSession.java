@@ -0,0 +1,143 @@
+package com.touchfish.tools.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个客户端连接的状态
+ * 读取和解析只在事件循环线程中进行，send可以在任意线程调用
+ */
+final class RespSession {
+    private static final AtomicLong IDS = new AtomicLong();
+
+    final long id = IDS.incrementAndGet();
+    final RespServer server;
+    final SocketChannel channel;
+    final SelectionKey key;
+    final String address;
+    ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+    private final ConcurrentLinkedQueue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+    int db;
+    boolean resp3;
+    boolean authenticated;
+    boolean asking;
+    /**
+     * 收到QUIT，回复后关闭
+     */
+    boolean quit;
+    String name = "";
+    String lastCommand = "";
+    final Set<String> channels = new LinkedHashSet<>();
+    final Set<String> patterns = new LinkedHashSet<>();
+    /**
+     * MULTI之后排队的命令，不在事务中时为null
+     */
+    List<List<byte[]>> queued;
+    /**
+     * 排队时出现错误，EXEC时放弃事务
+     */
+    boolean queueFailed;
+    final Set<String> watched = new HashSet<>();
+    /**
+     * WATCH的key已被修改
+     */
+    volatile boolean dirty;
+    private volatile boolean closing;
+    private volatile boolean closed;
+
+    RespSession(RespServer server, SocketChannel channel, SelectionKey key) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        InetSocketAddress remote = null;
+        try {
+            remote = (InetSocketAddress) channel.getRemoteAddress();
+        } catch (IOException ignored) {
+        }
+        this.address = remote == null ? "?" : remote.getHostString() + ":" + remote.getPort();
+        this.authenticated = server.password() == null;
+    }
+
+    boolean subscribed() {
+        return !channels.isEmpty() || !patterns.isEmpty();
+    }
+
+    /**
+     * 线程安全，数据在事件循环线程中写出
+     */
+    void send(byte[] data) {
+        if (closed) {
+            return;
+        }
+        out.add(ByteBuffer.wrap(data));
+        server.flushLater(this);
+    }
+
+    /**
+     * 写出剩余回复后关闭
+     */
+    void closeAfterFlush() {
+        closing = true;
+        server.flushLater(this);
+    }
+
+    /**
+     * 只在事件循环线程调用
+     */
+    void flush() {
+        if (closed) {
+            return;
+        }
+        try {
+            ByteBuffer buffer;
+            while ((buffer = out.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    if (key.isValid()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                    return;
+                }
+                out.poll();
+            }
+            if (closing) {
+                close();
+                return;
+            }
+            if (key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        server.store().unsubscribeAll(this);
+        server.store().unwatch(this);
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        out.clear();
+        server.removed(this);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+}
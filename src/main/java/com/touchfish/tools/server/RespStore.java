@@ -0,0 +1,307 @@
+package com.touchfish.tools.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * 测试服务的内存数据及发布订阅
+ * key和field以ISO-8859-1字符串保存，与原始字节一一对应
+ * 集群各节点共享同一个实例，所有访问都在该实例上同步
+ */
+public class RespStore {
+    static final int DATABASES = 16;
+
+    @SuppressWarnings("unchecked")
+    private final Map<String, Entry>[] databases = new Map[DATABASES];
+    private final Map<String, Set<RespSession>> channels = new HashMap<>();
+    private final Map<String, Set<RespSession>> patterns = new HashMap<>();
+    /**
+     * WATCH的key，以"db key"为键
+     */
+    private final Map<String, Set<RespSession>> watchers = new HashMap<>();
+
+    public RespStore() {
+        for (int i = 0; i < DATABASES; i++) {
+            databases[i] = new HashMap<>();
+        }
+    }
+
+    static final class Entry {
+        Object value;
+        long expireAt;
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+
+    static String key(byte[] raw) {
+        return new String(raw, StandardCharsets.ISO_8859_1);
+    }
+
+    static byte[] raw(String key) {
+        return key.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 获取未过期的条目，过期条目在访问时删除
+     */
+    synchronized Entry entry(int db, String key) {
+        Entry entry = databases[db].get(key);
+        if (entry != null && entry.expireAt > 0 && entry.expireAt <= System.currentTimeMillis()) {
+            databases[db].remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized Entry put(int db, String key, Object value) {
+        Entry entry = new Entry(value);
+        databases[db].put(key, entry);
+        return entry;
+    }
+
+    synchronized boolean remove(int db, String key) {
+        return entry(db, key) != null && databases[db].remove(key) != null;
+    }
+
+    /**
+     * 未过期的key
+     */
+    synchronized List<String> keys(int db, Predicate<String> filter) {
+        List<String> res = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> iterator = databases[db].entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> e = iterator.next();
+            if (e.getValue().expireAt > 0 && e.getValue().expireAt <= now) {
+                iterator.remove();
+            } else if (filter.test(e.getKey())) {
+                res.add(e.getKey());
+            }
+        }
+        return res;
+    }
+
+    synchronized void flush(int db, Predicate<String> filter) {
+        databases[db].keySet().removeIf(key -> {
+            if (filter.test(key)) {
+                touch(db, key);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 清空所有数据库，测试用例之间重置状态
+     */
+    public synchronized void flushAll() {
+        for (Map<String, Entry> database : databases) {
+            database.clear();
+        }
+        for (Set<RespSession> sessions : watchers.values()) {
+            for (RespSession session : sessions) {
+                session.dirty = true;
+            }
+        }
+    }
+
+    synchronized void watch(RespSession session, int db, String key) {
+        String watched = db + " " + key;
+        watchers.computeIfAbsent(watched, k -> new HashSet<>()).add(session);
+        session.watched.add(watched);
+    }
+
+    synchronized void unwatch(RespSession session) {
+        for (String watched : session.watched) {
+            removeSubscriber(watchers, watched, session);
+        }
+        session.watched.clear();
+        session.dirty = false;
+    }
+
+    /**
+     * key被修改，WATCH该key的连接的事务将失败
+     */
+    synchronized void touch(int db, String key) {
+        Set<RespSession> sessions = watchers.get(db + " " + key);
+        if (sessions != null) {
+            for (RespSession session : sessions) {
+                session.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * 数据库0中的key数量
+     */
+    public int size() {
+        return keys(0, k -> true).size();
+    }
+
+    synchronized int subscribe(RespSession session, String channel) {
+        if (session.channels.add(channel)) {
+            channels.computeIfAbsent(channel, k -> new LinkedHashSet<>()).add(session);
+        }
+        return session.channels.size() + session.patterns.size();
+    }
+
+    synchronized int unsubscribe(RespSession session, String channel) {
+        if (session.channels.remove(channel)) {
+            removeSubscriber(channels, channel, session);
+        }
+        return session.channels.size() + session.patterns.size();
+    }
+
+    synchronized int psubscribe(RespSession session, String pattern) {
+        if (session.patterns.add(pattern)) {
+            patterns.computeIfAbsent(pattern, k -> new LinkedHashSet<>()).add(session);
+        }
+        return session.channels.size() + session.patterns.size();
+    }
+
+    synchronized int punsubscribe(RespSession session, String pattern) {
+        if (session.patterns.remove(pattern)) {
+            removeSubscriber(patterns, pattern, session);
+        }
+        return session.channels.size() + session.patterns.size();
+    }
+
+    synchronized void unsubscribeAll(RespSession session) {
+        for (String channel : session.channels) {
+            removeSubscriber(channels, channel, session);
+        }
+        for (String pattern : session.patterns) {
+            removeSubscriber(patterns, pattern, session);
+        }
+        session.channels.clear();
+        session.patterns.clear();
+    }
+
+    private static void removeSubscriber(Map<String, Set<RespSession>> registry, String name, RespSession session) {
+        Set<RespSession> subscribers = registry.get(name);
+        if (subscribers != null) {
+            subscribers.remove(session);
+            if (subscribers.isEmpty()) {
+                registry.remove(name);
+            }
+        }
+    }
+
+    /**
+     * 发布消息
+     * @return 收到消息的订阅数
+     */
+    public synchronized int publish(byte[] channel, byte[] message) {
+        String name = key(channel);
+        int res = 0;
+        Set<RespSession> subscribers = channels.get(name);
+        if (subscribers != null) {
+            for (RespSession session : subscribers) {
+                session.send(RespReply.encode(new RespReply.Push(RespReply.bulk("message"), channel, message), session.resp3));
+                res++;
+            }
+        }
+        for (Map.Entry<String, Set<RespSession>> e : patterns.entrySet()) {
+            if (!glob(e.getKey(), name)) {
+                continue;
+            }
+            byte[] pattern = raw(e.getKey());
+            for (RespSession session : e.getValue()) {
+                session.send(RespReply.encode(new RespReply.Push(RespReply.bulk("pmessage"), pattern, channel, message), session.resp3));
+                res++;
+            }
+        }
+        return res;
+    }
+
+    synchronized List<String> activeChannels() {
+        return new ArrayList<>(channels.keySet());
+    }
+
+    /**
+     * redis的glob匹配，支持 * ? [abc] [^a] [a-z] 及 \ 转义
+     */
+    static boolean glob(String pattern, String text) {
+        return glob(pattern, 0, text, 0);
+    }
+
+    private static boolean glob(String p, int pi, String s, int si) {
+        while (pi < p.length()) {
+            char c = p.charAt(pi);
+            switch (c) {
+                case '*':
+                    while (pi < p.length() && p.charAt(pi) == '*') {
+                        pi++;
+                    }
+                    if (pi == p.length()) {
+                        return true;
+                    }
+                    for (int i = si; i <= s.length(); i++) {
+                        if (glob(p, pi, s, i)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case '?':
+                    if (si >= s.length()) {
+                        return false;
+                    }
+                    pi++;
+                    si++;
+                    break;
+                case '[': {
+                    if (si >= s.length()) {
+                        return false;
+                    }
+                    int end = pi + 1;
+                    boolean negate = end < p.length() && p.charAt(end) == '^';
+                    if (negate) {
+                        end++;
+                    }
+                    boolean match = false;
+                    char target = s.charAt(si);
+                    while (end < p.length() && p.charAt(end) != ']') {
+                        char from = p.charAt(end);
+                        if (from == '\\' && end + 1 < p.length()) {
+                            from = p.charAt(++end);
+                        }
+                        if (end + 2 < p.length() && p.charAt(end + 1) == '-' && p.charAt(end + 2) != ']') {
+                            char to = p.charAt(end + 2);
+                            if (target >= Math.min(from, to) && target <= Math.max(from, to)) {
+                                match = true;
+                            }
+                            end += 3;
+                        } else {
+                            if (target == from) {
+                                match = true;
+                            }
+                            end++;
+                        }
+                    }
+                    if (match == negate) {
+                        return false;
+                    }
+                    pi = end + 1;
+                    si++;
+                    break;
+                }
+                case '\\':
+                    if (pi + 1 < p.length()) {
+                        pi++;
+                        c = p.charAt(pi);
+                    }
+                    // fall through
+                default:
+                    if (si >= s.length() || s.charAt(si) != c) {
+                        return false;
+                    }
+                    pi++;
+                    si++;
+            }
+        }
+        return si == s.length();
+    }
+}
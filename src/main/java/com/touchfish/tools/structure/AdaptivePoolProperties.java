@@ -0,0 +1,39 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 连接池自适应配置，根据借用等待时间和使用率在上下限之间调整maxTotal和minIdle
+ * 只对jedis和关闭shareNativeConnection的lettuce生效
+ */
+@Data
+public class AdaptivePoolProperties {
+    /**
+     * 是否启用
+     */
+    public boolean enabled = false;
+    /**
+     * maxTotal下限
+     */
+    public int minTotal = 8;
+    /**
+     * maxTotal上限
+     */
+    public int maxTotal = 128;
+    /**
+     * minIdle上限
+     */
+    public int maxMinIdle = 32;
+    /**
+     * 检查间隔内平均借用等待时间超过该值时扩容 单位 ms
+     */
+    public long targetWait = 5;
+    /**
+     * 使用率(活跃连接/maxTotal)低于该值且无等待时缩容
+     */
+    public double shrinkUtilization = 0.3;
+    /**
+     * 检查间隔 单位 ms
+     */
+    public long interval = 5000;
+}
@@ -0,0 +1,27 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 本地布隆过滤器配置，按key前缀划分命名空间
+ */
+@Data
+public class BloomFilterProperties {
+    /**
+     * 命名空间key前缀，如 user:
+     */
+    public String prefix;
+    /**
+     * 预计key数量
+     */
+    public long expectedInsertions = 1000000;
+    /**
+     * 期望误判率
+     */
+    public double fpp = 0.01;
+    /**
+     * 启动时是否通过SCAN重建，未重建完成前不拦截请求
+     * 为false时只记录写入的key，调用RedisUtil.rebuildBloomFilter重建后才开始拦截
+     */
+    public boolean rebuild = true;
+}
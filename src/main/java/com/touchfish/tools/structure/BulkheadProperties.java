@@ -0,0 +1,23 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 隔离舱配置，限制同时使用该连接的线程数，某个redis变慢时等待的线程不会无限堆积
+ */
+@Data
+public class BulkheadProperties {
+    public boolean enabled = false;
+    /**
+     * 同时借出的最大连接数，包括订阅和SessionCallback占用的连接
+     */
+    public int maxConcurrent = 64;
+    /**
+     * 最多等待的线程数，超出时立即拒绝
+     */
+    public int maxQueue = 128;
+    /**
+     * 最长等待时间 单位 ms 0 表示达到并发上限时立即拒绝
+     */
+    public long maxWait = 100;
+}
@@ -0,0 +1,27 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 大值分块读写配置
+ */
+@Data
+public class ChunkedProperties {
+    /**
+     * 分块大小 单位 byte
+     * 需小于G1 region的一半，避免每个分块成为大对象，默认region下不超过512KB
+     */
+    public int chunkSize = 256 * 1024;
+    /**
+     * 单个pipeline写入或读取的分块数，读取时同时预取下一批
+     */
+    public int batchChunks = 8;
+    /**
+     * 写入中分块的过期时间，写入方异常退出时未发布的分块自动过期 单位 ms
+     */
+    public long uploadTimeout = 10 * 60 * 1000;
+    /**
+     * 覆盖后旧分块保留时间，保证正在读取旧值的读取方可以读完 单位 ms
+     */
+    public long grace = 30 * 1000;
+}
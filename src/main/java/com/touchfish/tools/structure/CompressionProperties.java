@@ -0,0 +1,26 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 值压缩配置，作用于valueSerializer和hashValueSerializer
+ */
+@Data
+public class CompressionProperties {
+    /**
+     * 是否启用
+     */
+    public boolean enabled = false;
+    /**
+     * 序列化后超过该字节数的值才会压缩 单位 byte
+     */
+    public int threshold = 4096;
+    /**
+     * Deflate压缩级别 1-9 默认 1 优先速度
+     */
+    public int level = 1;
+    /**
+     * 解压后的最大长度，头部记录的长度超过该值时视为损坏，避免按错误的长度分配内存 单位 byte
+     */
+    public int maxDecompressedSize = 64 * 1024 * 1024;
+}
@@ -0,0 +1,18 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 本地聚合计数器配置
+ */
+@Data
+public class CounterProperties {
+    /**
+     * 本地增量刷入redis的间隔 单位 ms
+     */
+    public long flushInterval = 1000;
+    /**
+     * 单个pipeline最多包含的命令数
+     */
+    public int batchSize = 1000;
+}
@@ -0,0 +1,39 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 本地磁盘缓存配置，get读取的值写入内存映射文件，重启后仍可直接命中
+ */
+@Data
+public class DiskCacheProperties {
+    public boolean enabled = false;
+    /**
+     * 缓存文件目录，文件名为连接名，同一目录不能被多个进程的同名连接共用
+     */
+    public String directory = "disk-cache";
+    /**
+     * 数据文件大小 单位 byte 写满时压缩，仍不足时淘汰最早写入的值
+     */
+    public int maxSize = 256 * 1024 * 1024;
+    /**
+     * 序列化后超过该大小的值不缓存 单位 byte
+     */
+    public int maxValueSize = 64 * 1024;
+    /**
+     * 本地最长保留时间 单位 ms key在redis中的剩余过期时间更短时以redis为准
+     */
+    public long ttl = 600000;
+    /**
+     * 写入超过该时间的值命中时仍直接返回，同时在后台重新读取redis 单位 ms
+     */
+    public long revalidateAfter = 30000;
+    /**
+     * 等待后台重新读取的最大key数，超出时不再提交
+     */
+    public int maxPendingRevalidations = 10000;
+    /**
+     * 索引文件写出间隔 单位 ms 重启时从索引之后的位置扫描数据文件
+     */
+    public long snapshotInterval = 60000;
+}
@@ -3,11 +3,14 @@ package com.touchfish.tools.structure;
 import lombok.Data;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 
+import java.util.List;
+
 @Data
 public class ExtraRedisProperties {
     public String hostInfo;
     public String password;
     public String connectionTimeout;
+    public String drainTimeout;
     public String database;
     public String master;
     public String maxRedirects;
@@ -18,4 +21,23 @@ public class ExtraRedisProperties {
     public String hashValueSerializer = "Jackson2JsonRedisSerializer";
     public RedisProperties.Lettuce lettuce;
     public RedisProperties.Jedis jedis;
+    public WriteBehindProperties writeBehind;
+    public CompressionProperties compression;
+    public PubSubProperties pubSub;
+    public StreamProperties stream;
+    public AdaptivePoolProperties adaptivePool;
+    public WarmupProperties warmup;
+    public CounterProperties counter;
+    public List<BloomFilterProperties> bloomFilters;
+    public NegativeCacheProperties negativeCache;
+    public DiskCacheProperties diskCache;
+    public PrewarmProperties prewarm;
+    public BulkheadProperties bulkhead;
+    public MirrorProperties mirror;
+    public RedissonProperties redisson;
+    public ChunkedProperties chunked;
+    public TransactionProperties transaction;
+    public TieredStorageProperties tieredStorage;
+    public TopologyProperties topology;
+    public HedgeProperties hedge;
 }
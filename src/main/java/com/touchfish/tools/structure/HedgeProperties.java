@@ -0,0 +1,32 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 对冲读取配置，仅对哨兵和集群连接生效
+ */
+@Data
+public class HedgeProperties {
+    public boolean enabled = false;
+    /**
+     * 主节点读取超过最近一个统计窗口中该分位数的延迟仍未返回时，向副本发出相同的读取
+     */
+    public double percentile = 95;
+    /**
+     * 对冲延迟的上下限 单位 ms 第一个统计窗口结束前使用上限
+     */
+    public long minDelay = 1;
+    public long maxDelay = 50;
+    /**
+     * 统计窗口 单位 ms
+     */
+    public long window = 10000;
+    /**
+     * 对冲读取占总读取的最大比例，限制额外负载
+     */
+    public double budget = 0.05;
+    /**
+     * 执行读取的最大线程数，线程用尽时在调用线程直接读取主节点且不对冲
+     */
+    public int threads = 64;
+}
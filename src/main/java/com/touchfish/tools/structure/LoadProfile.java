@@ -0,0 +1,64 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 压测负载配置
+ */
+@Data
+public class LoadProfile {
+    /**
+     * 负载名称，用于输出报告
+     */
+    public String name = "default";
+    /**
+     * 使用的extraRedis配置名
+     */
+    public String redis;
+    /**
+     * 客户端 支持 redis(RedisTemplate), jedis, redisson 需开启对应的loadExtra配置
+     */
+    public String client = "redis";
+    /**
+     * 读操作比例 0到1之间 其余为写操作
+     */
+    public double readRatio = 0.8;
+    /**
+     * key数量及前缀
+     */
+    public int keys = 10000;
+    public String keyPrefix = "load:";
+    /**
+     * key分布 支持 uniform, zipfian
+     */
+    public String distribution = "uniform";
+    /**
+     * zipfian分布的偏斜系数，越大热点越集中
+     */
+    public double zipfianConstant = 0.99;
+    /**
+     * value长度 单位 byte
+     */
+    public int valueSize = 128;
+    /**
+     * 并发线程数
+     */
+    public int concurrency = 8;
+    /**
+     * 目标吞吐量 单位 ops/s 按固定速率发出请求，延迟从计划发出时间开始计算
+     * 不大于0时为闭环模式，每个线程收到回复后立即发出下一个请求
+     */
+    public long rate = 0;
+    /**
+     * 预热时间 单位 ms 预热期间的请求不计入报告
+     */
+    public long warmup = 5000;
+    /**
+     * 测量时间 单位 ms
+     */
+    public long duration = 30000;
+    /**
+     * 开始前是否写入所有key
+     */
+    public boolean preload = true;
+}
@@ -0,0 +1,14 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TestApp压测配置，按顺序执行所有负载
+ */
+@Data
+public class LoadTestProperties {
+    public List<LoadProfile> profiles = new ArrayList<>();
+}
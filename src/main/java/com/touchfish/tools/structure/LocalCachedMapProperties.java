@@ -0,0 +1,50 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * Redisson本地缓存map(RLocalCachedMap)配置，读取优先命中本地缓存，修改通过订阅同步到其他实例
+ */
+@Data
+public class LocalCachedMapProperties {
+    /**
+     * redis中map的key
+     */
+    public String name;
+    /**
+     * 注册的bean名称，为空时使用 连接名.map名
+     */
+    public String bean;
+    /**
+     * 编码，为空时使用客户端的编码
+     */
+    public String codec;
+    /**
+     * 本地缓存最大条目数 0 表示不限制
+     */
+    public int cacheSize = 10000;
+    /**
+     * 超出cacheSize时的淘汰策略 NONE, LRU, LFU, SOFT, WEAK
+     */
+    public String evictionPolicy = "LRU";
+    /**
+     * 其他实例修改时的同步方式 INVALIDATE 使本地缓存失效, UPDATE 更新本地缓存, NONE 不同步
+     */
+    public String syncStrategy = "INVALIDATE";
+    /**
+     * 重连后的处理方式 NONE, CLEAR 清空本地缓存, LOAD 重新加载断开期间修改的条目
+     */
+    public String reconnectionStrategy = "CLEAR";
+    /**
+     * 本地缓存条目的存活时间 单位 ms 0 表示不过期
+     */
+    public long timeToLive = 0;
+    /**
+     * 本地缓存条目的最长空闲时间 单位 ms 0 表示不过期
+     */
+    public long maxIdle = 0;
+    /**
+     * LOCALCACHE_REDIS 同时写入redis, LOCALCACHE 只保存在本地并在实例间同步
+     */
+    public String storeMode = "LOCALCACHE_REDIS";
+}
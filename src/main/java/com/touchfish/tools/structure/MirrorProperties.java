@@ -0,0 +1,39 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 双写镜像配置，用于迁移期间将写入异步重放到另一个extraRedis连接
+ */
+@Data
+public class MirrorProperties {
+    public boolean enabled = false;
+    /**
+     * 影子连接在extraRedis中的名称
+     */
+    public String shadow;
+    /**
+     * 等待重放的最大写入数，队列满时丢弃新的写入并计数，不阻塞调用方
+     */
+    public int queueCapacity = 100000;
+    /**
+     * 单次pipeline重放的最大写入数
+     */
+    public int batchSize = 200;
+    /**
+     * 重放失败时的重试次数，用尽后丢弃该批次
+     */
+    public int maxRetries = 2;
+    /**
+     * 重试间隔 单位 ms
+     */
+    public long retryBackoff = 100;
+    /**
+     * 读取时抽样比对影子上的值的比例 0 表示不比对
+     */
+    public double compareSampleRate = 0;
+    /**
+     * 关闭时等待队列重放完成的最长时间，也是同一个key等待前序写入入队的最长时间 单位 ms
+     */
+    public long drainTimeout = 5000;
+}
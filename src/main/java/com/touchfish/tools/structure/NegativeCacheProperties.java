@@ -0,0 +1,27 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 空结果缓存配置，get返回null的key在ttl内不再访问redis
+ */
+@Data
+public class NegativeCacheProperties {
+    /**
+     * 是否启用
+     */
+    public boolean enabled = false;
+    /**
+     * 空结果保留时间 单位 ms
+     */
+    public long ttl = 1000;
+    /**
+     * 最多保留的key数量
+     */
+    public int maxSize = 10000;
+    /**
+     * 是否订阅keyspace通知使其他客户端的写入立即失效本地空结果
+     * 需要服务端开启 notify-keyspace-events，如 K$g
+     */
+    public boolean keyspaceNotifications = false;
+}
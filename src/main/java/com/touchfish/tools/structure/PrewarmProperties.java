@@ -0,0 +1,59 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 本地缓存预热配置，注册连接时按热点key清单读取值写入本地缓存，完成或超出时间预算后应用才会进入就绪状态
+ */
+@Data
+public class PrewarmProperties {
+    public boolean enabled = false;
+    /**
+     * 热点key清单来源 zset / file / scan
+     */
+    public String source = "zset";
+    /**
+     * source为zset时的有序集合，score为采样到的读取次数 默认 prewarm:hotkeys:连接名
+     */
+    public String manifestKey;
+    /**
+     * source为file时的清单文件，每行一个key，按热度从高到低排列，#开头的行忽略
+     */
+    public String file;
+    /**
+     * source为scan时的key模式
+     */
+    public String pattern;
+    /**
+     * 最多预热的key数量，也是有序集合保留的key数量
+     */
+    public int maxKeys = 10000;
+    /**
+     * 每批读取的key数
+     */
+    public int batchSize = 100;
+    /**
+     * 并行读取的线程数
+     */
+    public int threads = 4;
+    /**
+     * 预热时间预算 单位 ms 超出后放弃剩余批次
+     */
+    public long timeBudget = 10000;
+    /**
+     * source为zset时是否采样RedisUtil.get的读取并定时累加到有序集合
+     */
+    public boolean track = true;
+    /**
+     * 读取采样比例
+     */
+    public double sampleRate = 0.01;
+    /**
+     * 本地最多累计的不同key数，超出后新的key不再计数
+     */
+    public int maxTracked = 100000;
+    /**
+     * 采样计数写入有序集合的间隔 单位 ms
+     */
+    public long flushInterval = 60000;
+}
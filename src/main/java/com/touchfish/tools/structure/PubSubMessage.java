@@ -0,0 +1,24 @@
+package com.touchfish.tools.structure;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 订阅收到的消息
+ */
+@Data
+@AllArgsConstructor
+public class PubSubMessage {
+    /**
+     * 消息所在频道
+     */
+    public String channel;
+    /**
+     * 匹配的订阅模式，普通频道订阅时为null
+     */
+    public String pattern;
+    /**
+     * 反序列化后的消息内容
+     */
+    public Object body;
+}
@@ -0,0 +1,26 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 发布订阅配置
+ */
+@Data
+public class PubSubProperties {
+    /**
+     * 处理消息的工作线程数
+     */
+    public int workerThreads = 2;
+    /**
+     * 待处理消息队列容量
+     */
+    public int queueCapacity = 65536;
+    /**
+     * 每次交给处理器的最大消息数量
+     */
+    public int batchSize = 256;
+    /**
+     * 队列满时订阅线程最长等待时间，超时后丢弃消息 单位 ms
+     */
+    public long offerTimeout = 100;
+}
@@ -0,0 +1,46 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Redisson客户端参数，未设置的项使用Redisson的默认值
+ */
+@Data
+public class RedissonProperties {
+    /**
+     * netty的IO线程数，启用sharedResources时使用共享的线程，该项不生效
+     */
+    public Integer nettyThreads;
+    /**
+     * 执行监听器、RTopic回调等的线程数
+     */
+    public Integer threads;
+    /**
+     * 编码，可以是org.redisson.codec或org.redisson.client.codec下的类名，也可以是完整类名
+     */
+    public String codec;
+    /**
+     * 每个节点的连接池大小，主从模式下主节点和从节点分别使用该值
+     */
+    public Integer connectionPoolSize;
+    public Integer connectionMinimumIdleSize;
+    /**
+     * 每个节点的订阅连接池大小
+     */
+    public Integer subscriptionConnectionPoolSize;
+    public Integer subscriptionConnectionMinimumIdleSize;
+    /**
+     * 连接PING间隔 单位 ms 0 表示不发送
+     */
+    public Integer pingConnectionInterval;
+    /**
+     * 读取的节点 MASTER, SLAVE, MASTER_SLAVE 仅对哨兵和集群连接生效
+     */
+    public String readMode;
+    /**
+     * 本地缓存的map，连接建立后注册为bean
+     */
+    public List<LocalCachedMapProperties> localCachedMaps;
+}
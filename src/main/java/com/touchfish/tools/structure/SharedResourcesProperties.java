@@ -0,0 +1,27 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 共享客户端资源配置，启用后所有extraRedis的Lettuce和Redisson连接共用同一组Netty线程和执行线程
+ */
+@Data
+public class SharedResourcesProperties {
+    public boolean enabled = false;
+    /**
+     * Netty IO线程数 0 表示 CPU核数 * 2
+     */
+    public int ioThreads = 0;
+    /**
+     * Lettuce计算线程数，用于事件分发和响应式回调 0 表示 CPU核数
+     */
+    public int computationThreads = 0;
+    /**
+     * Redisson监听器、RTopic回调和异步操作回调的执行线程数 0 表示 CPU核数 * 2
+     */
+    public int executorThreads = 0;
+    /**
+     * 关闭时等待线程结束的最长时间 单位 ms
+     */
+    public long shutdownTimeout = 2000;
+}
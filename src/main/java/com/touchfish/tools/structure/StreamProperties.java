@@ -0,0 +1,58 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * Stream消费组配置
+ */
+@Data
+public class StreamProperties {
+    /**
+     * 消费组名称
+     */
+    public String group = "default";
+    /**
+     * 消费者名称 默认 主机名+随机后缀
+     */
+    public String consumer;
+    /**
+     * 每次XREADGROUP读取的最大条数，不超过maxInFlight
+     */
+    public int count = 100;
+    /**
+     * XREADGROUP阻塞时间 单位 ms
+     */
+    public long block = 2000;
+    /**
+     * 处理线程数，相同排序键的消息始终由同一线程按顺序处理
+     */
+    public int workerThreads = 4;
+    /**
+     * 用于保证顺序的消息字段名，为空时不保证顺序
+     */
+    public String orderingField;
+    /**
+     * 已读取但未处理完的最大消息数，超过时暂停读取
+     */
+    public int maxInFlight = 1000;
+    /**
+     * 累计达到该数量时立即发送XACK
+     */
+    public int ackBatchSize = 100;
+    /**
+     * XACK定时发送间隔 单位 ms
+     */
+    public long ackInterval = 100;
+    /**
+     * 待处理消息空闲超过该时间后认领，包括其他消费者遗留的和本消费者处理失败的 单位 ms
+     */
+    public long claimIdle = 60000;
+    /**
+     * 检查待认领消息及刷新统计的间隔 单位 ms
+     */
+    public long claimInterval = 30000;
+    /**
+     * 每次最多认领的消息数
+     */
+    public int claimCount = 100;
+}
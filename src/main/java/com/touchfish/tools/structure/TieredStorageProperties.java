@@ -0,0 +1,44 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 分层存储配置，超过阈值的值写入对象存储，redis中只保存指向对象的指针
+ */
+@Data
+public class TieredStorageProperties {
+    /**
+     * 是否启用
+     */
+    public boolean enabled = false;
+    /**
+     * 序列化后超过该大小的值写入对象存储 单位 byte
+     */
+    public int threshold = 1024 * 1024;
+    /**
+     * 对象存储类型 minio / file
+     */
+    public String type = "minio";
+    /**
+     * minio/s3 地址
+     */
+    public String endpoint;
+    public String accessKey;
+    public String secretKey;
+    /**
+     * 存储桶，不存在时自动创建
+     */
+    public String bucket = "redis-tiered";
+    /**
+     * 对象名前缀，对象名为 前缀 + 连接名 + "/" + uuid
+     */
+    public String prefix = "redis/";
+    /**
+     * 未知长度的流分片上传时的分片大小 单位 byte 不小于5MB
+     */
+    public long partSize = 10 * 1024 * 1024;
+    /**
+     * type为file时的本地目录
+     */
+    public String directory = "tiered";
+}
@@ -0,0 +1,31 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 集群拓扑刷新配置，仅对集群连接生效
+ */
+@Data
+public class TopologyProperties {
+    /**
+     * 定时刷新间隔 单位 ms 不大于0时关闭定时刷新，未配置时为60000
+     * Redisson对应scanInterval，未配置时使用Redisson自己的默认值
+     */
+    public Long refreshPeriod;
+    /**
+     * 是否在收到MOVED/ASK重定向、重连或访问未知节点时立即刷新
+     * Jedis收到MOVED时总会刷新，该配置仅对Lettuce生效
+     */
+    public boolean adaptive = true;
+    /**
+     * 自适应刷新的最小间隔 单位 ms 避免重定向集中出现时反复刷新
+     */
+    public long adaptiveTimeout = 30000;
+
+    /**
+     * Jedis/Lettuce使用的定时刷新间隔 单位 ms
+     */
+    public long refreshPeriodMillis() {
+        return refreshPeriod != null ? refreshPeriod : 60000;
+    }
+}
@@ -0,0 +1,22 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 乐观事务重试配置
+ */
+@Data
+public class TransactionProperties {
+    /**
+     * WATCH的key被修改导致EXEC失败后的最大重试次数
+     */
+    public int maxRetries = 5;
+    /**
+     * 首次重试前的等待时间，之后每次翻倍并加入随机抖动 单位 ms
+     */
+    public long backoff = 10;
+    /**
+     * 最大等待时间 单位 ms
+     */
+    public long maxBackoff = 200;
+}
@@ -0,0 +1,34 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 连接预热配置，注册连接时执行，完成后应用才会进入就绪状态
+ */
+@Data
+public class WarmupProperties {
+    /**
+     * 是否启用
+     */
+    public boolean enabled = false;
+    /**
+     * 通过redis执行的读写轮数，每轮执行一次set/get/hset/hget
+     */
+    public int iterations = 200;
+    /**
+     * 仅在本地执行序列化/反序列化的次数，用于触发JIT编译
+     */
+    public int serializerIterations = 10000;
+    /**
+     * 预热值大小 单位 byte
+     */
+    public int valueSize = 512;
+    /**
+     * 预热使用的key前缀，预热结束后删除
+     */
+    public String keyPrefix = "warmup:";
+    /**
+     * 预热失败时是否将应用标记为不接收流量
+     */
+    public boolean required = false;
+}
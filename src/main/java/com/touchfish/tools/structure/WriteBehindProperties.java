@@ -0,0 +1,26 @@
+package com.touchfish.tools.structure;
+
+import lombok.Data;
+
+/**
+ * 延迟写入(write-behind)配置
+ */
+@Data
+public class WriteBehindProperties {
+    /**
+     * 是否启用，启用后set写入先在本地按key合并，再批量刷入redis
+     */
+    public boolean enabled = false;
+    /**
+     * 缓冲key数量达到该值时立即触发刷写，同时也是单批次最大key数量
+     */
+    public int batchSize = 500;
+    /**
+     * 定时刷写间隔 单位 ms
+     */
+    public long flushInterval = 100;
+    /**
+     * 缓冲的最大key数，达到后调用线程同步刷写，仍无法写入时拒绝set
+     */
+    public int maxPending = 100000;
+}
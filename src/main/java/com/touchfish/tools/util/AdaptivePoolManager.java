@@ -0,0 +1,189 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.AdaptivePoolProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 连接池自适应调整
+ * 借用等待超过目标值或有线程排队时扩容maxTotal，使用率低且无等待时缩容，调整范围受配置上下限约束
+ * 等待时间按检查间隔计算，只统计本间隔内的借用，空闲一段时间后不会沿用之前的高等待值
+ * 只对jedis和关闭shareNativeConnection的lettuce生效，lettuce默认共享原生连接，普通命令不借用连接池，此时不会启动
+ */
+@Slf4j
+public class AdaptivePoolManager {
+    private final String name;
+    private final AdaptivePoolProperties properties;
+    private final Supplier<List<GenericObjectPool<?>>> pools;
+    private final AtomicLong grows = new AtomicLong();
+    private final AtomicLong shrinks = new AtomicLong();
+    /**
+     * 连接池上一次检查时的借用数和平均等待，连接工厂替换后旧连接池自动回收
+     */
+    private final Map<GenericObjectPool<?>, long[]> windows = new WeakHashMap<>();
+    private volatile int totalMax;
+    private volatile int totalMinIdle;
+    private volatile long meanBorrowWait;
+    private volatile String lastDecision = "";
+    private ScheduledExecutorService scheduler;
+
+    public AdaptivePoolManager(String name, AdaptivePoolProperties properties, Supplier<List<GenericObjectPool<?>>> pools) {
+        this.name = name;
+        this.properties = properties;
+        this.pools = pools;
+    }
+
+    public synchronized void start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "adaptive-pool-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(100, properties.getInterval());
+            scheduler.scheduleWithFixedDelay(this::adjust, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 检查并调整所有连接池
+     */
+    public synchronized void adjust() {
+        List<GenericObjectPool<?>> current;
+        try {
+            current = pools.get();
+        } catch (Exception e) {
+            current = Collections.emptyList();
+        }
+        int max = 0;
+        int minIdle = 0;
+        long wait = 0;
+        for (GenericObjectPool<?> pool : current) {
+            long poolWait = windowWait(pool);
+            try {
+                adjust(pool, poolWait);
+            } catch (Exception e) {
+                log.error("Adaptive Pool \"" + name + "\" Adjust Failed.", e);
+            }
+            max += pool.getMaxTotal();
+            minIdle += pool.getMinIdle();
+            wait = Math.max(wait, poolWait);
+        }
+        totalMax = max;
+        totalMinIdle = minIdle;
+        meanBorrowWait = wait;
+    }
+
+    /**
+     * 本检查间隔内借用的平均等待时间 单位 ms
+     * commons-pool只保留最近100次借用的平均等待，借用数不足100时扣除上一次检查时留下的部分
+     */
+    private long windowWait(GenericObjectPool<?> pool) {
+        long borrowed = pool.getBorrowedCount();
+        long mean = pool.getMeanBorrowWaitTimeMillis();
+        long[] last = windows.put(pool, new long[]{borrowed, mean});
+        long delta = last == null ? borrowed : borrowed - last[0];
+        if (delta <= 0) {
+            return 0;
+        }
+        long samples = Math.min(borrowed, 100);
+        if (last == null || delta >= samples) {
+            return mean;
+        }
+        return Math.max(0, (samples * mean - (samples - delta) * last[1]) / delta);
+    }
+
+    private void adjust(GenericObjectPool<?> pool, long wait) {
+        int lower = Math.max(1, properties.getMinTotal());
+        int upper = Math.max(lower, properties.getMaxTotal());
+        int max = pool.getMaxTotal() < 0 ? upper : pool.getMaxTotal();
+        int minIdle = pool.getMinIdle();
+        int active = pool.getNumActive();
+        int waiters = pool.getNumWaiters();
+        int newMax = max;
+        int newMinIdle = minIdle;
+        if ((wait > properties.getTargetWait() || waiters > 0) && max < upper) {
+            newMax = Math.min(upper, Math.max(max + 1, max * 3 / 2));
+            newMinIdle = Math.min(properties.getMaxMinIdle(), Math.max(minIdle, active / 2));
+        } else if (waiters == 0 && wait <= properties.getTargetWait() && active < max * properties.getShrinkUtilization() && max > lower) {
+            newMax = Math.max(lower, Math.max(active * 2, max * 3 / 4));
+            newMinIdle = Math.min(minIdle, active);
+        } else if (max > upper || max < lower) {
+            newMax = Math.max(lower, Math.min(upper, max));
+        }
+        newMinIdle = Math.min(newMinIdle, newMax);
+        if (newMax == max && newMinIdle == minIdle) {
+            return;
+        }
+        pool.setMaxTotal(newMax);
+        pool.setMaxIdle(newMax);
+        pool.setMinIdle(newMinIdle);
+        if (newMax > max) {
+            grows.incrementAndGet();
+        } else if (newMax < max) {
+            shrinks.incrementAndGet();
+        }
+        lastDecision = "maxTotal " + max + " -> " + newMax + ", minIdle " + minIdle + " -> " + newMinIdle
+                + " (active " + active + ", waiters " + waiters + ", meanWait " + wait + "ms)";
+        log.info("Adaptive Pool \"" + name + "\" " + lastDecision);
+    }
+
+    /**
+     * 扩容次数
+     */
+    public long growCount() {
+        return grows.get();
+    }
+
+    /**
+     * 缩容次数
+     */
+    public long shrinkCount() {
+        return shrinks.get();
+    }
+
+    /**
+     * 所有连接池maxTotal之和
+     */
+    public int maxTotal() {
+        return totalMax;
+    }
+
+    /**
+     * 所有连接池minIdle之和
+     */
+    public int minIdle() {
+        return totalMinIdle;
+    }
+
+    /**
+     * 最近一个检查间隔内各连接池平均借用等待时间的最大值 单位 ms
+     */
+    public long meanBorrowWaitMillis() {
+        return meanBorrowWait;
+    }
+
+    /**
+     * 最近一次调整内容
+     */
+    public String lastDecision() {
+        return lastDecision;
+    }
+}
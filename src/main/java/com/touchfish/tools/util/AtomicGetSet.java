@@ -0,0 +1,47 @@
+package com.touchfish.tools.util;
+
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 原子地取回旧值并写入新值及过期时间，不会留下没有过期时间的新值
+ * 单机和哨兵模式使用MULTI中的GET和SET PX，集群模式不支持MULTI，使用等价的脚本
+ */
+final class AtomicGetSet {
+    private static final byte[] SCRIPT = ("local old = redis.call('GET', KEYS[1]) "
+            + "if tonumber(ARGV[2]) > 0 then redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) "
+            + "else redis.call('SET', KEYS[1], ARGV[1]) end "
+            + "return old").getBytes(StandardCharsets.UTF_8);
+
+    private AtomicGetSet() {
+    }
+
+    /**
+     * @param ttl 过期时间 单位 ms 不大于0时不过期，同时清除原有过期时间
+     * @return 旧值，不存在时返回null
+     */
+    static byte[] swap(RedisConnection connection, byte[] key, byte[] value, long ttl) {
+        if (connection instanceof RedisClusterConnection) {
+            return connection.eval(SCRIPT, ReturnType.VALUE, 1, key, value,
+                    String.valueOf(Math.max(0, ttl)).getBytes(StandardCharsets.UTF_8));
+        }
+        connection.multi();
+        connection.get(key);
+        if (ttl > 0) {
+            connection.set(key, value, Expiration.milliseconds(ttl), RedisStringCommands.SetOption.upsert());
+        } else {
+            connection.set(key, value);
+        }
+        List<Object> res = connection.exec();
+        if (res == null || res.isEmpty()) {
+            throw new IllegalStateException("GET/SET Transaction Discarded.");
+        }
+        return (byte[]) res.get(0);
+    }
+}
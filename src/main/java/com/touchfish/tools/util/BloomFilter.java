@@ -0,0 +1,174 @@
+package com.touchfish.tools.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的本地布隆过滤器
+ * String与其UTF-8编码的byte[]得到相同的哈希值，可混用两种key
+ */
+public class BloomFilter {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * @param expectedInsertions 预计元素数量
+     * @param fpp 期望误判率
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(0.5, Math.max(Double.MIN_VALUE, fpp));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, m);
+        int words = Math.toIntExact((m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    public void put(String key) {
+        put(hash(key));
+    }
+
+    public void put(byte[] key) {
+        put(hash(key));
+    }
+
+    public boolean mightContain(String key) {
+        return mightContain(hash(key));
+    }
+
+    public boolean mightContain(byte[] key) {
+        return mightContain(hash(key));
+    }
+
+    private void put(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+        insertions.increment();
+    }
+
+    private boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 清空所有位，用于重建
+     */
+    public void clear() {
+        for (int i = 0; i < bits.length(); i++) {
+            bits.set(i, 0L);
+        }
+        insertions.reset();
+    }
+
+    /**
+     * 根据已置位比例估算的当前误判率
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount() / bitSize, hashFunctions);
+    }
+
+    public long bitCount() {
+        long count = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            count += Long.bitCount(bits.get(i));
+        }
+        return count;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * 位数组占用内存 单位 byte
+     */
+    public long memoryBytes() {
+        return bitSize / 8;
+    }
+
+    /**
+     * 写入次数，重复写入同一元素会重复计数
+     */
+    public long insertionCount() {
+        return insertions.sum();
+    }
+
+    static long hash(byte[] key) {
+        long h = FNV_OFFSET;
+        for (byte b : key) {
+            h = (h ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * 按UTF-8编码逐字节计算，不分配byte[]
+     */
+    static long hash(String key) {
+        long h = FNV_OFFSET;
+        int length = key.length();
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                h = (h ^ c) * FNV_PRIME;
+            } else if (c < 0x800) {
+                h = (h ^ (0xC0 | (c >> 6))) * FNV_PRIME;
+                h = (h ^ (0x80 | (c & 0x3F))) * FNV_PRIME;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(key.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, key.charAt(++i));
+                h = (h ^ (0xF0 | (cp >> 18))) * FNV_PRIME;
+                h = (h ^ (0x80 | ((cp >> 12) & 0x3F))) * FNV_PRIME;
+                h = (h ^ (0x80 | ((cp >> 6) & 0x3F))) * FNV_PRIME;
+                h = (h ^ (0x80 | (cp & 0x3F))) * FNV_PRIME;
+            } else if (Character.isSurrogate(c)) {
+                // 与String.getBytes(UTF_8)一致，孤立代理项编码为'?'
+                h = (h ^ '?') * FNV_PRIME;
+            } else {
+                h = (h ^ (0xE0 | (c >> 12))) * FNV_PRIME;
+                h = (h ^ (0x80 | ((c >> 6) & 0x3F))) * FNV_PRIME;
+                h = (h ^ (0x80 | (c & 0x3F))) * FNV_PRIME;
+            }
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,198 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.BloomFilterProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 按key前缀划分的布隆过滤器集合，用于拦截一定不存在的key的读取
+ * 过滤器只在重建完成后拦截，重建前只记录写入；只会增加不会删除，删除的key仍会被判定为可能存在
+ * 过滤器保存在本地，每个实例各自重建，不与其他实例共享
+ */
+@Slf4j
+public class BloomFilterGuard {
+    private final String name;
+    private final List<Namespace> namespaces = new ArrayList<>();
+
+    public BloomFilterGuard(String name, List<BloomFilterProperties> properties) {
+        this.name = name;
+        for (BloomFilterProperties p : properties) {
+            if (p.getPrefix() != null && !p.getPrefix().isEmpty()) {
+                namespaces.add(new Namespace(p));
+            }
+        }
+    }
+
+    /**
+     * key是否可能存在，不属于任何命名空间或过滤器未就绪时返回true
+     */
+    public boolean mightExist(String key) {
+        Namespace namespace = namespace(key);
+        if (namespace == null || !namespace.ready) {
+            return true;
+        }
+        boolean res = namespace.filter.mightContain(key);
+        (res ? namespace.passed : namespace.rejected).increment();
+        return res;
+    }
+
+    public boolean mightExist(byte[] key) {
+        Namespace namespace = namespace(key);
+        if (namespace == null || !namespace.ready) {
+            return true;
+        }
+        boolean res = namespace.filter.mightContain(key);
+        (res ? namespace.passed : namespace.rejected).increment();
+        return res;
+    }
+
+    /**
+     * 记录写入的key
+     */
+    public void put(String key) {
+        Namespace namespace = namespace(key);
+        if (namespace != null) {
+            namespace.filter.put(key);
+        }
+    }
+
+    public void put(byte[] key) {
+        Namespace namespace = namespace(key);
+        if (namespace != null) {
+            namespace.filter.put(key);
+        }
+    }
+
+    /**
+     * 通过SCAN重建配置了rebuild的命名空间，重建完成后开始拦截读取
+     * 重建期间写入的key同时记录到过滤器，不会被误拦截
+     * @param scanner 参数为key前缀和接收该前缀下所有key的回调
+     */
+    public void rebuild(BiConsumer<String, Consumer<String>> scanner) {
+        for (Namespace namespace : namespaces) {
+            if (namespace.properties.isRebuild()) {
+                rebuild(namespace, scanner);
+            }
+        }
+    }
+
+    /**
+     * 重建指定前缀的命名空间，配置rebuild为false的命名空间在调用后才开始拦截读取
+     * 不会清空已有的位
+     * @return 是否重建成功，前缀未配置时返回false
+     */
+    public boolean rebuild(String prefix, BiConsumer<String, Consumer<String>> scanner) {
+        for (Namespace namespace : namespaces) {
+            if (namespace.prefix().equals(prefix)) {
+                return rebuild(namespace, scanner);
+            }
+        }
+        return false;
+    }
+
+    private boolean rebuild(Namespace namespace, BiConsumer<String, Consumer<String>> scanner) {
+        long start = System.currentTimeMillis();
+        try {
+            scanner.accept(namespace.prefix(), namespace.filter::put);
+            namespace.ready = true;
+            log.info("Redis \"" + name + "\" Bloom Filter \"" + namespace.prefix() + "\" Rebuilt In "
+                    + (System.currentTimeMillis() - start) + "ms. Keys: " + namespace.filter.insertionCount());
+            return true;
+        } catch (Exception e) {
+            log.error("Redis \"" + name + "\" Bloom Filter \"" + namespace.prefix() + "\" Rebuild Failed.", e);
+            return false;
+        }
+    }
+
+    private Namespace namespace(String key) {
+        for (Namespace namespace : namespaces) {
+            if (key.startsWith(namespace.properties.getPrefix())) {
+                return namespace;
+            }
+        }
+        return null;
+    }
+
+    private Namespace namespace(byte[] key) {
+        for (Namespace namespace : namespaces) {
+            byte[] prefix = namespace.rawPrefix;
+            if (key.length < prefix.length) {
+                continue;
+            }
+            boolean match = true;
+            for (int i = 0; i < prefix.length; i++) {
+                if (key[i] != prefix[i]) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                return namespace;
+            }
+        }
+        return null;
+    }
+
+    public List<Namespace> namespaces() {
+        return Collections.unmodifiableList(namespaces);
+    }
+
+    public static class Namespace {
+        private final BloomFilterProperties properties;
+        private final byte[] rawPrefix;
+        private final BloomFilter filter;
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder passed = new LongAdder();
+        private volatile boolean ready = false;
+
+        Namespace(BloomFilterProperties properties) {
+            this.properties = properties;
+            this.rawPrefix = properties.getPrefix().getBytes(StandardCharsets.UTF_8);
+            this.filter = new BloomFilter(properties.getExpectedInsertions(), properties.getFpp());
+        }
+
+        public String prefix() {
+            return properties.getPrefix();
+        }
+
+        public boolean isReady() {
+            return ready;
+        }
+
+        /**
+         * 被拦截的读取次数
+         */
+        public long rejectedCount() {
+            return rejected.sum();
+        }
+
+        /**
+         * 放行的读取次数
+         */
+        public long passedCount() {
+            return passed.sum();
+        }
+
+        public long memoryBytes() {
+            return filter.memoryBytes();
+        }
+
+        /**
+         * 当前估算误判率
+         */
+        public double expectedFpp() {
+            return filter.expectedFpp();
+        }
+
+        public BloomFilter filter() {
+            return filter;
+        }
+    }
+}
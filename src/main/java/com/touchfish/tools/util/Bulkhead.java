@@ -0,0 +1,173 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.BulkheadProperties;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接级隔离舱
+ * 借出连接前获取许可，连接关闭时归还，许可用尽时最多maxQueue个线程等待maxWait，其余立即拒绝
+ * 写回、计数器刷新、镜像重放、预热、stream读取等内部后台线程数量固定，借出连接时不占用许可，避免与调用方争抢或被拒绝
+ */
+public class Bulkhead {
+    private static final ThreadLocal<Boolean> INTERNAL = new ThreadLocal<>();
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedTimeout = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder internal = new LongAdder();
+
+    public Bulkhead(String name, BulkheadProperties properties) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, properties.maxConcurrent);
+        this.maxQueue = Math.max(0, properties.maxQueue);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.maxWait));
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * 包装内部后台线程的任务，线程内借出连接时不占用许可
+     */
+    static Runnable internal(Runnable task) {
+        return () -> {
+            INTERNAL.set(Boolean.TRUE);
+            task.run();
+        };
+    }
+
+    /**
+     * @return 是否占用了许可，内部后台线程返回false，连接关闭时无需归还
+     * @throws BulkheadFullException 等待队列已满或等待超时
+     */
+    public boolean acquire() {
+        if (INTERNAL.get() != null) {
+            internal.increment();
+            return false;
+        }
+        if (!permits.tryAcquire()) {
+            await();
+        }
+        acquired.increment();
+        int active = maxConcurrent - permits.availablePermits();
+        int current;
+        while (active > (current = peak.get()) && !peak.compareAndSet(current, active)) {
+        }
+        return true;
+    }
+
+    private void await() {
+        if (maxWaitNanos == 0 || waiting.incrementAndGet() > maxQueue) {
+            if (maxWaitNanos != 0) {
+                waiting.decrementAndGet();
+            }
+            rejectedQueueFull.increment();
+            throw new BulkheadFullException("Redis \"" + name + "\" Bulkhead Full, " + maxConcurrent + " Connections In Use.");
+        }
+        queued.increment();
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                rejectedTimeout.increment();
+                throw new BulkheadFullException("Redis \"" + name + "\" Bulkhead Wait Timeout, " + maxConcurrent + " Connections In Use.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkheadFullException("Redis \"" + name + "\" Bulkhead Wait Interrupted.");
+        } finally {
+            waitNanos.add(System.nanoTime() - start);
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * 当前借出的连接数
+     */
+    public int activeCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * 当前等待许可的线程数
+     */
+    public int waitingCount() {
+        return waiting.get();
+    }
+
+    /**
+     * 借出连接数的峰值
+     */
+    public int peakCount() {
+        return peak.get();
+    }
+
+    public long acquiredCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * 内部后台线程不占用许可借出连接的次数
+     */
+    public long internalCount() {
+        return internal.sum();
+    }
+
+    /**
+     * 需要等待许可的次数
+     */
+    public long queuedCount() {
+        return queued.sum();
+    }
+
+    /**
+     * 等待队列已满被立即拒绝的次数
+     */
+    public long rejectedQueueFullCount() {
+        return rejectedQueueFull.sum();
+    }
+
+    /**
+     * 等待超时被拒绝的次数
+     */
+    public long rejectedTimeoutCount() {
+        return rejectedTimeout.sum();
+    }
+
+    public long rejectedCount() {
+        return rejectedQueueFull.sum() + rejectedTimeout.sum();
+    }
+
+    /**
+     * 当前使用率
+     */
+    public double utilization() {
+        return (double) activeCount() / maxConcurrent;
+    }
+
+    /**
+     * 等待许可的平均时间 单位 ms
+     */
+    public double meanWaitMillis() {
+        long n = queued.sum();
+        return n == 0 ? 0 : waitNanos.sum() / 1e6 / n;
+    }
+}
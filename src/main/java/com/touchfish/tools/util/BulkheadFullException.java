@@ -0,0 +1,18 @@
+package com.touchfish.tools.util;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+
+/**
+ * 隔离舱已满，请求未发往redis
+ * 不填充堆栈，饱和时拒绝的开销接近于零
+ */
+public class BulkheadFullException extends TransientDataAccessResourceException {
+    public BulkheadFullException(String msg) {
+        super(msg);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,581 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.ChunkedProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 大值分块读写
+ * 值被拆分为固定大小的分块，以 key:chunk:版本:序号 写入，全部分块写入后以一次原子的GET加SET PX发布清单并取回旧清单，读取方只会看到完整的值，旧分块随后延迟过期
+ * 发布前确认所有分块仍然存在，上传超过uploadTimeout导致分块过期时删除已写入的分块并放弃发布
+ * 读写过程中只保留一个批次的分块，不会为整个值分配连续内存
+ */
+@Slf4j
+public class ChunkedValueStore implements Closeable {
+    /**
+     * 清单头 0xFF 'C'
+     */
+    private static final byte MANIFEST_MAGIC = (byte) 0xFF;
+    private static final byte MANIFEST_TAG = 'C';
+    private static final byte[] CHUNK_INFIX = ":chunk:".getBytes(StandardCharsets.UTF_8);
+
+    private final String name;
+    private final int chunkSize;
+    private final int batchChunks;
+    private final long uploadTimeout;
+    private final long grace;
+    private final Supplier<RedisTemplate> template;
+    private final BooleanSupplier pipelineSupported;
+    private final Object lifecycle = new Object();
+    private volatile ExecutorService prefetcher;
+
+    public ChunkedValueStore(String name, ChunkedProperties properties, Supplier<RedisTemplate> template, BooleanSupplier pipelineSupported) {
+        this.name = name;
+        this.chunkSize = Math.max(1, properties.getChunkSize());
+        this.batchChunks = Math.max(1, properties.getBatchChunks());
+        this.uploadTimeout = Math.max(1, properties.getUploadTimeout());
+        this.grace = Math.max(1, properties.getGrace());
+        this.template = template;
+        this.pipelineSupported = pipelineSupported;
+    }
+
+    /**
+     * 打开写入流，close时发布，发布前读取方仍读到旧值
+     * @param ttl 过期时间 单位 ms 不大于0时不过期
+     */
+    public OutputStream openWrite(String key, long ttl) {
+        RedisTemplate current = current();
+        return new ChunkedOutputStream(current, keySerializer(current).serialize(key), ttl);
+    }
+
+    /**
+     * 将输入流完整写入
+     * @param ttl 过期时间 单位 ms 不大于0时不过期
+     * @return 写入的字节数
+     */
+    public long write(String key, InputStream in, long ttl) throws IOException {
+        ChunkedOutputStream out = (ChunkedOutputStream) openWrite(key, ttl);
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException | RuntimeException e) {
+            out.abort();
+            throw e;
+        }
+        out.close();
+        return out.size;
+    }
+
+    /**
+     * 写入ByteBuffer的剩余内容，可直接使用堆外内存
+     */
+    public long write(String key, ByteBuffer buffer, long ttl) throws IOException {
+        ChunkedOutputStream out = (ChunkedOutputStream) openWrite(key, ttl);
+        try {
+            byte[] chunk = new byte[Math.min(chunkSize, Math.max(1, buffer.remaining()))];
+            while (buffer.hasRemaining()) {
+                int n = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        } catch (IOException | RuntimeException e) {
+            out.abort();
+            throw e;
+        }
+        out.close();
+        return out.size;
+    }
+
+    /**
+     * 打开读取流，由调用方关闭
+     * @return key不存在时返回null
+     */
+    public InputStream openRead(String key) {
+        RedisTemplate current = current();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        Manifest manifest = Manifest.decode((byte[]) current.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey)));
+        return manifest == null ? null : new ChunkedInputStream(current, rawKey, manifest);
+    }
+
+    /**
+     * 将值完整写入输出流
+     * @return 读取的字节数，key不存在时返回-1
+     */
+    public long read(String key, OutputStream out) throws IOException {
+        try (InputStream in = openRead(key)) {
+            if (in == null) {
+                return -1;
+            }
+            long total = 0;
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * 读取清单
+     * @return key不存在或不是分块值时返回null
+     */
+    public Manifest manifest(String key) {
+        RedisTemplate current = current();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        return Manifest.decode((byte[]) current.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey)));
+    }
+
+    /**
+     * 删除清单及所有分块
+     */
+    public boolean delete(String key) {
+        RedisTemplate current = current();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        byte[] old = (byte[]) current.execute((RedisCallback<byte[]>) connection -> {
+            byte[] value = connection.get(rawKey);
+            connection.del(rawKey);
+            return value;
+        });
+        Manifest manifest = Manifest.decode(old);
+        if (manifest == null) {
+            return old != null;
+        }
+        for (int start = 0; start < manifest.chunks; start += batchChunks) {
+            int from = start;
+            int to = Math.min(manifest.chunks, start + batchChunks);
+            execute(current, connection -> {
+                for (int i = from; i < to; i++) {
+                    connection.del(chunkKey(rawKey, manifest.version, i));
+                }
+            });
+        }
+        return true;
+    }
+
+    private void execute(RedisTemplate current, java.util.function.Consumer<RedisConnection> commands) {
+        RedisCallback<Object> callback = connection -> {
+            commands.accept(connection);
+            return null;
+        };
+        if (pipelineSupported.getAsBoolean()) {
+            current.executePipelined(callback, null);
+        } else {
+            current.execute(callback);
+        }
+    }
+
+    /**
+     * 对序号from到to逐个执行命令
+     * @return 每个命令的结果
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> executeEach(RedisTemplate current, int from, int to, BiFunction<RedisConnection, Integer, Object> command) {
+        if (pipelineSupported.getAsBoolean()) {
+            return (List<Object>) current.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = from; i < to; i++) {
+                    command.apply(connection, i);
+                }
+                return null;
+            }, null);
+        }
+        return (List<Object>) current.execute((RedisCallback<List<Object>>) connection -> {
+            List<Object> res = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                res.add(command.apply(connection, i));
+            }
+            return res;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<byte[]> fetch(RedisTemplate current, byte[] rawKey, Manifest manifest, int from, int to) {
+        if (pipelineSupported.getAsBoolean()) {
+            // 不指定结果序列化器，返回原始byte[]
+            return (List<byte[]>) (List) current.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = from; i < to; i++) {
+                    connection.get(chunkKey(rawKey, manifest.version, i));
+                }
+                return null;
+            }, null);
+        }
+        return (List<byte[]>) current.execute((RedisCallback<List<byte[]>>) connection -> {
+            List<byte[]> res = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                res.add(connection.get(chunkKey(rawKey, manifest.version, i)));
+            }
+            return res;
+        });
+    }
+
+    static byte[] chunkKey(byte[] rawKey, String version, int index) {
+        byte[] suffix = (version + ":" + index).getBytes(StandardCharsets.UTF_8);
+        byte[] res = Arrays.copyOf(rawKey, rawKey.length + CHUNK_INFIX.length + suffix.length);
+        System.arraycopy(CHUNK_INFIX, 0, res, rawKey.length, CHUNK_INFIX.length);
+        System.arraycopy(suffix, 0, res, rawKey.length + CHUNK_INFIX.length, suffix.length);
+        return res;
+    }
+
+    private ExecutorService prefetcher() {
+        ExecutorService current = prefetcher;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lifecycle) {
+            if (prefetcher == null) {
+                prefetcher = Executors.newCachedThreadPool(r -> {
+                    Thread thread = new Thread(r, "chunked-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return prefetcher;
+        }
+    }
+
+    private RedisTemplate current() {
+        RedisTemplate current = template.get();
+        if (current == null) {
+            throw new IllegalStateException("Redis \"" + name + "\" Not Connected.");
+        }
+        return current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<Object> keySerializer(RedisTemplate template) {
+        return template.getKeySerializer() != null ? template.getKeySerializer() : (RedisSerializer) RedisSerializer.string();
+    }
+
+    /**
+     * 停止预取线程，之后再次读取会重新创建
+     */
+    @Override
+    public void close() {
+        ExecutorService current;
+        synchronized (lifecycle) {
+            current = prefetcher;
+            prefetcher = null;
+        }
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    /**
+     * 分块值的清单
+     */
+    public static class Manifest {
+        private final String version;
+        private final long size;
+        private final int chunks;
+        private final int chunkSize;
+
+        Manifest(String version, long size, int chunks, int chunkSize) {
+            this.version = version;
+            this.size = size;
+            this.chunks = chunks;
+            this.chunkSize = chunkSize;
+        }
+
+        public String version() {
+            return version;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public int chunks() {
+            return chunks;
+        }
+
+        public int chunkSize() {
+            return chunkSize;
+        }
+
+        byte[] encode() {
+            byte[] rawVersion = version.getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(2 + 8 + 4 + 4 + rawVersion.length)
+                    .put(MANIFEST_MAGIC).put(MANIFEST_TAG)
+                    .putLong(size).putInt(chunks).putInt(chunkSize)
+                    .put(rawVersion)
+                    .array();
+        }
+
+        /**
+         * @return 不是清单时返回null
+         */
+        static Manifest decode(byte[] raw) {
+            if (raw == null || raw.length < 18 || raw[0] != MANIFEST_MAGIC || raw[1] != MANIFEST_TAG) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(raw, 2, raw.length - 2);
+            long size = buffer.getLong();
+            int chunks = buffer.getInt();
+            int chunkSize = buffer.getInt();
+            return new Manifest(new String(raw, 18, raw.length - 18, StandardCharsets.UTF_8), size, chunks, chunkSize);
+        }
+    }
+
+    private final class ChunkedOutputStream extends OutputStream {
+        private final RedisTemplate current;
+        private final byte[] rawKey;
+        private final long ttl;
+        private final String version = UUID.randomUUID().toString();
+        private final List<byte[]> pending = new ArrayList<>(batchChunks);
+        private byte[] buffer = new byte[chunkSize];
+        private int position;
+        private int chunks;
+        private long size;
+        private boolean closed;
+
+        ChunkedOutputStream(RedisTemplate current, byte[] rawKey, long ttl) {
+            this.current = current;
+            this.rawKey = rawKey;
+            this.ttl = ttl;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream Closed.");
+            }
+            while (len > 0) {
+                int n = Math.min(len, chunkSize - position);
+                System.arraycopy(b, off, buffer, position, n);
+                position += n;
+                size += n;
+                off += n;
+                len -= n;
+                if (position == chunkSize) {
+                    emit(buffer);
+                    buffer = new byte[chunkSize];
+                    position = 0;
+                }
+            }
+        }
+
+        private void emit(byte[] chunk) throws IOException {
+            pending.add(chunk);
+            if (pending.size() >= batchChunks) {
+                flushPending();
+            }
+        }
+
+        private void flushPending() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            int first = chunks;
+            List<byte[]> batch = new ArrayList<>(pending);
+            pending.clear();
+            try {
+                // 发布前分块使用上传超时作为过期时间
+                execute(current, connection -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        connection.set(chunkKey(rawKey, version, first + i), batch.get(i),
+                                Expiration.milliseconds(uploadTimeout), RedisStringCommands.SetOption.upsert());
+                    }
+                });
+            } catch (RuntimeException e) {
+                closed = true;
+                throw new IOException("Redis \"" + name + "\" Chunk Write Failed.", e);
+            }
+            chunks += batch.size();
+        }
+
+        /**
+         * 放弃写入，已写入的分块在上传超时后过期
+         */
+        void abort() {
+            closed = true;
+            pending.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (position > 0) {
+                pending.add(Arrays.copyOf(buffer, position));
+            }
+            buffer = null;
+            flushPending();
+            closed = true;
+            try {
+                publish();
+            } catch (RuntimeException e) {
+                throw new IOException("Redis \"" + name + "\" Chunk Publish Failed.", e);
+            }
+        }
+
+        private void publish() {
+            // 分块比清单多保留grace，避免清单未过期而分块已过期
+            // 分块写入时带有uploadTimeout过期时间，PEXPIRE和PERSIST返回false说明分块已经过期
+            for (int start = 0; start < chunks; start += batchChunks) {
+                int to = Math.min(chunks, start + batchChunks);
+                List<Object> replies = executeEach(current, start, to, (connection, i) -> ttl > 0
+                        ? connection.pExpire(chunkKey(rawKey, version, i), ttl + grace)
+                        : connection.persist(chunkKey(rawKey, version, i)));
+                if (replies == null || replies.size() != to - start || !replies.stream().allMatch(Boolean.TRUE::equals)) {
+                    discard();
+                    throw new IllegalStateException("Redis \"" + name + "\" Chunks Expired Before Publish, Upload Exceeded " + uploadTimeout + "ms.");
+                }
+            }
+            byte[] manifest = new Manifest(version, size, chunks, chunkSize).encode();
+            byte[] old = (byte[]) current.execute((RedisCallback<byte[]>) connection -> AtomicGetSet.swap(connection, rawKey, manifest, ttl));
+            Manifest previous = Manifest.decode(old);
+            if (previous == null) {
+                return;
+            }
+            // 旧分块延迟过期，正在读取旧值的读取方可以读完
+            try {
+                for (int start = 0; start < previous.chunks; start += batchChunks) {
+                    int from = start;
+                    int to = Math.min(previous.chunks, start + batchChunks);
+                    execute(current, connection -> {
+                        for (int i = from; i < to; i++) {
+                            connection.pExpire(chunkKey(rawKey, previous.version, i), grace);
+                        }
+                    });
+                }
+            } catch (RuntimeException e) {
+                log.error("Redis \"" + name + "\" Expire Previous Chunks Failed.", e);
+            }
+        }
+
+        /**
+         * 删除本次写入的分块
+         */
+        private void discard() {
+            try {
+                for (int start = 0; start < chunks; start += batchChunks) {
+                    executeEach(current, start, Math.min(chunks, start + batchChunks), (connection, i) -> connection.del(chunkKey(rawKey, version, i)));
+                }
+            } catch (RuntimeException e) {
+                log.error("Redis \"" + name + "\" Discard Chunks Failed.", e);
+            }
+        }
+    }
+
+    private final class ChunkedInputStream extends InputStream {
+        private final RedisTemplate current;
+        private final byte[] rawKey;
+        private final Manifest manifest;
+        private List<byte[]> batch;
+        private Future<List<byte[]>> next;
+        private int nextStart;
+        private int batchIndex;
+        private byte[] chunk;
+        private int position;
+
+        ChunkedInputStream(RedisTemplate current, byte[] rawKey, Manifest manifest) {
+            this.current = current;
+            this.rawKey = rawKey;
+            this.manifest = manifest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureChunk()) {
+                return -1;
+            }
+            return chunk[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureChunk()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean ensureChunk() throws IOException {
+            while (chunk == null || position >= chunk.length) {
+                if (batch != null && batchIndex < batch.size()) {
+                    chunk = batch.get(batchIndex);
+                    if (chunk == null) {
+                        throw new IOException("Redis \"" + name + "\" Chunk Missing, Value Overwritten Or Expired.");
+                    }
+                    batch.set(batchIndex++, null);
+                    position = 0;
+                    continue;
+                }
+                if (next != null) {
+                    batch = await(next);
+                } else if (nextStart < manifest.chunks) {
+                    int from = nextStart;
+                    nextStart = Math.min(manifest.chunks, from + batchChunks);
+                    batch = fetch(current, rawKey, manifest, from, nextStart);
+                } else {
+                    return false;
+                }
+                batchIndex = 0;
+                next = null;
+                if (nextStart < manifest.chunks) {
+                    // 读取当前批次的同时预取下一批
+                    int from = nextStart;
+                    int to = Math.min(manifest.chunks, from + batchChunks);
+                    nextStart = to;
+                    next = prefetcher().submit(() -> fetch(current, rawKey, manifest, from, to));
+                }
+            }
+            return true;
+        }
+
+        private List<byte[]> await(Future<List<byte[]>> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException("Redis \"" + name + "\" Chunk Read Failed.", e.getCause());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (next != null) {
+                next.cancel(true);
+                next = null;
+            }
+            batch = null;
+            chunk = null;
+        }
+    }
+}
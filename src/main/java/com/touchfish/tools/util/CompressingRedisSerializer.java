@@ -0,0 +1,125 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.CompressionProperties;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩序列化器，包装任意RedisSerializer
+ * 超过阈值的值使用Deflate压缩并写入头部标记，读取时根据头部透明解压，未压缩的旧数据可直接读取
+ * 头部格式: 0xFF 'Z' 编码类型 原始长度(4 byte)
+ * 0xFF不会出现在UTF-8文本及JDK序列化数据的首字节中
+ * 头部长度为负、超过maxDecompressedSize或超过Deflate的最大压缩比，以及解压结果与头部长度不一致时抛出SerializationException
+ */
+public class CompressingRedisSerializer<T> implements RedisSerializer<T> {
+    private static final byte MAGIC_0 = (byte) 0xFF;
+    private static final byte MAGIC_1 = 'Z';
+    private static final byte CODEC_DEFLATE = 1;
+    private static final int HEADER_LENGTH = 7;
+    /**
+     * Deflate的理论最大压缩比
+     */
+    private static final long MAX_RATIO = 1032;
+
+    private final RedisSerializer<T> delegate;
+    private final int threshold;
+    private final int maxDecompressedSize;
+    private final CompressionStats stats;
+    private final ThreadLocal<Deflater> deflater;
+    private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(Inflater::new);
+
+    public CompressingRedisSerializer(RedisSerializer<T> delegate, CompressionProperties properties, CompressionStats stats) {
+        this.delegate = delegate;
+        this.threshold = Math.max(0, properties.getThreshold());
+        this.maxDecompressedSize = Math.max(0, properties.getMaxDecompressedSize());
+        this.stats = stats;
+        int level = Math.min(9, Math.max(1, properties.getLevel()));
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    public RedisSerializer<T> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException {
+        byte[] raw = delegate.serialize(t);
+        if (raw == null || raw.length < threshold) {
+            stats.recordSkip();
+            return raw;
+        }
+        long start = System.nanoTime();
+        Deflater compressor = deflater.get();
+        compressor.reset();
+        compressor.setInput(raw);
+        compressor.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + HEADER_LENGTH);
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.write(CODEC_DEFLATE);
+        out.write(raw.length >>> 24);
+        out.write(raw.length >>> 16);
+        out.write(raw.length >>> 8);
+        out.write(raw.length);
+        byte[] buffer = new byte[8192];
+        while (!compressor.finished()) {
+            int n = compressor.deflate(buffer);
+            out.write(buffer, 0, n);
+            if (out.size() >= raw.length) {
+                // 压缩无收益，保留原始数据
+                stats.recordSkip();
+                return raw;
+            }
+        }
+        byte[] res = out.toByteArray();
+        stats.recordCompress(raw.length, res.length, System.nanoTime() - start);
+        return res;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (!isCompressed(bytes)) {
+            return delegate.deserialize(bytes);
+        }
+        long start = System.nanoTime();
+        int length = ((bytes[3] & 0xFF) << 24) | ((bytes[4] & 0xFF) << 16) | ((bytes[5] & 0xFF) << 8) | (bytes[6] & 0xFF);
+        if (length < 0 || length > maxDecompressedSize || length > (bytes.length - HEADER_LENGTH) * MAX_RATIO) {
+            throw new SerializationException("Compressed value header corrupt: length " + length + " of " + bytes.length + " bytes");
+        }
+        byte[] raw = new byte[length];
+        Inflater decompressor = inflater.get();
+        decompressor.reset();
+        decompressor.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        try {
+            int offset = 0;
+            while (offset < length && !decompressor.finished()) {
+                int n = decompressor.inflate(raw, offset, length - offset);
+                if (n == 0 && (decompressor.needsInput() || decompressor.needsDictionary())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != length) {
+                throw new SerializationException("Compressed value truncated: expect " + length + " bytes, got " + offset);
+            }
+            // 头部长度之后还有数据，或压缩流没有结束
+            if (!decompressor.finished() && (decompressor.inflate(new byte[1]) > 0 || !decompressor.finished())) {
+                throw new SerializationException("Compressed value length mismatch: expect " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new SerializationException("Cannot decompress value", e);
+        }
+        stats.recordDecompress(System.nanoTime() - start);
+        return delegate.deserialize(raw);
+    }
+
+    public static boolean isCompressed(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH
+                && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1 && bytes[2] == CODEC_DEFLATE;
+    }
+}
@@ -0,0 +1,90 @@
+package com.touchfish.tools.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压缩统计，每个连接一份
+ */
+public class CompressionStats {
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressed = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    void recordCompress(int rawLength, int compressedLength, long nanos) {
+        compressed.increment();
+        rawBytes.add(rawLength);
+        compressedBytes.add(compressedLength);
+        compressNanos.add(nanos);
+    }
+
+    void recordSkip() {
+        skipped.increment();
+    }
+
+    void recordDecompress(long nanos) {
+        decompressed.increment();
+        decompressNanos.add(nanos);
+    }
+
+    /**
+     * 已压缩的值数量
+     */
+    public long compressedCount() {
+        return compressed.sum();
+    }
+
+    /**
+     * 低于阈值或压缩无收益而未压缩的值数量
+     */
+    public long skippedCount() {
+        return skipped.sum();
+    }
+
+    public long decompressedCount() {
+        return decompressed.sum();
+    }
+
+    public long rawBytes() {
+        return rawBytes.sum();
+    }
+
+    public long compressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * 压缩率 压缩后字节数/原始字节数，没有压缩过数据时返回1
+     */
+    public double ratio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1D : (double) compressedBytes.sum() / raw;
+    }
+
+    /**
+     * 压缩累计耗时 单位 ns
+     */
+    public long compressNanos() {
+        return compressNanos.sum();
+    }
+
+    /**
+     * 解压累计耗时 单位 ns
+     */
+    public long decompressNanos() {
+        return decompressNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{compressed=" + compressedCount() +
+                ", skipped=" + skippedCount() +
+                ", decompressed=" + decompressedCount() +
+                ", ratio=" + String.format("%.3f", ratio()) +
+                ", compressMs=" + compressNanos() / 1000000 +
+                ", decompressMs=" + decompressNanos() / 1000000 + "}";
+    }
+}
@@ -0,0 +1,328 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.CounterProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 本地聚合计数器
+ * 增量先累加到本地计数，定时通过pipeline批量INCRBY/HINCRBY刷入redis，适用于统计类计数
+ * 一个刷写周期内没有增量的计数器从本地移除，key数量只与活跃计数器有关
+ * 进程异常退出时未刷写的增量会丢失
+ */
+@Slf4j
+public class CounterAggregator implements Closeable {
+    private final String name;
+    private final int batchSize;
+    private final long flushInterval;
+    private final Supplier<RedisTemplate> template;
+    private final BooleanSupplier pipelineSupported;
+    /**
+     * 已从pending中移除的计数，累加时遇到需要重新放入
+     */
+    private static final long RETIRED = Long.MIN_VALUE;
+    private final ConcurrentHashMap<Object, AtomicLong> pending = new ConcurrentHashMap<>();
+    private final LongAdder increments = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Object lifecycle = new Object();
+    private volatile ScheduledExecutorService scheduler;
+
+    public CounterAggregator(String name, CounterProperties properties, Supplier<RedisTemplate> template, BooleanSupplier pipelineSupported) {
+        this.name = name;
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.flushInterval = Math.max(1, properties.getFlushInterval());
+        this.template = template;
+        this.pipelineSupported = pipelineSupported;
+    }
+
+    /**
+     * 计数器加1
+     */
+    public void increment(String key) {
+        increment(key, 1L);
+    }
+
+    /**
+     * 计数器累加，对应INCRBY
+     */
+    public void increment(String key, long delta) {
+        add(key, delta);
+    }
+
+    /**
+     * hash计数器累加，对应HINCRBY
+     */
+    public void increment(String key, String field, long delta) {
+        add(new HashField(key, field), delta);
+    }
+
+    private void add(Object counter, long delta) {
+        ensureStarted();
+        accumulate(counter, delta);
+        increments.increment();
+    }
+
+    private void accumulate(Object counter, long delta) {
+        while (true) {
+            AtomicLong value = pending.get(counter);
+            if (value == null) {
+                value = pending.computeIfAbsent(counter, k -> new AtomicLong());
+            }
+            long current;
+            do {
+                current = value.get();
+            } while (current != RETIRED && !value.compareAndSet(current, current + delta));
+            if (current != RETIRED) {
+                return;
+            }
+            // 刷写线程刚移除了这个计数器
+            pending.remove(counter, value);
+        }
+    }
+
+    /**
+     * 本地尚未刷写的增量
+     */
+    public long pending(String key) {
+        return pending((Object) key);
+    }
+
+    public long pending(String key, String field) {
+        return pending(new HashField(key, field));
+    }
+
+    private long pending(Object counter) {
+        AtomicLong value = pending.get(counter);
+        long current = value == null ? 0L : value.get();
+        return current == RETIRED ? 0L : current;
+    }
+
+    /**
+     * 读取redis中的计数值，key不存在时返回0
+     */
+    public long get(String key) {
+        RedisTemplate current = template.get();
+        byte[] rawKey = serializer(current.getKeySerializer()).serialize(key);
+        byte[] value = (byte[]) current.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        return parseLong(value);
+    }
+
+    public long get(String key, String field) {
+        RedisTemplate current = template.get();
+        byte[] rawKey = serializer(current.getKeySerializer()).serialize(key);
+        byte[] rawField = serializer(current.getHashKeySerializer()).serialize(field);
+        byte[] value = (byte[]) current.execute((RedisCallback<byte[]>) connection -> connection.hGet(rawKey, rawField));
+        return parseLong(value);
+    }
+
+    /**
+     * redis中的计数值加上本地未刷写的增量
+     */
+    public long getWithPending(String key) {
+        return get(key) + pending(key);
+    }
+
+    public long getWithPending(String key, String field) {
+        return get(key, field) + pending(key, field);
+    }
+
+    /**
+     * 将本地增量刷入redis，失败时增量退回本地等待下次刷写
+     * 上次刷写后没有增量的计数器从本地移除
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object> counters = new ArrayList<>(batchSize);
+        long[] deltas = new long[batchSize];
+        for (Map.Entry<Object, AtomicLong> entry : pending.entrySet()) {
+            AtomicLong value = entry.getValue();
+            long delta = value.getAndSet(0);
+            if (delta == 0) {
+                if (value.compareAndSet(0, RETIRED)) {
+                    pending.remove(entry.getKey(), value);
+                }
+                continue;
+            }
+            deltas[counters.size()] = delta;
+            counters.add(entry.getKey());
+            if (counters.size() >= batchSize) {
+                write(counters, deltas);
+                counters.clear();
+            }
+        }
+        if (!counters.isEmpty()) {
+            write(counters, deltas);
+        }
+    }
+
+    private void write(List<Object> counters, long[] deltas) {
+        try {
+            RedisTemplate current = template.get();
+            if (current == null) {
+                throw new IllegalStateException("Redis \"" + name + "\" Not Connected.");
+            }
+            RedisSerializer<String> keySerializer = serializer(current.getKeySerializer());
+            RedisSerializer<String> fieldSerializer = serializer(current.getHashKeySerializer());
+            RedisCallback<Object> callback = connection -> {
+                write(connection, counters, deltas, keySerializer, fieldSerializer);
+                return null;
+            };
+            if (pipelineSupported.getAsBoolean()) {
+                current.executePipelined(callback);
+            } else {
+                current.execute(callback);
+            }
+            commands.add(counters.size());
+            flushes.increment();
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Counter \"" + name + "\" Flush Failed. Counters: " + counters.size(), e);
+            for (int i = 0; i < counters.size(); i++) {
+                accumulate(counters.get(i), deltas[i]);
+            }
+        }
+    }
+
+    private static void write(RedisConnection connection, List<Object> counters, long[] deltas,
+                              RedisSerializer<String> keySerializer, RedisSerializer<String> fieldSerializer) {
+        for (int i = 0; i < counters.size(); i++) {
+            Object counter = counters.get(i);
+            if (counter instanceof HashField) {
+                HashField hashField = (HashField) counter;
+                connection.hIncrBy(keySerializer.serialize(hashField.key), fieldSerializer.serialize(hashField.field), deltas[i]);
+            } else {
+                connection.incrBy(keySerializer.serialize((String) counter), deltas[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<String> serializer(RedisSerializer<?> serializer) {
+        return serializer != null ? (RedisSerializer<String>) serializer : RedisSerializer.string();
+    }
+
+    /**
+     * 解析INCRBY写入的十进制数字
+     */
+    static long parseLong(byte[] value) {
+        if (value == null || value.length == 0) {
+            return 0L;
+        }
+        boolean negative = value[0] == '-';
+        long res = 0;
+        for (int i = negative ? 1 : 0; i < value.length; i++) {
+            int digit = value[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a counter value: " + new String(value));
+            }
+            res = res * 10 - digit;
+        }
+        return negative ? res : -res;
+    }
+
+    /**
+     * 调用increment的次数
+     */
+    public long incrementCount() {
+        return increments.sum();
+    }
+
+    /**
+     * 实际发送的INCRBY/HINCRBY命令数
+     */
+    public long commandCount() {
+        return commands.sum();
+    }
+
+    /**
+     * 本地保留的计数器数量
+     */
+    public int counterCount() {
+        return pending.size();
+    }
+
+    public long flushCount() {
+        return flushes.sum();
+    }
+
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    private void ensureStarted() {
+        if (scheduler != null) {
+            return;
+        }
+        synchronized (lifecycle) {
+            if (scheduler == null) {
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(Bulkhead.internal(r), "counter-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+                scheduler = executor;
+            }
+        }
+    }
+
+    /**
+     * 刷写剩余增量并停止定时任务，之后再次累加会重新启动定时任务
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService current;
+        synchronized (lifecycle) {
+            current = scheduler;
+            scheduler = null;
+        }
+        if (current != null) {
+            current.shutdown();
+        }
+        flush();
+    }
+
+    private static final class HashField {
+        final String key;
+        final String field;
+
+        HashField(String key, String field) {
+            this.key = key;
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof HashField)) return false;
+            HashField that = (HashField) o;
+            return key.equals(that.key) && field.equals(that.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, field);
+        }
+    }
+}
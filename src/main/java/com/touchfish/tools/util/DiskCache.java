@@ -0,0 +1,586 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.DiskCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化的本地读缓存
+ * 序列化后的值追加写入内存映射的数据文件，堆内只保留key到文件位置的索引，索引定期写入索引文件
+ * 重启后加载索引文件并扫描其后追加的记录，未过期的值无需访问redis即可命中
+ * 过期时间取ttl和key在redis中剩余过期时间的较小值，写入超过revalidateAfter的值命中时在后台重新读取
+ * 通过RedisUtil的写入会立即失效本地值，其他客户端的写入在重新读取前不可见
+ */
+@Slf4j
+public class DiskCache implements Closeable {
+    private static final int MAGIC = 0x52444331;
+    /**
+     * 文件头 magic(4) 保留(4) generation(8) position(8) 保留(8)
+     */
+    private static final int HEADER = 32;
+    /**
+     * 记录头 crc(4) keyLength(4) valueLength(4) storedAt(8) expireAt(8)
+     */
+    private static final int RECORD_HEADER = 28;
+    private static final int TOMBSTONE = -1;
+
+    private final String name;
+    private final DiskCacheProperties properties;
+    private final Supplier<RedisTemplate> template;
+    private final File indexFile;
+    private final RandomAccessFile file;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final Map<String, Entry> index = new HashMap<>();
+    private final ReentrantReadWriteLock rw = new ReentrantReadWriteLock();
+    private final ScheduledThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    /**
+     * 按key失效计数，读取redis期间该key被失效时不缓存读到的值，避免旧值覆盖新写入
+     */
+    private final KeyStamps stamps = new KeyStamps();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private long generation;
+    private int position;
+    private volatile boolean closed;
+
+    public DiskCache(String name, DiskCacheProperties properties, Supplier<RedisTemplate> template) throws IOException {
+        this.name = name;
+        this.properties = properties;
+        this.template = template;
+        File directory = new File(properties.directory);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Redis \"" + name + "\" Disk Cache Directory " + directory + " Create Failed.");
+        }
+        this.indexFile = new File(directory, name + ".index");
+        this.capacity = Math.max(HEADER + RECORD_HEADER + properties.maxValueSize, properties.maxSize);
+        this.file = new RandomAccessFile(new File(directory, name + ".data"), "rw");
+        FileChannel channel = file.getChannel();
+        this.lock = channel.tryLock();
+        if (lock == null) {
+            file.close();
+            throw new IOException("Redis \"" + name + "\" Disk Cache " + directory + " Is Used By Another Process.");
+        }
+        boolean resized = file.length() != capacity;
+        if (resized) {
+            file.setLength(capacity);
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        if (resized || buffer.getInt(0) != MAGIC || buffer.getLong(16) < HEADER || buffer.getLong(16) > capacity) {
+            reset();
+        } else {
+            generation = buffer.getLong(8);
+            position = (int) buffer.getLong(16);
+            long start = System.currentTimeMillis();
+            scan(loadIndex());
+            log.info("Redis \"" + name + "\" Disk Cache Loaded " + index.size() + " Entries In " + (System.currentTimeMillis() - start) + "ms.");
+        }
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(Bulkhead.internal(r), "redis-disk-cache-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (properties.snapshotInterval > 0) {
+            executor.scheduleWithFixedDelay(this::snapshot, properties.snapshotInterval, properties.snapshotInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 读取key，本地未命中或已过期时读取redis并缓存
+     */
+    public Object get(String key) {
+        if (closed) {
+            return template.get().opsForValue().get(key);
+        }
+        byte[] raw = null;
+        boolean stale = false;
+        boolean expire = false;
+        rw.readLock().lock();
+        try {
+            Entry entry = index.get(key);
+            if (entry != null) {
+                long now = System.currentTimeMillis();
+                if (entry.expireAt > now) {
+                    raw = value(entry);
+                    stale = now - entry.storedAt >= properties.revalidateAfter;
+                } else {
+                    expire = true;
+                }
+            }
+        } finally {
+            rw.readLock().unlock();
+        }
+        if (raw != null) {
+            hits.increment();
+            if (stale) {
+                revalidate(key);
+            }
+            return template.get().getValueSerializer().deserialize(raw);
+        }
+        if (expire) {
+            expired.increment();
+            remove(key, false);
+        }
+        misses.increment();
+        return load(key);
+    }
+
+    /**
+     * 移除本地值，key被写入或删除后调用，需要在写入redis完成之后
+     */
+    public void invalidate(String key) {
+        stamps.increment(key);
+        remove(key, true);
+    }
+
+    /**
+     * 读取redis前调用，作为warm的参数
+     */
+    public long stamp(String key) {
+        return stamps.get(key);
+    }
+
+    /**
+     * 本地是否有未过期且无需重新读取的值
+     */
+    public boolean isFresh(String key) {
+        rw.readLock().lock();
+        try {
+            Entry entry = index.get(key);
+            long now = System.currentTimeMillis();
+            return entry != null && entry.expireAt > now && now - entry.storedAt < properties.revalidateAfter;
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入从redis读到的序列化值，用于预热
+     * @param ttl redis中的剩余过期时间 单位 ms 为null表示未知，此时最多保留revalidateAfter
+     * @param stamp 读取前通过stamp取得，读取期间key被失效时不写入
+     */
+    public void warm(String key, byte[] value, Long ttl, long stamp) {
+        if (value != null) {
+            put(key, value, ttl != null ? ttl : Math.max(1, properties.revalidateAfter), stamp);
+        }
+    }
+
+    private Object load(String key) {
+        long stamp = stamps.get(key);
+        RedisTemplate current = template.get();
+        RedisSerializer keySerializer = current.getKeySerializer();
+        byte[] rawKey = keySerializer != null ? keySerializer.serialize(key) : key.getBytes(StandardCharsets.UTF_8);
+        Object[] res = (Object[]) current.execute((RedisCallback<Object[]>) connection -> {
+            byte[] value = connection.get(rawKey);
+            return new Object[]{value, value != null ? connection.pTtl(rawKey) : null};
+        });
+        byte[] value = (byte[]) res[0];
+        if (value == null) {
+            return null;
+        }
+        put(key, value, (Long) res[1], stamp);
+        return current.getValueSerializer().deserialize(value);
+    }
+
+    private void revalidate(String key) {
+        if (pending.size() >= properties.maxPendingRevalidations || !pending.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    revalidations.increment();
+                    if (load(key) == null) {
+                        remove(key, true);
+                    }
+                } catch (Exception e) {
+                    log.debug("Redis \"" + name + "\" Disk Cache Revalidate \"" + key + "\" Failed.", e);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * @param ttl redis中的剩余过期时间 单位 ms -1 表示不过期 -2 表示key已不存在
+     */
+    private void put(String key, byte[] value, Long ttl, long stamp) {
+        if (value.length > properties.maxValueSize || (ttl != null && (ttl == -2 || ttl == 0))) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expireAt = now + properties.ttl;
+        if (ttl != null && ttl > 0) {
+            expireAt = Math.min(expireAt, now + ttl);
+        }
+        rw.writeLock().lock();
+        try {
+            if (!closed && stamps.unchanged(key, stamp)) {
+                append(key, value, now, expireAt);
+            }
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    private void remove(String key, boolean tombstone) {
+        rw.writeLock().lock();
+        try {
+            if (!closed && index.remove(key) != null && tombstone) {
+                // 删除也需要写入文件，否则重启后旧值会被重新加载
+                append(key, null, System.currentTimeMillis(), 0);
+            }
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    private void append(String key, byte[] value, long storedAt, long expireAt) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER + rawKey.length + (value != null ? value.length : 0);
+        if (length > capacity - position && !compact(length)) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(0)
+                .putInt(rawKey.length)
+                .putInt(value != null ? value.length : TOMBSTONE)
+                .putLong(storedAt)
+                .putLong(expireAt)
+                .put(rawKey);
+        if (value != null) {
+            record.put(value);
+        }
+        record.putInt(0, crc(record.array(), 4, length - 4));
+        ByteBuffer target = buffer.duplicate();
+        target.position(position);
+        target.put(record.array());
+        if (value != null) {
+            index.put(key, new Entry(position, length, storedAt, expireAt));
+        }
+        position += length;
+        buffer.putLong(16, position);
+    }
+
+    /**
+     * 丢弃过期和被覆盖的记录并将有效记录移到文件头部
+     * 压缩后剩余空间仍不足四分之一时，按写入时间淘汰最早的值直到使用不超过一半
+     * 压缩前先将文件头标记为空，压缩中途退出时重启后缓存为空
+     */
+    private boolean compact(int needed) {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> live = new ArrayList<>(index.size());
+        long total = 0;
+        for (Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getValue().expireAt <= now) {
+                it.remove();
+                expired.increment();
+            } else {
+                live.add(e);
+                total += e.getValue().length;
+            }
+        }
+        long space = capacity - HEADER;
+        if (total + needed > space * 3 / 4) {
+            live.sort(Comparator.comparingLong(e -> e.getValue().storedAt));
+            int drop = 0;
+            while (drop < live.size() && total + needed > space / 2) {
+                total -= live.get(drop).getValue().length;
+                index.remove(live.get(drop).getKey());
+                drop++;
+            }
+            evictions.add(drop);
+            live = new ArrayList<>(live.subList(drop, live.size()));
+        }
+        live.sort(Comparator.comparingInt(e -> e.getValue().offset));
+        generation++;
+        buffer.putLong(8, generation);
+        buffer.putLong(16, HEADER);
+        int target = HEADER;
+        for (Map.Entry<String, Entry> e : live) {
+            Entry entry = e.getValue();
+            if (entry.offset != target) {
+                byte[] record = new byte[entry.length];
+                ByteBuffer source = buffer.duplicate();
+                source.position(entry.offset);
+                source.get(record);
+                ByteBuffer dest = buffer.duplicate();
+                dest.position(target);
+                dest.put(record);
+                index.put(e.getKey(), new Entry(target, entry.length, entry.storedAt, entry.expireAt));
+            }
+            target += entry.length;
+        }
+        position = target;
+        buffer.putLong(16, position);
+        compactions.increment();
+        log.info("Redis \"" + name + "\" Disk Cache Compacted, " + index.size() + " Entries, " + position + " Bytes Used.");
+        return needed <= capacity - position;
+    }
+
+    private void reset() {
+        index.clear();
+        generation = System.currentTimeMillis();
+        position = HEADER;
+        buffer.putInt(0, MAGIC);
+        buffer.putLong(8, generation);
+        buffer.putLong(16, position);
+    }
+
+    /**
+     * 从指定位置扫描数据文件，遇到不完整或校验失败的记录时截断
+     */
+    private void scan(int from) {
+        long now = System.currentTimeMillis();
+        int offset = from;
+        while (offset + RECORD_HEADER <= position) {
+            int keyLength = buffer.getInt(offset + 4);
+            int valueLength = buffer.getInt(offset + 8);
+            if (keyLength <= 0 || valueLength < TOMBSTONE || (long) offset + RECORD_HEADER + keyLength + Math.max(0, valueLength) > position) {
+                break;
+            }
+            int length = RECORD_HEADER + keyLength + Math.max(0, valueLength);
+            byte[] record = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(offset);
+            source.get(record);
+            if (crc(record, 4, length - 4) != buffer.getInt(offset)) {
+                break;
+            }
+            String key = new String(record, RECORD_HEADER, keyLength, StandardCharsets.UTF_8);
+            long storedAt = buffer.getLong(offset + 12);
+            long expireAt = buffer.getLong(offset + 20);
+            if (valueLength == TOMBSTONE || expireAt <= now) {
+                index.remove(key);
+            } else {
+                index.put(key, new Entry(offset, length, storedAt, expireAt));
+            }
+            offset += length;
+        }
+        if (offset != position) {
+            log.warn("Redis \"" + name + "\" Disk Cache Truncated " + (position - offset) + " Bytes.");
+            position = offset;
+            buffer.putLong(16, position);
+        }
+    }
+
+    /**
+     * 加载与数据文件同一代的索引文件
+     * @return 索引覆盖到的数据文件位置，索引无效时返回文件头位置
+     */
+    private int loadIndex() {
+        if (!indexFile.isFile()) {
+            return HEADER;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readLong() != generation) {
+                return HEADER;
+            }
+            long covered = in.readLong();
+            if (covered < HEADER || covered > position) {
+                return HEADER;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] rawKey = new byte[in.readInt()];
+                in.readFully(rawKey);
+                int offset = in.readInt();
+                if (offset < HEADER || offset + RECORD_HEADER > covered) {
+                    index.clear();
+                    return HEADER;
+                }
+                int keyLength = buffer.getInt(offset + 4);
+                int valueLength = buffer.getInt(offset + 8);
+                if (keyLength != rawKey.length || valueLength < 0) {
+                    index.clear();
+                    return HEADER;
+                }
+                long expireAt = buffer.getLong(offset + 20);
+                if (expireAt > now) {
+                    index.put(new String(rawKey, StandardCharsets.UTF_8),
+                            new Entry(offset, RECORD_HEADER + keyLength + valueLength, buffer.getLong(offset + 12), expireAt));
+                }
+            }
+            return (int) covered;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Redis \"" + name + "\" Disk Cache Index Load Failed, Scanning Data File.", e);
+            index.clear();
+            return HEADER;
+        }
+    }
+
+    /**
+     * 写出索引文件，先将数据文件刷到磁盘，保证索引不会指向未落盘的记录
+     */
+    public void snapshot() {
+        long snapshotGeneration;
+        int covered;
+        List<String> keys;
+        int[] offsets;
+        rw.readLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            buffer.force();
+            snapshotGeneration = generation;
+            covered = position;
+            keys = new ArrayList<>(index.keySet());
+            offsets = new int[keys.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = index.get(keys.get(i)).offset;
+            }
+        } finally {
+            rw.readLock().unlock();
+        }
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(snapshotGeneration);
+                out.writeLong(covered);
+                out.writeInt(offsets.length);
+                for (int i = 0; i < offsets.length; i++) {
+                    byte[] rawKey = keys.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(rawKey.length);
+                    out.write(rawKey);
+                    out.writeInt(offsets[i]);
+                }
+            }
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Redis \"" + name + "\" Disk Cache Snapshot Failed.", e);
+        }
+    }
+
+    private byte[] value(Entry entry) {
+        int keyLength = buffer.getInt(entry.offset + 4);
+        byte[] value = new byte[entry.length - RECORD_HEADER - keyLength];
+        ByteBuffer source = buffer.duplicate();
+        source.position(entry.offset + RECORD_HEADER + keyLength);
+        source.get(value);
+        return value;
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    public int size() {
+        rw.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /**
+     * 数据文件已使用的字节数，包含被覆盖和过期的记录
+     */
+    public int usedBytes() {
+        return position;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long expiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * 后台重新读取redis的次数
+     */
+    public long revalidationCount() {
+        return revalidations.sum();
+    }
+
+    /**
+     * 压缩后空间仍不足而淘汰的值数
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long compactionCount() {
+        return compactions.sum();
+    }
+
+    public double hitRate() {
+        long n = hits.sum() + misses.sum();
+        return n == 0 ? 0 : (double) hits.sum() / n;
+    }
+
+    /**
+     * 写出索引并释放文件，之后的读取直接访问redis
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        snapshot();
+        rw.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.force();
+            index.clear();
+        } finally {
+            rw.writeLock().unlock();
+        }
+        lock.release();
+        file.close();
+        log.info("Redis \"" + name + "\" Disk Cache Closed.");
+    }
+
+    private static class Entry {
+        final int offset;
+        final int length;
+        final long storedAt;
+        final long expireAt;
+
+        Entry(int offset, int length, long storedAt, long expireAt) {
+            this.offset = offset;
+            this.length = length;
+            this.storedAt = storedAt;
+            this.expireAt = expireAt;
+        }
+    }
+}
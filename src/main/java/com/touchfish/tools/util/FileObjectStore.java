@@ -0,0 +1,58 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IObjectStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+
+/**
+ * 基于本地目录的对象存储，用于开发测试或单机部署
+ */
+public class FileObjectStore implements IObjectStore {
+    private final Path directory;
+
+    public FileObjectStore(String directory) throws IOException {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(this.directory);
+    }
+
+    @Override
+    public void put(String name, InputStream in, long size) throws IOException {
+        Path path = resolve(name);
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), ".upload", null);
+        try {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream get(String name) throws IOException {
+        try {
+            return Files.newInputStream(resolve(name));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void remove(String name) throws IOException {
+        Files.deleteIfExists(resolve(name));
+    }
+
+    private Path resolve(String name) throws IOException {
+        Path path = directory.resolve(name).normalize();
+        if (!path.startsWith(directory)) {
+            throw new IOException("Invalid Object Name \"" + name + "\".");
+        }
+        return path;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,253 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.HedgeProperties;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.Closeable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 对冲读取
+ * 读取先发往主节点，超过对冲延迟仍未返回时向副本发出相同的读取，先返回的结果生效
+ * 对冲延迟取上一个统计窗口中主节点读取延迟的分位数，对冲次数受budget比例限制
+ * 副本可能落后于主节点，只用于可以接受旧值的读取
+ */
+public class HedgedReader implements Closeable {
+    private static final long TOKEN = 1000000;
+    /**
+     * 最多累积的对冲次数，避免长时间无慢请求后集中对冲
+     */
+    private static final long BURST = 10 * TOKEN;
+    private static final int MIN_SAMPLES = 100;
+
+    private final String name;
+    private final HedgeProperties properties;
+    private final Supplier<RedisTemplate> primary;
+    private final Supplier<RedisTemplate> replica;
+    private final ThreadPoolExecutor executor;
+    private final long tokensPerRead;
+    private final AtomicLong tokens = new AtomicLong(BURST);
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetSkipped = new LongAdder();
+    private volatile LatencyHistogram window = new LatencyHistogram();
+    private volatile long windowEnd;
+    private volatile long delay;
+
+    /**
+     * @param replica 返回null时不对冲
+     */
+    public HedgedReader(String name, HedgeProperties properties, Supplier<RedisTemplate> primary, Supplier<RedisTemplate> replica) {
+        this.name = name;
+        this.properties = properties;
+        this.primary = primary;
+        this.replica = replica;
+        this.tokensPerRead = (long) (Math.max(0, properties.budget) * TOKEN);
+        this.delay = TimeUnit.MILLISECONDS.toNanos(properties.maxDelay);
+        this.windowEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.window);
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, Math.max(2, properties.threads), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "redis-hedge-" + name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Object get(String key) {
+        return read(template -> template.opsForValue().get(key));
+    }
+
+    public Object hGet(String key, Object field) {
+        return read(template -> template.opsForHash().get(key, field));
+    }
+
+    /**
+     * 对冲执行任意只读操作，操作可能在主节点和副本上各执行一次
+     */
+    public <T> T read(Function<RedisTemplate, T> read) {
+        reads.increment();
+        addTokens();
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        try {
+            executor.execute(() -> attempt(primary, read, result, pending, error, start, false));
+        } catch (RejectedExecutionException e) {
+            T res = read.apply(primary.get());
+            record(System.nanoTime() - start);
+            return res;
+        }
+        try {
+            return result.get(delay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            hedge(read, result, pending, error, start);
+            return join(result);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Redis \"" + name + "\" Hedged Read Interrupted.", e);
+        }
+    }
+
+    private <T> void hedge(Function<RedisTemplate, T> read, CompletableFuture<T> result, AtomicInteger pending,
+                           AtomicReference<Throwable> error, long start) {
+        // 先计入待完成数，避免主节点恰好在此时失败而提前结束
+        pending.incrementAndGet();
+        boolean started = false;
+        if (replica.get() != null) {
+            if (takeToken()) {
+                try {
+                    executor.execute(() -> attempt(replica, read, result, pending, error, start, true));
+                    hedges.increment();
+                    started = true;
+                } catch (RejectedExecutionException ignored) {
+                }
+            } else {
+                budgetSkipped.increment();
+            }
+        }
+        if (!started && pending.decrementAndGet() == 0) {
+            result.completeExceptionally(error.get());
+        }
+    }
+
+    private <T> void attempt(Supplier<RedisTemplate> target, Function<RedisTemplate, T> read, CompletableFuture<T> result,
+                             AtomicInteger pending, AtomicReference<Throwable> error, long start, boolean hedge) {
+        T res;
+        try {
+            RedisTemplate template = target.get();
+            if (template == null) {
+                throw new IllegalStateException("Redis \"" + name + "\" Has No Connection.");
+            }
+            res = read.apply(template);
+        } catch (Throwable e) {
+            error.set(e);
+            if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+            return;
+        }
+        if (!hedge) {
+            // 主节点的延迟无论是否被对冲都计入统计，保证分位数反映主节点的真实分布
+            record(System.nanoTime() - start);
+        }
+        if (result.complete(res) && hedge) {
+            hedgeWins.increment();
+        }
+    }
+
+    private void record(long nanos) {
+        window.record(nanos);
+        long now = System.nanoTime();
+        if (now - windowEnd >= 0) {
+            rotate(now);
+        }
+    }
+
+    private synchronized void rotate(long now) {
+        if (now - windowEnd < 0) {
+            return;
+        }
+        LatencyHistogram finished = window;
+        window = new LatencyHistogram();
+        windowEnd = now + TimeUnit.MILLISECONDS.toNanos(properties.window);
+        if (finished.count() >= MIN_SAMPLES) {
+            long min = TimeUnit.MILLISECONDS.toNanos(properties.minDelay);
+            long max = TimeUnit.MILLISECONDS.toNanos(properties.maxDelay);
+            delay = Math.max(min, Math.min(max, finished.percentile(properties.percentile)));
+        }
+    }
+
+    private void addTokens() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= BURST) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(BURST, current + tokensPerRead)));
+    }
+
+    private boolean takeToken() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    private <T> T join(CompletableFuture<T> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Redis \"" + name + "\" Hedged Read Interrupted.", e);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+
+    public long readCount() {
+        return reads.sum();
+    }
+
+    /**
+     * 发往副本的对冲读取数
+     */
+    public long hedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * 副本先于主节点返回的次数
+     */
+    public long hedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * 因超出budget未发出的对冲数
+     */
+    public long budgetSkippedCount() {
+        return budgetSkipped.sum();
+    }
+
+    public double hedgeRate() {
+        long n = reads.sum();
+        return n == 0 ? 0 : (double) hedges.sum() / n;
+    }
+
+    /**
+     * 当前对冲延迟 单位 ms
+     */
+    public double delayMillis() {
+        return delay / 1e6;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
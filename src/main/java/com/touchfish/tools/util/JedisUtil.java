@@ -1,7 +1,9 @@
 package com.touchfish.tools.util;
 
+import com.touchfish.tools.interf.IMirrorTarget;
 import com.touchfish.tools.interf.IRedisConnection;
 import com.touchfish.tools.structure.IPFormat;
+import com.touchfish.tools.structure.MirrorProperties;
 import com.touchfish.tools.structure.RedisType;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RedissonClient;
@@ -9,7 +11,9 @@ import org.redisson.config.Config;
 import redis.clients.jedis.*;
 import java.io.Closeable;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 
@@ -28,6 +32,7 @@ public class JedisUtil implements IRedisConnection<Object, Object> {
     private HostAndPort[] hostAndPorts;
     private Closeable connection;
     private JedisPoolAbstract jedisPool;
+    private volatile RedisMirror mirror;
     public JedisUtil() {}
     public JedisUtil(String name, RedisType type, String address) {
         new Builder(this).type(type).address(address).build(name);
@@ -68,7 +73,7 @@ public class JedisUtil implements IRedisConnection<Object, Object> {
     @Override
     public JedisCluster cluster() {
         if (type != RedisType.CLUSTER) {
-            close();
+            release();
             connection = new JedisCluster(new HashSet<>(Arrays.asList(hostAndPorts)), Math.toIntExact(timeout));
             type = RedisType.CLUSTER;
         }
@@ -81,7 +86,7 @@ public class JedisUtil implements IRedisConnection<Object, Object> {
     @Override
     public Jedis standalone() {
         if (type != RedisType.STANDALONE) {
-            close();
+            release();
             if (hostAndPorts.length < 1) {
                 System.err.println("未正确设置redis地址。");
                 return null;
@@ -97,7 +102,7 @@ public class JedisUtil implements IRedisConnection<Object, Object> {
      */
     public JedisSentinelPool sentinelPool() {
         if (type != RedisType.SENTINEL) {
-            close();
+            release();
             jedisPool = new JedisSentinelPool(master, Arrays.stream(hostAndPorts).map(HostAndPort::toString).collect(Collectors.toSet()));
             type = RedisType.SENTINEL;
         }
@@ -232,7 +237,11 @@ public class JedisUtil implements IRedisConnection<Object, Object> {
     public String get(String key) {
         Object redis = connect();
         try {
-            return (String) redis.getClass().getDeclaredMethod("get", String.class).invoke(redis, key);
+            String res = (String) redis.getClass().getDeclaredMethod("get", String.class).invoke(redis, key);
+            if (mirror != null) {
+                mirror.sample(key, res);
+            }
+            return res;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -244,7 +253,13 @@ public class JedisUtil implements IRedisConnection<Object, Object> {
         args.add(key);
         args.addAll(Arrays.asList(value));
         try {
-            redis.getClass().getDeclaredMethod("set", args.stream().map(Object::getClass).collect(Collectors.toList()).toArray(new Class[0])).invoke(redis, args.toArray());
+            Method set = redis.getClass().getDeclaredMethod("set", args.stream().map(Object::getClass).collect(Collectors.toList()).toArray(new Class[0]));
+            RedisMirror target = mirror;
+            if (target == null) {
+                set.invoke(redis, args.toArray());
+            } else {
+                target.set(key, () -> set.invoke(redis, args.toArray()), value);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -252,12 +267,116 @@ public class JedisUtil implements IRedisConnection<Object, Object> {
     public Long del(String key) {
         Object redis = connect();
         try {
-            return (Long) redis.getClass().getDeclaredMethod("del", String.class).invoke(redis, key);
+            Method del = redis.getClass().getDeclaredMethod("del", String.class);
+            RedisMirror target = mirror;
+            Long res = (Long) (target == null ? del.invoke(redis, key) : target.del(key, () -> del.invoke(redis, key)));
+            return res;
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
+    /**
+     * 使用二进制key读取，可配合KeyBuilder避免构造String key
+     * @param key 已编码的key
+     * @return
+     */
+    public byte[] get(byte[] key) {
+        Object redis = connect();
+        try {
+            byte[] res = redis instanceof JedisCluster ? ((JedisCluster) redis).get(key) : ((Jedis) redis).get(key);
+            if (mirror != null) {
+                mirror.sample(key, res);
+            }
+            return res;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    public void set(byte[] key, byte[] value) {
+        Object redis = connect();
+        try {
+            Callable<String> write = () -> redis instanceof JedisCluster ? ((JedisCluster) redis).set(key, value) : ((Jedis) redis).set(key, value);
+            RedisMirror target = mirror;
+            if (target == null) {
+                write.call();
+            } else {
+                target.set(key, write, value);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+    public Long del(byte[] key) {
+        Object redis = connect();
+        try {
+            Callable<Long> write = () -> redis instanceof JedisCluster ? ((JedisCluster) redis).del(key) : ((Jedis) redis).del(key);
+            RedisMirror target = mirror;
+            Long res = target == null ? write.call() : target.del(key, write);
+            return res;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+    /**
+     * 将之后成功的set/del异步重放到影子连接，用于迁移期间双写
+     * 只镜像本类的set/del，直接使用Jedis连接的写入不会被镜像
+     * 重放使用影子当前的连接，单机和哨兵模式下Jedis连接不是线程安全的，迁移期间不要再直接使用影子
+     * @param shadow 影子连接
+     * @return 创建的镜像
+     */
+    public RedisMirror mirrorTo(JedisUtil shadow, MirrorProperties properties) {
+        if (shadow == this) {
+            throw new IllegalArgumentException("Jedis \""+name+"\" Cannot Mirror To Itself.");
+        }
+        RedisMirror created = new RedisMirror(name, shadow.name(), properties, shadow.mirrorTarget());
+        RedisMirror old;
+        synchronized (this) {
+            old = mirror;
+            mirror = created;
+        }
+        if (old != null) {
+            old.close();
+        }
+        log.info("Jedis \""+name+"\" Mirroring Writes To \""+shadow.name()+"\".");
+        return created;
+    }
+    /**
+     * 双写镜像，未启用时返回null
+     * @return
+     */
+    public RedisMirror mirror() {
+        return mirror;
+    }
+    /**
+     * 作为影子时的写入方式，单机和哨兵模式下使用pipeline，集群模式下逐条执行
+     */
+    private IMirrorTarget mirrorTarget() {
+        return new IMirrorTarget() {
+            @Override
+            public void replay(List<MirrorOp> ops) throws Exception {
+                Object redis = connect();
+                Object target = redis instanceof Jedis ? ((Jedis) redis).pipelined() : redis;
+                for (MirrorOp op : ops) {
+                    Object[] args = new Object[op.args.length + 1];
+                    args[0] = op.key;
+                    System.arraycopy(op.args, 0, args, 1, op.args.length);
+                    Class<?>[] types = Arrays.stream(args).map(Object::getClass).toArray(Class[]::new);
+                    target.getClass().getMethod(op.type == MirrorOp.Type.SET ? "set" : "del", types).invoke(target, args);
+                }
+                if (target instanceof Pipeline) {
+                    ((Pipeline) target).sync();
+                }
+            }
+
+            @Override
+            public Object read(Object key) {
+                return key instanceof byte[] ? get((byte[]) key) : get((String) key);
+            }
+        };
+    }
     public void closeConnection() {
         if (connection != null) {
             try {
@@ -272,6 +391,15 @@ public class JedisUtil implements IRedisConnection<Object, Object> {
      * 关闭所有连接
      */
     public void close() {
+        if (mirror != null) {
+            mirror.close();
+        }
+        release();
+    }
+    /**
+     * 切换连接类型前释放当前连接，镜像继续使用
+     */
+    private void release() {
         closeConnection();
         if (jedisPool != null) {
             jedisPool.destroy();
@@ -0,0 +1,200 @@
+package com.touchfish.tools.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 二进制key构造器
+ * 模板中的固定部分预先编码为UTF-8字节，数字段直接写入结果数组，构造一个key只分配结果byte[]
+ * 用法: KeyBuilder.of("tenant:{}:entity:{}").build(tenantId, entityId)
+ */
+public final class KeyBuilder {
+    private static final String PLACEHOLDER = "{}";
+    private static final Map<String, KeyBuilder> CACHE = new ConcurrentHashMap<>();
+    private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final String template;
+    /**
+     * 固定部分，长度为占位符数量+1
+     */
+    private final byte[][] literals;
+    private final int literalLength;
+
+    private KeyBuilder(String template) {
+        this.template = template;
+        List<byte[]> parts = new ArrayList<>();
+        int from = 0;
+        int index;
+        while ((index = template.indexOf(PLACEHOLDER, from)) >= 0) {
+            parts.add(template.substring(from, index).getBytes(StandardCharsets.UTF_8));
+            from = index + PLACEHOLDER.length();
+        }
+        parts.add(template.substring(from).getBytes(StandardCharsets.UTF_8));
+        this.literals = parts.toArray(new byte[0][]);
+        int length = 0;
+        for (byte[] literal : literals) {
+            length += literal.length;
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 获取模板对应的构造器，相同模板共享同一实例
+     * @param template key模板，使用{}作为占位符
+     */
+    public static KeyBuilder of(String template) {
+        return CACHE.computeIfAbsent(template, KeyBuilder::new);
+    }
+
+    /**
+     * 占位符数量
+     */
+    public int segments() {
+        return literals.length - 1;
+    }
+
+    public String template() {
+        return template;
+    }
+
+    public byte[] build() {
+        checkSegments(0);
+        return literals[0].clone();
+    }
+
+    public byte[] build(long id) {
+        checkSegments(1);
+        byte[] res = new byte[literalLength + length(id)];
+        int offset = copy(literals[0], res, 0);
+        offset = write(id, res, offset);
+        copy(literals[1], res, offset);
+        return res;
+    }
+
+    public byte[] build(long id0, long id1) {
+        checkSegments(2);
+        byte[] res = new byte[literalLength + length(id0) + length(id1)];
+        int offset = copy(literals[0], res, 0);
+        offset = write(id0, res, offset);
+        offset = copy(literals[1], res, offset);
+        offset = write(id1, res, offset);
+        copy(literals[2], res, offset);
+        return res;
+    }
+
+    public byte[] build(long id0, long id1, long id2) {
+        checkSegments(3);
+        byte[] res = new byte[literalLength + length(id0) + length(id1) + length(id2)];
+        int offset = copy(literals[0], res, 0);
+        offset = write(id0, res, offset);
+        offset = copy(literals[1], res, offset);
+        offset = write(id1, res, offset);
+        offset = copy(literals[2], res, offset);
+        offset = write(id2, res, offset);
+        copy(literals[3], res, offset);
+        return res;
+    }
+
+    public byte[] build(long... ids) {
+        checkSegments(ids.length);
+        int length = literalLength;
+        for (long id : ids) {
+            length += length(id);
+        }
+        byte[] res = new byte[length];
+        int offset = copy(literals[0], res, 0);
+        for (int i = 0; i < ids.length; i++) {
+            offset = write(ids[i], res, offset);
+            offset = copy(literals[i + 1], res, offset);
+        }
+        return res;
+    }
+
+    /**
+     * 使用字符串段构造key，字符串段需要编码，会产生额外分配
+     */
+    public byte[] build(String... segments) {
+        checkSegments(segments.length);
+        byte[][] encoded = new byte[segments.length][];
+        int length = literalLength;
+        for (int i = 0; i < segments.length; i++) {
+            encoded[i] = segments[i].getBytes(StandardCharsets.UTF_8);
+            length += encoded[i].length;
+        }
+        byte[] res = new byte[length];
+        int offset = copy(literals[0], res, 0);
+        for (int i = 0; i < encoded.length; i++) {
+            offset = copy(encoded[i], res, offset);
+            offset = copy(literals[i + 1], res, offset);
+        }
+        return res;
+    }
+
+    /**
+     * 构造字符串形式的key，用于日志或需要String key的接口
+     */
+    public String toString(long... ids) {
+        return new String(build(ids), StandardCharsets.UTF_8);
+    }
+
+    private void checkSegments(int count) {
+        if (count != literals.length - 1) {
+            throw new IllegalArgumentException("Key template \"" + template + "\" requires " + (literals.length - 1) + " segments, got " + count);
+        }
+    }
+
+    private static int copy(byte[] src, byte[] dst, int offset) {
+        System.arraycopy(src, 0, dst, offset, src.length);
+        return offset + src.length;
+    }
+
+    static int length(long value) {
+        if (value == Long.MIN_VALUE) {
+            return MIN_LONG.length;
+        }
+        if (value < 0) {
+            return 1 + positiveLength(-value);
+        }
+        return positiveLength(value);
+    }
+
+    private static int positiveLength(long value) {
+        long p = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < p) {
+                return i;
+            }
+            p = 10 * p;
+        }
+        return 19;
+    }
+
+    /**
+     * 将数字的十进制ASCII写入dst
+     * @return 写入后的偏移量
+     */
+    static int write(long value, byte[] dst, int offset) {
+        if (value == Long.MIN_VALUE) {
+            return copy(MIN_LONG, dst, offset);
+        }
+        int end = offset + length(value);
+        int pos = end;
+        if (value < 0) {
+            dst[offset] = '-';
+            value = -value;
+        }
+        do {
+            dst[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
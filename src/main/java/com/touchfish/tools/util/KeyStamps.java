@@ -0,0 +1,31 @@
+package com.touchfish.tools.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按key哈希分段的失效计数
+ * 读取redis前取得stamp，写入本地缓存前确认该分段期间没有失效，避免读到的旧结果覆盖之后的写入
+ * 不同key落在同一分段时只会让少量读取结果不被缓存
+ */
+class KeyStamps {
+    private static final int STRIPES = 4096;
+
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+
+    long get(String key) {
+        return stamps.get(stripe(key));
+    }
+
+    void increment(String key) {
+        stamps.incrementAndGet(stripe(key));
+    }
+
+    boolean unchanged(String key, long stamp) {
+        return stamps.get(stripe(key)) == stamp;
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,328 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.ILoadDriver;
+import com.touchfish.tools.structure.LoadProfile;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * 按LoadProfile对RedisUtil、JedisUtil或RedissonUtil施加负载并统计延迟和吞吐量
+ * 开环模式(rate大于0)下每个请求有计划发出时间，延迟从计划时间开始计算，服务端变慢时排队时间也会计入延迟
+ */
+@Slf4j
+public class LoadGenerator {
+    private final String name;
+    private final LoadProfile profile;
+    private final ILoadDriver driver;
+    private final String[] keys;
+    private final String value;
+    private final LatencyHistogram reads = new LatencyHistogram();
+    private final LatencyHistogram writes = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean recording;
+
+    public LoadGenerator(String name, LoadProfile profile, ILoadDriver driver) {
+        this.name = name;
+        this.profile = profile;
+        this.driver = driver;
+        this.keys = new String[Math.max(1, profile.keys)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = profile.keyPrefix + i;
+        }
+        char[] chars = new char[Math.max(0, profile.valueSize)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + ThreadLocalRandom.current().nextInt(26));
+        }
+        this.value = new String(chars);
+    }
+
+    public static ILoadDriver driver(RedisUtil util) {
+        return new ILoadDriver() {
+            @Override
+            public Object read(String key) {
+                return util.connect().opsForValue().get(key);
+            }
+
+            @Override
+            public void write(String key, String value) {
+                util.connect().opsForValue().set(key, value);
+            }
+        };
+    }
+
+    /**
+     * 单点和哨兵模式下JedisUtil只持有一个连接，所有线程串行使用
+     */
+    public static ILoadDriver driver(JedisUtil util) {
+        return new ILoadDriver() {
+            @Override
+            public Object read(String key) {
+                Object redis = util.connect();
+                if (redis instanceof JedisCluster) {
+                    return ((JedisCluster) redis).get(key);
+                }
+                synchronized (redis) {
+                    return ((Jedis) redis).get(key);
+                }
+            }
+
+            @Override
+            public void write(String key, String value) {
+                Object redis = util.connect();
+                if (redis instanceof JedisCluster) {
+                    ((JedisCluster) redis).set(key, value);
+                    return;
+                }
+                synchronized (redis) {
+                    ((Jedis) redis).set(key, value);
+                }
+            }
+        };
+    }
+
+    public static ILoadDriver driver(RedissonUtil util) {
+        return new ILoadDriver() {
+            @Override
+            public Object read(String key) {
+                return util.connect().getBucket(key).get();
+            }
+
+            @Override
+            public void write(String key, String value) {
+                util.connect().getBucket(key).set(value);
+            }
+        };
+    }
+
+    /**
+     * 依次执行预写入、预热和测量，阻塞到测量结束
+     */
+    public Report run() throws InterruptedException {
+        if (profile.preload) {
+            long start = System.currentTimeMillis();
+            preload();
+            log.info("Redis \"" + name + "\" Load \"" + profile.name + "\" Preloaded " + keys.length + " Keys In "
+                    + (System.currentTimeMillis() - start) + "ms.");
+        }
+        if (profile.warmup > 0) {
+            recording = false;
+            runFor(profile.warmup);
+        }
+        reads.reset();
+        writes.reset();
+        errors.reset();
+        recording = true;
+        long start = System.nanoTime();
+        runFor(profile.duration);
+        long elapsed = System.nanoTime() - start;
+        recording = false;
+        Report report = new Report(profile, elapsed, reads, writes, errors.sum());
+        log.info("Redis \"" + name + "\" Load \"" + profile.name + "\" Finished.\n" + report);
+        return report;
+    }
+
+    private void runFor(long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + millis * 1000000;
+        int threads = Math.max(1, profile.concurrency);
+        long interval = profile.rate > 0 ? Math.max(1, threads * 1000000000L / profile.rate) : 0;
+        IntSupplier keyIndex = keyIndex();
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            // 开环模式下各线程的计划时间错开，整体按rate均匀发出
+            long offset = interval * t / threads;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long next = System.nanoTime() + offset;
+                while (true) {
+                    long begin = System.nanoTime();
+                    if (interval > 0) {
+                        if (next >= deadline) {
+                            break;
+                        }
+                        while (next > begin) {
+                            LockSupport.parkNanos(next - begin);
+                            begin = System.nanoTime();
+                        }
+                        begin = next;
+                        next += interval;
+                    } else if (begin >= deadline) {
+                        break;
+                    }
+                    execute(random.nextDouble() < profile.readRatio, keys[keyIndex.getAsInt()], begin);
+                }
+            }, "load-" + name + "-" + t);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * 多线程分段写入所有key
+     */
+    private void preload() throws InterruptedException {
+        int threads = Math.max(1, Math.min(profile.concurrency, keys.length));
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) keys.length * t / threads);
+            int to = (int) ((long) keys.length * (t + 1) / threads);
+            Thread worker = new Thread(() -> {
+                for (int i = from; i < to; i++) {
+                    execute(false, keys[i], System.nanoTime());
+                }
+            }, "load-" + name + "-" + t);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void execute(boolean read, String key, long begin) {
+        try {
+            if (read) {
+                driver.read(key);
+            } else {
+                driver.write(key, value);
+            }
+        } catch (Exception e) {
+            if (recording) {
+                errors.increment();
+            }
+            return;
+        }
+        if (recording) {
+            (read ? reads : writes).record(System.nanoTime() - begin);
+        }
+    }
+
+    private IntSupplier keyIndex() {
+        if ("zipfian".equalsIgnoreCase(profile.distribution)) {
+            Zipfian zipfian = new Zipfian(keys.length, profile.zipfianConstant);
+            return zipfian::next;
+        }
+        int n = keys.length;
+        return () -> ThreadLocalRandom.current().nextInt(n);
+    }
+
+    public LatencyHistogram reads() {
+        return reads;
+    }
+
+    public LatencyHistogram writes() {
+        return writes;
+    }
+
+    /**
+     * Gray等人的zipfian生成算法，下标0为最热的key
+     */
+    static class Zipfian {
+        private final int items;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(int items, double theta) {
+            this.items = items;
+            this.theta = theta;
+            this.zetan = zeta(items, theta);
+            double zeta2 = zeta(2, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        int next() {
+            double u = ThreadLocalRandom.current().nextDouble();
+            double uz = u * zetan;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return Math.min(1, items - 1);
+            }
+            return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    public static class Report {
+        public final LoadProfile profile;
+        public final long elapsedNanos;
+        public final long reads;
+        public final long writes;
+        public final long errors;
+        public final double throughput;
+        private final long[] readPercentiles;
+        private final long[] writePercentiles;
+        private final long readMax;
+        private final long writeMax;
+        private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+        Report(LoadProfile profile, long elapsedNanos, LatencyHistogram reads, LatencyHistogram writes, long errors) {
+            this.profile = profile;
+            this.elapsedNanos = elapsedNanos;
+            this.reads = reads.count();
+            this.writes = writes.count();
+            this.errors = errors;
+            this.throughput = (this.reads + this.writes) * 1e9 / Math.max(1, elapsedNanos);
+            this.readPercentiles = percentiles(reads);
+            this.writePercentiles = percentiles(writes);
+            this.readMax = reads.max();
+            this.writeMax = writes.max();
+        }
+
+        private static long[] percentiles(LatencyHistogram histogram) {
+            long[] res = new long[PERCENTILES.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = histogram.percentile(PERCENTILES[i]);
+            }
+            return res;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder res = new StringBuilder();
+            res.append(String.format(Locale.ROOT, "client=%s distribution=%s readRatio=%.2f valueSize=%d concurrency=%d rate=%s%n",
+                    profile.client, profile.distribution, profile.readRatio, profile.valueSize, profile.concurrency,
+                    profile.rate > 0 ? String.valueOf(profile.rate) : "closed-loop"));
+            res.append(String.format(Locale.ROOT, "throughput=%.1f ops/s reads=%d writes=%d errors=%d%n", throughput, reads, writes, errors));
+            res.append(line("read ", readPercentiles, readMax)).append(String.format("%n"));
+            res.append(line("write", writePercentiles, writeMax));
+            return res.toString();
+        }
+
+        private static String line(String label, long[] percentiles, long max) {
+            StringBuilder res = new StringBuilder(label).append(" latency(us)");
+            for (int i = 0; i < percentiles.length; i++) {
+                res.append(String.format(Locale.ROOT, " p%s=%.1f", format(PERCENTILES[i]), percentiles[i] / 1000.0));
+            }
+            return res.append(String.format(Locale.ROOT, " max=%.1f", max / 1000.0)).toString();
+        }
+
+        private static String format(double percentile) {
+            return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+        }
+    }
+}
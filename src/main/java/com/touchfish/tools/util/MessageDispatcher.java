@@ -0,0 +1,215 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IMessageHandler;
+import com.touchfish.tools.structure.PubSubMessage;
+import com.touchfish.tools.structure.PubSubProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 订阅消息分发器
+ * 订阅线程只负责入队，工作线程批量取出消息后反序列化并按处理器分组交付
+ * 队列满时订阅线程阻塞等待(背压)，超过offerTimeout后丢弃消息
+ */
+@Slf4j
+public class MessageDispatcher implements Closeable {
+    private final String name;
+    private final int batchSize;
+    private final long offerTimeout;
+    private final Function<Object, Object> decoder;
+    private final BlockingQueue<Envelope> queue;
+    private final ExecutorService workers;
+    private volatile boolean running = true;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder handlerErrors = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+
+    /**
+     * @param decoder 在工作线程中将原始消息转换为消息内容
+     */
+    public MessageDispatcher(String name, PubSubProperties properties, Function<Object, Object> decoder) {
+        this.name = name;
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.offerTimeout = Math.max(0, properties.getOfferTimeout());
+        this.decoder = decoder;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        int threads = Math.max(1, properties.getWorkerThreads());
+        AtomicInteger index = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "pubsub-" + name + "-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * 消息入队，由订阅线程调用
+     * @return 是否成功入队
+     */
+    public boolean offer(IMessageHandler handler, String channel, String pattern, Object payload) {
+        received.increment();
+        Envelope envelope = new Envelope(handler, channel, pattern, payload);
+        if (queue.offer(envelope)) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            if (running && queue.offer(envelope, offerTimeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            blockedNanos.add(System.nanoTime() - start);
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private void work() {
+        List<Envelope> drained = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Envelope first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                queue.drainTo(drained, batchSize - 1);
+                dispatch(drained);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (Exception e) {
+                log.error("PubSub \"" + name + "\" Dispatch Failed.", e);
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<Envelope> drained) {
+        Map<IMessageHandler, List<PubSubMessage>> grouped = new LinkedHashMap<>();
+        for (Envelope envelope : drained) {
+            Object body;
+            try {
+                body = decoder.apply(envelope.payload);
+            } catch (Exception e) {
+                handlerErrors.increment();
+                log.error("PubSub \"" + name + "\" Cannot Decode Message From " + envelope.channel, e);
+                continue;
+            }
+            grouped.computeIfAbsent(envelope.handler, h -> new ArrayList<>())
+                    .add(new PubSubMessage(envelope.channel, envelope.pattern, body));
+        }
+        for (Map.Entry<IMessageHandler, List<PubSubMessage>> entry : grouped.entrySet()) {
+            try {
+                entry.getKey().onMessages(entry.getValue());
+            } catch (Exception e) {
+                handlerErrors.increment();
+                log.error("PubSub \"" + name + "\" Handler Failed.", e);
+            }
+            dispatched.add(entry.getValue().size());
+            batches.increment();
+        }
+    }
+
+    /**
+     * 收到的消息数量
+     */
+    public long receivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * 已交给处理器的消息数量
+     */
+    public long dispatchedCount() {
+        return dispatched.sum();
+    }
+
+    /**
+     * 队列满且等待超时被丢弃的消息数量
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    public long handlerErrorCount() {
+        return handlerErrors.sum();
+    }
+
+    /**
+     * 订阅线程因队列满累计阻塞时间 单位 ns
+     */
+    public long blockedNanos() {
+        return blockedNanos.sum();
+    }
+
+    /**
+     * 当前队列积压
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public int queueRemaining() {
+        return queue.remainingCapacity();
+    }
+
+    /**
+     * 停止接收并处理完已入队的消息
+     */
+    @Override
+    public void close() {
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        log.info("PubSub \"" + name + "\" Dispatcher Closed. Received: " + receivedCount() + ", Dispatched: " + dispatchedCount() + ", Dropped: " + droppedCount());
+    }
+
+    private static class Envelope {
+        final IMessageHandler handler;
+        final String channel;
+        final String pattern;
+        final Object payload;
+
+        Envelope(IMessageHandler handler, String channel, String pattern, Object payload) {
+            this.handler = handler;
+            this.channel = channel;
+            this.pattern = pattern;
+            this.payload = payload;
+        }
+    }
+}
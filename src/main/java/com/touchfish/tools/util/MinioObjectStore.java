@@ -0,0 +1,83 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IObjectStore;
+import com.touchfish.tools.structure.TieredStorageProperties;
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 基于minio客户端的对象存储，兼容S3
+ */
+public class MinioObjectStore implements IObjectStore {
+    private final MinioClient client;
+    private final String bucket;
+    private final long partSize;
+
+    public MinioObjectStore(TieredStorageProperties properties) throws IOException {
+        this.client = MinioClient.builder()
+                .endpoint(properties.getEndpoint())
+                .credentials(properties.getAccessKey(), properties.getSecretKey())
+                .build();
+        this.bucket = properties.getBucket();
+        this.partSize = Math.max(5L * 1024 * 1024, properties.getPartSize());
+        try {
+            if (!client.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
+                client.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Bucket \"" + bucket + "\" Not Available.", e);
+        }
+    }
+
+    @Override
+    public void put(String name, InputStream in, long size) throws IOException {
+        try {
+            client.putObject(PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(name)
+                    .stream(in, size, size < 0 ? partSize : -1)
+                    .contentType("application/octet-stream")
+                    .build());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Put Object \"" + name + "\" Failed.", e);
+        }
+    }
+
+    @Override
+    public InputStream get(String name) throws IOException {
+        try {
+            return client.getObject(GetObjectArgs.builder().bucket(bucket).object(name).build());
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
+            }
+            throw new IOException("Get Object \"" + name + "\" Failed.", e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Get Object \"" + name + "\" Failed.", e);
+        }
+    }
+
+    @Override
+    public void remove(String name) throws IOException {
+        try {
+            client.removeObject(RemoveObjectArgs.builder().bucket(bucket).object(name).build());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Remove Object \"" + name + "\" Failed.", e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
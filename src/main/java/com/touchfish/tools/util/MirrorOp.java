@@ -0,0 +1,40 @@
+package com.touchfish.tools.util;
+
+/**
+ * 等待重放到影子连接的操作
+ */
+public class MirrorOp {
+    public enum Type {
+        SET, DEL, COMPARE
+    }
+
+    public final Type type;
+    /**
+     * String或byte[]
+     */
+    public final Object key;
+    /**
+     * SET的参数，COMPARE时为主连接上读到的值
+     */
+    public final Object[] args;
+    final long enqueuedAt = System.nanoTime();
+    /**
+     * 重放顺序所在的分段及分段内序号，COMPARE没有序号
+     */
+    int stripe = -1;
+    long sequence;
+    /**
+     * 主连接写入失败或入队时被丢弃，只用于跳过序号
+     */
+    volatile boolean skipped;
+
+    MirrorOp(Type type, Object key, Object... args) {
+        this.type = type;
+        this.key = key;
+        this.args = args;
+    }
+
+    public Object value() {
+        return args.length > 0 ? args[0] : null;
+    }
+}
@@ -0,0 +1,110 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.NegativeCacheProperties;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 空结果缓存
+ * 记录读取为null的key及其过期时间，超过容量时淘汰已过期的key，仍不足时任意淘汰
+ * 读取前取得stamp，读取期间key被失效时不记录，避免写入之前读到的null覆盖写入
+ */
+public class NegativeCache {
+    private final long ttlNanos;
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Long> tombstones = new ConcurrentHashMap<>();
+    private final KeyStamps stamps = new KeyStamps();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public NegativeCache(NegativeCacheProperties properties) {
+        this.ttlNanos = Math.max(1, properties.getTtl()) * 1000000L;
+        this.maxSize = Math.max(1, properties.getMaxSize());
+    }
+
+    /**
+     * key是否在有效期内被记录为不存在
+     */
+    public boolean isAbsent(String key) {
+        Long expire = tombstones.get(key);
+        if (expire == null) {
+            return false;
+        }
+        if (expire - System.nanoTime() <= 0) {
+            tombstones.remove(key, expire);
+            return false;
+        }
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * 读取redis前调用，作为put的参数
+     */
+    public long stamp(String key) {
+        return stamps.get(key);
+    }
+
+    /**
+     * 记录key不存在，取得stamp后key被失效过时不记录
+     */
+    public void put(String key, long stamp) {
+        if (tombstones.size() >= maxSize) {
+            evict();
+        }
+        Long expire = System.nanoTime() + ttlNanos;
+        tombstones.put(key, expire);
+        // 与invalidate并发时，两边至少有一边能看到对方
+        if (!stamps.unchanged(key, stamp)) {
+            tombstones.remove(key, expire);
+        }
+    }
+
+    /**
+     * key被写入，移除空结果记录，需要在写入redis之后调用
+     */
+    public void invalidate(String key) {
+        stamps.increment(key);
+        if (tombstones.remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public void clear() {
+        tombstones.clear();
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        int toRemove = Math.max(1, maxSize / 10);
+        Iterator<Long> iterator = tombstones.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() - now <= 0) {
+                iterator.remove();
+                toRemove--;
+            }
+        }
+        iterator = tombstones.values().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public int size() {
+        return tombstones.size();
+    }
+
+    /**
+     * 命中空结果而省去的redis读取次数
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+}
@@ -0,0 +1,88 @@
+package com.touchfish.tools.util;
+
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.util.ReflectionUtils;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.Pool;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 获取连接工厂内部的commons-pool2连接池
+ * spring-data-redis没有公开连接池对象，这里按字段名反射读取，找不到时返回空列表
+ * lettuce共享原生连接时普通命令不经过连接池，同样返回空列表
+ */
+public class PoolUtil {
+    public static List<GenericObjectPool<?>> pools(RedisConnectionFactory factory) {
+        List<GenericObjectPool<?>> res = new ArrayList<>();
+        if (factory instanceof SwappableConnectionFactory) {
+            factory = ((SwappableConnectionFactory) factory).current();
+        }
+        if (sharesNativeConnection(factory)) {
+            return res;
+        }
+        if (factory instanceof JedisConnectionFactory) {
+            Object pool = field(factory, "pool");
+            if (pool instanceof Pool) {
+                addInternalPool(res, pool);
+            }
+            Object cluster = field(factory, "cluster");
+            if (cluster instanceof JedisCluster) {
+                for (JedisPool nodePool : ((JedisCluster) cluster).getClusterNodes().values()) {
+                    addInternalPool(res, nodePool);
+                }
+            }
+        } else if (factory instanceof LettuceConnectionFactory) {
+            Object provider = field(factory, "connectionProvider");
+            Object delegate = field(provider, "delegate");
+            if (delegate != null) {
+                provider = delegate;
+            }
+            Object pools = field(provider, "pools");
+            if (pools instanceof Map) {
+                for (Object pool : ((Map<?, ?>) pools).values()) {
+                    if (pool instanceof GenericObjectPool) {
+                        res.add((GenericObjectPool<?>) pool);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 是否为共享原生连接的lettuce连接工厂，默认共享
+     */
+    public static boolean sharesNativeConnection(RedisConnectionFactory factory) {
+        if (factory instanceof SwappableConnectionFactory) {
+            factory = ((SwappableConnectionFactory) factory).current();
+        }
+        return factory instanceof LettuceConnectionFactory && ((LettuceConnectionFactory) factory).getShareNativeConnection();
+    }
+
+    private static void addInternalPool(List<GenericObjectPool<?>> res, Object pool) {
+        Object internalPool = field(pool, "internalPool");
+        if (internalPool instanceof GenericObjectPool) {
+            res.add((GenericObjectPool<?>) internalPool);
+        }
+    }
+
+    private static Object field(Object target, String name) {
+        if (target == null) {
+            return null;
+        }
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        if (field == null) {
+            return null;
+        }
+        ReflectionUtils.makeAccessible(field);
+        return ReflectionUtils.getField(field, target);
+    }
+}
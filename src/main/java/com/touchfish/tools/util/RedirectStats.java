@@ -0,0 +1,89 @@
+package com.touchfish.tools.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群重定向与拓扑刷新统计
+ * MOVED/ASK按重定向目标节点计数，目前只有Jedis集群连接可以统计到重定向
+ */
+public class RedirectStats {
+    private final ConcurrentHashMap<String, LongAdder> moved = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> ask = new ConcurrentHashMap<>();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder topologyChanges = new LongAdder();
+
+    void moved(String node) {
+        counter(moved, node).increment();
+    }
+
+    void ask(String node) {
+        counter(ask, node).increment();
+    }
+
+    void refreshed() {
+        refreshes.increment();
+    }
+
+    void topologyChanged() {
+        topologyChanges.increment();
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<String, LongAdder> counters, String node) {
+        LongAdder adder = counters.get(node);
+        return adder != null ? adder : counters.computeIfAbsent(node, k -> new LongAdder());
+    }
+
+    /**
+     * 各节点收到的MOVED重定向次数
+     */
+    public Map<String, Long> movedCounts() {
+        return snapshot(moved);
+    }
+
+    /**
+     * 各节点收到的ASK重定向次数
+     */
+    public Map<String, Long> askCounts() {
+        return snapshot(ask);
+    }
+
+    public long movedCount() {
+        return sum(moved);
+    }
+
+    public long askCount() {
+        return sum(ask);
+    }
+
+    /**
+     * 拓扑刷新次数，包括定时刷新和重定向触发的刷新
+     */
+    public long refreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * 刷新后拓扑发生变化的次数
+     */
+    public long topologyChangeCount() {
+        return topologyChanges.sum();
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentHashMap<String, LongAdder> counters) {
+        Map<String, Long> res = new TreeMap<>();
+        counters.forEach((node, adder) -> res.put(node, adder.sum()));
+        return Collections.unmodifiableMap(res);
+    }
+
+    private static long sum(ConcurrentHashMap<String, LongAdder> counters) {
+        long res = 0;
+        for (LongAdder adder : counters.values()) {
+            res += adder.sum();
+        }
+        return res;
+    }
+}
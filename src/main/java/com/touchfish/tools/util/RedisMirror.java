@@ -0,0 +1,437 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IMirrorTarget;
+import com.touchfish.tools.structure.MirrorProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 双写镜像
+ * 主连接上成功的写入进入有界队列，由后台线程按顺序批量重放到影子连接，调用方不等待影子
+ * 队列满或重试用尽时丢弃并计数，影子只保证尽力一致，可通过抽样比对确认
+ * 抽样比对排在之前的写入之后执行，并发写入同一个key时可能误报不一致
+ * 写入开始前按key所在分段分配序号，主连接写入期间不持有任何锁，后台线程按分段序号重放，
+ * 同一个key先后发生的写入即使入队顺序颠倒也按主连接上的顺序重放，失败或丢弃的写入跳过自己的序号
+ * 序号缺口等待超过drainTimeout时放弃等待，之后才到达的写入按丢弃计数
+ * 只镜像RedisUtil/JedisUtil的set/del和延迟写入的批量刷写，计数器刷写、hashMapper、分块存储、乐观事务
+ * 以及直接使用RedisTemplate/Jedis的写入都不会被镜像，迁移这些数据需要另行同步
+ */
+@Slf4j
+public class RedisMirror implements Closeable {
+    private static final int STRIPES = 1024;
+
+    private final String name;
+    private final String shadow;
+    private final MirrorProperties properties;
+    private final IMirrorTarget target;
+    private final ArrayBlockingQueue<MirrorOp> queue;
+    /**
+     * 失败或丢弃的写入，队列满时也能让后台线程跳过它们的序号
+     */
+    private final ConcurrentLinkedQueue<MirrorOp> skipped = new ConcurrentLinkedQueue<>();
+    private final AtomicLongArray sequences = new AtomicLongArray(STRIPES);
+    /**
+     * 以下两项只由后台线程访问：每个分段下一个可重放的序号，以及在它之后提前到达的写入
+     */
+    private final long[] expected = new long[STRIPES];
+    private final Map<Integer, TreeMap<Long, MirrorOp>> held = new HashMap<>();
+    private final int batchSize;
+    private final Thread worker;
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder compared = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+    private final AtomicLong maxLag = new AtomicLong();
+    private volatile int heldCount;
+    private volatile long lastLag;
+    private volatile boolean running = true;
+    private volatile boolean healthy = true;
+    private volatile Object lastMismatch;
+
+    public RedisMirror(String name, String shadow, MirrorProperties properties, IMirrorTarget target) {
+        this.name = name;
+        this.shadow = shadow;
+        this.properties = properties;
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.queueCapacity));
+        this.batchSize = Math.max(1, properties.batchSize);
+        this.worker = new Thread(Bulkhead.internal(this::drain), "redis-mirror-" + name + "-" + shadow);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 主连接写入已经完成后入队，序号在此时分配
+     */
+    public void set(Object key, Object... args) {
+        offer(ticket(new MirrorOp(MirrorOp.Type.SET, key, args)));
+    }
+
+    public void del(Object key) {
+        offer(ticket(new MirrorOp(MirrorOp.Type.DEL, key)));
+    }
+
+    /**
+     * 分配序号后执行主连接写入，成功后入队
+     * @param primary 主连接上的写入，抛出异常时不入队
+     * @return primary的返回值
+     */
+    public <T> T set(Object key, Callable<T> primary, Object... args) throws Exception {
+        return write(Collections.singletonList(ticket(new MirrorOp(MirrorOp.Type.SET, key, args))), primary);
+    }
+
+    public <T> T del(Object key, Callable<T> primary) throws Exception {
+        return write(Collections.singletonList(ticket(new MirrorOp(MirrorOp.Type.DEL, key))), primary);
+    }
+
+    /**
+     * 批量写入，先重放sets再重放deletes
+     * @param primary 主连接上的批量写入，抛出异常时整批不入队
+     */
+    public void batch(Map<?, ?> sets, Collection<?> deletes, Callable<?> primary) throws Exception {
+        List<MirrorOp> ops = new ArrayList<>(sets.size() + deletes.size());
+        sets.forEach((key, value) -> ops.add(ticket(new MirrorOp(MirrorOp.Type.SET, key, value))));
+        deletes.forEach(key -> ops.add(ticket(new MirrorOp(MirrorOp.Type.DEL, key))));
+        write(ops, primary);
+    }
+
+    private <T> T write(List<MirrorOp> ops, Callable<T> primary) throws Exception {
+        T res;
+        try {
+            res = primary.call();
+        } catch (Throwable e) {
+            ops.forEach(this::skip);
+            throw e;
+        }
+        ops.forEach(this::offer);
+        return res;
+    }
+
+    /**
+     * String key按UTF-8编码与相同内容的byte[] key使用同一分段
+     */
+    private MirrorOp ticket(MirrorOp op) {
+        byte[] raw = op.key instanceof byte[] ? (byte[]) op.key : String.valueOf(op.key).getBytes(StandardCharsets.UTF_8);
+        op.stripe = (Arrays.hashCode(raw) & Integer.MAX_VALUE) % STRIPES;
+        op.sequence = sequences.getAndIncrement(op.stripe);
+        return op;
+    }
+
+    private void skip(MirrorOp op) {
+        op.skipped = true;
+        skipped.offer(op);
+    }
+
+    /**
+     * 按compareSampleRate抽样，在影子上读取同一个key并与主连接上读到的值比较
+     * 值需要实现equals，byte[]按内容比较
+     * @param value 主连接上读到的值
+     */
+    public void sample(Object key, Object value) {
+        if (properties.compareSampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= properties.compareSampleRate) {
+            return;
+        }
+        // 比对只是抽样，队列满时直接放弃，不计入丢弃的写入
+        if (running) {
+            queue.offer(new MirrorOp(MirrorOp.Type.COMPARE, key, value));
+        }
+    }
+
+    private void offer(MirrorOp op) {
+        if (running && queue.offer(op)) {
+            enqueued.increment();
+        } else {
+            dropped.increment();
+            skip(op);
+        }
+    }
+
+    private void drain() {
+        List<MirrorOp> batch = new ArrayList<>(batchSize);
+        List<MirrorOp> ready = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty() || !skipped.isEmpty()) {
+                try {
+                    MirrorOp first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, batchSize - 1);
+                    }
+                    MirrorOp skip;
+                    while ((skip = skipped.poll()) != null) {
+                        resolve(skip, ready);
+                    }
+                    for (MirrorOp op : batch) {
+                        if (op.type == MirrorOp.Type.COMPARE) {
+                            ready.add(op);
+                        } else {
+                            resolve(op, ready);
+                        }
+                    }
+                    expireGaps(ready);
+                    replayInOrder(ready);
+                } finally {
+                    batch.clear();
+                    ready.clear();
+                }
+            }
+            // 关闭后不会再有写入填补缺口，按序号重放剩余的写入
+            for (TreeMap<Long, MirrorOp> waiting : held.values()) {
+                for (MirrorOp op : waiting.values()) {
+                    if (!op.skipped) {
+                        ready.add(op);
+                    }
+                }
+            }
+            held.clear();
+            heldCount = 0;
+            replayInOrder(ready);
+        } catch (InterruptedException e) {
+            dropped.add(queue.size() + ready.size() + heldCount);
+            queue.clear();
+            held.clear();
+            heldCount = 0;
+        }
+    }
+
+    /**
+     * 轮到该序号时放入ready并释放之后连续的写入，否则暂存
+     */
+    private void resolve(MirrorOp op, List<MirrorOp> ready) {
+        int stripe = op.stripe;
+        if (op.sequence < expected[stripe]) {
+            // 缺口已放弃等待，重放过晚的写入会覆盖之后的值
+            if (!op.skipped) {
+                dropped.increment();
+            }
+            return;
+        }
+        if (op.sequence > expected[stripe]) {
+            held.computeIfAbsent(stripe, k -> new TreeMap<>()).put(op.sequence, op);
+            heldCount++;
+            return;
+        }
+        if (!op.skipped) {
+            ready.add(op);
+        }
+        expected[stripe]++;
+        release(stripe, held.get(stripe), ready);
+    }
+
+    private void release(int stripe, TreeMap<Long, MirrorOp> waiting, List<MirrorOp> ready) {
+        while (waiting != null && !waiting.isEmpty() && waiting.firstKey() == expected[stripe]) {
+            MirrorOp next = waiting.pollFirstEntry().getValue();
+            heldCount--;
+            if (!next.skipped) {
+                ready.add(next);
+            }
+            expected[stripe]++;
+        }
+        if (waiting != null && waiting.isEmpty()) {
+            held.remove(stripe);
+        }
+    }
+
+    private void expireGaps(List<MirrorOp> ready) {
+        if (held.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.drainTimeout));
+        List<Integer> expired = new ArrayList<>();
+        for (Map.Entry<Integer, TreeMap<Long, MirrorOp>> entry : held.entrySet()) {
+            if (entry.getValue().firstEntry().getValue().enqueuedAt - deadline < 0) {
+                expired.add(entry.getKey());
+            }
+        }
+        for (Integer stripe : expired) {
+            TreeMap<Long, MirrorOp> waiting = held.get(stripe);
+            expected[stripe] = waiting.firstKey();
+            release(stripe, waiting, ready);
+        }
+    }
+
+    /**
+     * 比对之前的写入先重放
+     */
+    private void replayInOrder(List<MirrorOp> ready) throws InterruptedException {
+        List<MirrorOp> writes = new ArrayList<>(ready.size());
+        for (MirrorOp op : ready) {
+            if (op.type != MirrorOp.Type.COMPARE) {
+                writes.add(op);
+                continue;
+            }
+            replay(writes);
+            writes.clear();
+            compare(op);
+        }
+        replay(writes);
+    }
+
+    private void replay(List<MirrorOp> ops) throws InterruptedException {
+        if (ops.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                target.replay(ops);
+                break;
+            } catch (Exception e) {
+                if (attempt >= properties.maxRetries || !running) {
+                    failed.add(ops.size());
+                    if (healthy) {
+                        healthy = false;
+                        log.error("Redis \"" + name + "\" Mirror To \"" + shadow + "\" Replay Failed, Dropping " + ops.size() + " Writes.", e);
+                    }
+                    return;
+                }
+                Thread.sleep(Math.max(0, properties.retryBackoff));
+            }
+        }
+        if (!healthy) {
+            healthy = true;
+            log.info("Redis \"" + name + "\" Mirror To \"" + shadow + "\" Recovered.");
+        }
+        replayed.add(ops.size());
+        batches.increment();
+        long lag = System.nanoTime() - ops.get(0).enqueuedAt;
+        lastLag = lag;
+        long current;
+        while (lag > (current = maxLag.get()) && !maxLag.compareAndSet(current, lag)) {
+        }
+    }
+
+    private void compare(MirrorOp op) {
+        Object actual;
+        try {
+            actual = target.read(op.key);
+        } catch (Exception e) {
+            return;
+        }
+        compared.increment();
+        if (!Objects.deepEquals(op.value(), actual)) {
+            mismatched.increment();
+            lastMismatch = op.key;
+        }
+    }
+
+    /**
+     * 进入队列的写入数
+     */
+    public long enqueuedCount() {
+        return enqueued.sum();
+    }
+
+    /**
+     * 已重放到影子的写入数
+     */
+    public long replayedCount() {
+        return replayed.sum();
+    }
+
+    /**
+     * 队列满或关闭后丢弃的写入数
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 重试用尽后丢弃的写入数
+     */
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    public long comparedCount() {
+        return compared.sum();
+    }
+
+    public long mismatchCount() {
+        return mismatched.sum();
+    }
+
+    /**
+     * 最近一次比对不一致的key，没有时返回null
+     */
+    public Object lastMismatch() {
+        return lastMismatch;
+    }
+
+    public double mismatchRate() {
+        long n = compared.sum();
+        return n == 0 ? 0 : (double) mismatched.sum() / n;
+    }
+
+    /**
+     * 队列中以及等待前序写入的写入数
+     */
+    public int pendingCount() {
+        return queue.size() + heldCount;
+    }
+
+    /**
+     * 队列中最早的写入已等待的时间 单位 ms
+     */
+    public double pendingLagMillis() {
+        MirrorOp head = queue.peek();
+        return head == null ? 0 : (System.nanoTime() - head.enqueuedAt) / 1e6;
+    }
+
+    /**
+     * 最近一批写入从进入队列到重放完成的时间 单位 ms
+     */
+    public double lagMillis() {
+        return lastLag / 1e6;
+    }
+
+    public double maxLagMillis() {
+        return maxLag.get() / 1e6;
+    }
+
+    public String shadow() {
+        return shadow;
+    }
+
+    /**
+     * 停止接收写入，在drainTimeout内重放剩余队列，超时后丢弃
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join(Math.max(1, properties.drainTimeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            worker.interrupt();
+            log.warn("Redis \"" + name + "\" Mirror To \"" + shadow + "\" Closed With " + queue.size() + " Pending Writes.");
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.PrewarmProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 本地缓存预热
+ * 从有序集合、文件或SCAN得到热点key清单，分批并行读取后写入磁盘缓存，不存在的key写入空结果缓存
+ * 支持pipeline时每批的GET和PTTL在一次往返中完成，否则按槽位分组MGET，此时过期时间未知，值最多保留revalidateAfter
+ * 有序集合由采样的读取维护，定时累加读取次数并只保留maxKeys个最热的key
+ */
+@Slf4j
+public class RedisPrewarm implements Closeable {
+    private final String name;
+    private final PrewarmProperties properties;
+    private final String manifestKey;
+    private final Supplier<RedisTemplate> template;
+    private final BooleanSupplier pipelineSupported;
+    private final ConcurrentHashMap<String, LongAdder> tracked = new ConcurrentHashMap<>();
+    private final LongAdder flushes = new LongAdder();
+    private final Object lifecycle = new Object();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean done = false;
+    private volatile boolean timedOut = false;
+    private volatile long elapsedMillis;
+    private volatile int manifestSize;
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder missing = new LongAdder();
+
+    public RedisPrewarm(String name, PrewarmProperties properties, Supplier<RedisTemplate> template, BooleanSupplier pipelineSupported) {
+        this.name = name;
+        this.properties = properties;
+        this.manifestKey = properties.manifestKey != null && !properties.manifestKey.isEmpty()
+                ? properties.manifestKey : "prewarm:hotkeys:" + name;
+        this.template = template;
+        this.pipelineSupported = pipelineSupported;
+    }
+
+    /**
+     * 读取清单中的key写入本地缓存，阻塞到完成或超出时间预算，超时时仍在读取的批次结果丢弃
+     * @param diskCache 为null时只记录空结果
+     * @param negativeCache 为null时不记录空结果
+     * @param scanner source为scan时使用，参数为匹配模式和接收key的回调
+     */
+    public void run(DiskCache diskCache, NegativeCache negativeCache, BiConsumer<String, Consumer<byte[]>> scanner) {
+        long start = System.currentTimeMillis();
+        long deadline = start + Math.max(0, properties.timeBudget);
+        loaded.reset();
+        skipped.reset();
+        missing.reset();
+        timedOut = false;
+        Cancellation cancellation = new Cancellation();
+        ExecutorService executor = null;
+        try {
+            List<String> keys = manifest(scanner);
+            manifestSize = keys.size();
+            List<String> pending = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                if (diskCache != null && diskCache.isFresh(key)) {
+                    skipped.increment();
+                } else {
+                    pending.add(key);
+                }
+            }
+            List<List<String>> batches = batches(pending);
+            AtomicInteger index = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Math.max(1, properties.threads), r -> {
+                Thread thread = new Thread(Bulkhead.internal(r), "redis-prewarm-" + name + "-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            boolean pipeline = pipelineSupported.getAsBoolean();
+            for (List<String> batch : batches) {
+                executor.execute(() -> {
+                    if (System.currentTimeMillis() >= deadline) {
+                        timedOut = true;
+                        return;
+                    }
+                    try {
+                        fetch(batch, pipeline, diskCache, negativeCache, cancellation);
+                    } catch (Exception e) {
+                        if (!cancellation.isCancelled()) {
+                            log.warn("Redis \"" + name + "\" Prewarm Batch Failed.", e);
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                timedOut = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Redis \"" + name + "\" Prewarm Failed.", e);
+        } finally {
+            // 超时后仍在读取的批次不再写入本地缓存，返回之后本地缓存只会被正常读写修改
+            cancellation.cancel();
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            elapsedMillis = System.currentTimeMillis() - start;
+            done = true;
+        }
+        log.info("Redis \"" + name + "\" Prewarm " + (timedOut ? "Timed Out" : "Finished") + " In " + elapsedMillis + "ms. Manifest: "
+                + manifestSize + ", Loaded: " + loaded.sum() + ", Fresh: " + skipped.sum() + ", Missing: " + missing.sum());
+    }
+
+    private List<String> manifest(BiConsumer<String, Consumer<byte[]>> scanner) throws IOException {
+        int max = Math.max(0, properties.maxKeys);
+        switch (properties.source.toLowerCase(Locale.ROOT)) {
+            case "file":
+                return readManifest(new File(properties.file), max);
+            case "scan": {
+                RedisSerializer keySerializer = template.get().getKeySerializer();
+                Set<String> keys = new LinkedHashSet<>();
+                try {
+                    scanner.accept(properties.pattern, raw -> {
+                        keys.add(keySerializer != null ? String.valueOf(keySerializer.deserialize(raw)) : new String(raw, StandardCharsets.UTF_8));
+                        if (keys.size() >= max) {
+                            throw Stop.INSTANCE;
+                        }
+                    });
+                } catch (Stop ignored) {
+                }
+                return new ArrayList<>(keys);
+            }
+            default: {
+                if (max == 0) {
+                    return Collections.emptyList();
+                }
+                Set<Object> keys = template.get().opsForZSet().reverseRange(manifestKey, 0, max - 1);
+                List<String> res = new ArrayList<>();
+                if (keys != null) {
+                    for (Object key : keys) {
+                        res.add(String.valueOf(key));
+                    }
+                }
+                return res;
+            }
+        }
+    }
+
+    /**
+     * 读取清单文件，每行一个key，忽略空行和#开头的行
+     */
+    public static List<String> readManifest(File file, int maxKeys) throws IOException {
+        List<String> res = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while (res.size() < maxKeys && (line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    res.add(line);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 将有序集合中的热点key按热度写入清单文件，可用于source为file的实例
+     */
+    public int exportManifest(File file) throws IOException {
+        Set<Object> keys = template.get().opsForZSet().reverseRange(manifestKey, 0, Math.max(0, properties.maxKeys) - 1);
+        File temp = new File(file.getPath() + ".tmp");
+        int count = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            if (keys != null) {
+                for (Object key : keys) {
+                    writer.write(String.valueOf(key));
+                    writer.newLine();
+                    count++;
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * 不支持pipeline时同一批次只包含同一槽位的key，MGET不会跨节点
+     */
+    private List<List<String>> batches(List<String> keys) {
+        int size = Math.max(1, properties.batchSize);
+        List<List<String>> res = new ArrayList<>();
+        if (pipelineSupported.getAsBoolean()) {
+            for (int i = 0; i < keys.size(); i += size) {
+                res.add(keys.subList(i, Math.min(keys.size(), i + size)));
+            }
+            return res;
+        }
+        RedisSerializer keySerializer = template.get().getKeySerializer();
+        Map<Integer, List<String>> slots = new LinkedHashMap<>();
+        for (String key : keys) {
+            int slot = JedisClusterCRC16.getSlot(rawKey(keySerializer, key));
+            List<String> batch = slots.computeIfAbsent(slot, k -> new ArrayList<>());
+            batch.add(key);
+            if (batch.size() >= size) {
+                res.add(batch);
+                slots.remove(slot);
+            }
+        }
+        res.addAll(slots.values());
+        return res;
+    }
+
+    private void fetch(List<String> keys, boolean pipeline, DiskCache diskCache, NegativeCache negativeCache, Cancellation cancellation) {
+        RedisTemplate current = template.get();
+        RedisSerializer keySerializer = current.getKeySerializer();
+        byte[][] rawKeys = new byte[keys.size()][];
+        long[] negativeStamps = new long[rawKeys.length];
+        long[] diskStamps = new long[rawKeys.length];
+        for (int i = 0; i < rawKeys.length; i++) {
+            rawKeys[i] = rawKey(keySerializer, keys.get(i));
+            if (negativeCache != null) {
+                negativeStamps[i] = negativeCache.stamp(keys.get(i));
+            }
+            if (diskCache != null) {
+                diskStamps[i] = diskCache.stamp(keys.get(i));
+            }
+        }
+        byte[][] values = new byte[rawKeys.length][];
+        Long[] ttls = new Long[rawKeys.length];
+        if (pipeline) {
+            List<Object> res = current.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[] rawKey : rawKeys) {
+                    connection.get(rawKey);
+                    connection.pTtl(rawKey);
+                }
+                return null;
+            }, null);
+            for (int i = 0; i < rawKeys.length; i++) {
+                values[i] = (byte[]) res.get(2 * i);
+                ttls[i] = (Long) res.get(2 * i + 1);
+            }
+        } else {
+            List<byte[]> res = (List<byte[]>) current.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(rawKeys));
+            for (int i = 0; i < rawKeys.length; i++) {
+                values[i] = res.get(i);
+            }
+        }
+        for (int i = 0; i < rawKeys.length; i++) {
+            if (!cancellation.enter()) {
+                return;
+            }
+            try {
+                if (values[i] == null) {
+                    missing.increment();
+                    if (negativeCache != null) {
+                        negativeCache.put(keys.get(i), negativeStamps[i]);
+                    }
+                } else {
+                    loaded.increment();
+                    if (diskCache != null) {
+                        diskCache.warm(keys.get(i), values[i], ttls[i], diskStamps[i]);
+                    }
+                }
+            } finally {
+                cancellation.exit();
+            }
+        }
+    }
+
+    private static byte[] rawKey(RedisSerializer keySerializer, String key) {
+        return keySerializer != null ? keySerializer.serialize(key) : key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按sampleRate采样一次读取，计数定时累加到有序集合
+     */
+    public void record(String key) {
+        if (!properties.track || ThreadLocalRandom.current().nextDouble() >= properties.sampleRate) {
+            return;
+        }
+        ensureStarted();
+        LongAdder adder = tracked.get(key);
+        if (adder == null) {
+            if (tracked.size() >= properties.maxTracked) {
+                return;
+            }
+            adder = tracked.computeIfAbsent(key, k -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    private void ensureStarted() {
+        if (scheduler != null) {
+            return;
+        }
+        synchronized (lifecycle) {
+            if (scheduler == null) {
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(Bulkhead.internal(r), "redis-prewarm-track-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                long interval = Math.max(1, properties.flushInterval);
+                executor.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+                scheduler = executor;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Redis \"" + name + "\" Prewarm Manifest Flush Failed.", e);
+        }
+    }
+
+    /**
+     * 将采样计数累加到有序集合并裁剪到maxKeys个
+     */
+    public void flush() {
+        if (tracked.isEmpty()) {
+            return;
+        }
+        Map<String, Long> counts = new HashMap<>();
+        for (String key : new ArrayList<>(tracked.keySet())) {
+            LongAdder adder = tracked.remove(key);
+            if (adder != null) {
+                counts.put(key, adder.sum());
+            }
+        }
+        RedisTemplate current = template.get();
+        RedisSerializer keySerializer = current.getKeySerializer();
+        RedisSerializer valueSerializer = current.getValueSerializer();
+        byte[] rawManifest = rawKey(keySerializer, manifestKey);
+        RedisCallback<Object> callback = connection -> {
+            for (Map.Entry<String, Long> e : counts.entrySet()) {
+                connection.zIncrBy(rawManifest, e.getValue(), member(valueSerializer, e.getKey()));
+            }
+            connection.zRemRange(rawManifest, 0, -Math.max(1, properties.maxKeys) - 1);
+            return null;
+        };
+        if (pipelineSupported.getAsBoolean()) {
+            current.executePipelined(callback, null);
+        } else {
+            current.execute(callback);
+        }
+        flushes.increment();
+    }
+
+    private static byte[] member(RedisSerializer serializer, String key) {
+        return serializer != null ? serializer.serialize(key) : key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * 是否因超出时间预算放弃了部分批次
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * 预热耗时 单位 ms
+     */
+    public long elapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public int manifestSize() {
+        return manifestSize;
+    }
+
+    public long loadedCount() {
+        return loaded.sum();
+    }
+
+    /**
+     * 本地已有新鲜值而跳过的key数
+     */
+    public long skippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * redis中已不存在的key数
+     */
+    public long missingCount() {
+        return missing.sum();
+    }
+
+    public long flushCount() {
+        return flushes.sum();
+    }
+
+    public String manifestKey() {
+        return manifestKey;
+    }
+
+    /**
+     * 停止采样并写入剩余计数
+     */
+    @Override
+    public void close() {
+        synchronized (lifecycle) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        flushQuietly();
+    }
+
+    /**
+     * 一次预热的取消标记
+     * 写入本地缓存时持有读锁，取消时获取写锁，cancel返回后不会再有批次写入
+     */
+    private static class Cancellation {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile boolean cancelled = false;
+
+        boolean enter() {
+            lock.readLock().lock();
+            if (cancelled) {
+                lock.readLock().unlock();
+                return false;
+            }
+            return true;
+        }
+
+        void exit() {
+            lock.readLock().unlock();
+        }
+
+        void cancel() {
+            lock.writeLock().lock();
+            try {
+                cancelled = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 扫描到足够的key时结束SCAN
+     */
+    private static class Stop extends RuntimeException {
+        static final Stop INSTANCE = new Stop();
+
+        Stop() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IMessageHandler;
+import com.touchfish.tools.structure.PubSubProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisTemplate发布订阅
+ * 所有频道和模式订阅复用同一个订阅连接，订阅线程只负责入队，由MessageDispatcher批量交付
+ * 创建时先订阅一个私有频道并等待订阅生效，之后添加的订阅直接加在已建立的订阅连接上
+ * 连接工厂切换后通过resubscribe在新连接上恢复所有订阅
+ */
+@Slf4j
+public class RedisPubSub implements Closeable {
+    /**
+     * 订阅连接建立前添加的订阅可能被容器忽略，用私有频道确认订阅连接已建立
+     */
+    private static final long READY_TIMEOUT = 5000;
+    private final String name;
+    private final RedisTemplate template;
+    private final boolean pipelineSupported;
+    private final RedisSerializer<String> channelSerializer;
+    private final RedisSerializer valueSerializer;
+    private final RedisMessageListenerContainer container;
+    private final MessageDispatcher dispatcher;
+    private final Map<IMessageHandler, MessageListener> listeners = new ConcurrentHashMap<>();
+    /**
+     * 私有频道一直保持订阅，Jedis在订阅数降为0时会结束订阅连接
+     */
+    private final String readyChannel;
+    private volatile CountDownLatch ready;
+
+    public RedisPubSub(String name, RedisTemplate template, boolean pipelineSupported, PubSubProperties properties) {
+        this.name = name;
+        this.template = template;
+        this.pipelineSupported = pipelineSupported;
+        this.channelSerializer = template.getStringSerializer();
+        this.valueSerializer = template.getValueSerializer();
+        this.dispatcher = new MessageDispatcher(name, properties, payload -> valueSerializer.deserialize((byte[]) payload));
+        this.container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(template.getConnectionFactory());
+        // 在订阅线程中直接入队，避免每条消息创建线程
+        container.setTaskExecutor(new SyncTaskExecutor());
+        // 订阅本身必须在独立线程中执行，Jedis的SUBSCRIBE会一直阻塞到取消订阅
+        SimpleAsyncTaskExecutor subscriptionExecutor = new SimpleAsyncTaskExecutor("redis-pubsub-" + name + "-");
+        subscriptionExecutor.setDaemon(true);
+        container.setSubscriptionExecutor(subscriptionExecutor);
+        container.afterPropertiesSet();
+        this.readyChannel = "__pubsub:" + name + ":" + UUID.randomUUID();
+        container.addMessageListener((message, pattern) -> {
+            CountDownLatch latch = ready;
+            if (latch != null) {
+                latch.countDown();
+            }
+        }, new ChannelTopic(readyChannel));
+        container.start();
+        awaitSubscription();
+        log.info("Redis \"" + name + "\" PubSub Started.");
+    }
+
+    private void awaitSubscription() {
+        CountDownLatch ready = new CountDownLatch(1);
+        this.ready = ready;
+        byte[] rawChannel = channelSerializer.serialize(readyChannel);
+        long deadline = System.currentTimeMillis() + READY_TIMEOUT;
+        try {
+            do {
+                template.execute((RedisCallback<Long>) connection -> connection.publish(rawChannel, new byte[0]));
+            } while (!ready.await(20, TimeUnit.MILLISECONDS) && System.currentTimeMillis() < deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Redis \"" + name + "\" PubSub Subscription Check Failed.", e);
+        }
+        if (ready.getCount() > 0) {
+            log.warn("Redis \"" + name + "\" PubSub Subscription Not Confirmed In " + READY_TIMEOUT + "ms.");
+        }
+    }
+
+    /**
+     * 关闭当前订阅连接并从连接工厂重新建立，已添加的订阅在新连接上恢复
+     * 连接工厂切换后调用，切换期间发布的消息可能丢失
+     */
+    public void resubscribe() {
+        container.stop();
+        container.start();
+        awaitSubscription();
+        log.info("Redis \"" + name + "\" PubSub Resubscribed.");
+    }
+
+    /**
+     * 订阅频道
+     */
+    public void subscribe(IMessageHandler handler, String... channels) {
+        List<Topic> topics = new ArrayList<>();
+        for (String channel : channels) {
+            topics.add(new ChannelTopic(channel));
+        }
+        container.addMessageListener(listener(handler), topics);
+    }
+
+    /**
+     * 按模式订阅频道
+     */
+    public void psubscribe(IMessageHandler handler, String... patterns) {
+        List<Topic> topics = new ArrayList<>();
+        for (String pattern : patterns) {
+            topics.add(new PatternTopic(pattern));
+        }
+        container.addMessageListener(listener(handler), topics);
+    }
+
+    /**
+     * 取消处理器的所有订阅
+     */
+    public void unsubscribe(IMessageHandler handler) {
+        MessageListener listener = listeners.remove(handler);
+        if (listener != null) {
+            container.removeMessageListener(listener);
+        }
+    }
+
+    /**
+     * 在订阅线程中直接处理的原始监听器，用于keyspace通知等无需反序列化的轻量处理
+     */
+    public void addListener(MessageListener listener, Topic... topics) {
+        container.addMessageListener(listener, Arrays.asList(topics));
+    }
+
+    public void removeListener(MessageListener listener) {
+        container.removeMessageListener(listener);
+    }
+
+    private MessageListener listener(IMessageHandler handler) {
+        return listeners.computeIfAbsent(handler, h -> (message, pattern) -> dispatcher.offer(h,
+                channelSerializer.deserialize(message.getChannel()),
+                pattern == null ? null : channelSerializer.deserialize(pattern),
+                message.getBody()));
+    }
+
+    /**
+     * 发布消息
+     * @return 收到消息的订阅者数量
+     */
+    public Long publish(String channel, Object message) {
+        byte[] rawChannel = channelSerializer.serialize(channel);
+        byte[] rawMessage = valueSerializer.serialize(message);
+        return (Long) template.execute((RedisCallback<Long>) connection -> connection.publish(rawChannel, rawMessage));
+    }
+
+    /**
+     * 通过pipeline批量发布消息，不支持pipeline的连接(Jedis集群)逐条发布
+     */
+    public void publish(String channel, Collection<?> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        byte[] rawChannel = channelSerializer.serialize(channel);
+        List<byte[]> rawMessages = new ArrayList<>(messages.size());
+        for (Object message : messages) {
+            rawMessages.add(valueSerializer.serialize(message));
+        }
+        if (pipelineSupported) {
+            template.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[] rawMessage : rawMessages) {
+                    connection.publish(rawChannel, rawMessage);
+                }
+                return null;
+            });
+        } else {
+            template.execute((RedisCallback<Object>) connection -> {
+                for (byte[] rawMessage : rawMessages) {
+                    connection.publish(rawChannel, rawMessage);
+                }
+                return null;
+            });
+        }
+    }
+
+    public MessageDispatcher dispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public void close() {
+        try {
+            container.stop();
+            container.destroy();
+        } catch (Exception e) {
+            log.error("Redis \"" + name + "\" PubSub Container Destroy Failed.", e);
+        }
+        dispatcher.close();
+        listeners.clear();
+    }
+}
@@ -0,0 +1,184 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.ITransactionHandler;
+import com.touchfish.tools.structure.TransactionProperties;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * WATCH/MULTI/EXEC乐观事务
+ * 每次尝试在一个SessionCallback中完成，只在尝试期间占用一个连接，重试前的等待不占用连接
+ * 排队的命令在EXEC前一次写出：Jedis的Transaction本身缓冲到EXEC，Lettuce在排队期间关闭自动flush
+ * 集群模式下Spring不支持MULTI，会抛出InvalidDataAccessApiUsageException
+ * Spring会丢弃SET、HMSET等状态回复，只排队这类命令时成功的EXEC结果也为空，因此在末尾追加一条TIME作为标记，
+ * 标记的结果存在说明事务已提交，返回前去掉
+ */
+public class RedisTransaction {
+    private static final Object ABORTED = new Object();
+
+    private final String name;
+    private final TransactionProperties properties;
+    private final Supplier<RedisTemplate> template;
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+
+    public RedisTransaction(String name, TransactionProperties properties, Supplier<RedisTemplate> template) {
+        this.name = name;
+        this.properties = properties;
+        this.template = template;
+    }
+
+    /**
+     * 执行事务，WATCH的key被修改时按配置退避重试
+     * @param handler 读取当前值并排队写操作
+     * @param keys WATCH的key
+     * @return EXEC的结果，handler没有排队命令时返回空列表
+     * @throws OptimisticLockingFailureException 重试次数用尽
+     */
+    public List<Object> execute(ITransactionHandler handler, Object... keys) {
+        List<Object> watched = Arrays.asList(keys);
+        for (int attempt = 0; ; attempt++) {
+            attempts.increment();
+            Object res = template.get().execute(new SessionCallback<Object>() {
+                @Override
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    return attempt(operations, handler, watched);
+                }
+            });
+            if (res == ABORTED) {
+                aborted.increment();
+                return Collections.emptyList();
+            }
+            List<Object> results = (List<Object>) res;
+            // 冲突时Jedis返回null，Lettuce返回空列表，成功时至少有TIME标记的结果
+            if (results != null && !results.isEmpty()) {
+                commits.increment();
+                return new ArrayList<>(results.subList(0, results.size() - 1));
+            }
+            conflicts.increment();
+            if (attempt >= properties.maxRetries) {
+                exhausted.increment();
+                throw new OptimisticLockingFailureException("Redis \"" + name + "\" Transaction On " + watched
+                        + " Conflicted " + (attempt + 1) + " Times.");
+            }
+            retries.increment();
+            backoff(attempt);
+        }
+    }
+
+    private Object attempt(RedisOperations operations, ITransactionHandler handler, List<Object> keys) {
+        if (!keys.isEmpty()) {
+            operations.watch(keys);
+        }
+        TransactionQueue queue = new TransactionQueue();
+        try {
+            handler.prepare(operations, queue);
+        } catch (RuntimeException e) {
+            operations.unwatch();
+            throw e;
+        } catch (Exception e) {
+            operations.unwatch();
+            throw new IllegalStateException(e);
+        }
+        if (queue.isEmpty()) {
+            operations.unwatch();
+            return ABORTED;
+        }
+        operations.multi();
+        StatefulConnection<?, ?> lettuce = (StatefulConnection<?, ?>) operations.execute((RedisCallback<StatefulConnection<?, ?>>) connection -> {
+            Object nativeConnection = connection.getNativeConnection();
+            return nativeConnection instanceof RedisAsyncCommands ? ((RedisAsyncCommands<?, ?>) nativeConnection).getStatefulConnection() : null;
+        });
+        if (lettuce != null) {
+            lettuce.setAutoFlushCommands(false);
+        }
+        try {
+            queue.apply(operations);
+            operations.execute((RedisCallback<Object>) RedisConnection::time);
+        } finally {
+            if (lettuce != null) {
+                lettuce.flushCommands();
+                lettuce.setAutoFlushCommands(true);
+            }
+        }
+        return operations.exec();
+    }
+
+    private void backoff(int attempt) {
+        long max = Math.min(properties.maxBackoff, properties.backoff << Math.min(attempt, 20));
+        if (max <= 0) {
+            return;
+        }
+        // 随机抖动，避免冲突的客户端同时重试
+        long sleep = max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Redis \"" + name + "\" Transaction Interrupted.", e);
+        }
+    }
+
+    /**
+     * EXEC尝试次数，包含冲突的尝试
+     */
+    public long attemptCount() {
+        return attempts.sum();
+    }
+
+    public long commitCount() {
+        return commits.sum();
+    }
+
+    /**
+     * WATCH的key被修改导致EXEC失败的次数
+     */
+    public long conflictCount() {
+        return conflicts.sum();
+    }
+
+    public long retryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * 重试次数用尽的事务数
+     */
+    public long exhaustedCount() {
+        return exhausted.sum();
+    }
+
+    /**
+     * handler没有排队命令而放弃的事务数
+     */
+    public long abortedCount() {
+        return aborted.sum();
+    }
+
+    /**
+     * 冲突次数占尝试次数的比例
+     */
+    public double conflictRate() {
+        long n = attempts.sum();
+        return n == 0 ? 0 : (double) conflicts.sum() / n;
+    }
+}
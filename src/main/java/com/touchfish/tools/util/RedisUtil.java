@@ -1,34 +1,70 @@
 package com.touchfish.tools.util;
 
 import com.touchfish.tools.config.ExtraRedisConfig;
+import com.touchfish.tools.interf.IMirrorTarget;
 import com.touchfish.tools.interf.IRedisConnection;
+import com.touchfish.tools.structure.AdaptivePoolProperties;
+import com.touchfish.tools.structure.BloomFilterProperties;
+import com.touchfish.tools.structure.BulkheadProperties;
+import com.touchfish.tools.structure.ChunkedProperties;
+import com.touchfish.tools.structure.TransactionProperties;
+import com.touchfish.tools.interf.IStreamHandler;
+import com.touchfish.tools.structure.CompressionProperties;
+import com.touchfish.tools.structure.CounterProperties;
+import com.touchfish.tools.structure.DiskCacheProperties;
 import com.touchfish.tools.structure.ExtraRedisProperties;
+import com.touchfish.tools.structure.HedgeProperties;
 import com.touchfish.tools.structure.IPFormat;
+import com.touchfish.tools.structure.MirrorProperties;
+import com.touchfish.tools.structure.NegativeCacheProperties;
+import com.touchfish.tools.structure.PrewarmProperties;
+import com.touchfish.tools.structure.PubSubProperties;
 import com.touchfish.tools.structure.RedisFactoryType;
 import com.touchfish.tools.structure.RedisType;
+import com.touchfish.tools.structure.StreamProperties;
+import com.touchfish.tools.structure.TieredStorageProperties;
+import com.touchfish.tools.structure.TopologyProperties;
+import com.touchfish.tools.structure.WarmupProperties;
+import com.touchfish.tools.structure.WriteBehindProperties;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.data.redis.connection.*;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPoolConfig;
 
 import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 
 @Slf4j
@@ -44,15 +80,55 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
     private String address;
     private String password;
     private Long timeout = 3000L;
+    private Long drainTimeout = 30000L;
     private Integer database;
     private Integer maxRedirects;
     private HostAndPort[] hostAndPorts;
     private RedisProperties.Pool poolProperties;
-    private RedisTemplate<String, String> template;
+    private volatile RedisTemplate<String, String> template;
+    private SwappableConnectionFactory connectionFactory;
+    private BulkheadProperties bulkheadProperties;
+    private Bulkhead bulkhead;
     private RedisSerializer<?> keySerializer;
     private RedisSerializer<?> valueSerializer;
     private RedisSerializer<?> hashKeySerializer;
     private RedisSerializer<?> hashValueSerializer;
+    private WriteBehindProperties writeBehindProperties;
+    private CompressionProperties compressionProperties;
+    private CompressionStats compressionStats;
+    private PubSubProperties pubSubProperties = new PubSubProperties();
+    private RedisPubSub pubSub;
+    private StreamProperties streamProperties = new StreamProperties();
+    private final List<StreamConsumer> streamConsumers = new CopyOnWriteArrayList<>();
+    private AdaptivePoolProperties adaptivePoolProperties;
+    private AdaptivePoolManager adaptivePool;
+    private CounterProperties counterProperties = new CounterProperties();
+    private CounterAggregator counters;
+    private List<BloomFilterProperties> bloomFilterProperties;
+    private BloomFilterGuard bloomFilters;
+    private NegativeCacheProperties negativeCacheProperties;
+    private NegativeCache negativeCache;
+    private DiskCacheProperties diskCacheProperties;
+    private DiskCache diskCache;
+    private PrewarmProperties prewarmProperties;
+    private RedisPrewarm prewarm;
+    private ChunkedProperties chunkedProperties = new ChunkedProperties();
+    private ChunkedValueStore chunked;
+    private TransactionProperties transactionProperties = new TransactionProperties();
+    private RedisTransaction transaction;
+    private TieredStorageProperties tieredStorageProperties;
+    private TieredValueStore tiered;
+    private WarmupProperties warmupProperties;
+    private RedisWarmup warmup;
+    private WriteBehindBuffer writeBehind;
+    private volatile RedisMirror mirror;
+    private TopologyProperties topologyProperties = new TopologyProperties();
+    private HedgeProperties hedgeProperties;
+    private HedgedReader hedged;
+    private RedisConnectionFactory replicaFactory;
+    private volatile RedisTemplate replicaTemplate;
+    private SharedResources sharedResources;
+    private final RedirectStats redirectStats = new RedirectStats();
     public RedisUtil() {}
     public RedisUtil(String name, RedisType type, String address) {
         this.name = name;
@@ -71,13 +147,67 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
         init();
     }
     public boolean init() {
-        String[] addresses = address.replace(" ","").split(",");
-        hostAndPorts = new HostAndPort[addresses.length];
-        for (int i = 0; i < addresses.length; i++) {
-            hostAndPorts[i] = AddressUtil.formatAddress(addresses[i]);
+        hostAndPorts = hostAndPorts(address);
+        if (compressionProperties != null && compressionProperties.isEnabled() && compressionStats == null) {
+            compressionStats = new CompressionStats();
+            valueSerializer = new CompressingRedisSerializer<>(valueSerializer, compressionProperties, compressionStats);
+            hashValueSerializer = new CompressingRedisSerializer<>(hashValueSerializer, compressionProperties, compressionStats);
+        }
+        if (adaptivePoolProperties != null && adaptivePoolProperties.isEnabled() && adaptivePool == null) {
+            adaptivePool = new AdaptivePoolManager(name, adaptivePoolProperties, this::pools);
+        }
+        if (writeBehindProperties != null && writeBehindProperties.isEnabled() && writeBehind == null) {
+            writeBehind = new WriteBehindBuffer(name, writeBehindProperties, this::writeBatch);
+        }
+        if (bulkheadProperties != null && bulkheadProperties.isEnabled() && bulkhead == null) {
+            bulkhead = new Bulkhead(name, bulkheadProperties);
         }
         refresh(type);
-        return connectionTest();
+        boolean res = connectionTest();
+        if (warmupProperties != null && warmupProperties.isEnabled()) {
+            if (res) {
+                warmup();
+            } else {
+                warmupState(warmupProperties).fail("Connection Test Failed.");
+            }
+        }
+        if (negativeCacheProperties != null && negativeCacheProperties.isEnabled() && negativeCache == null) {
+            negativeCache = new NegativeCache(negativeCacheProperties);
+            if (res && negativeCacheProperties.isKeyspaceNotifications()) {
+                subscribeKeyspace();
+            }
+        }
+        if (bloomFilterProperties != null && !bloomFilterProperties.isEmpty() && bloomFilters == null) {
+            bloomFilters = new BloomFilterGuard(name, bloomFilterProperties);
+            Thread rebuild = new Thread(Bulkhead.internal(() -> bloomFilters.rebuild(this::scanPrefix)), "bloom-filter-" + name);
+            rebuild.setDaemon(true);
+            rebuild.start();
+        }
+        if (tieredStorageProperties != null && tieredStorageProperties.isEnabled() && tiered == null) {
+            try {
+                tiered = new TieredValueStore(name, tieredStorageProperties, () -> template, TieredValueStore.createStore(tieredStorageProperties),
+                        this::beforeTieredWrite, this::afterWrite);
+            } catch (Exception e) {
+                log.error("Redis \""+name+"\" Tiered Storage Init Failed.", e);
+            }
+        }
+        if (hedgeProperties != null && hedgeProperties.isEnabled() && hedged == null) {
+            hedged = new HedgedReader(name, hedgeProperties, () -> template, this::replicaTemplate);
+        }
+        if (diskCacheProperties != null && diskCacheProperties.isEnabled() && diskCache == null) {
+            try {
+                diskCache = new DiskCache(name, diskCacheProperties, () -> template);
+            } catch (Exception e) {
+                log.error("Redis \""+name+"\" Disk Cache Init Failed.", e);
+            }
+        }
+        if (prewarmProperties != null && prewarmProperties.isEnabled() && prewarm == null) {
+            prewarm = new RedisPrewarm(name, prewarmProperties, () -> template, this::pipelineSupported);
+            if (res) {
+                prewarm.run(diskCache, negativeCache, (pattern, consumer) -> scan(pattern, 1000, consumer));
+            }
+        }
+        return res;
     }
     /**
      * 重新建立连接
@@ -90,18 +220,149 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
      * @param type 链接redis类型
      */
     public void refresh(RedisType type) {
-        this.type = RedisType.NONE;
-        connect(type);
+        swap(type == RedisType.NONE ? RedisType.STANDALONE : type);
+    }
+    /**
+     * 修改连接参数并热切换，用于密码轮换、地址迁移等
+     * @param address 为null时不修改
+     * @param password 为null时不修改
+     * @param database 为null时不修改
+     * @return 新连接验证失败时返回false，参数恢复且继续使用旧连接
+     */
+    public synchronized boolean reconfigure(String address, String password, Integer database) {
+        String oldAddress = this.address;
+        HostAndPort[] oldHostAndPorts = this.hostAndPorts;
+        String oldPassword = this.password;
+        Integer oldDatabase = this.database;
+        if (address != null) {
+            this.address = address;
+            this.hostAndPorts = hostAndPorts(address);
+        }
+        if (password != null) {
+            this.password = password;
+        }
+        if (database != null) {
+            this.database = database;
+        }
+        boolean res = swap(type == RedisType.NONE ? RedisType.STANDALONE : type);
+        if (!res) {
+            this.address = oldAddress;
+            this.hostAndPorts = oldHostAndPorts;
+            this.password = oldPassword;
+            this.database = oldDatabase;
+        }
+        return res;
+    }
+    /**
+     * 建立新的连接工厂并在验证可用后替换，模板实例保持不变，已注册的bean无需更新
+     * 切换期间请求继续由旧连接处理，旧连接工厂在借出的连接归还后销毁
+     * @return 新连接验证失败时返回false，继续使用旧连接
+     */
+    private synchronized boolean swap(RedisType type) {
+        RedisConnectionFactory factory = factory(name, config(type), timeout, factoryType, poolProperties, topologyProperties, redirectStats, sharedResources);
+        if (factory == null) {
+            return false;
+        }
+        log.info("Redis \""+name+"\" Factory Created: " + factory.getClass().getSimpleName());
+        if (connectionFactory == null || template == null) {
+            connectionFactory = new SwappableConnectionFactory(name, factory, drainTimeout, bulkhead);
+            connectionFactory.addSwapListener(this::afterSwap);
+            this.type = type;
+            template = create(connectionFactory);
+            releaseReplica();
+            return true;
+        }
+        if (!ping(factory)) {
+            log.error("Redis \""+name+"\" New "+type+" Connection Test Failed, Keep Current Connection.");
+            destroy(factory);
+            return false;
+        }
+        connectionFactory.swap(factory);
+        this.type = type;
+        releaseReplica();
+        log.info("Redis \""+name+"\" Connection Swapped To "+type+".");
+        return true;
+    }
+    /**
+     * 连接切换后将订阅连接和stream消费者迁移到新连接，keyspace订阅随订阅连接一起恢复
+     * 切换期间的keyspace通知可能丢失，清空空结果缓存
+     */
+    private void afterSwap() {
+        if (pubSub != null) {
+            pubSub.resubscribe();
+        }
+        if (negativeCache != null) {
+            negativeCache.clear();
+        }
+        for (StreamConsumer consumer : streamConsumers) {
+            consumer.afterSwap();
+        }
+    }
+    /**
+     * 从副本读取的连接，用于对冲读取，只在哨兵和集群模式下创建
+     * 连接切换后按新的配置重新创建
+     */
+    private RedisTemplate replicaTemplate() {
+        RedisTemplate current = replicaTemplate;
+        if (current != null || (type != RedisType.SENTINEL && type != RedisType.CLUSTER)) {
+            return current;
+        }
+        synchronized (this) {
+            if (replicaTemplate == null && template != null && (type == RedisType.SENTINEL || type == RedisType.CLUSTER)) {
+                replicaFactory = replicaFactory(config(type), timeout, poolProperties, sharedResources);
+                replicaTemplate = template(replicaFactory);
+                log.info("Redis \""+name+"\" Replica Template Created.");
+            }
+            return replicaTemplate;
+        }
+    }
+    private synchronized void releaseReplica() {
+        replicaTemplate = null;
+        if (replicaFactory != null) {
+            destroy(replicaFactory);
+            replicaFactory = null;
+        }
+    }
+    private static boolean ping(RedisConnectionFactory factory) {
+        RedisConnection connection = null;
+        try {
+            connection = factory.getConnection();
+            return "PONG".equals(connection.ping());
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+    private void destroy(RedisConnectionFactory factory) {
+        if (factory instanceof DisposableBean) {
+            try {
+                ((DisposableBean) factory).destroy();
+            } catch (Exception e) {
+                log.error("Redis \""+name+"\" Connection Factory Destroy Failed.", e);
+            }
+        }
+    }
+    private static HostAndPort[] hostAndPorts(String address) {
+        String[] addresses = address.replace(" ","").split(",");
+        HostAndPort[] res = new HostAndPort[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            res[i] = AddressUtil.formatAddress(addresses[i]);
+        }
+        return res;
     }
     /**
      * cluster集群链接
      * @return
      */
     public RedisTemplate cluster() {
-        if (type != RedisType.CLUSTER) {
-            close();
-            type = RedisType.CLUSTER;
-            template = create(config());
+        if (type != RedisType.CLUSTER || template == null) {
+            swap(RedisType.CLUSTER);
         }
         return template;
     }
@@ -110,10 +371,8 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
      * @return
      */
     public RedisTemplate standalone() {
-        if (type != RedisType.STANDALONE) {
-            close();
-            type = RedisType.STANDALONE;
-            template = create(config());
+        if (type != RedisType.STANDALONE || template == null) {
+            swap(RedisType.STANDALONE);
         }
         return template;
     }
@@ -123,10 +382,8 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
      * @return
      */
     public RedisTemplate sentinel() {
-        if (type != RedisType.SENTINEL) {
-            close();
-            type = RedisType.SENTINEL;
-            template = create(config());
+        if (type != RedisType.SENTINEL || template == null) {
+            swap(RedisType.SENTINEL);
         }
         return template;
     }
@@ -138,7 +395,7 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
 
     @Override
     public RedisConfiguration config(RedisType redisType) {
-        switch (type) {
+        switch (redisType) {
             case STANDALONE:
                 return standaloneConfig();
             case CLUSTER:
@@ -215,7 +472,7 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
 
     @Override
     public RedisTemplate create(RedisConfiguration configuration) {
-        RedisConnectionFactory factory = factory(configuration, timeout, factoryType, poolProperties);
+        RedisConnectionFactory factory = factory(name, configuration, timeout, factoryType, poolProperties, null, null, sharedResources);
         log.info("Redis \""+name+"\" Factory Created: " + factory.getClass().getSimpleName());
         if (factory != null) {
             return create(factory);
@@ -223,6 +480,18 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
         return null;
     }
     private RedisTemplate create(RedisConnectionFactory connectionFactory){
+        RedisTemplate template = template(connectionFactory);
+        if (adaptivePool != null) {
+            if (PoolUtil.sharesNativeConnection(connectionFactory)) {
+                adaptivePool.stop();
+                log.warn("Redis \""+name+"\" Shares Lettuce Native Connection, Adaptive Pool Disabled.");
+            } else {
+                adaptivePool.start();
+            }
+        }
+        return template;
+    }
+    private RedisTemplate template(RedisConnectionFactory connectionFactory){
         RedisTemplate template = new RedisTemplate();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(keySerializer);
@@ -276,39 +545,629 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
         return IPFormat.NONE;
     }
     public Object get(String key) {
+        if (prewarm != null) {
+            prewarm.record(key);
+        }
+        if (writeBehind != null) {
+            Object pending = writeBehind.get(key);
+            if (pending != null) {
+                return pending == WriteBehindBuffer.DELETED ? null : pending;
+            }
+        }
+        if (bloomFilters != null && !bloomFilters.mightExist(key)) {
+            return null;
+        }
+        if (negativeCache != null && negativeCache.isAbsent(key)) {
+            return null;
+        }
         try {
-            return connect().opsForValue().get(key);
+            long stamp = negativeCache != null ? negativeCache.stamp(key) : 0;
+            Object res = diskCache != null ? diskCache.get(key) : connect().opsForValue().get(key);
+            if (res == null && negativeCache != null) {
+                negativeCache.put(key, stamp);
+            }
+            if (mirror != null && diskCache == null) {
+                mirror.sample(key, res);
+            }
+            return res;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
     public void set(String key, Object value) {
+        if (bloomFilters != null) {
+            bloomFilters.put(key);
+        }
         try {
-            connect().opsForValue().set(key, value);
+            if (writeBehind != null && value != null) {
+                writeBehind.put(key, value);
+                return;
+            }
+            RedisMirror target = mirror;
+            if (target == null) {
+                connect().opsForValue().set(key, value);
+            } else {
+                target.set(key, () -> {
+                    connect().opsForValue().set(key, value);
+                    return null;
+                }, value);
+            }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            afterWrite(key);
         }
     }
+    /**
+     * 分层存储绕过延迟写入直接写入redis，先丢弃缓冲中的旧值，避免之后刷写时覆盖
+     */
+    private void beforeTieredWrite(String key) {
+        if (bloomFilters != null) {
+            bloomFilters.put(key);
+        }
+        if (writeBehind != null) {
+            writeBehind.discard(key);
+        }
+    }
+    /**
+     * 写入之后失效，读取期间写入完成的旧结果不会被记录
+     */
+    private void afterWrite(String key) {
+        if (negativeCache != null) {
+            negativeCache.invalidate(key);
+        }
+        if (diskCache != null) {
+            diskCache.invalidate(key);
+        }
+    }
+    /**
+     * 使用二进制key读取，可配合KeyBuilder避免构造String key
+     * 启用延迟写入时按UTF-8转换为String key，以保证读到本地未刷写的值
+     * @param key 已编码的key
+     * @return
+     */
+    public Object get(byte[] key) {
+        if (writeBehind != null || negativeCache != null || diskCache != null) {
+            return get(new String(key, StandardCharsets.UTF_8));
+        }
+        if (bloomFilters != null && !bloomFilters.mightExist(key)) {
+            return null;
+        }
+        try {
+            RedisTemplate current = connect();
+            RedisSerializer serializer = current.getValueSerializer();
+            Object res = current.execute((RedisCallback<Object>) connection -> serializer.deserialize(connection.get(key)));
+            if (mirror != null) {
+                mirror.sample(key, res);
+            }
+            return res;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    /**
+     * 使用二进制key写入
+     * @param key 已编码的key
+     * @param value
+     */
+    public void set(byte[] key, Object value) {
+        if (writeBehind != null || negativeCache != null || diskCache != null) {
+            set(new String(key, StandardCharsets.UTF_8), value);
+            return;
+        }
+        if (bloomFilters != null) {
+            bloomFilters.put(key);
+        }
+        try {
+            RedisTemplate current = connect();
+            byte[] raw = current.getValueSerializer().serialize(value);
+            RedisCallback<Object> write = connection -> connection.set(key, raw);
+            RedisMirror target = mirror;
+            if (target == null) {
+                current.execute(write);
+            } else {
+                target.set(key, () -> current.execute(write), value);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+    /**
+     * 使用二进制key删除
+     * @param key 已编码的key
+     * @return
+     */
+    public Boolean del(byte[] key) {
+        if (writeBehind != null || negativeCache != null || diskCache != null) {
+            return del(new String(key, StandardCharsets.UTF_8));
+        }
+        try {
+            RedisCallback<Long> write = connection -> connection.del(key);
+            RedisMirror target = mirror;
+            Long res = target == null ? (Long) connect().execute(write) : target.del(key, () -> (Long) connect().execute(write));
+            return res != null && res > 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
     public Boolean del(String key) {
+        if (writeBehind != null) {
+            writeBehind.remove(key);
+        }
         try {
-            return connect().delete(key);
+            RedisMirror target = mirror;
+            Boolean res = target == null ? connect().delete(key) : target.del(key, () -> connect().delete(key));
+            return res;
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            if (diskCache != null) {
+                diskCache.invalidate(key);
+            }
         }
         return false;
     }
 
+    /**
+     * 延迟写入缓冲区，未启用时返回null
+     * @return
+     */
+    public WriteBehindBuffer writeBehind() {
+        return writeBehind;
+    }
+    /**
+     * 将之后成功的set/del和延迟写入的批量刷写异步重放到影子连接，用于迁移期间双写
+     * 计数器刷写、hashMapper、分块存储、乐观事务以及直接使用RedisTemplate的写入不会被镜像
+     * 重复调用时替换之前的影子，旧的镜像在重放完剩余队列后关闭
+     * @param shadow 影子连接，使用它自己的序列化方式写入
+     * @return 创建的镜像
+     */
+    public RedisMirror mirrorTo(RedisUtil shadow, MirrorProperties properties) {
+        if (shadow == this) {
+            throw new IllegalArgumentException("Redis \""+name+"\" Cannot Mirror To Itself.");
+        }
+        RedisMirror created = new RedisMirror(name, shadow.name(), properties, shadow.mirrorTarget());
+        RedisMirror old;
+        synchronized (this) {
+            old = mirror;
+            mirror = created;
+        }
+        if (old != null) {
+            old.close();
+        }
+        log.info("Redis \""+name+"\" Mirroring Writes To \""+shadow.name()+"\".");
+        return created;
+    }
+    /**
+     * 双写镜像，未启用时返回null
+     * @return
+     */
+    public RedisMirror mirror() {
+        return mirror;
+    }
+    /**
+     * 作为影子时的写入方式，key按String序列化或直接使用byte[]，值使用本连接的值序列化
+     */
+    private IMirrorTarget mirrorTarget() {
+        return new IMirrorTarget() {
+            @Override
+            public void replay(List<MirrorOp> ops) {
+                RedisTemplate current = template;
+                if (current == null) {
+                    throw new IllegalStateException("Redis \""+name+"\" Not Connected.");
+                }
+                RedisSerializer keys = current.getKeySerializer();
+                RedisSerializer values = current.getValueSerializer();
+                RedisCallback<Object> callback = connection -> {
+                    for (MirrorOp op : ops) {
+                        byte[] key = op.key instanceof byte[] ? (byte[]) op.key : keys.serialize(op.key);
+                        if (op.type == MirrorOp.Type.SET) {
+                            connection.set(key, values.serialize(op.value()));
+                        } else {
+                            connection.del(key);
+                        }
+                    }
+                    return null;
+                };
+                if (pipelineSupported() && ops.size() > 1) {
+                    current.executePipelined(callback);
+                } else {
+                    current.execute(callback);
+                }
+            }
+
+            @Override
+            public Object read(Object key) {
+                RedisTemplate current = template;
+                if (current == null) {
+                    throw new IllegalStateException("Redis \""+name+"\" Not Connected.");
+                }
+                RedisSerializer keys = current.getKeySerializer();
+                RedisSerializer values = current.getValueSerializer();
+                byte[] raw = key instanceof byte[] ? (byte[]) key : keys.serialize(key);
+                return current.execute((RedisCallback<Object>) connection -> values.deserialize(connection.get(raw)));
+            }
+        };
+    }
+    /**
+     * 当前连接是否支持pipeline，Jedis集群连接不支持
+     * @return
+     */
+    public boolean pipelineSupported() {
+        return !(type == RedisType.CLUSTER && factoryType == RedisFactoryType.JEDIS);
+    }
+    /**
+     * 获取发布订阅，首次调用时创建订阅连接
+     * @return
+     */
+    public synchronized RedisPubSub pubSub() {
+        if (pubSub == null) {
+            pubSub = new RedisPubSub(name, connect(), pipelineSupported(), pubSubProperties);
+        }
+        return pubSub;
+    }
+    /**
+     * 使用配置的消费组参数消费stream
+     * @param stream stream的key
+     * @param handler 消息处理器
+     * @return
+     */
+    public StreamConsumer streamConsumer(String stream, IStreamHandler handler) {
+        return streamConsumer(stream, streamProperties, handler);
+    }
+    /**
+     * 消费stream，仅支持Lettuce连接
+     * @param stream stream的key
+     * @param properties 消费组参数
+     * @param handler 消息处理器
+     * @return
+     */
+    public StreamConsumer streamConsumer(String stream, StreamProperties properties, IStreamHandler handler) {
+        if (factoryType != RedisFactoryType.LETTUCE) {
+            throw new UnsupportedOperationException("Redis \""+name+"\" Stream Consumer Requires Lettuce Connection.");
+        }
+        StreamConsumer consumer = new StreamConsumer(name, connect(), stream, properties, handler);
+        streamConsumers.add(consumer);
+        return consumer;
+    }
+    /**
+     * 当前连接工厂内部的连接池
+     * @return
+     */
+    public List<GenericObjectPool<?>> pools() {
+        RedisTemplate current = template;
+        if (current == null || current.getConnectionFactory() == null) {
+            return Collections.emptyList();
+        }
+        return PoolUtil.pools(current.getConnectionFactory());
+    }
+    /**
+     * 遍历匹配的key，集群模式下依次遍历每个主节点
+     * @param pattern 匹配模式
+     * @param count 每次SCAN的COUNT
+     * @param consumer 接收key的原始字节
+     */
+    public void scan(String pattern, long count, Consumer<byte[]> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(count).build();
+        connect().execute((RedisCallback<Object>) connection -> {
+            if (connection instanceof RedisClusterConnection) {
+                RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+                for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                    if (node.isMaster()) {
+                        scan(clusterConnection.scan(node, options), consumer);
+                    }
+                }
+            } else {
+                scan(connection.scan(options), consumer);
+            }
+            return null;
+        });
+    }
+    /**
+     * SCAN指定前缀下的所有key，前缀经key序列化器编码并转义glob字符
+     * key序列化器编码后不保留前缀时无法按前缀匹配，抛出IllegalStateException
+     */
+    @SuppressWarnings("unchecked")
+    private void scanPrefix(String prefix, Consumer<String> consumer) {
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) connect().getKeySerializer();
+        byte[] raw = serializer != null ? serializer.serialize(prefix) : prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] probe = serializer != null ? serializer.serialize(prefix + "0") : null;
+        if (probe != null && !startsWith(probe, raw)) {
+            throw new IllegalStateException("Key Serializer " + serializer.getClass().getSimpleName() + " Does Not Preserve Prefix \"" + prefix + "\".");
+        }
+        StringBuilder pattern = new StringBuilder();
+        for (char c : new String(raw, StandardCharsets.UTF_8).toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        scan(pattern.append('*').toString(), 1000, key -> {
+            Object res = serializer != null ? serializer.deserialize(key) : new String(key, StandardCharsets.UTF_8);
+            if (res instanceof String) {
+                consumer.accept((String) res);
+            }
+        });
+    }
+    private static boolean startsWith(byte[] value, byte[] prefix) {
+        if (value.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (value[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private static void scan(Cursor<byte[]> cursor, Consumer<byte[]> consumer) {
+        try (Cursor<byte[]> c = cursor) {
+            while (c.hasNext()) {
+                consumer.accept(c.next());
+            }
+        } catch (java.io.IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    /**
+     * 订阅keyspace通知，任意客户端写入key时移除本地空结果记录
+     */
+    private void subscribeKeyspace() {
+        try {
+            pubSub().addListener((message, pattern) -> {
+                String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+                int index = channel.indexOf("__:");
+                if (index >= 0) {
+                    negativeCache.invalidate(channel.substring(index + 3));
+                }
+            }, new PatternTopic("__keyspace@*__:*"));
+        } catch (Exception e) {
+            log.error("Redis \""+name+"\" Keyspace Notification Subscribe Failed.", e);
+        }
+    }
+    /**
+     * 获取对象与hash的映射，字段以hash field存储，支持只写入修改过的字段
+     * @param clazz 需要有无参构造方法
+     * @return
+     */
+    public <T> TrackedHashMapper<T> hashMapper(Class<T> clazz) {
+        return new TrackedHashMapper<>(clazz, () -> template);
+    }
+    /**
+     * 获取大值分块读写
+     * @return
+     */
+    public synchronized ChunkedValueStore chunked() {
+        if (chunked == null) {
+            chunked = new ChunkedValueStore(name, chunkedProperties, () -> template, this::pipelineSupported);
+        }
+        return chunked;
+    }
+    /**
+     * 获取乐观事务，WATCH/MULTI/EXEC冲突时按transaction配置退避重试
+     * @return
+     */
+    public synchronized RedisTransaction transaction() {
+        if (transaction == null) {
+            transaction = new RedisTransaction(name, transactionProperties, () -> template);
+        }
+        return transaction;
+    }
+    /**
+     * 分层存储，超过阈值的值保存在对象存储中，未启用时返回null
+     * 超过阈值的key只能通过它读取，get读到的是指针
+     * @return
+     */
+    public TieredValueStore tiered() {
+        return tiered;
+    }
+    /**
+     * 对冲读取，主节点读取慢时向副本发出相同读取，未启用时返回null
+     * @return
+     */
+    public HedgedReader hedged() {
+        return hedged;
+    }
+    /**
+     * 空结果缓存，未启用时返回null
+     * @return
+     */
+    public NegativeCache negativeCache() {
+        return negativeCache;
+    }
+    /**
+     * 本地磁盘缓存，未启用时返回null
+     * @return
+     */
+    public DiskCache diskCache() {
+        return diskCache;
+    }
+    /**
+     * 隔离舱，未启用时返回null
+     * @return
+     */
+    public Bulkhead bulkhead() {
+        return bulkhead;
+    }
+    /**
+     * 本地缓存预热及热点key采样，未启用时返回null
+     * @return
+     */
+    public RedisPrewarm prewarm() {
+        return prewarm;
+    }
+    /**
+     * 布隆过滤器，未配置时返回null
+     * @return
+     */
+    public BloomFilterGuard bloomFilters() {
+        return bloomFilters;
+    }
+    /**
+     * 通过SCAN重建指定前缀的布隆过滤器，配置rebuild为false的命名空间重建后开始拦截读取
+     * @param prefix 命名空间key前缀
+     * @return 是否重建成功，未配置布隆过滤器或前缀时返回false
+     */
+    public boolean rebuildBloomFilter(String prefix) {
+        return bloomFilters != null && bloomFilters.rebuild(prefix, this::scanPrefix);
+    }
+    /**
+     * 获取本地聚合计数器
+     * @return
+     */
+    public synchronized CounterAggregator counters() {
+        if (counters == null) {
+            counters = new CounterAggregator(name, counterProperties, () -> template, this::pipelineSupported);
+        }
+        return counters;
+    }
+    /**
+     * 执行连接预热，未配置预热参数时使用默认参数
+     * @return 是否成功
+     */
+    public synchronized boolean warmup() {
+        return warmupState(warmupProperties != null ? warmupProperties : new WarmupProperties()).run(connect(), pools());
+    }
+    private synchronized RedisWarmup warmupState(WarmupProperties properties) {
+        if (warmup == null) {
+            warmup = new RedisWarmup(name, properties);
+        }
+        return warmup;
+    }
+    /**
+     * 预热状态，未启用预热时返回null
+     * @return
+     */
+    public RedisWarmup warmupState() {
+        return warmup;
+    }
+    /**
+     * 连接池自适应调整，未启用时返回null
+     * @return
+     */
+    public AdaptivePoolManager adaptivePool() {
+        return adaptivePool;
+    }
+    /**
+     * 集群重定向与拓扑刷新统计
+     * @return
+     */
+    public RedirectStats redirectStats() {
+        return redirectStats;
+    }
+    /**
+     * 值压缩统计，未启用压缩时返回null
+     * @return
+     */
+    public CompressionStats compressionStats() {
+        return compressionStats;
+    }
+    /**
+     * 立即将延迟写入缓冲区刷入redis
+     */
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+    private void writeBatch(Map<String, Object> sets, List<String> deletes) {
+        RedisTemplate current = template;
+        if (current == null) {
+            throw new IllegalStateException("Redis \""+name+"\" Not Connected.");
+        }
+        RedisMirror target = mirror;
+        if (target == null) {
+            writeBatch(current, sets, deletes);
+            return;
+        }
+        try {
+            target.batch(sets, deletes, () -> {
+                writeBatch(current, sets, deletes);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // 批量写入只会抛出RuntimeException
+            throw new IllegalStateException(e);
+        }
+    }
+    private static void writeBatch(RedisTemplate current, Map<String, Object> sets, List<String> deletes) {
+        if (!sets.isEmpty()) {
+            current.opsForValue().multiSet(sets);
+        }
+        if (!deletes.isEmpty()) {
+            current.delete(deletes);
+        }
+    }
+
     /**
      * 关闭所有连接
      */
     public void close() {
-        template = null;
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        if (counters != null) {
+            counters.close();
+        }
+        if (mirror != null) {
+            mirror.close();
+        }
+        synchronized (this) {
+            if (pubSub != null) {
+                pubSub.close();
+                pubSub = null;
+            }
+        }
+        for (StreamConsumer consumer : streamConsumers) {
+            consumer.close();
+        }
+        streamConsumers.clear();
+        if (adaptivePool != null) {
+            adaptivePool.stop();
+        }
+        synchronized (this) {
+            if (chunked != null) {
+                chunked.close();
+            }
+        }
+        if (tiered != null) {
+            try {
+                tiered.close();
+            } catch (Exception e) {
+                log.error("Redis \""+name+"\" Tiered Storage Close Failed.", e);
+            }
+        }
+        if (hedged != null) {
+            hedged.close();
+        }
+        if (prewarm != null) {
+            prewarm.close();
+        }
+        if (diskCache != null) {
+            try {
+                diskCache.close();
+            } catch (Exception e) {
+                log.error("Redis \""+name+"\" Disk Cache Close Failed.", e);
+            }
+        }
+        releaseReplica();
+        synchronized (this) {
+            if (connectionFactory != null) {
+                connectionFactory.destroy();
+                connectionFactory = null;
+            }
+            template = null;
+        }
     }
 
     public static <T extends GenericObjectPoolConfig> T poolConfig(T poolConfig, RedisProperties.Pool pool) {
         if (pool != null) {
-            poolConfig.setMaxIdle(pool.getMaxActive());
+            poolConfig.setMaxTotal(pool.getMaxActive());
             poolConfig.setMaxIdle(pool.getMaxIdle());
             poolConfig.setMinIdle(pool.getMinIdle());
             if (pool.getMaxWait() != null) {
@@ -321,23 +1180,86 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
         return poolConfig;
     }
     public static RedisConnectionFactory lettuceFactory(RedisConfiguration config, Long timeout, RedisProperties.Pool poolProps){
-        LettucePoolingClientConfiguration clientConfig = LettucePoolingClientConfiguration.builder()
+        return lettuceFactory(config, timeout, poolProps, null, null, null);
+    }
+    public static RedisConnectionFactory lettuceFactory(RedisConfiguration config, Long timeout, RedisProperties.Pool poolProps,
+                                                        TopologyProperties topology, RedirectStats stats){
+        return lettuceFactory(config, timeout, poolProps, topology, stats, null);
+    }
+    /**
+     * @param topology 集群拓扑刷新配置，为null时不刷新
+     * @param stats 拓扑变化统计，可为null
+     * @param shared 共享客户端资源，为null时每个连接工厂创建自己的线程
+     */
+    public static RedisConnectionFactory lettuceFactory(RedisConfiguration config, Long timeout, RedisProperties.Pool poolProps,
+                                                        TopologyProperties topology, RedirectStats stats, SharedResources shared){
+        LettucePoolingClientConfiguration.LettucePoolingClientConfigurationBuilder builder = LettucePoolingClientConfiguration.builder()
                 .commandTimeout(Duration.ofMillis(timeout))
-                .poolConfig(poolConfig(new GenericObjectPoolConfig(), poolProps))
-                .build();
-        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(config, clientConfig);
+                .poolConfig(poolConfig(new GenericObjectPoolConfig(), poolProps));
+        if (shared != null) {
+            builder.clientResources(shared.clientResources());
+        }
+        if (topology != null && config instanceof RedisClusterConfiguration) {
+            //默认不刷新拓扑，迁移槽位后每条命令都要多一次MOVED重定向
+            ClusterTopologyRefreshOptions.Builder refresh = ClusterTopologyRefreshOptions.builder();
+            if (topology.refreshPeriodMillis() > 0) {
+                refresh.enablePeriodicRefresh(Duration.ofMillis(topology.refreshPeriodMillis()));
+            }
+            if (topology.isAdaptive()) {
+                refresh.enableAllAdaptiveRefreshTriggers()
+                        .adaptiveRefreshTriggersTimeout(Duration.ofMillis(topology.getAdaptiveTimeout()));
+            }
+            builder.clientOptions(ClusterClientOptions.builder().topologyRefreshOptions(refresh.build()).build());
+        }
+        LettucePoolingClientConfiguration clientConfig = builder.build();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(config, clientConfig) {
+            @Override
+            protected AbstractRedisClient createClient() {
+                AbstractRedisClient client = super.createClient();
+                if (stats != null && client instanceof RedisClusterClient) {
+                    ((RedisClusterClient) client).getResources().eventBus().get()
+                            .filter(event -> event instanceof ClusterTopologyChangedEvent)
+                            .subscribe(event -> stats.topologyChanged());
+                }
+                return client;
+            }
+        };
         //如果要使pool参数生效,一定要关闭shareNativeConnection
         //connectionFactory.setShareNativeConnection(false);
         //必须初始化实例
         connectionFactory.afterPropertiesSet();
         return connectionFactory;
     }
-    private static RedisConnectionFactory jedisFactory(RedisConfiguration config, Long timeout, RedisProperties.Pool poolProps){
+    private static RedisConnectionFactory jedisFactory(String name, RedisConfiguration config, Long timeout, RedisProperties.Pool poolProps,
+                                                       TopologyProperties topology, RedirectStats stats){
         JedisConnectionFactory factory = null;
         if (config.getClass() == RedisClusterConfiguration.class) {
-            factory = new JedisConnectionFactory((RedisClusterConfiguration) config, poolConfig(new JedisPoolConfig(), poolProps));
+            if (topology != null && stats != null) {
+                factory = new JedisConnectionFactory((RedisClusterConfiguration) config, poolConfig(new JedisPoolConfig(), poolProps)) {
+                    @Override
+                    protected JedisCluster createCluster(RedisClusterConfiguration clusterConfig, GenericObjectPoolConfig poolConfig) {
+                        Set<HostAndPort> nodes = new HashSet<>();
+                        for (RedisNode node : clusterConfig.getClusterNodes()) {
+                            nodes.add(new HostAndPort(node.getHost(), node.getPort()));
+                        }
+                        int redirects = clusterConfig.getMaxRedirects() != null ? clusterConfig.getMaxRedirects() : 5;
+                        return new TopologyAwareJedisCluster(name, nodes, getTimeout(), getTimeout(), redirects,
+                                getPassword(), getClientName(), poolConfig, topology, stats);
+                    }
+                };
+            } else {
+                factory = new JedisConnectionFactory((RedisClusterConfiguration) config, poolConfig(new JedisPoolConfig(), poolProps));
+            }
         } else if (config.getClass() == RedisStandaloneConfiguration.class) {
-            factory = new JedisConnectionFactory((RedisStandaloneConfiguration) config);
+            //单点模式只能通过JedisClientConfiguration设置连接池，超时时间也需一并设置
+            JedisClientConfiguration.JedisClientConfigurationBuilder builder = JedisClientConfiguration.builder();
+            if (timeout != null) {
+                builder.connectTimeout(Duration.ofMillis(timeout)).readTimeout(Duration.ofMillis(timeout));
+            }
+            factory = new JedisConnectionFactory((RedisStandaloneConfiguration) config,
+                    builder.usePooling().poolConfig(poolConfig(new JedisPoolConfig(), poolProps)).build());
+            factory.afterPropertiesSet();
+            return factory;
         } else if (config.getClass() == RedisSentinelConfiguration.class) {
             factory = new JedisConnectionFactory((RedisSentinelConfiguration) config, poolConfig(new JedisPoolConfig(), poolProps));
         }
@@ -349,12 +1271,45 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
         }
         return factory;
     }
+    /**
+     * 优先从副本读取的Lettuce连接，没有可用副本时读取主节点
+     */
+    public static RedisConnectionFactory replicaFactory(RedisConfiguration config, Long timeout, RedisProperties.Pool poolProps){
+        return replicaFactory(config, timeout, poolProps, null);
+    }
+    public static RedisConnectionFactory replicaFactory(RedisConfiguration config, Long timeout, RedisProperties.Pool poolProps, SharedResources shared){
+        LettucePoolingClientConfiguration.LettucePoolingClientConfigurationBuilder builder = LettucePoolingClientConfiguration.builder()
+                .commandTimeout(Duration.ofMillis(timeout))
+                .poolConfig(poolConfig(new GenericObjectPoolConfig(), poolProps))
+                .readFrom(ReadFrom.REPLICA_PREFERRED);
+        if (shared != null) {
+            builder.clientResources(shared.clientResources());
+        }
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(config, builder.build());
+        connectionFactory.afterPropertiesSet();
+        return connectionFactory;
+    }
     public static RedisConnectionFactory factory(RedisConfiguration config, Long timeout, RedisFactoryType type, RedisProperties.Pool poolProps){
+        return factory(null, config, timeout, type, poolProps, null, null, null);
+    }
+    /**
+     * @param topology 集群拓扑刷新配置，为null时使用客户端默认行为
+     * @param stats 重定向统计，可为null
+     */
+    public static RedisConnectionFactory factory(String name, RedisConfiguration config, Long timeout, RedisFactoryType type, RedisProperties.Pool poolProps,
+                                                 TopologyProperties topology, RedirectStats stats){
+        return factory(name, config, timeout, type, poolProps, topology, stats, null);
+    }
+    /**
+     * @param shared 共享客户端资源，只对Lettuce生效，Jedis为阻塞IO没有事件循环线程
+     */
+    public static RedisConnectionFactory factory(String name, RedisConfiguration config, Long timeout, RedisFactoryType type, RedisProperties.Pool poolProps,
+                                                 TopologyProperties topology, RedirectStats stats, SharedResources shared){
         switch (type) {
             case JEDIS:
-                return jedisFactory(config, timeout, poolProps);
+                return jedisFactory(name, config, timeout, poolProps, topology, stats);
             case LETTUCE:
-                return lettuceFactory(config, timeout, poolProps);
+                return lettuceFactory(config, timeout, poolProps, topology, stats, shared);
         }
         return null;
     }
@@ -500,6 +1455,11 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
                 target.timeout = Long.valueOf(timeout);
             return this;
         }
+        public Builder drainTimeout(String drainTimeout) {
+            if (drainTimeout != null && !drainTimeout.isEmpty())
+                target.drainTimeout = Long.valueOf(drainTimeout);
+            return this;
+        }
         public Builder database(int database) {
             target.database = database;
             return this;
@@ -524,6 +1484,96 @@ public class RedisUtil implements IRedisConnection<RedisTemplate, RedisConfigura
                 target.master = master;
             return this;
         }
+        public Builder compression(CompressionProperties compression) {
+            if (compression != null)
+                target.compressionProperties = compression;
+            return this;
+        }
+        public Builder pubSub(PubSubProperties pubSub) {
+            if (pubSub != null)
+                target.pubSubProperties = pubSub;
+            return this;
+        }
+        public Builder stream(StreamProperties stream) {
+            if (stream != null)
+                target.streamProperties = stream;
+            return this;
+        }
+        public Builder adaptivePool(AdaptivePoolProperties adaptivePool) {
+            if (adaptivePool != null)
+                target.adaptivePoolProperties = adaptivePool;
+            return this;
+        }
+        public Builder counter(CounterProperties counter) {
+            if (counter != null)
+                target.counterProperties = counter;
+            return this;
+        }
+        public Builder bloomFilters(List<BloomFilterProperties> bloomFilters) {
+            if (bloomFilters != null)
+                target.bloomFilterProperties = bloomFilters;
+            return this;
+        }
+        public Builder negativeCache(NegativeCacheProperties negativeCache) {
+            if (negativeCache != null)
+                target.negativeCacheProperties = negativeCache;
+            return this;
+        }
+        public Builder sharedResources(SharedResources sharedResources) {
+            if (sharedResources != null)
+                target.sharedResources = sharedResources;
+            return this;
+        }
+        public Builder bulkhead(BulkheadProperties bulkhead) {
+            if (bulkhead != null)
+                target.bulkheadProperties = bulkhead;
+            return this;
+        }
+        public Builder prewarm(PrewarmProperties prewarm) {
+            if (prewarm != null)
+                target.prewarmProperties = prewarm;
+            return this;
+        }
+        public Builder diskCache(DiskCacheProperties diskCache) {
+            if (diskCache != null)
+                target.diskCacheProperties = diskCache;
+            return this;
+        }
+        public Builder hedge(HedgeProperties hedge) {
+            if (hedge != null)
+                target.hedgeProperties = hedge;
+            return this;
+        }
+        public Builder transaction(TransactionProperties transaction) {
+            if (transaction != null)
+                target.transactionProperties = transaction;
+            return this;
+        }
+        public Builder chunked(ChunkedProperties chunked) {
+            if (chunked != null)
+                target.chunkedProperties = chunked;
+            return this;
+        }
+        public Builder topology(TopologyProperties topology) {
+            if (topology != null)
+                target.topologyProperties = topology;
+            return this;
+        }
+        public Builder tieredStorage(TieredStorageProperties tieredStorage) {
+            if (tieredStorage != null)
+                target.tieredStorageProperties = tieredStorage;
+            return this;
+        }
+        public Builder warmup(WarmupProperties warmup) {
+            if (warmup != null)
+                target.warmupProperties = warmup;
+            return this;
+        }
+        public Builder writeBehind(WriteBehindProperties writeBehind) {
+            if (writeBehind != null)
+                target.writeBehindProperties = writeBehind;
+            return this;
+        }
         private RedisSerializer serializer(String clazz) {
             RedisSerializer serializer = null;
             if (clazz.contains("StringRedisSerializer")) {
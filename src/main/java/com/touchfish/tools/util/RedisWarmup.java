@@ -0,0 +1,152 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.WarmupProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.*;
+
+/**
+ * 连接预热
+ * 预先建立连接池minIdle个连接，并通过真实的序列化器执行一段模拟读写，避免首批请求承担握手和JIT编译开销
+ */
+@Slf4j
+public class RedisWarmup {
+    private final String name;
+    private final WarmupProperties properties;
+    private volatile boolean done = false;
+    private volatile boolean success = false;
+    private volatile long elapsedMillis;
+    private volatile int connections;
+
+    public RedisWarmup(String name, WarmupProperties properties) {
+        this.name = name;
+        this.properties = properties;
+    }
+
+    /**
+     * 执行预热
+     * @return 是否成功
+     */
+    public boolean run(RedisTemplate template, List<GenericObjectPool<?>> pools) {
+        long start = System.currentTimeMillis();
+        success = false;
+        try {
+            connections = preparePools(pools);
+            warmupSerializers(template);
+            warmupCommands(template);
+            success = true;
+        } catch (Exception e) {
+            log.error("Redis \"" + name + "\" Warmup Failed.", e);
+        } finally {
+            elapsedMillis = System.currentTimeMillis() - start;
+            done = true;
+        }
+        log.info("Redis \"" + name + "\" Warmup " + (success ? "Finished" : "Failed") + " In " + elapsedMillis + "ms. Idle Connections: " + connections);
+        return success;
+    }
+
+    /**
+     * 无法执行预热时标记为失败，必需的预热失败时应用不会进入就绪状态
+     * @param reason 失败原因
+     */
+    public void fail(String reason) {
+        success = false;
+        elapsedMillis = 0;
+        connections = 0;
+        done = true;
+        log.error("Redis \"" + name + "\" Warmup Failed: " + reason);
+    }
+
+    private int preparePools(List<GenericObjectPool<?>> pools) throws Exception {
+        int idle = 0;
+        for (GenericObjectPool<?> pool : pools) {
+            pool.preparePool();
+            idle += pool.getNumIdle();
+        }
+        return idle;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void warmupSerializers(RedisTemplate template) {
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) template.getValueSerializer();
+        RedisSerializer<Object> hashValueSerializer = (RedisSerializer<Object>) template.getHashValueSerializer();
+        RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) template.getKeySerializer();
+        Object value = sampleValue(0);
+        for (int i = 0; i < properties.getSerializerIterations(); i++) {
+            if (keySerializer != null) {
+                keySerializer.deserialize(keySerializer.serialize(properties.getKeyPrefix() + name + ":" + i));
+            }
+            if (valueSerializer != null) {
+                valueSerializer.deserialize(valueSerializer.serialize(value));
+            }
+            if (hashValueSerializer != null && hashValueSerializer != valueSerializer) {
+                hashValueSerializer.deserialize(hashValueSerializer.serialize(value));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void warmupCommands(RedisTemplate template) {
+        String prefix = properties.getKeyPrefix() + name + ":" + UUID.randomUUID() + ":";
+        String hashKey = prefix + "hash";
+        List<Object> keys = new ArrayList<>();
+        try {
+            for (int i = 0; i < properties.getIterations(); i++) {
+                String key = prefix + (i % 16);
+                Object value = sampleValue(i);
+                template.opsForValue().set(key, value);
+                template.opsForValue().get(key);
+                template.opsForHash().put(hashKey, String.valueOf(i % 16), value);
+                template.opsForHash().get(hashKey, String.valueOf(i % 16));
+                if (i < 16) {
+                    keys.add(key);
+                }
+            }
+        } finally {
+            keys.add(hashKey);
+            for (Object key : keys) {
+                template.delete(key);
+            }
+        }
+    }
+
+    private Object sampleValue(int i) {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("id", (long) i);
+        value.put("name", "warmup-" + i);
+        value.put("tags", Arrays.asList("a", "b", "c"));
+        char[] payload = new char[Math.max(0, properties.getValueSize())];
+        Arrays.fill(payload, 'x');
+        value.put("payload", new String(payload));
+        return value;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public boolean isRequired() {
+        return properties.isRequired();
+    }
+
+    /**
+     * 预热耗时 单位 ms
+     */
+    public long elapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 预热后连接池中的空闲连接数
+     */
+    public int connections() {
+        return connections;
+    }
+}
@@ -0,0 +1,109 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IMessageHandler;
+import com.touchfish.tools.structure.PubSubProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RPatternTopic;
+import org.redisson.api.RTopic;
+import org.redisson.api.RTopicAsync;
+import org.redisson.api.RedissonClient;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Redisson发布订阅
+ * Redisson在每个节点上复用订阅连接，回调只负责入队，由MessageDispatcher批量交付
+ */
+@Slf4j
+public class RedissonPubSub implements Closeable {
+    private final String name;
+    private final RedissonClient client;
+    private final MessageDispatcher dispatcher;
+    private final Map<IMessageHandler, List<Runnable>> removers = new ConcurrentHashMap<>();
+
+    public RedissonPubSub(String name, RedissonClient client, PubSubProperties properties) {
+        this.name = name;
+        this.client = client;
+        this.dispatcher = new MessageDispatcher(name, properties, Function.identity());
+        log.info("Redisson \"" + name + "\" PubSub Started.");
+    }
+
+    /**
+     * 订阅频道
+     */
+    public void subscribe(IMessageHandler handler, String... channels) {
+        for (String channel : channels) {
+            RTopic topic = client.getTopic(channel);
+            int id = topic.addListener(Object.class, (ch, msg) -> dispatcher.offer(handler, ch.toString(), null, msg));
+            removers.computeIfAbsent(handler, h -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(() -> topic.removeListener(id));
+        }
+    }
+
+    /**
+     * 按模式订阅频道
+     */
+    public void psubscribe(IMessageHandler handler, String... patterns) {
+        for (String pattern : patterns) {
+            RPatternTopic topic = client.getPatternTopic(pattern);
+            int id = topic.addListener(Object.class, (p, ch, msg) -> dispatcher.offer(handler, ch.toString(), p.toString(), msg));
+            removers.computeIfAbsent(handler, h -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(() -> topic.removeListener(id));
+        }
+    }
+
+    /**
+     * 取消处理器的所有订阅
+     */
+    public void unsubscribe(IMessageHandler handler) {
+        List<Runnable> list = removers.remove(handler);
+        if (list != null) {
+            synchronized (list) {
+                list.forEach(Runnable::run);
+            }
+        }
+    }
+
+    /**
+     * 发布消息
+     * @return 收到消息的订阅者数量
+     */
+    public long publish(String channel, Object message) {
+        return client.getTopic(channel).publish(message);
+    }
+
+    /**
+     * 通过RBatch批量发布消息
+     */
+    public void publish(String channel, Collection<?> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        RBatch batch = client.createBatch();
+        RTopicAsync topic = batch.getTopic(channel);
+        for (Object message : messages) {
+            topic.publishAsync(message);
+        }
+        batch.execute();
+    }
+
+    public MessageDispatcher dispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public void close() {
+        for (IMessageHandler handler : new ArrayList<>(removers.keySet())) {
+            try {
+                unsubscribe(handler);
+            } catch (Exception e) {
+                log.error("Redisson \"" + name + "\" Unsubscribe Failed.", e);
+            }
+        }
+        dispatcher.close();
+    }
+}
@@ -2,18 +2,28 @@ package com.touchfish.tools.util;
 
 import com.touchfish.tools.interf.IRedisConnection;
 import com.touchfish.tools.structure.IPFormat;
+import com.touchfish.tools.structure.LocalCachedMapProperties;
+import com.touchfish.tools.structure.PubSubProperties;
 import com.touchfish.tools.structure.RedisType;
+import com.touchfish.tools.structure.RedissonProperties;
+import com.touchfish.tools.structure.TopologyProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.Redisson;
+import org.redisson.api.LocalCachedMapOptions;
+import org.redisson.api.RLocalCachedMap;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.config.BaseMasterSlaveServersConfig;
 import org.redisson.config.ClusterServersConfig;
 import org.redisson.config.Config;
+import org.redisson.config.ReadMode;
 import org.redisson.config.SentinelServersConfig;
 import org.redisson.config.SingleServerConfig;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import redis.clients.jedis.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 @Slf4j
@@ -30,6 +40,12 @@ public class RedissonUtil implements IRedisConnection<RedissonClient,Config> {
     private Integer database;
     private HostAndPort[] hostAndPorts;
     private RedissonClient redissonClient;
+    private PubSubProperties pubSubProperties = new PubSubProperties();
+    private RedissonPubSub pubSub;
+    private TopologyProperties topologyProperties;
+    private SharedResources sharedResources;
+    private RedissonProperties redissonProperties;
+    private final Map<String, RLocalCachedMap<?, ?>> localCachedMaps = new ConcurrentHashMap<>();
     public RedissonUtil() {}
     public RedissonUtil(String name, RedisType type, String address) {
         new Builder(this).type(type).address(address).build(name);
@@ -126,6 +142,9 @@ public class RedissonUtil implements IRedisConnection<RedissonClient,Config> {
 
     @Override
     public RedissonClient create(Config config) {
+        if (sharedResources != null) {
+            sharedResources.apply(config);
+        }
         return Redisson.create(config);
     }
 
@@ -166,11 +185,103 @@ public class RedissonUtil implements IRedisConnection<RedissonClient,Config> {
         }
         return IPFormat.NONE;
     }
+    /**
+     * 获取发布订阅，首次调用时创建
+     * @return
+     */
+    public synchronized RedissonPubSub pubSub() {
+        if (pubSub == null) {
+            pubSub = new RedissonPubSub(name, connect(), pubSubProperties);
+        }
+        return pubSub;
+    }
+    /**
+     * 获取配置的本地缓存map，首次调用时创建，切换连接后使用新连接重新创建
+     * @param map localCachedMaps中配置的name
+     * @throws IllegalArgumentException 未配置该map
+     */
+    public <K, V> RLocalCachedMap<K, V> localCachedMap(String map) {
+        LocalCachedMapProperties properties = localCachedMapProperties(map);
+        if (properties == null) {
+            throw new IllegalArgumentException("Redisson \""+name+"\" Local Cached Map \""+map+"\" Not Configured.");
+        }
+        return (RLocalCachedMap<K, V>) localCachedMaps.computeIfAbsent(map, k -> {
+            RedissonClient client = connect();
+            LocalCachedMapOptions<Object, Object> options = options(properties);
+            return properties.codec == null || properties.codec.isEmpty()
+                    ? client.getLocalCachedMap(map, options)
+                    : client.getLocalCachedMap(map, codec(properties.codec), options);
+        });
+    }
+    /**
+     * 配置的所有本地缓存map
+     * @return key为map名称
+     */
+    public Map<String, RLocalCachedMap<?, ?>> localCachedMaps() {
+        Map<String, RLocalCachedMap<?, ?>> res = new LinkedHashMap<>();
+        if (redissonProperties != null && redissonProperties.localCachedMaps != null) {
+            for (LocalCachedMapProperties properties : redissonProperties.localCachedMaps) {
+                res.put(properties.name, localCachedMap(properties.name));
+            }
+        }
+        return res;
+    }
+    private LocalCachedMapProperties localCachedMapProperties(String map) {
+        if (redissonProperties != null && redissonProperties.localCachedMaps != null) {
+            for (LocalCachedMapProperties properties : redissonProperties.localCachedMaps) {
+                if (map.equals(properties.name)) {
+                    return properties;
+                }
+            }
+        }
+        return null;
+    }
+    private static LocalCachedMapOptions<Object, Object> options(LocalCachedMapProperties properties) {
+        return LocalCachedMapOptions.defaults()
+                .cacheSize(properties.cacheSize)
+                .evictionPolicy(LocalCachedMapOptions.EvictionPolicy.valueOf(properties.evictionPolicy.toUpperCase()))
+                .syncStrategy(LocalCachedMapOptions.SyncStrategy.valueOf(properties.syncStrategy.toUpperCase()))
+                .reconnectionStrategy(LocalCachedMapOptions.ReconnectionStrategy.valueOf(properties.reconnectionStrategy.toUpperCase()))
+                .storeMode(LocalCachedMapOptions.StoreMode.valueOf(properties.storeMode.toUpperCase()))
+                .timeToLive(properties.timeToLive)
+                .maxIdle(properties.maxIdle);
+    }
+    /**
+     * 按名称创建编码
+     * @param codec org.redisson.codec或org.redisson.client.codec下的类名，或完整类名
+     */
+    public static Codec codec(String codec) {
+        String[] candidates = codec.contains(".") ? new String[]{codec}
+                : new String[]{"org.redisson.codec." + codec, "org.redisson.client.codec." + codec};
+        for (String candidate : candidates) {
+            try {
+                return (Codec) Class.forName(candidate).newInstance();
+            } catch (ClassNotFoundException ignored) {
+            } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+                throw new IllegalArgumentException("Redisson Codec \""+codec+"\" Cannot Be Created.", e);
+            }
+        }
+        throw new IllegalArgumentException("Redisson Codec \""+codec+"\" Not Found.");
+    }
     /**
      * 关闭所有连接
      */
     @Override
     public void close() {
+        synchronized (this) {
+            if (pubSub != null) {
+                pubSub.close();
+                pubSub = null;
+            }
+        }
+        for (RLocalCachedMap<?, ?> map : localCachedMaps.values()) {
+            try {
+                map.destroy();
+            } catch (Exception e) {
+                log.error("Redisson \""+name+"\" Local Cached Map \""+map.getName()+"\" Destroy Failed.", e);
+            }
+        }
+        localCachedMaps.clear();
         if (redissonClient != null) {
             log.info("Redisson \""+name+"\" "+type+" Client Closed.");
             redissonClient.shutdown();
@@ -206,6 +317,10 @@ public class RedissonUtil implements IRedisConnection<RedissonClient,Config> {
             if (password != null) {
                 clusterServersConfig.setPassword(password);
             }
+            // 只在明确配置时覆盖Redisson的默认scanInterval
+            if (topologyProperties != null && topologyProperties.getRefreshPeriod() != null && topologyProperties.getRefreshPeriod() > 0) {
+                clusterServersConfig.setScanInterval(Math.toIntExact(topologyProperties.getRefreshPeriod()));
+            }
         } else if (type == RedisType.SENTINEL) {
             SentinelServersConfig sentinelServersConfig = config.useSentinelServers();
             sentinelServersConfig.setMasterName(master);
@@ -223,8 +338,72 @@ public class RedissonUtil implements IRedisConnection<RedissonClient,Config> {
                 singleServerConfig.setPassword(password);
             }
         }
+        if (redissonProperties != null) {
+            tune(config, redissonProperties);
+        }
+        return config;
+    }
+    /**
+     * 将redisson配置应用到已选定连接模式的Config上，未设置的项保持默认值
+     */
+    public static Config tune(Config config, RedissonProperties properties) {
+        if (properties.nettyThreads != null) {
+            config.setNettyThreads(properties.nettyThreads);
+        }
+        if (properties.threads != null) {
+            config.setThreads(properties.threads);
+        }
+        if (properties.codec != null && !properties.codec.isEmpty()) {
+            config.setCodec(codec(properties.codec));
+        }
+        if (config.isClusterConfig()) {
+            tune(config.useClusterServers(), properties);
+        } else if (config.isSentinelConfig()) {
+            tune(config.useSentinelServers(), properties);
+        } else {
+            tune(config.useSingleServer(), properties);
+        }
         return config;
     }
+    private static void tune(BaseMasterSlaveServersConfig<?> servers, RedissonProperties properties) {
+        if (properties.connectionPoolSize != null) {
+            servers.setMasterConnectionPoolSize(properties.connectionPoolSize);
+            servers.setSlaveConnectionPoolSize(properties.connectionPoolSize);
+        }
+        if (properties.connectionMinimumIdleSize != null) {
+            servers.setMasterConnectionMinimumIdleSize(properties.connectionMinimumIdleSize);
+            servers.setSlaveConnectionMinimumIdleSize(properties.connectionMinimumIdleSize);
+        }
+        if (properties.subscriptionConnectionPoolSize != null) {
+            servers.setSubscriptionConnectionPoolSize(properties.subscriptionConnectionPoolSize);
+        }
+        if (properties.subscriptionConnectionMinimumIdleSize != null) {
+            servers.setSubscriptionConnectionMinimumIdleSize(properties.subscriptionConnectionMinimumIdleSize);
+        }
+        if (properties.pingConnectionInterval != null) {
+            servers.setPingConnectionInterval(properties.pingConnectionInterval);
+        }
+        if (properties.readMode != null && !properties.readMode.isEmpty()) {
+            servers.setReadMode(ReadMode.valueOf(properties.readMode.toUpperCase()));
+        }
+    }
+    private static void tune(SingleServerConfig server, RedissonProperties properties) {
+        if (properties.connectionPoolSize != null) {
+            server.setConnectionPoolSize(properties.connectionPoolSize);
+        }
+        if (properties.connectionMinimumIdleSize != null) {
+            server.setConnectionMinimumIdleSize(properties.connectionMinimumIdleSize);
+        }
+        if (properties.subscriptionConnectionPoolSize != null) {
+            server.setSubscriptionConnectionPoolSize(properties.subscriptionConnectionPoolSize);
+        }
+        if (properties.subscriptionConnectionMinimumIdleSize != null) {
+            server.setSubscriptionConnectionMinimumIdleSize(properties.subscriptionConnectionMinimumIdleSize);
+        }
+        if (properties.pingConnectionInterval != null) {
+            server.setPingConnectionInterval(properties.pingConnectionInterval);
+        }
+    }
     public static Config config(RedisProperties properties) {
         Config config = new Config();
         if (properties != null) {
@@ -301,6 +480,26 @@ public class RedissonUtil implements IRedisConnection<RedissonClient,Config> {
                 target.master = master;
             return this;
         }
+        public Builder topology(TopologyProperties topology) {
+            if (topology != null)
+                target.topologyProperties = topology;
+            return this;
+        }
+        public Builder sharedResources(SharedResources sharedResources) {
+            if (sharedResources != null)
+                target.sharedResources = sharedResources;
+            return this;
+        }
+        public Builder redisson(RedissonProperties redisson) {
+            if (redisson != null)
+                target.redissonProperties = redisson;
+            return this;
+        }
+        public Builder pubSub(PubSubProperties pubSub) {
+            if (pubSub != null)
+                target.pubSubProperties = pubSub;
+            return this;
+        }
         public RedissonUtil build(String name) {
             if (name != null && !name.isEmpty())
                 target.name = name;
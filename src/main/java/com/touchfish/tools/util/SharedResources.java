@@ -0,0 +1,131 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.SharedResourcesProperties;
+import io.lettuce.core.event.DefaultEventBus;
+import io.lettuce.core.event.DefaultEventPublisherOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.lettuce.core.resource.EventLoopGroupProvider;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.config.Config;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个连接共用的Netty线程和执行线程
+ * Lettuce连接共用一个ClientResources，Redisson连接共用同一个EventLoopGroup和执行线程池
+ * 连接关闭时不会释放这些资源，由创建者在所有连接关闭后调用close
+ */
+@Slf4j
+public class SharedResources implements Closeable {
+    private final SharedResourcesProperties properties;
+    private final NioEventLoopGroup eventLoopGroup;
+    private final DefaultEventExecutorGroup computation;
+    private final ExecutorService executor;
+    private final DefaultClientResources clientResources;
+    private final Scheduler eventScheduler;
+
+    public SharedResources(SharedResourcesProperties properties) {
+        this.properties = properties;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int ioThreads = properties.ioThreads > 0 ? properties.ioThreads : cpus * 2;
+        int computationThreads = properties.computationThreads > 0 ? properties.computationThreads : cpus;
+        int executorThreads = properties.executorThreads > 0 ? properties.executorThreads : cpus * 2;
+        this.eventLoopGroup = new NioEventLoopGroup(ioThreads, new DefaultThreadFactory("redis-shared-io", true));
+        this.computation = new DefaultEventExecutorGroup(computationThreads, new DefaultThreadFactory("redis-shared-computation", true));
+        this.executor = Executors.newFixedThreadPool(executorThreads, new DefaultThreadFactory("redis-shared-executor", true));
+        this.clientResources = DefaultClientResources.builder()
+                .eventLoopGroupProvider(new SharedEventLoopGroupProvider(eventLoopGroup))
+                .eventExecutorGroup(computation)
+                .build();
+        this.eventScheduler = Schedulers.fromExecutorService(computation);
+        log.info("Redis Shared Resources Created. IO Threads: " + ioThreads + ", Computation Threads: " + computationThreads
+                + ", Executor Threads: " + executorThreads);
+    }
+
+    /**
+     * 传给LettuceClientConfiguration，客户端关闭时不会关闭共享的线程
+     * 每次调用返回独立的事件总线，集群拓扑变化事件不会发给其他连接
+     */
+    public ClientResources clientResources() {
+        return clientResources.mutate()
+                .eventBus(new DefaultEventBus(eventScheduler))
+                .commandLatencyPublisherOptions(DefaultEventPublisherOptions.disabled())
+                .build();
+    }
+
+    public EventLoopGroup eventLoopGroup() {
+        return eventLoopGroup;
+    }
+
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Redisson不会关闭外部传入的EventLoopGroup和执行线程池
+     */
+    public Config apply(Config config) {
+        config.setEventLoopGroup(eventLoopGroup);
+        config.setExecutor(executor);
+        return config;
+    }
+
+    @Override
+    public void close() {
+        long timeout = Math.max(0, properties.shutdownTimeout);
+        clientResources.shutdown(0, timeout, TimeUnit.MILLISECONDS).awaitUninterruptibly(timeout);
+        executor.shutdown();
+        computation.shutdownGracefully(0, timeout, TimeUnit.MILLISECONDS);
+        eventLoopGroup.shutdownGracefully(0, timeout, TimeUnit.MILLISECONDS).awaitUninterruptibly(timeout);
+        log.info("Redis Shared Resources Closed.");
+    }
+
+    /**
+     * 始终返回同一个EventLoopGroup，release不关闭线程
+     * DefaultEventLoopGroupProvider在最后一个客户端释放时会关闭线程，之后的连接需要重新创建线程
+     */
+    private static class SharedEventLoopGroupProvider implements EventLoopGroupProvider {
+        private final NioEventLoopGroup group;
+
+        SharedEventLoopGroupProvider(NioEventLoopGroup group) {
+            this.group = group;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends EventLoopGroup> T allocate(Class<T> type) {
+            if (!type.isInstance(group)) {
+                throw new IllegalArgumentException("Shared Event Loop Group Does Not Support " + type.getName());
+            }
+            return (T) group;
+        }
+
+        @Override
+        public int threadPoolSize() {
+            return group.executorCount();
+        }
+
+        @Override
+        public Future<Boolean> release(EventExecutorGroup eventLoopGroup, long quietPeriod, long timeout, TimeUnit unit) {
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(true);
+        }
+
+        @Override
+        public Future<Boolean> shutdown(long quietPeriod, long timeout, TimeUnit timeUnit) {
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(true);
+        }
+    }
+}
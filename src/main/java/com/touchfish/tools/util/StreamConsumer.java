@@ -0,0 +1,376 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IStreamHandler;
+import com.touchfish.tools.structure.StreamProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stream消费组运行时
+ * 单线程XREADGROUP批量读取，按排序键分配到处理线程并行处理，处理成功的消息批量XACK
+ * 定时通过XPENDING+XCLAIM认领空闲超时的消息，包括崩溃消费者遗留的消息和本消费者处理失败的消息
+ */
+@Slf4j
+public class StreamConsumer implements Closeable {
+    private final String name;
+    private final String stream;
+    private final String group;
+    private final String consumer;
+    private final StreamProperties properties;
+    private final IStreamHandler handler;
+    private final RedisTemplate<String, Object> template;
+    private final ExecutorService[] workers;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    /**
+     * 已提交处理、尚未确认的消息，认领本消费者的待处理消息时跳过
+     */
+    private final Set<RecordId> inProgress = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<RecordId> acks = new ConcurrentLinkedQueue<>();
+    private final Object ackLock = new Object();
+    private final ScheduledExecutorService maintenance;
+    private final Thread reader;
+    private volatile boolean running = true;
+    private int roundRobin = 0;
+
+    private final LongAdder read = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lag = new AtomicLong();
+    private volatile String lastProcessedId;
+
+    public StreamConsumer(String name, RedisTemplate<String, Object> template, String stream, StreamProperties properties, IStreamHandler handler) {
+        this.name = name;
+        this.template = template;
+        this.stream = stream;
+        this.properties = properties;
+        this.group = properties.getGroup();
+        this.consumer = properties.getConsumer() != null && !properties.getConsumer().isEmpty() ? properties.getConsumer() : defaultConsumerName();
+        this.handler = handler;
+        this.maxInFlight = Math.max(1, properties.getMaxInFlight());
+        this.inFlight = new Semaphore(maxInFlight);
+        int threads = Math.max(1, properties.getWorkerThreads());
+        this.workers = new ExecutorService[threads];
+        for (int i = 0; i < threads; i++) {
+            String threadName = "stream-" + name + "-" + stream + "-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        createGroup();
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(Bulkhead.internal(r), "stream-" + name + "-" + stream + "-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long ackInterval = Math.max(1, properties.getAckInterval());
+        long claimInterval = Math.max(1, properties.getClaimInterval());
+        maintenance.scheduleWithFixedDelay(this::flushAcks, ackInterval, ackInterval, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::claimAndRefresh, 0, claimInterval, TimeUnit.MILLISECONDS);
+        this.reader = new Thread(Bulkhead.internal(this::readLoop), "stream-" + name + "-" + stream + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+        log.info("Redis \"" + name + "\" Stream \"" + stream + "\" Consumer \"" + group + "/" + consumer + "\" Started.");
+    }
+
+    private static String defaultConsumerName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "consumer";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * 连接工厂切换后调用，在新连接上确认消费组存在
+     * 读取和确认每次都从连接工厂借用连接，无需重新建立
+     */
+    public void afterSwap() {
+        try {
+            createGroup();
+        } catch (Exception e) {
+            log.error("Redis \"" + name + "\" Stream \"" + stream + "\" Create Group After Swap Failed.", e);
+        }
+    }
+
+    /**
+     * 创建消费组，stream不存在时一并创建，消费组已存在时忽略
+     */
+    private void createGroup() {
+        byte[] rawStream = template.getStringSerializer().serialize(stream);
+        try {
+            template.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(rawStream, group, ReadOffset.from("0"), true));
+        } catch (DataAccessException e) {
+            if (!busyGroup(e)) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 消费组已存在时服务端返回BUSYGROUP错误，驱动异常被包装在cause中
+     */
+    private static boolean busyGroup(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().startsWith("BUSYGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void readLoop() {
+        Consumer from = Consumer.from(group, consumer);
+        // 单次读取不超过maxInFlight，否则等待许可时永远无法凑齐
+        int count = Math.min(Math.max(1, properties.getCount()), maxInFlight);
+        StreamReadOptions options = StreamReadOptions.empty()
+                .count(count)
+                .block(Duration.ofMillis(Math.max(0, properties.getBlock())));
+        StreamOffset<String> offset = StreamOffset.create(stream, ReadOffset.lastConsumed());
+        while (running) {
+            try {
+                // 处理跟不上时暂停读取
+                inFlight.acquire(count);
+                inFlight.release(count);
+                List<MapRecord<String, Object, Object>> records = template.opsForStream().read(from, options, offset);
+                if (records == null || records.isEmpty()) {
+                    continue;
+                }
+                read.add(records.size());
+                for (MapRecord<String, Object, Object> record : records) {
+                    submit(record);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("Redis \"" + name + "\" Stream \"" + stream + "\" Read Failed.", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void submit(MapRecord<String, Object, Object> record) throws InterruptedException {
+        inFlight.acquire();
+        inProgress.add(record.getId());
+        try {
+            workers[worker(record)].execute(() -> process(record));
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(record.getId());
+            inFlight.release();
+        }
+    }
+
+    private int worker(MapRecord<String, Object, Object> record) {
+        String field = properties.getOrderingField();
+        if (field != null && !field.isEmpty()) {
+            Object key = record.getValue().get(field);
+            if (key != null) {
+                return Math.floorMod(key.hashCode(), workers.length);
+            }
+        }
+        roundRobin = (roundRobin + 1) % workers.length;
+        return roundRobin;
+    }
+
+    private void process(MapRecord<String, Object, Object> record) {
+        try {
+            handler.onRecord(record);
+            processed.increment();
+            lastProcessedId = record.getId().getValue();
+            acks.add(record.getId());
+            if (acks.size() >= properties.getAckBatchSize()) {
+                flushAcks();
+            }
+        } catch (Exception e) {
+            failed.increment();
+            // 不确认，空闲超过claimIdle后由本消费者或其他消费者重新认领
+            inProgress.remove(record.getId());
+            log.error("Redis \"" + name + "\" Stream \"" + stream + "\" Record " + record.getId() + " Failed.", e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * 将已处理的消息通过一次XACK确认
+     */
+    public void flushAcks() {
+        synchronized (ackLock) {
+            while (!acks.isEmpty()) {
+                List<RecordId> batch = new ArrayList<>();
+                RecordId id;
+                int batchSize = Math.max(1, properties.getAckBatchSize());
+                while (batch.size() < batchSize && (id = acks.poll()) != null) {
+                    batch.add(id);
+                }
+                String[] ids = new String[batch.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = batch.get(i).getValue();
+                }
+                try {
+                    Long res = template.opsForStream().acknowledge(stream, group, ids);
+                    acked.add(res == null ? 0 : res);
+                } catch (Exception e) {
+                    // 未确认的消息留在待处理列表中，之后会被重新认领
+                    log.error("Redis \"" + name + "\" Stream \"" + stream + "\" Ack Failed. Count: " + ids.length, e);
+                    return;
+                } finally {
+                    inProgress.removeAll(batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * 认领空闲超时的待处理消息并刷新待处理数量和延迟统计
+     */
+    private void claimAndRefresh() {
+        if (!running) {
+            return;
+        }
+        try {
+            PendingMessagesSummary summary = template.opsForStream().pending(stream, group);
+            pending.set(summary == null ? 0 : summary.getTotalPendingMessages());
+            StreamInfo.XInfoStream info = template.opsForStream().info(stream);
+            String processedId = lastProcessedId;
+            if (info != null && info.lastGeneratedId() != null && processedId != null) {
+                lag.set(Math.max(0, timestamp(info.lastGeneratedId()) - timestamp(processedId)));
+            }
+            if (pending.get() > 0) {
+                claim();
+            }
+        } catch (Exception e) {
+            log.error("Redis \"" + name + "\" Stream \"" + stream + "\" Claim Failed.", e);
+        }
+    }
+
+    private void claim() throws InterruptedException {
+        Duration minIdle = Duration.ofMillis(properties.getClaimIdle());
+        PendingMessages messages = template.opsForStream().pending(stream, group, Range.unbounded(), Math.max(1, properties.getClaimCount()));
+        List<RecordId> ids = new ArrayList<>();
+        for (PendingMessage message : messages) {
+            // 本消费者的消息只认领处理失败或确认失败的，正在处理和等待确认的跳过
+            boolean own = consumer.equals(message.getConsumerName());
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0 && !(own && inProgress.contains(message.getId()))) {
+                ids.add(message.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        RedisSerializer keySerializer = template.getKeySerializer();
+        byte[] rawStream = keySerializer.serialize(stream);
+        List<ByteRecord> records = template.execute((RedisCallback<List<ByteRecord>>) connection -> connection.streamCommands()
+                .xClaim(rawStream, group, consumer, RedisStreamCommands.XClaimOptions.minIdle(minIdle).ids(ids)));
+        if (records == null) {
+            return;
+        }
+        claimed.add(records.size());
+        for (ByteRecord record : records) {
+            MapRecord<String, Object, Object> deserialized = record.deserialize(keySerializer, template.getHashKeySerializer(), template.getHashValueSerializer());
+            submit(deserialized);
+        }
+        log.info("Redis \"" + name + "\" Stream \"" + stream + "\" Claimed " + records.size() + " Pending Records.");
+    }
+
+    private static long timestamp(String recordId) {
+        int index = recordId.indexOf('-');
+        return Long.parseLong(index < 0 ? recordId : recordId.substring(0, index));
+    }
+
+    public String consumer() {
+        return consumer;
+    }
+
+    public long readCount() {
+        return read.sum();
+    }
+
+    public long processedCount() {
+        return processed.sum();
+    }
+
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    public long ackedCount() {
+        return acked.sum();
+    }
+
+    public long claimedCount() {
+        return claimed.sum();
+    }
+
+    /**
+     * 消费组待确认消息数，每个claimInterval刷新
+     */
+    public long pendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 最新消息与最近处理消息的时间差 单位 ms，每个claimInterval刷新
+     */
+    public long lagMillis() {
+        return lag.get();
+    }
+
+    /**
+     * 已读取尚未处理完的消息数
+     */
+    public int inFlightCount() {
+        return Math.max(0, maxInFlight - inFlight.availablePermits());
+    }
+
+    /**
+     * 停止读取，等待已读取的消息处理完成并确认
+     */
+    @Override
+    public void close() {
+        running = false;
+        reader.interrupt();
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        try {
+            for (ExecutorService worker : workers) {
+                worker.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        maintenance.shutdown();
+        flushAcks();
+        log.info("Redis \"" + name + "\" Stream \"" + stream + "\" Consumer \"" + group + "/" + consumer + "\" Closed. Processed: " + processedCount() + ", Acked: " + ackedCount());
+    }
+}
@@ -0,0 +1,322 @@
+package com.touchfish.tools.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 可热切换的连接工厂
+ * RedisTemplate始终持有该工厂，swap时新连接立即使用新工厂，旧工厂在已借出的连接全部归还后销毁
+ * 订阅连接不会主动归还，swap后由切换监听器迁移到新工厂，排空时不等待订阅连接
+ * 超过排空时间仍未归还的连接会在旧工厂销毁前强制关闭
+ * 配置隔离舱时借出连接前获取许可，连接关闭或开始订阅时归还，内部后台线程借出的连接不占用许可
+ */
+@Slf4j
+public class SwappableConnectionFactory implements RedisConnectionFactory, DisposableBean {
+    private final String name;
+    private final long drainTimeout;
+    private final Bulkhead bulkhead;
+    private final AtomicReference<Generation> current;
+    private final Set<Generation> draining = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> swapListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param drainTimeout 旧工厂等待连接归还的最长时间 单位 ms
+     */
+    public SwappableConnectionFactory(String name, RedisConnectionFactory factory, long drainTimeout) {
+        this(name, factory, drainTimeout, null);
+    }
+
+    /**
+     * @param bulkhead 为null时不限制并发
+     */
+    public SwappableConnectionFactory(String name, RedisConnectionFactory factory, long drainTimeout, Bulkhead bulkhead) {
+        this.name = name;
+        this.drainTimeout = drainTimeout;
+        this.bulkhead = bulkhead;
+        this.current = new AtomicReference<>(new Generation(factory));
+    }
+
+    /**
+     * 当前使用的连接工厂
+     */
+    public RedisConnectionFactory current() {
+        return current.get().factory;
+    }
+
+    /**
+     * 替换连接工厂，执行切换监听器后在后台排空并销毁旧工厂
+     */
+    public void swap(RedisConnectionFactory factory) {
+        Generation previous = current.getAndSet(new Generation(factory));
+        previous.retired = true;
+        draining.add(previous);
+        for (Runnable listener : swapListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("Redis \"" + name + "\" Swap Listener Failed.", e);
+            }
+        }
+        Thread thread = new Thread(() -> drain(previous), "redis-drain-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 添加切换监听器，在swap的调用线程中于新工厂生效后执行
+     * 用于重新建立订阅等长期持有的连接，旧连接关闭后旧工厂才能提前排空
+     */
+    public void addSwapListener(Runnable listener) {
+        swapListeners.add(listener);
+    }
+
+    /**
+     * 正在排空的旧工厂数量
+     */
+    public int drainingCount() {
+        return draining.size();
+    }
+
+    /**
+     * 等待普通连接归还，订阅连接不计入等待
+     */
+    private void drain(Generation generation) {
+        long deadline = System.currentTimeMillis() + drainTimeout;
+        try {
+            while (generation.inFlight.get() > generation.subscribed.get() && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int remaining = generation.inFlight.get() - generation.subscribed.get();
+        if (remaining > 0) {
+            log.warn("Redis \"" + name + "\" Previous Connection Factory Drain Timeout, Closing " + remaining + " Connections In Use.");
+        }
+        destroy(generation);
+        log.info("Redis \"" + name + "\" Previous Connection Factory Destroyed.");
+    }
+
+    private void destroy(Generation generation) {
+        draining.remove(generation);
+        // 强制关闭未归还的连接，同时归还计数和隔离舱许可
+        for (Tracked tracked : new ArrayList<>(generation.open)) {
+            tracked.forceClose();
+        }
+        if (generation.factory instanceof DisposableBean) {
+            try {
+                ((DisposableBean) generation.factory).destroy();
+            } catch (Exception e) {
+                log.error("Redis \"" + name + "\" Connection Factory Destroy Failed.", e);
+            }
+        }
+    }
+
+    /**
+     * @return 是否占用了隔离舱许可
+     */
+    private boolean acquirePermit() {
+        return bulkhead != null && bulkhead.acquire();
+    }
+
+    /**
+     * 借出连接前计数，swap后已退役的工厂不再借出新连接
+     */
+    private Generation acquire(boolean permit) {
+        while (true) {
+            Generation generation = current.get();
+            generation.inFlight.incrementAndGet();
+            if (!generation.retired) {
+                return generation;
+            }
+            generation.inFlight.decrementAndGet();
+            if (current.get() == generation) {
+                if (permit) {
+                    bulkhead.release();
+                }
+                throw new IllegalStateException("Redis \"" + name + "\" Connection Factory Destroyed.");
+            }
+        }
+    }
+
+    private void release(Generation generation, boolean permit) {
+        generation.inFlight.decrementAndGet();
+        if (permit) {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * 隔离舱，未配置时返回null
+     */
+    public Bulkhead bulkhead() {
+        return bulkhead;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        boolean permit = acquirePermit();
+        Generation generation = acquire(permit);
+        try {
+            return new Tracked(generation, permit ? bulkhead : null, generation.factory.getConnection()).proxy();
+        } catch (RuntimeException e) {
+            release(generation, permit);
+            throw e;
+        }
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        boolean permit = acquirePermit();
+        Generation generation = acquire(permit);
+        try {
+            return new Tracked(generation, permit ? bulkhead : null, generation.factory.getClusterConnection()).proxy();
+        } catch (RuntimeException e) {
+            release(generation, permit);
+            throw e;
+        }
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        boolean permit = acquirePermit();
+        Generation generation = acquire(permit);
+        try {
+            return new Tracked(generation, permit ? bulkhead : null, generation.factory.getSentinelConnection()).proxy();
+        } catch (RuntimeException e) {
+            release(generation, permit);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return current().getConvertPipelineAndTxResults();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return current().translateExceptionIfPossible(ex);
+    }
+
+    /**
+     * 代理连接，close时归还计数和隔离舱许可
+     * 开始订阅后连接会一直占用，提前归还隔离舱许可并标记为订阅连接，排空时不再等待
+     */
+    private static final class Tracked implements InvocationHandler {
+        private final Generation generation;
+        private final Bulkhead bulkhead;
+        private final Object connection;
+        private final AtomicBoolean permit = new AtomicBoolean(true);
+        private final AtomicBoolean subscribed = new AtomicBoolean(false);
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Tracked(Generation generation, Bulkhead bulkhead, Object connection) {
+            this.generation = generation;
+            this.bulkhead = bulkhead;
+            this.connection = connection;
+            generation.open.add(this);
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T proxy() {
+            return (T) Proxy.newProxyInstance(connection.getClass().getClassLoader(),
+                    ClassUtils.getAllInterfaces(connection), this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("close".equals(methodName) && method.getParameterCount() == 0) {
+                // 已被强制关闭时不再重复关闭底层连接
+                if (!release()) {
+                    return null;
+                }
+            } else if (("subscribe".equals(methodName) || "pSubscribe".equals(methodName)) && subscribed.compareAndSet(false, true)) {
+                generation.subscribed.incrementAndGet();
+                releasePermit();
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        private boolean release() {
+            if (!released.compareAndSet(false, true)) {
+                return false;
+            }
+            generation.open.remove(this);
+            if (subscribed.get()) {
+                generation.subscribed.decrementAndGet();
+            }
+            generation.inFlight.decrementAndGet();
+            releasePermit();
+            return true;
+        }
+
+        private void releasePermit() {
+            if (bulkhead != null && permit.compareAndSet(true, false)) {
+                bulkhead.release();
+            }
+        }
+
+        void forceClose() {
+            if (!release()) {
+                return;
+            }
+            try {
+                ((AutoCloseable) connection).close();
+            } catch (Exception e) {
+                log.debug("Tracked Connection Close Failed.", e);
+            }
+        }
+    }
+
+    /**
+     * 销毁当前工厂及所有排空中的旧工厂
+     */
+    @Override
+    public void destroy() {
+        Generation generation = current.get();
+        generation.retired = true;
+        swapListeners.clear();
+        destroy(generation);
+        for (Generation previous : draining) {
+            destroy(previous);
+        }
+    }
+
+    private static final class Generation {
+        final RedisConnectionFactory factory;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger subscribed = new AtomicInteger();
+        final Set<Tracked> open = ConcurrentHashMap.newKeySet();
+        volatile boolean retired = false;
+
+        Generation(RedisConnectionFactory factory) {
+            this.factory = factory;
+        }
+    }
+}
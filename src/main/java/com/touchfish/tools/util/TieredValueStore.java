@@ -0,0 +1,348 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IObjectStore;
+import com.touchfish.tools.structure.TieredStorageProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 分层存储
+ * 不超过阈值的值直接写入redis，超过阈值的值流式写入对象存储，redis中只保存带过期时间的指针
+ * 覆盖或删除时同步删除旧对象；指针过期后对象不会自动删除，需要在存储桶上配置生命周期规则清理
+ * 写入和删除前后经过与RedisUtil.set/del相同的布隆过滤器、延迟写入、空值缓存和磁盘缓存处理
+ * 超过阈值的key在redis中只有指针，需要通过本类读取，RedisUtil.get读到的是无法反序列化的指针
+ */
+@Slf4j
+public class TieredValueStore implements Closeable {
+    /**
+     * 指针头 0xFF 'T'，与序列化结果及压缩头 0xFF 'Z' 不冲突
+     */
+    private static final byte POINTER_MAGIC = (byte) 0xFF;
+    private static final byte POINTER_TAG = 'T';
+
+    private final String name;
+    private final int threshold;
+    private final String prefix;
+    private final Supplier<RedisTemplate> template;
+    private final IObjectStore store;
+    private final Consumer<String> beforeWrite;
+    private final Consumer<String> afterWrite;
+    private final LongAdder inlineWrites = new LongAdder();
+    private final LongAdder offloadedWrites = new LongAdder();
+    private final LongAdder offloadedBytes = new LongAdder();
+    private final LongAdder orphanRemoveFailures = new LongAdder();
+
+    public TieredValueStore(String name, TieredStorageProperties properties, Supplier<RedisTemplate> template, IObjectStore store) {
+        this(name, properties, template, store, key -> { }, key -> { });
+    }
+
+    /**
+     * @param beforeWrite 写入或删除key之前调用
+     * @param afterWrite 写入或删除key之后调用，失败时也会调用
+     */
+    public TieredValueStore(String name, TieredStorageProperties properties, Supplier<RedisTemplate> template, IObjectStore store,
+                            Consumer<String> beforeWrite, Consumer<String> afterWrite) {
+        this.name = name;
+        this.threshold = Math.max(0, properties.getThreshold());
+        this.prefix = (properties.getPrefix() == null ? "" : properties.getPrefix()) + name + "/";
+        this.template = template;
+        this.store = store;
+        this.beforeWrite = beforeWrite;
+        this.afterWrite = afterWrite;
+    }
+
+    /**
+     * 按配置创建对象存储
+     */
+    public static IObjectStore createStore(TieredStorageProperties properties) throws IOException {
+        if ("file".equalsIgnoreCase(properties.getType())) {
+            return new FileObjectStore(properties.getDirectory());
+        }
+        return new MinioObjectStore(properties);
+    }
+
+    /**
+     * 使用valueSerializer序列化后写入，不过期
+     */
+    public void set(String key, Object value) {
+        set(key, value, 0);
+    }
+
+    /**
+     * 使用valueSerializer序列化后写入
+     * @param ttl 过期时间 单位 ms 不大于0时不过期
+     */
+    public void set(String key, Object value, long ttl) {
+        byte[] raw = valueSerializer(current()).serialize(value);
+        put(key, new ByteArrayInputStream(raw), raw.length, ttl);
+    }
+
+    /**
+     * 读取并使用valueSerializer反序列化
+     * @return key不存在时返回null
+     */
+    public Object get(String key) {
+        try (InputStream in = open(key)) {
+            if (in == null) {
+                return null;
+            }
+            return valueSerializer(current()).deserialize(readAll(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 写入原始字节流，读取到超过阈值时不再缓冲，剩余内容直接流式上传
+     * @param size 流长度，未知时为-1
+     * @param ttl 过期时间 单位 ms 不大于0时不过期
+     */
+    public void put(String key, InputStream in, long size, long ttl) {
+        RedisTemplate current = current();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        beforeWrite.accept(key);
+        try {
+            if (size >= 0 && size <= threshold) {
+                write(current, rawKey, readAll(in), null, ttl);
+                inlineWrites.increment();
+                return;
+            }
+            InputStream body = in;
+            if (size < 0) {
+                byte[] head = readAtMost(in, threshold + 1);
+                if (head.length <= threshold) {
+                    write(current, rawKey, head, null, ttl);
+                    inlineWrites.increment();
+                    return;
+                }
+                body = new SequenceInputStream(new ByteArrayInputStream(head), in);
+            }
+            String object = prefix + UUID.randomUUID();
+            CountingInputStream counting = new CountingInputStream(body);
+            store.put(object, counting, size);
+            try {
+                write(current, rawKey, pointer(object), object, ttl);
+            } catch (RuntimeException e) {
+                removeQuietly(object);
+                throw e;
+            }
+            offloadedWrites.increment();
+            offloadedBytes.add(counting.count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            afterWrite.accept(key);
+        }
+    }
+
+    /**
+     * 打开值的原始字节流，对象存储中的值边读边下载，由调用方关闭
+     * @return key不存在时返回null
+     */
+    public InputStream open(String key) {
+        byte[] raw = raw(key);
+        if (raw == null) {
+            return null;
+        }
+        String object = objectName(raw);
+        if (object == null) {
+            return new ByteArrayInputStream(raw);
+        }
+        try {
+            InputStream in = store.get(object);
+            if (in == null) {
+                log.warn("Redis \"" + name + "\" Tiered Object \"" + object + "\" Of Key \"" + key + "\" Missing.");
+            }
+            return in;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 值是否保存在对象存储中
+     */
+    public boolean isOffloaded(String key) {
+        byte[] raw = raw(key);
+        return raw != null && objectName(raw) != null;
+    }
+
+    /**
+     * 删除key及其对象
+     */
+    public boolean delete(String key) {
+        RedisTemplate current = current();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        beforeWrite.accept(key);
+        byte[] old;
+        try {
+            old = (byte[]) current.execute((RedisCallback<byte[]>) connection -> {
+                byte[] value = connection.get(rawKey);
+                connection.del(rawKey);
+                return value;
+            });
+        } finally {
+            afterWrite.accept(key);
+        }
+        if (old == null) {
+            return false;
+        }
+        String object = objectName(old);
+        if (object != null) {
+            removeQuietly(object);
+        }
+        return true;
+    }
+
+    private void write(RedisTemplate current, byte[] rawKey, byte[] value, String object, long ttl) {
+        byte[] old = (byte[]) current.execute((RedisCallback<byte[]>) connection -> AtomicGetSet.swap(connection, rawKey, value, ttl));
+        String previous = old == null ? null : objectName(old);
+        if (previous != null && !previous.equals(object)) {
+            removeQuietly(previous);
+        }
+    }
+
+    private byte[] raw(String key) {
+        RedisTemplate current = current();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        return (byte[]) current.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+    }
+
+    private void removeQuietly(String object) {
+        try {
+            store.remove(object);
+        } catch (Exception e) {
+            orphanRemoveFailures.increment();
+            log.error("Redis \"" + name + "\" Tiered Object \"" + object + "\" Remove Failed.", e);
+        }
+    }
+
+    private RedisTemplate current() {
+        RedisTemplate current = template.get();
+        if (current == null) {
+            throw new IllegalStateException("Redis \"" + name + "\" Not Connected.");
+        }
+        return current;
+    }
+
+    static byte[] pointer(String object) {
+        byte[] name = object.getBytes(StandardCharsets.UTF_8);
+        byte[] res = new byte[name.length + 2];
+        res[0] = POINTER_MAGIC;
+        res[1] = POINTER_TAG;
+        System.arraycopy(name, 0, res, 2, name.length);
+        return res;
+    }
+
+    /**
+     * @return 不是指针时返回null
+     */
+    static String objectName(byte[] raw) {
+        if (raw.length > 2 && raw[0] == POINTER_MAGIC && raw[1] == POINTER_TAG) {
+            return new String(raw, 2, raw.length - 2, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAtMost(InputStream in, int limit) throws IOException {
+        byte[] buffer = new byte[Math.min(limit, 8192)];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int n;
+        while (out.size() < limit && (n = in.read(buffer, 0, Math.min(buffer.length, limit - out.size()))) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<Object> keySerializer(RedisTemplate template) {
+        return template.getKeySerializer() != null ? template.getKeySerializer() : (RedisSerializer) RedisSerializer.string();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<Object> valueSerializer(RedisTemplate template) {
+        return template.getValueSerializer() != null ? template.getValueSerializer() : (RedisSerializer) RedisSerializer.java();
+    }
+
+    /**
+     * 直接写入redis的次数
+     */
+    public long inlineCount() {
+        return inlineWrites.sum();
+    }
+
+    /**
+     * 写入对象存储的次数
+     */
+    public long offloadedCount() {
+        return offloadedWrites.sum();
+    }
+
+    /**
+     * 写入对象存储的总字节数
+     */
+    public long offloadedBytes() {
+        return offloadedBytes.sum();
+    }
+
+    /**
+     * 旧对象删除失败次数，失败的对象需要由生命周期规则清理
+     */
+    public long orphanCount() {
+        return orphanRemoveFailures.sum();
+    }
+
+    public IObjectStore store() {
+        return store;
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
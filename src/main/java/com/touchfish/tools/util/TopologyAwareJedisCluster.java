@@ -0,0 +1,116 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.TopologyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisClusterConnectionHandler;
+import redis.clients.jedis.JedisSlotBasedConnectionHandler;
+
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计重定向并定时刷新槽位的JedisCluster
+ * Jedis收到MOVED后会调用renewSlotCache(Jedis)再向目标节点重试，收到ASK时直接向目标节点重试，据此区分两种重定向
+ */
+@Slf4j
+public class TopologyAwareJedisCluster extends JedisCluster {
+    private final ScheduledExecutorService scheduler;
+
+    public TopologyAwareJedisCluster(String name, Set<HostAndPort> nodes, int connectionTimeout, int soTimeout, int maxAttempts,
+                                     String password, String clientName, GenericObjectPoolConfig poolConfig,
+                                     TopologyProperties properties, RedirectStats stats) {
+        super(nodes, connectionTimeout, soTimeout, maxAttempts, password, clientName, poolConfig);
+        // JedisCluster不支持注入连接处理器，替换父类构造时创建的处理器
+        JedisClusterConnectionHandler initial = this.connectionHandler;
+        this.connectionHandler = new CountingConnectionHandler(nodes, poolConfig, connectionTimeout, soTimeout, password, clientName, stats);
+        initial.close();
+        long refreshPeriod = properties.refreshPeriodMillis();
+        if (refreshPeriod > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "topology-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    connectionHandler.renewSlotCache();
+                    stats.refreshed();
+                } catch (Exception e) {
+                    log.warn("Redis \"" + name + "\" Cluster Topology Refresh Failed: " + e.getMessage());
+                }
+            }, refreshPeriod, refreshPeriod, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        super.close();
+    }
+
+    private static final class CountingConnectionHandler extends JedisSlotBasedConnectionHandler {
+        private static final ThreadLocal<Boolean> MOVED = new ThreadLocal<>();
+        private final RedirectStats stats;
+
+        CountingConnectionHandler(Set<HostAndPort> nodes, GenericObjectPoolConfig poolConfig, int connectionTimeout, int soTimeout,
+                                  String password, String clientName, RedirectStats stats) {
+            super(nodes, poolConfig, connectionTimeout, soTimeout, password, clientName);
+            this.stats = stats;
+        }
+
+        @Override
+        public void renewSlotCache(Jedis connection) {
+            MOVED.set(Boolean.TRUE);
+            boolean renewed = false;
+            try {
+                super.renewSlotCache(connection);
+                stats.refreshed();
+                renewed = true;
+            } finally {
+                // 刷新失败时命令直接抛出，不会再向目标节点重试
+                if (!renewed) {
+                    MOVED.remove();
+                }
+            }
+        }
+
+        /**
+         * 命令的首次尝试从这里取连接，清除上一个命令在重试次数用尽时遗留的标记
+         */
+        @Override
+        public Jedis getConnectionFromSlot(int slot) {
+            MOVED.remove();
+            return super.getConnectionFromSlot(slot);
+        }
+
+        @Override
+        public Jedis getConnection() {
+            MOVED.remove();
+            return super.getConnection();
+        }
+
+        /**
+         * 只在重定向后调用
+         */
+        @Override
+        public Jedis getConnectionFromNode(HostAndPort node) {
+            if (MOVED.get() != null) {
+                MOVED.remove();
+                stats.moved(node.toString());
+            } else {
+                stats.ask(node.toString());
+            }
+            return super.getConnectionFromNode(node);
+        }
+    }
+}
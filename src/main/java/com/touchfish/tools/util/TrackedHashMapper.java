@@ -0,0 +1,242 @@
+package com.touchfish.tools.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * 对象与hash的映射
+ * 对象的每个字段对应hash的一个field，字段值使用hashValueSerializer序列化
+ * load返回的TrackedObject记录加载时的字段值，save时只HSET发生变化的字段，字段变为null时HDEL
+ * project只HMGET指定字段
+ * @param <T> 需要有无参构造方法
+ */
+public class TrackedHashMapper<T> {
+    private static final ObjectMapper CONVERTER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final Set<Class<?>> IMMUTABLE = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, java.math.BigDecimal.class, java.math.BigInteger.class, UUID.class));
+
+    private final Class<T> clazz;
+    private final Constructor<T> constructor;
+    private final Supplier<RedisTemplate> template;
+    private final Map<String, Property> properties = new LinkedHashMap<>();
+
+    public TrackedHashMapper(Class<T> clazz, Supplier<RedisTemplate> template) {
+        this.clazz = clazz;
+        this.template = template;
+        try {
+            this.constructor = clazz.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(clazz.getName() + " requires a no-arg constructor", e);
+        }
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()
+                        || properties.containsKey(field.getName())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                properties.put(field.getName(), new Property(field));
+            }
+        }
+    }
+
+    /**
+     * 写入对象的所有非null字段
+     */
+    public void save(String key, T object) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Property property : properties.values()) {
+            Object value = property.get(object);
+            if (value != null) {
+                values.put(property.name, value);
+            }
+        }
+        write(key, values, Collections.emptyList());
+    }
+
+    /**
+     * 加载完整对象并开始记录修改
+     * @return key不存在时返回null
+     */
+    public TrackedObject<T> load(String key) {
+        RedisTemplate current = template.get();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        Map<byte[], byte[]> raw = (Map<byte[], byte[]>) current.execute((RedisCallback<Map<byte[], byte[]>>) connection -> connection.hGetAll(rawKey));
+        if (raw == null || raw.isEmpty()) {
+            return null;
+        }
+        RedisSerializer<Object> fieldSerializer = hashKeySerializer(current);
+        RedisSerializer<Object> valueSerializer = hashValueSerializer(current);
+        T object = newInstance();
+        for (Map.Entry<byte[], byte[]> entry : raw.entrySet()) {
+            Property property = properties.get(String.valueOf(fieldSerializer.deserialize(entry.getKey())));
+            if (property != null) {
+                property.set(object, valueSerializer.deserialize(entry.getValue()));
+            }
+        }
+        return new TrackedObject<>(this, key, object, valueSerializer);
+    }
+
+    /**
+     * 只读取指定字段，其他字段保持默认值
+     * @return key不存在时返回null
+     */
+    public T project(String key, String... fields) {
+        RedisTemplate current = template.get();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        RedisSerializer<Object> fieldSerializer = hashKeySerializer(current);
+        List<Property> selected = new ArrayList<>(fields.length);
+        byte[][] rawFields = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            Property property = properties.get(fields[i]);
+            if (property == null) {
+                throw new IllegalArgumentException(clazz.getName() + " has no field \"" + fields[i] + "\"");
+            }
+            selected.add(property);
+            rawFields[i] = fieldSerializer.serialize(fields[i]);
+        }
+        List<byte[]> raw = (List<byte[]>) current.execute((RedisCallback<List<byte[]>>) connection -> connection.hMGet(rawKey, rawFields));
+        if (raw == null || raw.stream().allMatch(Objects::isNull)) {
+            return null;
+        }
+        RedisSerializer<Object> valueSerializer = hashValueSerializer(current);
+        T object = newInstance();
+        for (int i = 0; i < selected.size(); i++) {
+            if (raw.get(i) != null) {
+                selected.get(i).set(object, valueSerializer.deserialize(raw.get(i)));
+            }
+        }
+        return object;
+    }
+
+    /**
+     * 写入修改过的字段
+     * @return 写入及删除的字段数
+     */
+    int save(TrackedObject<T> tracked) {
+        Map<String, Object> changed = new LinkedHashMap<>();
+        List<String> removed = new ArrayList<>();
+        T object = tracked.get();
+        for (Property property : properties.values()) {
+            Object value = property.get(object);
+            if (!tracked.changed(property, value)) {
+                continue;
+            }
+            if (value == null) {
+                removed.add(property.name);
+            } else {
+                changed.put(property.name, value);
+            }
+        }
+        write(tracked.key(), changed, removed);
+        return changed.size() + removed.size();
+    }
+
+    private void write(String key, Map<String, Object> values, List<String> removed) {
+        if (values.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        RedisTemplate current = template.get();
+        byte[] rawKey = keySerializer(current).serialize(key);
+        RedisSerializer<Object> fieldSerializer = hashKeySerializer(current);
+        RedisSerializer<Object> valueSerializer = hashValueSerializer(current);
+        Map<byte[], byte[]> rawValues = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            rawValues.put(fieldSerializer.serialize(entry.getKey()), valueSerializer.serialize(entry.getValue()));
+        }
+        byte[][] rawRemoved = new byte[removed.size()][];
+        for (int i = 0; i < removed.size(); i++) {
+            rawRemoved[i] = fieldSerializer.serialize(removed.get(i));
+        }
+        current.execute((RedisCallback<Object>) connection -> {
+            if (!rawValues.isEmpty()) {
+                connection.hMSet(rawKey, rawValues);
+            }
+            if (rawRemoved.length > 0) {
+                connection.hDel(rawKey, rawRemoved);
+            }
+            return null;
+        });
+    }
+
+    Collection<Property> properties() {
+        return properties.values();
+    }
+
+    private T newInstance() {
+        try {
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot create " + clazz.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<Object> keySerializer(RedisTemplate template) {
+        return template.getKeySerializer() != null ? template.getKeySerializer() : (RedisSerializer) RedisSerializer.string();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<Object> hashKeySerializer(RedisTemplate template) {
+        return template.getHashKeySerializer() != null ? template.getHashKeySerializer() : (RedisSerializer) RedisSerializer.string();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisSerializer<Object> hashValueSerializer(RedisTemplate template) {
+        return template.getHashValueSerializer() != null ? template.getHashValueSerializer() : (RedisSerializer) RedisSerializer.java();
+    }
+
+    static class Property {
+        final String name;
+        final Field field;
+        final JavaType type;
+        /**
+         * 不可变类型用equals比较，其他类型比较序列化结果
+         */
+        final boolean immutable;
+
+        Property(Field field) {
+            this.name = field.getName();
+            this.field = field;
+            this.type = CONVERTER.getTypeFactory().constructType(field.getGenericType());
+            Class<?> raw = field.getType();
+            this.immutable = raw.isPrimitive() || raw.isEnum() || IMMUTABLE.contains(raw);
+        }
+
+        Object get(Object object) {
+            try {
+                return field.get(object);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void set(Object object, Object value) {
+            if (value == null && field.getType().isPrimitive()) {
+                return;
+            }
+            if (value != null && (field.getType().isPrimitive() || !field.getType().isInstance(value))) {
+                // 序列化器返回的类型与字段不一致时(如Integer与Long、Map与对象)进行转换
+                value = CONVERTER.convertValue(value, type);
+            }
+            try {
+                field.set(object, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
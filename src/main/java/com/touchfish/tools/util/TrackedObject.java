@@ -0,0 +1,83 @@
+package com.touchfish.tools.util;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 由TrackedHashMapper加载的对象，记录加载时的字段值用于判断哪些字段被修改
+ * @param <T>
+ */
+public class TrackedObject<T> {
+    private final TrackedHashMapper<T> mapper;
+    private final String key;
+    private final T object;
+    private final Map<TrackedHashMapper.Property, Object> snapshot = new HashMap<>();
+    private final RedisSerializer<Object> serializer;
+
+    TrackedObject(TrackedHashMapper<T> mapper, String key, T object, RedisSerializer<Object> serializer) {
+        this.mapper = mapper;
+        this.key = key;
+        this.object = object;
+        this.serializer = serializer;
+        snapshot();
+    }
+
+    /**
+     * 被记录的对象，直接修改其字段即可
+     */
+    public T get() {
+        return object;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    /**
+     * 只写入修改过的字段，写入后以当前值作为新的比较基准
+     * @return 写入及删除的字段数
+     */
+    public int save() {
+        int res = mapper.save(this);
+        snapshot();
+        return res;
+    }
+
+    /**
+     * 当前是否有字段被修改
+     */
+    public boolean isDirty() {
+        for (TrackedHashMapper.Property property : mapper.properties()) {
+            if (changed(property, property.get(object))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean changed(TrackedHashMapper.Property property, Object value) {
+        Object original = snapshot.get(property);
+        if (value == null || original == null) {
+            return value != original;
+        }
+        if (property.immutable) {
+            return !Objects.equals(original, value);
+        }
+        return !Arrays.equals((byte[]) original, serializer.serialize(value));
+    }
+
+    private void snapshot() {
+        for (TrackedHashMapper.Property property : mapper.properties()) {
+            Object value = property.get(object);
+            if (value == null) {
+                snapshot.remove(property);
+            } else {
+                snapshot.put(property, property.immutable ? value : serializer.serialize(value));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.touchfish.tools.util;
+
+import org.springframework.data.redis.core.RedisOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 事务中排队执行的命令，在MULTI之后依次调用，不能读取返回值
+ */
+public class TransactionQueue {
+    private final List<Consumer<RedisOperations>> commands = new ArrayList<>();
+
+    public TransactionQueue add(Consumer<RedisOperations> command) {
+        commands.add(command);
+        return this;
+    }
+
+    public TransactionQueue set(Object key, Object value) {
+        return add(operations -> operations.opsForValue().set(key, value));
+    }
+
+    /**
+     * @param ttl 单位 ms
+     */
+    public TransactionQueue set(Object key, Object value, long ttl) {
+        return add(operations -> operations.opsForValue().set(key, value, ttl, TimeUnit.MILLISECONDS));
+    }
+
+    public TransactionQueue increment(Object key, long delta) {
+        return add(operations -> operations.opsForValue().increment(key, delta));
+    }
+
+    public TransactionQueue delete(Object key) {
+        return add(operations -> operations.delete(key));
+    }
+
+    /**
+     * @param ttl 单位 ms
+     */
+    public TransactionQueue expire(Object key, long ttl) {
+        return add(operations -> operations.expire(key, ttl, TimeUnit.MILLISECONDS));
+    }
+
+    public TransactionQueue hset(Object key, Object field, Object value) {
+        return add(operations -> operations.opsForHash().put(key, field, value));
+    }
+
+    public TransactionQueue hdel(Object key, Object... fields) {
+        return add(operations -> operations.opsForHash().delete(key, fields));
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    void apply(RedisOperations operations) {
+        for (Consumer<RedisOperations> command : commands) {
+            command.accept(operations);
+        }
+    }
+}
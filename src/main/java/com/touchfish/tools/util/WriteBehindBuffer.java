@@ -0,0 +1,243 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.WriteBehindProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 延迟写入缓冲区
+ * 同一个key的多次写入在本地合并，只保留最后一次的值，按数量或时间批量刷入redis
+ * 删除在缓冲区中留下墓碑，正在刷写的旧值即使晚于删除写入redis，也会被之后刷写的墓碑再次删除
+ */
+@Slf4j
+public class WriteBehindBuffer implements Closeable {
+    /**
+     * get返回该值表示key已在本地删除，尚未刷写
+     */
+    public static final Object DELETED = new Object();
+
+    private final String name;
+    private final int batchSize;
+    private final long flushInterval;
+    private final int maxPending;
+    private final BiConsumer<Map<String, Object>, List<String>> writer;
+    private final ConcurrentHashMap<String, Object> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Object lifecycle = new Object();
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * @param writer 接收一批需要写入的值和需要删除的key
+     */
+    public WriteBehindBuffer(String name, WriteBehindProperties properties, BiConsumer<Map<String, Object>, List<String>> writer) {
+        this.name = name;
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.flushInterval = Math.max(1, properties.getFlushInterval());
+        this.maxPending = Math.max(this.batchSize, properties.getMaxPending());
+        this.writer = writer;
+    }
+
+    /**
+     * 写入缓冲区，同key覆盖旧值
+     * 缓冲区已满时由调用线程同步刷写，刷写后仍然已满(如redis不可用)时拒绝写入
+     * @throws TransientDataAccessResourceException 缓冲区已满
+     */
+    public void put(String key, Object value) {
+        ScheduledExecutorService executor = ensureStarted();
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            flush();
+            if (pending.size() >= maxPending) {
+                rejected.incrementAndGet();
+                throw new TransientDataAccessResourceException("WriteBehind \"" + name + "\" Full, " + pending.size() + " Keys Pending.");
+            }
+        }
+        writes.incrementAndGet();
+        pending.put(key, value);
+        if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                // 缓冲区正在关闭，剩余内容由close()刷写
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 读取尚未刷入redis的值，保证本JVM内读到自己的写入
+     * @return 未刷写的值，已在本地删除时返回DELETED，不存在时返回null
+     */
+    public Object get(String key) {
+        return pending.get(key);
+    }
+
+    public boolean contains(String key) {
+        return pending.containsKey(key);
+    }
+
+    /**
+     * 用墓碑替换尚未刷写的值，墓碑刷写时删除redis中的key
+     * 墓碑不受maxPending限制，删除不会被拒绝
+     */
+    public void remove(String key) {
+        ensureStarted();
+        pending.put(key, DELETED);
+    }
+
+    /**
+     * 丢弃尚未刷写的值而不写入墓碑，用于key已经通过其它途径直接写入redis
+     */
+    public void discard(String key) {
+        pending.remove(key);
+    }
+
+    /**
+     * 将当前缓冲区内容分批刷入redis
+     * 刷写失败的key保留在缓冲区中等待下次刷写
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<String, Object>> iterator = pending.entrySet().iterator();
+        Map<String, Object> batch = new LinkedHashMap<>();
+        Map<String, Object> sets = new LinkedHashMap<>();
+        List<String> deletes = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() >= batchSize || !iterator.hasNext()) {
+                for (Map.Entry<String, Object> e : batch.entrySet()) {
+                    if (e.getValue() == DELETED) {
+                        deletes.add(e.getKey());
+                    } else {
+                        sets.put(e.getKey(), e.getValue());
+                    }
+                }
+                try {
+                    writer.accept(sets, deletes);
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    log.error("WriteBehind \"" + name + "\" Flush Failed. Pending: " + pending.size(), e);
+                    return;
+                }
+                // 只移除未被再次修改的key，刷写期间的新值和墓碑留待下次
+                for (Map.Entry<String, Object> written : batch.entrySet()) {
+                    pending.remove(written.getKey(), written.getValue());
+                }
+                flushed.addAndGet(sets.size());
+                deleted.addAndGet(deletes.size());
+                batches.incrementAndGet();
+                batch = new LinkedHashMap<>();
+                sets = new LinkedHashMap<>();
+                deletes = new ArrayList<>();
+            }
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 调用set的次数
+     */
+    public long writeCount() {
+        return writes.get();
+    }
+
+    /**
+     * 实际刷入redis的key数量
+     */
+    public long flushedCount() {
+        return flushed.get();
+    }
+
+    /**
+     * 被合并掉的写入次数
+     */
+    public long coalescedCount() {
+        return Math.max(0, writes.get() - flushed.get() - pending.size());
+    }
+
+    public long batchCount() {
+        return batches.get();
+    }
+
+    public long failureCount() {
+        return failures.get();
+    }
+
+    /**
+     * 刷写的墓碑数
+     */
+    public long deletedCount() {
+        return deleted.get();
+    }
+
+    /**
+     * 缓冲区已满被拒绝的写入数
+     */
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    private ScheduledExecutorService ensureStarted() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (lifecycle) {
+            if (scheduler == null) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(Bulkhead.internal(r), "write-behind-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+            }
+            return scheduler;
+        }
+    }
+
+    /**
+     * 刷写剩余内容并停止定时任务，之后再次写入会重新启动定时任务
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService current;
+        synchronized (lifecycle) {
+            current = scheduler;
+            scheduler = null;
+        }
+        if (current != null) {
+            current.shutdown();
+        }
+        flush();
+        log.info("WriteBehind \"" + name + "\" Closed. Writes: " + writeCount() + ", Flushed: " + flushedCount() + ", Pending: " + pendingCount());
+    }
+}
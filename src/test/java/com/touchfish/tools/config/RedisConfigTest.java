@@ -0,0 +1,43 @@
+package com.touchfish.tools.config;
+
+import org.junit.Test;
+import org.springframework.boot.LazyInitializationBeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RedisConfigTest {
+
+    private static JedisPoolConfig load(Map<String, Object> properties) {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+            // 只创建连接池配置，不创建连接工厂
+            context.addBeanFactoryPostProcessor(new LazyInitializationBeanFactoryPostProcessor());
+            context.register(RedisProperties.class, RedisConfig.class);
+            context.refresh();
+            return context.getBean("JedisPoolConfig", JedisPoolConfig.class);
+        }
+    }
+
+    @Test
+    public void emptyPropertiesKeepDefaults() {
+        JedisPoolConfig config = load(Collections.emptyMap());
+        assertEquals(100, config.getMaxTotal());
+        assertEquals(5000, config.getMaxWaitMillis());
+        assertEquals(10, config.getMaxIdle());
+    }
+
+    @Test
+    public void explicitValuesOverrideDefaults() {
+        JedisPoolConfig config = load(Collections.singletonMap("jedis.pool.config.maxTotal", "32"));
+        assertEquals(32, config.getMaxTotal());
+        assertEquals(5000, config.getMaxWaitMillis());
+        assertEquals(10, config.getMaxIdle());
+    }
+}
@@ -0,0 +1,135 @@
+package com.touchfish.tools.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.exceptions.JedisAskDataException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RespClusterTest {
+    private RespCluster cluster;
+
+    @Before
+    public void start() throws Exception {
+        cluster = new RespCluster(3).start();
+    }
+
+    @After
+    public void stop() {
+        cluster.close();
+    }
+
+    private int index(RespServer node) {
+        return cluster.nodes().indexOf(node);
+    }
+
+    private Jedis connect(RespServer node) {
+        return new Jedis(node.host(), node.port());
+    }
+
+    @Test
+    public void clusterSlotsCoversAllSlots() {
+        try (Jedis jedis = connect(cluster.nodes().get(0))) {
+            List<Object> slots = jedis.clusterSlots();
+            assertEquals(3, slots.size());
+            long covered = 0;
+            for (Object range : slots) {
+                List<Object> r = (List<Object>) range;
+                covered += (Long) r.get(1) - (Long) r.get(0) + 1;
+            }
+            assertEquals(RespCluster.SLOTS, covered);
+        }
+    }
+
+    @Test
+    public void wrongNodeRepliesMoved() {
+        int slot = RespCluster.slot("moved-key");
+        RespServer owner = cluster.owner(slot);
+        RespServer other = cluster.nodes().get((index(owner) + 1) % 3);
+        try (Jedis jedis = connect(other)) {
+            jedis.get("moved-key");
+            fail("expected MOVED");
+        } catch (JedisMovedDataException e) {
+            assertEquals(slot, e.getSlot());
+            assertEquals(new HostAndPort(owner.host(), owner.port()), e.getTargetNode());
+        }
+        try (Jedis jedis = connect(owner)) {
+            jedis.set("moved-key", "v");
+            assertEquals("v", jedis.get("moved-key"));
+        }
+    }
+
+    @Test
+    public void moveSlotRedirectsFormerOwner() {
+        int slot = RespCluster.slot("k");
+        RespServer former = cluster.owner(slot);
+        int target = (index(former) + 1) % 3;
+        cluster.moveSlot(slot, target);
+        try (Jedis jedis = connect(former)) {
+            jedis.get("k");
+            fail("expected MOVED");
+        } catch (JedisMovedDataException e) {
+            assertEquals(cluster.nodes().get(target).port(), e.getTargetNode().getPort());
+        }
+    }
+
+    @Test
+    public void migratingSlotRepliesAskAndTargetRequiresAsking() {
+        int slot = RespCluster.slot("ask-key");
+        RespServer source = cluster.owner(slot);
+        int target = (index(source) + 1) % 3;
+        cluster.migrate(slot, target);
+        try (Jedis jedis = connect(source)) {
+            jedis.get("ask-key");
+            fail("expected ASK");
+        } catch (JedisAskDataException e) {
+            assertEquals(slot, e.getSlot());
+            assertEquals(cluster.nodes().get(target).port(), e.getTargetNode().getPort());
+        }
+        try (Jedis jedis = connect(cluster.nodes().get(target))) {
+            try {
+                jedis.get("ask-key");
+                fail("expected MOVED without ASKING");
+            } catch (JedisMovedDataException expected) {
+            }
+            jedis.asking();
+            assertNull(jedis.get("ask-key"));
+        }
+        cluster.finishMigration(slot);
+        assertSame(cluster.nodes().get(target), cluster.owner(slot));
+    }
+
+    @Test
+    public void crossSlotRejected() {
+        String a = "a", b = "b";
+        assertNotEquals(RespCluster.slot(a), RespCluster.slot(b));
+        try (Jedis jedis = connect(cluster.owner(RespCluster.slot(a)))) {
+            jedis.mget(a, b);
+            fail("expected CROSSSLOT");
+        } catch (JedisDataException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("CROSSSLOT"));
+        }
+    }
+
+    @Test
+    public void jedisClusterFollowsRedirects() {
+        RespServer first = cluster.nodes().get(0);
+        try (JedisCluster jedis = new JedisCluster(Collections.singleton(new HostAndPort(first.host(), first.port())))) {
+            for (int i = 0; i < 100; i++) {
+                jedis.set("key" + i, "v" + i);
+            }
+            int slot = RespCluster.slot("key7");
+            cluster.moveSlot(slot, (index(cluster.owner(slot)) + 1) % 3);
+            assertEquals("v7", jedis.get("key7"));
+        }
+    }
+}
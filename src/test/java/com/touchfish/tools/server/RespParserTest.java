@@ -0,0 +1,83 @@
+package com.touchfish.tools.server;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RespParserTest {
+
+    private static ByteBuffer buffer(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String str(byte[] b) {
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void parsesArrayCommand() throws Exception {
+        ByteBuffer buffer = buffer("*3\r\n$3\r\nSET\r\n$1\r\nk\r\n$5\r\nva\r\nl\r\n");
+        List<byte[]> command = RespParser.parse(buffer);
+        assertEquals(3, command.size());
+        assertEquals("SET", str(command.get(0)));
+        assertEquals("k", str(command.get(1)));
+        assertEquals("va\r\nl", str(command.get(2)));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void parsesPipelinedCommandsOneAtATime() throws Exception {
+        ByteBuffer buffer = buffer("*1\r\n$4\r\nPING\r\n*2\r\n$3\r\nGET\r\n$1\r\nk\r\n");
+        assertEquals("PING", str(RespParser.parse(buffer).get(0)));
+        assertEquals("GET", str(RespParser.parse(buffer).get(0)));
+        assertNull(RespParser.parse(buffer));
+    }
+
+    @Test
+    public void incompleteCommandRestoresPosition() throws Exception {
+        String full = "*2\r\n$3\r\nGET\r\n$3\r\nkey\r\n";
+        for (int i = 1; i < full.length(); i++) {
+            ByteBuffer buffer = buffer(full.substring(0, i));
+            assertNull("prefix " + i, RespParser.parse(buffer));
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void parsesInlineCommand() throws Exception {
+        List<byte[]> command = RespParser.parse(buffer("SET  key\tvalue\r\n"));
+        assertEquals(3, command.size());
+        assertEquals("value", str(command.get(2)));
+    }
+
+    @Test
+    public void emptyArrayAndEmptyBulk() throws Exception {
+        assertTrue(RespParser.parse(buffer("*0\r\n")).isEmpty());
+        List<byte[]> command = RespParser.parse(buffer("*2\r\n$3\r\nGET\r\n$0\r\n\r\n"));
+        assertEquals(0, command.get(1).length);
+    }
+
+    @Test(expected = RespParser.ProtocolException.class)
+    public void rejectsMissingBulkPrefix() throws Exception {
+        RespParser.parse(buffer("*1\r\n:3\r\nGET\r\n"));
+    }
+
+    @Test(expected = RespParser.ProtocolException.class)
+    public void rejectsInvalidLength() throws Exception {
+        RespParser.parse(buffer("*x\r\n"));
+    }
+
+    @Test(expected = RespParser.ProtocolException.class)
+    public void rejectsNegativeBulkLength() throws Exception {
+        RespParser.parse(buffer("*1\r\n$-2\r\n"));
+    }
+
+    @Test(expected = RespParser.ProtocolException.class)
+    public void rejectsMissingCrlfAfterBulk() throws Exception {
+        RespParser.parse(buffer("*1\r\n$3\r\nGETxx"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.touchfish.tools.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSentinelPool;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RespSentinelTest {
+    private RespServer master;
+    private RespServer replacement;
+    private RespSentinel sentinel;
+
+    @Before
+    public void start() throws Exception {
+        master = new RespServer().start();
+        replacement = new RespServer().start();
+        sentinel = new RespSentinel("mymaster", master).start();
+    }
+
+    @After
+    public void stop() {
+        sentinel.close();
+        master.close();
+        replacement.close();
+    }
+
+    private Jedis connect() {
+        return new Jedis(sentinel.server().host(), sentinel.server().port());
+    }
+
+    @Test
+    public void getMasterAddrByName() {
+        try (Jedis jedis = connect()) {
+            List<String> address = jedis.sentinelGetMasterAddrByName("mymaster");
+            assertEquals(master.host(), address.get(0));
+            assertEquals(String.valueOf(master.port()), address.get(1));
+            assertNull(jedis.sentinelGetMasterAddrByName("unknown"));
+        }
+    }
+
+    @Test
+    public void mastersReply() {
+        try (Jedis jedis = connect()) {
+            List<Map<String, String>> masters = jedis.sentinelMasters();
+            assertEquals(1, masters.size());
+            assertEquals("mymaster", masters.get(0).get("name"));
+            assertEquals(String.valueOf(master.port()), masters.get(0).get("port"));
+            assertTrue(jedis.sentinelSlaves("mymaster").isEmpty());
+        }
+    }
+
+    @Test
+    public void failoverChangesReportedMaster() {
+        sentinel.failover(replacement);
+        try (Jedis jedis = connect()) {
+            assertEquals(String.valueOf(replacement.port()), jedis.sentinelGetMasterAddrByName("mymaster").get(1));
+        }
+    }
+
+    @Test
+    public void sentinelPoolConnectsToMaster() {
+        try (JedisSentinelPool pool = new JedisSentinelPool("mymaster", Collections.singleton(sentinel.address()))) {
+            assertEquals(new HostAndPort(master.host(), master.port()), pool.getCurrentHostMaster());
+            try (Jedis jedis = pool.getResource()) {
+                jedis.set("k", "v");
+            }
+            try (Jedis direct = new Jedis(master.host(), master.port())) {
+                assertEquals("v", direct.get("k"));
+            }
+        }
+    }
+}
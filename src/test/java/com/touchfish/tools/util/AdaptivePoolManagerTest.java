@@ -0,0 +1,89 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.AdaptivePoolProperties;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class AdaptivePoolManagerTest {
+
+    private static GenericObjectPool<Object> pool(int maxTotal) {
+        GenericObjectPool<Object> pool = new GenericObjectPool<>(new BasePooledObjectFactory<Object>() {
+            @Override
+            public Object create() {
+                return new Object();
+            }
+
+            @Override
+            public PooledObject<Object> wrap(Object obj) {
+                return new DefaultPooledObject<>(obj);
+            }
+        });
+        pool.setMaxTotal(maxTotal);
+        return pool;
+    }
+
+    private static AdaptivePoolProperties properties() {
+        AdaptivePoolProperties properties = new AdaptivePoolProperties();
+        properties.enabled = true;
+        properties.minTotal = 1;
+        properties.maxTotal = 16;
+        properties.targetWait = 20;
+        return properties;
+    }
+
+    @Test
+    public void waitIsMeasuredPerWindow() throws Exception {
+        GenericObjectPool<Object> pool = pool(1);
+        AdaptivePoolManager manager = new AdaptivePoolManager("test", properties(), () -> Collections.singletonList(pool));
+
+        // 占用唯一的连接，另一个线程借用时等待
+        Object held = pool.borrowObject();
+        Thread waiter = new Thread(() -> {
+            try {
+                pool.returnObject(pool.borrowObject());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waiter.start();
+        Thread.sleep(200);
+        pool.returnObject(held);
+        waiter.join();
+
+        manager.adjust();
+        assertTrue(manager.meanBorrowWaitMillis() > properties().targetWait);
+        assertEquals(1, manager.growCount());
+        int grown = pool.getMaxTotal();
+
+        // 之后的借用没有等待，上一个间隔的等待不再计入
+        for (int i = 0; i < 10; i++) {
+            pool.returnObject(pool.borrowObject());
+        }
+        manager.adjust();
+        assertEquals(0, manager.meanBorrowWaitMillis());
+        assertEquals(1, manager.shrinkCount());
+        assertTrue(pool.getMaxTotal() < grown);
+
+        // 没有借用的间隔等待为0
+        manager.adjust();
+        assertEquals(0, manager.meanBorrowWaitMillis());
+        pool.close();
+    }
+
+    @Test
+    public void sharedLettuceConnectionHasNoPools() {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory();
+        assertTrue(PoolUtil.sharesNativeConnection(factory));
+        assertTrue(PoolUtil.pools(factory).isEmpty());
+        factory.setShareNativeConnection(false);
+        assertFalse(PoolUtil.sharesNativeConnection(factory));
+    }
+}
@@ -0,0 +1,87 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.BloomFilterProperties;
+import com.touchfish.tools.structure.RedisFactoryType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BloomFilterGuardTest {
+    private RespServer server;
+    private RedisUtil redis;
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+        String[] hostAndPort = server.address().split(":");
+        try (Jedis jedis = new Jedis(hostAndPort[0], Integer.parseInt(hostAndPort[1]))) {
+            jedis.set("u*[1]:a", "1");
+            jedis.set("u*[1]:b", "2");
+            // 未转义时会被 u*[1]:* 匹配
+            jedis.set("ux1:c", "3");
+            jedis.set("order:1", "4");
+        }
+    }
+
+    @After
+    public void stop() {
+        if (redis != null) {
+            redis.close();
+        }
+        server.close();
+    }
+
+    private static BloomFilterProperties namespace(String prefix, boolean rebuild) {
+        BloomFilterProperties properties = new BloomFilterProperties();
+        properties.prefix = prefix;
+        properties.expectedInsertions = 1000;
+        properties.rebuild = rebuild;
+        return properties;
+    }
+
+    private BloomFilterGuard.Namespace namespace(String prefix) {
+        for (BloomFilterGuard.Namespace namespace : redis.bloomFilters().namespaces()) {
+            if (namespace.prefix().equals(prefix)) {
+                return namespace;
+            }
+        }
+        throw new IllegalArgumentException(prefix);
+    }
+
+    @Test(timeout = 20000)
+    public void rebuildEscapesGlobCharacters() throws Exception {
+        redis = RedisUtil.builder().address(server.address()).factory(RedisFactoryType.JEDIS)
+                .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer")
+                .bloomFilters(Arrays.asList(namespace("u*[1]:", true), namespace("order:", false))).build("bloom");
+        BloomFilterGuard.Namespace users = namespace("u*[1]:");
+        while (!users.isReady()) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, users.filter().insertionCount());
+        assertEquals("1", redis.get("u*[1]:a"));
+        assertNull(redis.get("u*[1]:missing"));
+        assertEquals(1, users.rejectedCount());
+    }
+
+    @Test(timeout = 20000)
+    public void namespaceWithoutRebuildDoesNotReject() throws Exception {
+        redis = RedisUtil.builder().address(server.address()).factory(RedisFactoryType.JEDIS)
+                .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer")
+                .bloomFilters(Arrays.asList(namespace("order:", false))).build("bloom");
+        BloomFilterGuard.Namespace orders = namespace("order:");
+        assertFalse(orders.isReady());
+        assertEquals("4", redis.get("order:1"));
+
+        assertTrue(redis.rebuildBloomFilter("order:"));
+        assertTrue(orders.isReady());
+        assertEquals("4", redis.get("order:1"));
+        assertNull(redis.get("order:2"));
+        assertEquals(1, orders.rejectedCount());
+    }
+}
@@ -0,0 +1,103 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.BulkheadProperties;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class BulkheadTest {
+
+    private static Bulkhead bulkhead(int maxConcurrent, int maxQueue, long maxWait) {
+        BulkheadProperties properties = new BulkheadProperties();
+        properties.enabled = true;
+        properties.maxConcurrent = maxConcurrent;
+        properties.maxQueue = maxQueue;
+        properties.maxWait = maxWait;
+        return new Bulkhead("test", properties);
+    }
+
+    @Test(timeout = 10000)
+    public void fullQueueIsRejectedImmediately() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 1, 5000);
+        assertTrue(bulkhead.acquire());
+        // 第一个等待者占满队列
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            bulkhead.acquire();
+            acquired.countDown();
+        });
+        waiter.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bulkhead.waitingCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, bulkhead.waitingCount());
+
+        long start = System.currentTimeMillis();
+        try {
+            bulkhead.acquire();
+            fail();
+        } catch (BulkheadFullException e) {
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+        assertEquals(1, bulkhead.rejectedQueueFullCount());
+        assertEquals(0, bulkhead.rejectedTimeoutCount());
+
+        // 归还后等待者获得许可
+        bulkhead.release();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+        assertEquals(1, bulkhead.activeCount());
+        assertEquals(0, bulkhead.waitingCount());
+        bulkhead.release();
+        assertEquals(0, bulkhead.activeCount());
+    }
+
+    @Test(timeout = 10000)
+    public void zeroWaitIsRejectedImmediately() {
+        Bulkhead bulkhead = bulkhead(1, 10, 0);
+        bulkhead.acquire();
+        try {
+            bulkhead.acquire();
+            fail();
+        } catch (BulkheadFullException e) {
+            assertEquals(1, bulkhead.rejectedQueueFullCount());
+        }
+        assertEquals(0, bulkhead.waitingCount());
+    }
+
+    @Test(timeout = 10000)
+    public void waitTimeoutIsRejected() {
+        Bulkhead bulkhead = bulkhead(1, 10, 100);
+        bulkhead.acquire();
+        long start = System.currentTimeMillis();
+        try {
+            bulkhead.acquire();
+            fail();
+        } catch (BulkheadFullException e) {
+            assertTrue(System.currentTimeMillis() - start >= 100);
+        }
+        assertEquals(1, bulkhead.rejectedTimeoutCount());
+        assertEquals(1, bulkhead.queuedCount());
+        assertEquals(0, bulkhead.waitingCount());
+        assertEquals(1, bulkhead.activeCount());
+    }
+
+    @Test(timeout = 10000)
+    public void internalThreadsDoNotTakePermits() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 0, 0);
+        bulkhead.acquire();
+        AtomicReference<Boolean> permit = new AtomicReference<>();
+        Thread internal = new Thread(Bulkhead.internal(() -> permit.set(bulkhead.acquire())));
+        internal.start();
+        internal.join();
+        assertFalse(permit.get());
+        assertEquals(1, bulkhead.internalCount());
+        assertEquals(1, bulkhead.activeCount());
+        assertEquals(0, bulkhead.rejectedCount());
+    }
+}
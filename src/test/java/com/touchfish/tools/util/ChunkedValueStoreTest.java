@@ -0,0 +1,106 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.ChunkedProperties;
+import com.touchfish.tools.structure.RedisFactoryType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChunkedValueStoreTest {
+    private RespServer server;
+    private RedisUtil redis;
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+    }
+
+    @After
+    public void stop() {
+        if (redis != null) {
+            redis.close();
+        }
+        server.close();
+    }
+
+    private ChunkedValueStore store(RedisFactoryType factory, long uploadTimeout) {
+        ChunkedProperties properties = new ChunkedProperties();
+        properties.chunkSize = 100;
+        properties.batchChunks = 3;
+        properties.uploadTimeout = uploadTimeout;
+        properties.grace = 1000;
+        redis = RedisUtil.builder().address(server.address()).factory(factory)
+                .keySerializer("StringRedisSerializer").chunked(properties).build("chunked");
+        return redis.chunked();
+    }
+
+    private static byte[] value(int size, long seed) {
+        byte[] value = new byte[size];
+        new Random(seed).nextBytes(value);
+        return value;
+    }
+
+    private static byte[] read(ChunkedValueStore store, String key) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return store.read(key, out) < 0 ? null : out.toByteArray();
+    }
+
+    @Test(timeout = 20000)
+    public void roundTrip() throws Exception {
+        for (RedisFactoryType factory : RedisFactoryType.values()) {
+            ChunkedValueStore store = store(factory, 60000);
+            byte[] value = value(1050, 1);
+            assertEquals(1050, store.write("k", new ByteArrayInputStream(value), 60000));
+            assertEquals(11, store.manifest("k").chunks());
+            assertArrayEquals(value, read(store, "k"));
+            assertNull(read(store, "missing"));
+            assertTrue(store.delete("k"));
+            assertNull(read(store, "k"));
+            redis.close();
+            redis = null;
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void overwriteExpiresPreviousChunks() throws Exception {
+        ChunkedValueStore store = store(RedisFactoryType.JEDIS, 60000);
+        store.write("k", new ByteArrayInputStream(value(500, 1)), 60000);
+        ChunkedValueStore.Manifest first = store.manifest("k");
+        byte[] second = value(250, 2);
+        store.write("k", new ByteArrayInputStream(second), 60000);
+        assertArrayEquals(second, read(store, "k"));
+        assertNotEquals(first.version(), store.manifest("k").version());
+        // 旧分块保留grace后过期，清单带有写入时的过期时间
+        assertTrue(redis.connect().getExpire("k:chunk:" + first.version() + ":0") <= 1);
+        assertTrue(redis.connect().getExpire("k") > 0);
+    }
+
+    @Test(timeout = 20000)
+    public void abandonedUploadIsNotPublished() throws Exception {
+        ChunkedValueStore store = store(RedisFactoryType.JEDIS, 200);
+        byte[] old = value(150, 1);
+        store.write("k", new ByteArrayInputStream(old), 0);
+
+        // 上传超过uploadTimeout，已写入的分块过期，close时放弃发布
+        OutputStream out = store.openWrite("k", 0);
+        out.write(value(350, 2));
+        Thread.sleep(500);
+        try {
+            out.close();
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertArrayEquals(old, read(store, "k"));
+        assertEquals(3, server.store().size());
+    }
+}
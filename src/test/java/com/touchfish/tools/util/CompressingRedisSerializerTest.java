@@ -0,0 +1,90 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.CompressionProperties;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CompressingRedisSerializerTest {
+
+    private static CompressingRedisSerializer<String> serializer() {
+        CompressionProperties properties = new CompressionProperties();
+        properties.enabled = true;
+        properties.threshold = 64;
+        properties.maxDecompressedSize = 1024 * 1024;
+        return new CompressingRedisSerializer<>(RedisSerializer.string(), properties, new CompressionStats());
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void roundTripAboveThreshold() {
+        CompressingRedisSerializer<String> serializer = serializer();
+        String value = repeat("abcdef", 100);
+        byte[] raw = serializer.serialize(value);
+        assertTrue(CompressingRedisSerializer.isCompressed(raw));
+        assertTrue(raw.length < value.length());
+        assertEquals(value, serializer.deserialize(raw));
+    }
+
+    @Test
+    public void roundTripBelowThreshold() {
+        CompressingRedisSerializer<String> serializer = serializer();
+        byte[] raw = serializer.serialize("short");
+        assertFalse(CompressingRedisSerializer.isCompressed(raw));
+        assertArrayEquals("short".getBytes(StandardCharsets.UTF_8), raw);
+        assertEquals("short", serializer.deserialize(raw));
+    }
+
+    @Test
+    public void legacyValuesPassThrough() {
+        CompressingRedisSerializer<String> serializer = serializer();
+        String legacy = repeat("legacy", 50);
+        assertEquals(legacy, serializer.deserialize(legacy.getBytes(StandardCharsets.UTF_8)));
+        assertNull(serializer.deserialize(null));
+    }
+
+    @Test
+    public void corruptHeaderIsRejected() {
+        CompressingRedisSerializer<String> serializer = serializer();
+        byte[] raw = serializer.serialize(repeat("abcdef", 100));
+        // 负数长度
+        assertRejected(serializer, header(raw, 0xFF, 0xFF, 0xFF, 0xFF));
+        // 超过maxDecompressedSize
+        assertRejected(serializer, header(raw, 0x10, 0, 0, 0));
+        // 头部长度小于实际解压长度
+        assertRejected(serializer, header(raw, 0, 0, 0x01, 0));
+        // 头部长度大于实际解压长度
+        assertRejected(serializer, header(raw, 0, 0, 0x03, 0));
+        // 压缩数据被截断
+        assertRejected(serializer, Arrays.copyOf(raw, raw.length - 4));
+    }
+
+    private static byte[] header(byte[] raw, int... length) {
+        byte[] res = raw.clone();
+        for (int i = 0; i < 4; i++) {
+            res[3 + i] = (byte) length[i];
+        }
+        return res;
+    }
+
+    private static void assertRejected(CompressingRedisSerializer<String> serializer, byte[] raw) {
+        try {
+            serializer.deserialize(raw);
+            fail();
+        } catch (SerializationException e) {
+            // 预期
+        }
+    }
+}
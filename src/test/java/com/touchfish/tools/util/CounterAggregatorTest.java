@@ -0,0 +1,79 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.RedisFactoryType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CounterAggregatorTest {
+    private RespServer server;
+    private RedisUtil redis;
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+        redis = RedisUtil.builder().address(server.address()).factory(RedisFactoryType.JEDIS)
+                .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer").build("counter");
+    }
+
+    @After
+    public void stop() {
+        if (redis != null) {
+            redis.close();
+        }
+        server.close();
+    }
+
+    @Test(timeout = 20000)
+    public void idleCountersAreRemovedAfterFlush() {
+        CounterAggregator counters = redis.counters();
+        counters.increment("a");
+        counters.increment("h", "f", 2);
+        counters.flush();
+        assertEquals(1, counters.get("a"));
+        assertEquals(2, counters.get("h", "f"));
+        assertEquals(2, counters.counterCount());
+
+        counters.increment("a");
+        counters.flush();
+        assertEquals(1, counters.counterCount());
+        counters.flush();
+        assertEquals(0, counters.counterCount());
+
+        counters.increment("a");
+        counters.flush();
+        assertEquals(3, counters.get("a"));
+    }
+
+    @Test(timeout = 60000)
+    public void incrementsRacingRemovalAreNotLost() throws Exception {
+        CounterAggregator counters = redis.counters();
+        int threads = 4;
+        int increments = 20000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < increments; i++) {
+                    counters.increment("k" + (i % 8));
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        while (workers.stream().anyMatch(Thread::isAlive)) {
+            counters.flush();
+        }
+        counters.flush();
+        long total = 0;
+        for (int i = 0; i < 8; i++) {
+            total += counters.get("k" + i);
+        }
+        assertEquals((long) threads * increments, total);
+    }
+}
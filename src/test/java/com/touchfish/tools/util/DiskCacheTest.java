@@ -0,0 +1,54 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.DiskCacheProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class DiskCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private DiskCache cache;
+
+    @Before
+    public void start() throws Exception {
+        DiskCacheProperties properties = new DiskCacheProperties();
+        properties.enabled = true;
+        properties.directory = folder.getRoot().getPath();
+        properties.maxSize = 1024 * 1024;
+        properties.snapshotInterval = 0;
+        cache = new DiskCache("test", properties, () -> null);
+    }
+
+    @After
+    public void stop() throws Exception {
+        cache.close();
+    }
+
+    private static byte[] value(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void valueReadBeforeInvalidationIsNotCached() {
+        long stamp = cache.stamp("a");
+        cache.invalidate("a");
+        cache.warm("a", value("old"), -1L, stamp);
+        assertFalse(cache.isFresh("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void invalidatingAnotherKeyDoesNotDropRead() {
+        long stamp = cache.stamp("a");
+        cache.invalidate("b");
+        cache.warm("a", value("v"), -1L, stamp);
+        assertTrue(cache.isFresh("a"));
+    }
+}
@@ -0,0 +1,190 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.HedgeProperties;
+import com.touchfish.tools.structure.RedisFactoryType;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class HedgedReaderTest {
+    private final RedisTemplate primary = new RedisTemplate();
+    private final RedisTemplate replica = new RedisTemplate();
+
+    private static HedgeProperties properties() {
+        HedgeProperties properties = new HedgeProperties();
+        properties.enabled = true;
+        properties.maxDelay = 20;
+        return properties;
+    }
+
+    /**
+     * 主节点读取耗时primaryMillis，副本立即返回
+     */
+    private Object slowPrimary(RedisTemplate template, long primaryMillis) {
+        if (template == primary) {
+            try {
+                Thread.sleep(primaryMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "primary";
+        }
+        return "replica";
+    }
+
+    @Test(timeout = 20000)
+    public void slowPrimaryIsHedgedToReplica() throws Exception {
+        try (RespServer slow = new RespServer().start(); RespServer fast = new RespServer().start()) {
+            RedisUtil primaryRedis = connect(slow, "primary");
+            RedisUtil replicaRedis = connect(fast, "replica");
+            primaryRedis.set("k", "primary");
+            replicaRedis.set("k", "replica");
+            slow.latency(500);
+            HedgedReader reader = new HedgedReader("test", properties(), primaryRedis::connect, replicaRedis::connect);
+            long start = System.currentTimeMillis();
+            assertEquals("replica", reader.get("k"));
+            assertTrue(System.currentTimeMillis() - start < 400);
+            assertEquals(1, reader.readCount());
+            assertEquals(1, reader.hedgeCount());
+            // 胜出计数在结果完成之后累加
+            awaitWins(reader, 1);
+            assertEquals(0, reader.budgetSkippedCount());
+            reader.close();
+            slow.latency(0);
+            primaryRedis.close();
+            replicaRedis.close();
+        }
+    }
+
+    private static void awaitWins(HedgedReader reader, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (reader.hedgeWinCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, reader.hedgeWinCount());
+    }
+
+    private static RedisUtil connect(RespServer server, String name) {
+        return RedisUtil.builder().address(server.address()).factory(RedisFactoryType.JEDIS)
+                .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer").build(name);
+    }
+
+    @Test(timeout = 20000)
+    public void fastPrimaryIsNotHedged() {
+        HedgedReader reader = new HedgedReader("test", properties(), () -> primary, () -> replica);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("primary", reader.read(template -> slowPrimary(template, 0)));
+        }
+        assertEquals(10, reader.readCount());
+        assertEquals(0, reader.hedgeCount());
+        reader.close();
+    }
+
+    @Test(timeout = 20000)
+    public void hedgesAreLimitedByBudget() throws Exception {
+        HedgeProperties properties = properties();
+        // budget为0时只有初始累积的10次对冲
+        properties.budget = 0;
+        HedgedReader reader = new HedgedReader("test", properties, () -> primary, () -> replica);
+        List<Object> results = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            results.add(reader.read(template -> slowPrimary(template, 100)));
+        }
+        assertEquals(10, reader.hedgeCount());
+        awaitWins(reader, 10);
+        assertEquals(2, reader.budgetSkippedCount());
+        // 未对冲的读取等待主节点
+        assertEquals("primary", results.get(10));
+        assertEquals("primary", results.get(11));
+        reader.close();
+    }
+
+    @Test(timeout = 20000)
+    public void primaryFailureBeforeDelayIsNotHedged() {
+        HedgeProperties properties = properties();
+        properties.maxDelay = 1000;
+        HedgedReader reader = new HedgedReader("test", properties, () -> primary, () -> replica);
+        try {
+            reader.read(template -> {
+                if (template == primary) {
+                    throw new IllegalStateException("primary down");
+                }
+                return "replica";
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("primary down", e.getMessage());
+        }
+        assertEquals(0, reader.hedgeCount());
+        reader.close();
+    }
+
+    @Test(timeout = 20000)
+    public void delayFollowsPrimaryLatency() throws Exception {
+        HedgeProperties properties = properties();
+        properties.window = 1000;
+        properties.minDelay = 1;
+        properties.maxDelay = 50;
+        HedgedReader reader = new HedgedReader("test", properties, () -> primary, () -> replica);
+        assertEquals(50, reader.delayMillis(), 0);
+        long windowEnd = System.currentTimeMillis() + 1000;
+        for (int i = 0; i < 110; i++) {
+            reader.read(template -> slowPrimary(template, 5));
+        }
+        assertEquals(50, reader.delayMillis(), 0);
+        // 窗口结束后的第一次读取切换窗口，延迟取上一个窗口中主节点延迟的分位数
+        Thread.sleep(Math.max(0, windowEnd - System.currentTimeMillis()) + 100);
+        reader.read(template -> slowPrimary(template, 5));
+        assertTrue(reader.delayMillis() >= 5);
+        assertTrue(reader.delayMillis() < 50);
+        assertEquals(0, reader.hedgeCount());
+        reader.close();
+    }
+
+    @Test(timeout = 20000)
+    public void rejectedReadRunsOnCallerThread() throws Exception {
+        HedgeProperties properties = properties();
+        properties.threads = 2;
+        HedgedReader reader = new HedgedReader("test", properties, () -> primary, () -> null);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> blocked = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread thread = new Thread(() -> reader.read(template -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            thread.start();
+            blocked.add(thread);
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 线程用尽时在调用线程直接读取主节点
+        AtomicReference<Thread> reader3 = new AtomicReference<>();
+        assertEquals("primary", reader.read(template -> {
+            reader3.set(Thread.currentThread());
+            return slowPrimary(template, 0);
+        }));
+        assertSame(Thread.currentThread(), reader3.get());
+        assertEquals(0, reader.hedgeCount());
+
+        release.countDown();
+        for (Thread thread : blocked) {
+            thread.join();
+        }
+        reader.close();
+    }
+}
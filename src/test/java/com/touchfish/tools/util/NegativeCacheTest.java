@@ -0,0 +1,37 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.NegativeCacheProperties;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NegativeCacheTest {
+
+    private static NegativeCache cache() {
+        NegativeCacheProperties properties = new NegativeCacheProperties();
+        properties.enabled = true;
+        properties.ttl = 60000;
+        return new NegativeCache(properties);
+    }
+
+    @Test
+    public void nullReadBeforeWriteIsNotRecorded() {
+        NegativeCache cache = cache();
+        // 读取开始，随后另一个线程写入并失效，读取结果在失效之后才返回
+        long stamp = cache.stamp("k");
+        cache.invalidate("k");
+        cache.put("k", stamp);
+        assertFalse(cache.isAbsent("k"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void nullReadIsRecordedUntilInvalidated() {
+        NegativeCache cache = cache();
+        cache.put("k", cache.stamp("k"));
+        assertTrue(cache.isAbsent("k"));
+        cache.invalidate("k");
+        assertFalse(cache.isAbsent("k"));
+        assertEquals(1, cache.invalidationCount());
+    }
+}
@@ -0,0 +1,132 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.interf.IMirrorTarget;
+import com.touchfish.tools.structure.MirrorProperties;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RedisMirrorTest {
+
+    private static RedisMirror mirror(List<Object> replayed) {
+        return new RedisMirror("test", "shadow", new MirrorProperties(), new IMirrorTarget() {
+            @Override
+            public void replay(List<MirrorOp> ops) {
+                for (MirrorOp op : ops) {
+                    replayed.add(op.value());
+                }
+            }
+
+            @Override
+            public Object read(Object key) {
+                return null;
+            }
+        });
+    }
+
+    @Test(timeout = 10000)
+    public void sameKeyIsReplayedInPrimaryOrder() throws Exception {
+        List<Object> replayed = Collections.synchronizedList(new ArrayList<>());
+        RedisMirror mirror = mirror(replayed);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // 第一个写入停在主连接写入中，序号已经分配
+        Thread first = new Thread(() -> {
+            try {
+                mirror.set("k", () -> {
+                    writing.countDown();
+                    release.await();
+                    return null;
+                }, "a");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        first.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // 相同内容的byte[] key使用同一分段，先入队但要等第一个写入之后重放
+        mirror.set("k".getBytes(StandardCharsets.UTF_8), () -> null, "b");
+        Thread.sleep(300);
+        assertTrue(replayed.isEmpty());
+        assertEquals(1, mirror.pendingCount());
+
+        release.countDown();
+        first.join();
+        mirror.close();
+        assertEquals(Arrays.asList("a", "b"), replayed);
+        assertEquals(2, mirror.replayedCount());
+    }
+
+    @Test(timeout = 10000)
+    public void slowPrimaryWriteDoesNotBlockOtherKeys() throws Exception {
+        List<Object> replayed = Collections.synchronizedList(new ArrayList<>());
+        RedisMirror mirror = mirror(replayed);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread slow = new Thread(() -> {
+            try {
+                mirror.set("slow", () -> {
+                    writing.countDown();
+                    release.await();
+                    return null;
+                }, "a");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        slow.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // 其它key的主连接写入和重放都不等待慢写入
+        CountDownLatch done = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            try {
+                mirror.set("other", () -> null, "b");
+                done.countDown();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        other.start();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (replayed.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList("b"), replayed);
+
+        release.countDown();
+        slow.join();
+        mirror.close();
+        assertEquals(Arrays.asList("b", "a"), replayed);
+    }
+
+    @Test(timeout = 10000)
+    public void failedPrimaryWriteIsNotMirrored() {
+        List<Object> replayed = Collections.synchronizedList(new ArrayList<>());
+        RedisMirror mirror = mirror(replayed);
+        try {
+            mirror.set("k", () -> {
+                throw new IllegalStateException("down");
+            }, "a");
+            fail();
+        } catch (Exception e) {
+            assertEquals("down", e.getMessage());
+        }
+        // 失败的写入跳过自己的序号，之后的写入不会等待它
+        mirror.set("k", "b");
+        mirror.close();
+        assertEquals(1, mirror.enqueuedCount());
+        assertEquals(Collections.singletonList("b"), replayed);
+    }
+}
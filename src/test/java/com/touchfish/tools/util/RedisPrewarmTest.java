@@ -0,0 +1,201 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.DiskCacheProperties;
+import com.touchfish.tools.structure.NegativeCacheProperties;
+import com.touchfish.tools.structure.PrewarmProperties;
+import com.touchfish.tools.structure.RedisFactoryType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class RedisPrewarmTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private RespServer server;
+    private RedisUtil redis;
+    private DiskCache diskCache;
+    private NegativeCache negativeCache;
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+        redis = RedisUtil.builder().address(server.address()).factory(RedisFactoryType.JEDIS)
+                .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer").build("prewarm");
+        DiskCacheProperties disk = new DiskCacheProperties();
+        disk.enabled = true;
+        disk.directory = folder.newFolder("disk").getPath();
+        disk.maxSize = 1024 * 1024;
+        disk.snapshotInterval = 0;
+        diskCache = new DiskCache("test", disk, () -> redis.connect());
+        NegativeCacheProperties negative = new NegativeCacheProperties();
+        negative.enabled = true;
+        negative.ttl = 60000;
+        negativeCache = new NegativeCache(negative);
+    }
+
+    @After
+    public void stop() throws Exception {
+        diskCache.close();
+        if (redis != null) {
+            redis.close();
+        }
+        server.close();
+    }
+
+    private PrewarmProperties fileSource(String... keys) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), ("# hot keys\n" + String.join("\n", keys) + "\n").getBytes(StandardCharsets.UTF_8));
+        PrewarmProperties properties = new PrewarmProperties();
+        properties.enabled = true;
+        properties.source = "file";
+        properties.file = file.getPath();
+        properties.track = false;
+        return properties;
+    }
+
+    @Test(timeout = 20000)
+    public void pipelineLoadsValuesAndMissingKeys() throws Exception {
+        redis.connect().opsForValue().set("a", "1", java.time.Duration.ofMinutes(1));
+        redis.set("b", "2");
+        RedisPrewarm prewarm = new RedisPrewarm("test", fileSource("a", "b", "c"), () -> redis.connect(), () -> true);
+        prewarm.run(diskCache, negativeCache, null);
+
+        assertTrue(prewarm.isDone());
+        assertFalse(prewarm.isTimedOut());
+        assertEquals(3, prewarm.manifestSize());
+        assertEquals(2, prewarm.loadedCount());
+        assertEquals(1, prewarm.missingCount());
+        assertTrue(diskCache.isFresh("a"));
+        assertEquals("2", diskCache.get("b"));
+        assertTrue(negativeCache.isAbsent("c"));
+
+        // 再次预热时本地已有新鲜值的key跳过
+        prewarm.run(diskCache, negativeCache, null);
+        assertEquals(2, prewarm.skippedCount());
+        assertEquals(0, prewarm.loadedCount());
+        assertEquals(1, prewarm.missingCount());
+    }
+
+    @Test(timeout = 20000)
+    public void mgetBatchesStayInOneSlot() throws Exception {
+        for (String key : Arrays.asList("{x}1", "{x}2", "{x}3", "{y}1")) {
+            redis.set(key, key);
+        }
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        RedisTemplate recording = recording(redis.connect(), batches);
+        PrewarmProperties properties = fileSource("{x}1", "{y}1", "{x}2", "{x}3");
+        properties.batchSize = 2;
+        RedisPrewarm prewarm = new RedisPrewarm("test", properties, () -> recording, () -> false);
+        prewarm.run(diskCache, negativeCache, null);
+
+        assertEquals(4, prewarm.loadedCount());
+        assertEquals("{y}1", diskCache.get("{y}1"));
+        Set<List<String>> expected = new HashSet<>(Arrays.asList(
+                Arrays.asList("{x}1", "{x}2"), Collections.singletonList("{x}3"), Collections.singletonList("{y}1")));
+        assertEquals(expected, new HashSet<>(batches));
+        for (List<String> batch : batches) {
+            Set<Integer> slots = new HashSet<>();
+            for (String key : batch) {
+                slots.add(JedisClusterCRC16.getSlot(key));
+            }
+            assertEquals(1, slots.size());
+        }
+    }
+
+    /**
+     * 记录每次MGET的key，其他命令交给原连接
+     */
+    private static RedisTemplate recording(RedisTemplate delegate, List<List<String>> batches) {
+        RedisTemplate res = new RedisTemplate() {
+            @Override
+            public Object execute(RedisCallback action) {
+                return delegate.execute((RedisCallback<Object>) connection -> action.doInRedis((RedisConnection) Proxy.newProxyInstance(
+                        RedisPrewarmTest.class.getClassLoader(), new Class[]{RedisConnection.class}, (proxy, method, args) -> {
+                            if (method.getName().equals("mGet")) {
+                                List<String> keys = new ArrayList<>();
+                                for (byte[] raw : (byte[][]) args[0]) {
+                                    keys.add(new String(raw, StandardCharsets.UTF_8));
+                                }
+                                batches.add(keys);
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        })));
+            }
+        };
+        res.setKeySerializer(delegate.getKeySerializer());
+        res.setValueSerializer(delegate.getValueSerializer());
+        return res;
+    }
+
+    @Test(timeout = 20000)
+    public void timedOutBatchesDoNotWriteLocalCaches() throws Exception {
+        PrewarmProperties properties = fileSource("m1", "m2", "m3");
+        properties.batchSize = 1;
+        properties.threads = 1;
+        properties.timeBudget = 100;
+        RedisPrewarm prewarm = new RedisPrewarm("test", properties, () -> redis.connect(), () -> true);
+        server.latency(300);
+        prewarm.run(diskCache, negativeCache, null);
+        assertTrue(prewarm.isTimedOut());
+
+        // 超时时正在读取的批次在返回之后才收到回复，结果被丢弃
+        Thread.sleep(1500);
+        assertEquals(0, negativeCache.size());
+        assertEquals(0, prewarm.missingCount());
+        assertEquals(0, prewarm.loadedCount());
+    }
+
+    @Test(timeout = 20000)
+    public void manifestIsTrimmedToMaxKeys() {
+        PrewarmProperties properties = new PrewarmProperties();
+        properties.enabled = true;
+        properties.maxKeys = 2;
+        properties.sampleRate = 1;
+        RedisPrewarm prewarm = new RedisPrewarm("test", properties, () -> redis.connect(), () -> true);
+        record(prewarm, "a", 3);
+        record(prewarm, "b", 2);
+        record(prewarm, "c", 1);
+        prewarm.flush();
+        assertEquals(new LinkedHashSet<>(Arrays.asList("a", "b")), redis.connect().opsForZSet().reverseRange(prewarm.manifestKey(), 0, -1));
+
+        // 计数累加，新的热点key挤掉最冷的key
+        record(prewarm, "c", 5);
+        prewarm.flush();
+        assertEquals(new LinkedHashSet<>(Arrays.asList("c", "a")), redis.connect().opsForZSet().reverseRange(prewarm.manifestKey(), 0, -1));
+        assertEquals(2, prewarm.flushCount());
+
+        redis.set("c", "3");
+        prewarm.run(diskCache, negativeCache, null);
+        assertEquals(2, prewarm.manifestSize());
+        assertEquals(1, prewarm.loadedCount());
+        assertEquals(1, prewarm.missingCount());
+        prewarm.close();
+    }
+
+    private static void record(RedisPrewarm prewarm, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            prewarm.record(key);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.PubSubMessage;
+import com.touchfish.tools.structure.RedisFactoryType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class RedisPubSubTest {
+    private RespServer server;
+    private RedisUtil redis;
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+    }
+
+    @After
+    public void stop() {
+        if (redis != null) {
+            redis.close();
+        }
+        server.close();
+    }
+
+    private void connect(RedisFactoryType factory) {
+        redis = RedisUtil.builder().address(server.address()).factory(factory)
+                .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer").build("pubsub");
+    }
+
+    private void subscribeAndReceive() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        redis.pubSub().subscribe(messages -> {
+            for (PubSubMessage message : messages) {
+                received.add(message.getChannel() + ":" + message.getBody());
+            }
+        }, "ch");
+        redis.pubSub().psubscribe(messages -> {
+            for (PubSubMessage message : messages) {
+                received.add(message.getPattern() + ":" + message.getBody());
+            }
+        }, "p*");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(received.contains("ch:hello") && received.contains("p*:world")) && System.currentTimeMillis() < deadline) {
+            redis.pubSub().publish("ch", "hello");
+            redis.pubSub().publish("px", "world");
+            Thread.sleep(50);
+        }
+        assertTrue(received.toString(), received.contains("ch:hello"));
+        assertTrue(received.toString(), received.contains("p*:world"));
+    }
+
+    @Test(timeout = 20000)
+    public void jedisSubscribeReturns() throws Exception {
+        connect(RedisFactoryType.JEDIS);
+        subscribeAndReceive();
+    }
+
+    @Test(timeout = 20000)
+    public void lettuceSubscribeReturns() throws Exception {
+        connect(RedisFactoryType.LETTUCE);
+        subscribeAndReceive();
+    }
+
+    @Test(timeout = 30000)
+    public void subscriptionsFollowConnectionSwap() throws Exception {
+        connect(RedisFactoryType.JEDIS);
+        subscribeAndReceive();
+        RespServer next = new RespServer().start();
+        try {
+            assertTrue(redis.reconfigure(next.address(), null, null));
+            SwappableConnectionFactory factory = (SwappableConnectionFactory) redis.connect().getConnectionFactory();
+            // 订阅连接已迁移，旧工厂不需要等到排空超时
+            long deadline = System.currentTimeMillis() + 5000;
+            while (factory.drainingCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, factory.drainingCount());
+            server.close();
+            subscribeAndReceive();
+        } finally {
+            redis.close();
+            redis = null;
+            next.close();
+        }
+    }
+}
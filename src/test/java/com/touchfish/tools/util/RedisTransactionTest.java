@@ -0,0 +1,120 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.RedisFactoryType;
+import com.touchfish.tools.structure.TransactionProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RedisTransactionTest {
+    private RespServer server;
+    private RedisUtil redis;
+    private RedisUtil other;
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+    }
+
+    @After
+    public void stop() {
+        if (redis != null) {
+            redis.close();
+        }
+        if (other != null) {
+            other.close();
+        }
+        server.close();
+    }
+
+    private RedisUtil connect(RedisFactoryType factory, int maxRetries) {
+        TransactionProperties properties = new TransactionProperties();
+        properties.maxRetries = maxRetries;
+        properties.backoff = 1;
+        return RedisUtil.builder().address(server.address()).factory(factory)
+                .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer")
+                .transaction(properties).build("transaction");
+    }
+
+    @Test(timeout = 20000)
+    public void commit() {
+        for (RedisFactoryType factory : RedisFactoryType.values()) {
+            redis = connect(factory, 0);
+            redis.set("k", "1");
+            RedisTransaction transaction = redis.transaction();
+            List<Object> results = transaction.execute((operations, queue) -> {
+                long current = Long.parseLong((String) operations.opsForValue().get("k"));
+                queue.increment("k", current);
+            }, "k");
+            assertEquals(Collections.singletonList(2L), results);
+            assertEquals("2", redis.get("k"));
+            assertEquals(1, transaction.commitCount());
+            assertEquals(0, transaction.conflictCount());
+            redis.close();
+            redis = null;
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void statusOnlyQueueCommitsOnce() {
+        for (RedisFactoryType factory : RedisFactoryType.values()) {
+            redis = connect(factory, 3);
+            RedisTransaction transaction = redis.transaction();
+            AtomicInteger prepared = new AtomicInteger();
+            // HMSET和RENAME只有状态回复，EXEC的结果为空
+            List<Object> results = transaction.execute((operations, queue) -> {
+                prepared.incrementAndGet();
+                queue.add(ops -> ops.opsForHash().putAll("h", Collections.singletonMap("f", "v")));
+                queue.add(ops -> ops.rename("h", "k"));
+            }, "k");
+            assertTrue(results.isEmpty());
+            assertEquals(1, prepared.get());
+            assertEquals(1, transaction.commitCount());
+            assertEquals(0, transaction.conflictCount());
+            assertEquals("v", redis.connect().opsForHash().get("k", "f"));
+            redis.close();
+            redis = null;
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void conflictIsRetried() {
+        redis = connect(RedisFactoryType.JEDIS, 1);
+        other = connect(RedisFactoryType.JEDIS, 0);
+        redis.set("k", "1");
+        RedisTransaction transaction = redis.transaction();
+        AtomicInteger prepared = new AtomicInteger();
+        // 第一次尝试WATCH之后由另一个连接修改key
+        transaction.execute((operations, queue) -> {
+            if (prepared.getAndIncrement() == 0) {
+                other.set("k", "5");
+            }
+            queue.set("k", operations.opsForValue().get("k") + "0");
+        }, "k");
+        assertEquals(2, prepared.get());
+        assertEquals("50", redis.get("k"));
+        assertEquals(1, transaction.conflictCount());
+        assertEquals(1, transaction.retryCount());
+        assertEquals(1, transaction.commitCount());
+
+        // 每次都冲突时重试用尽
+        try {
+            transaction.execute((operations, queue) -> {
+                other.set("k", "6");
+                queue.set("k", "7");
+            }, "k");
+            fail();
+        } catch (OptimisticLockingFailureException e) {
+            assertEquals(1, transaction.exhaustedCount());
+        }
+        assertEquals("6", redis.get("k"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.NegativeCacheProperties;
+import com.touchfish.tools.structure.RedisFactoryType;
+import com.touchfish.tools.structure.WarmupProperties;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RedisUtilTest {
+    private RedisUtil redis;
+
+    @After
+    public void stop() {
+        if (redis != null) {
+            redis.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void requiredWarmupFailsWhenConnectionTestFails() throws Exception {
+        RespServer server = new RespServer().start();
+        String address = server.address();
+        server.close();
+        WarmupProperties warmup = new WarmupProperties();
+        warmup.enabled = true;
+        warmup.required = true;
+        redis = RedisUtil.builder().address(address).factory(RedisFactoryType.JEDIS).warmup(warmup).build("warmup");
+        RedisWarmup state = redis.warmupState();
+        assertNotNull(state);
+        assertTrue(state.isDone());
+        assertTrue(state.isRequired());
+        assertFalse(state.isSuccess());
+    }
+
+    @Test(timeout = 20000)
+    public void keyspaceSubscriptionDoesNotBlockInit() throws Exception {
+        RespServer server = new RespServer().start();
+        try {
+            NegativeCacheProperties negativeCache = new NegativeCacheProperties();
+            negativeCache.enabled = true;
+            negativeCache.keyspaceNotifications = true;
+            redis = RedisUtil.builder().address(server.address()).factory(RedisFactoryType.JEDIS)
+                    .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer")
+                    .negativeCache(negativeCache).build("keyspace");
+            assertNull(redis.get("k"));
+            assertTrue(redis.negativeCache().isAbsent("k"));
+            redis.set("k", "v");
+            assertEquals("v", redis.get("k"));
+        } finally {
+            redis.close();
+            redis = null;
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.StreamProperties;
+import org.junit.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * 测试服务不支持stream，使用记录调用的StreamOperations和RedisStreamCommands代替
+ */
+public class StreamConsumerTest {
+
+    private static class StubTemplate extends RedisTemplate<String, Object> {
+        final List<String> groupCreates = new CopyOnWriteArrayList<>();
+        final List<RecordId> claimRequests = new CopyOnWriteArrayList<>();
+        final List<String> acked = new CopyOnWriteArrayList<>();
+        volatile RuntimeException groupError;
+        volatile List<PendingMessage> pending = Collections.emptyList();
+
+        StubTemplate() {
+            StringRedisSerializer serializer = new StringRedisSerializer();
+            setKeySerializer(serializer);
+            setValueSerializer(serializer);
+            setHashKeySerializer(serializer);
+            setHashValueSerializer(serializer);
+        }
+
+        private synchronized void update(RecordId id, PendingMessage message) {
+            List<PendingMessage> res = new ArrayList<>();
+            for (PendingMessage current : pending) {
+                res.add(current.getId().equals(id) ? message : current);
+            }
+            res.removeIf(Objects::isNull);
+            pending = res;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <HK, HV> StreamOperations<String, HK, HV> opsForStream() {
+            return (StreamOperations<String, HK, HV>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{StreamOperations.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "read":
+                        Thread.sleep(20);
+                        return Collections.emptyList();
+                    case "pending":
+                        if (args.length == 2) {
+                            return new PendingMessagesSummary((String) args[1], pending.size(), Range.unbounded(), Collections.emptyMap());
+                        }
+                        return new PendingMessages((String) args[1], pending);
+                    case "info":
+                        return null;
+                    case "acknowledge":
+                        for (String id : (String[]) args[2]) {
+                            acked.add(id);
+                            update(RecordId.of(id), null);
+                        }
+                        return (long) ((String[]) args[2]).length;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        @Override
+        public <T> T execute(RedisCallback<T> action) {
+            RedisStreamCommands commands = (RedisStreamCommands) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RedisStreamCommands.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "xGroupCreate":
+                        assertEquals(4, args.length);
+                        assertEquals(Boolean.TRUE, args[3]);
+                        groupCreates.add(new String((byte[]) args[0], StandardCharsets.UTF_8) + "/" + args[1] + "/" + ((ReadOffset) args[2]).getOffset());
+                        if (groupError != null) {
+                            throw groupError;
+                        }
+                        return "OK";
+                    case "xClaim":
+                        RedisStreamCommands.XClaimOptions options = (RedisStreamCommands.XClaimOptions) args[3];
+                        List<ByteRecord> records = new ArrayList<>();
+                        for (RecordId id : options.getIds()) {
+                            claimRequests.add(id);
+                            // 认领后消息属于新消费者，空闲时间重新计算
+                            update(id, pending(id.getValue(), (String) args[2], 0));
+                            Map<byte[], byte[]> body = Collections.singletonMap("f".getBytes(StandardCharsets.UTF_8), id.getValue().getBytes(StandardCharsets.UTF_8));
+                            records.add(StreamRecords.rawBytes(body).withStreamKey((byte[]) args[0]).withId(id));
+                        }
+                        return records;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+            RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RedisConnection.class}, (proxy, method, args) -> {
+                if (method.getName().equals("streamCommands")) {
+                    return commands;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+            return action.doInRedis(connection);
+        }
+    }
+
+    private static StreamProperties properties() {
+        StreamProperties properties = new StreamProperties();
+        properties.group = "g";
+        properties.consumer = "c1";
+        properties.workerThreads = 1;
+        properties.claimIdle = 1000;
+        properties.claimInterval = 50;
+        properties.ackInterval = 10;
+        return properties;
+    }
+
+    private static PendingMessage pending(String id, String consumer, long idle) {
+        return new PendingMessage(RecordId.of(id), Consumer.from("g", consumer), Duration.ofMillis(idle), 1);
+    }
+
+    private static void await(long timeout, java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void createGroupWithMkStream() {
+        StubTemplate template = new StubTemplate();
+        new StreamConsumer("test", template, "s", properties(), record -> {
+        }).close();
+        assertEquals(Collections.singletonList("s/g/0"), template.groupCreates);
+    }
+
+    @Test(timeout = 10000)
+    public void existingGroupIsIgnored() {
+        StubTemplate template = new StubTemplate();
+        template.groupError = new RedisSystemException("Error in execution",
+                new IllegalStateException("BUSYGROUP Consumer Group name already exists"));
+        StreamConsumer consumer = new StreamConsumer("test", template, "s", properties(), record -> {
+        });
+        consumer.afterSwap();
+        consumer.close();
+        assertEquals(2, template.groupCreates.size());
+    }
+
+    @Test(timeout = 10000)
+    public void otherGroupErrorsAreThrown() {
+        StubTemplate template = new StubTemplate();
+        template.groupError = new RedisSystemException("Error in execution",
+                new IllegalStateException("WRONGTYPE Operation against a key holding the wrong kind of value"));
+        try {
+            new StreamConsumer("test", template, "s", properties(), record -> {
+            });
+            fail();
+        } catch (RedisSystemException e) {
+            assertTrue(e.getCause().getMessage().startsWith("WRONGTYPE"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void idlePendingRecordsAreClaimed() throws Exception {
+        StubTemplate template = new StubTemplate();
+        // 崩溃消费者遗留的空闲消息被认领，空闲未超过claimIdle的不认领
+        template.pending = Arrays.asList(pending("1-0", "dead", 5000), pending("2-0", "c2", 10));
+        List<String> handled = new CopyOnWriteArrayList<>();
+        StreamConsumer consumer = new StreamConsumer("test", template, "s", properties(), record -> {
+            handled.add(record.getId().getValue() + "=" + record.getValue().get("f"));
+        });
+        await(5000, () -> template.acked.contains("1-0"));
+        consumer.close();
+
+        assertEquals(Collections.singletonList("1-0=1-0"), handled);
+        assertTrue(template.claimRequests.contains(RecordId.of("1-0")));
+        assertFalse(template.claimRequests.contains(RecordId.of("2-0")));
+        assertEquals(1, consumer.claimedCount());
+        assertEquals(1, consumer.processedCount());
+        assertEquals(1, consumer.ackedCount());
+    }
+
+    @Test(timeout = 10000)
+    public void failedRecordIsReclaimedByItsOwnConsumer() throws Exception {
+        StubTemplate template = new StubTemplate();
+        template.pending = Collections.singletonList(pending("1-0", "c1", 5000));
+        // 认领后空闲时间从0开始，claimIdle为0时仍在处理中的消息依靠inProgress跳过
+        StreamProperties properties = properties();
+        properties.claimIdle = 0;
+        List<String> attempts = new CopyOnWriteArrayList<>();
+        StreamConsumer consumer = new StreamConsumer("test", template, "s", properties, record -> {
+            attempts.add(record.getId().getValue());
+            if (attempts.size() == 1) {
+                throw new IllegalStateException("first attempt");
+            }
+        });
+        await(5000, () -> template.acked.contains("1-0"));
+        consumer.close();
+
+        // 第一次处理失败未确认，之后的认领重新处理并确认
+        assertEquals(Arrays.asList("1-0", "1-0"), attempts);
+        assertEquals(1, consumer.failedCount());
+        assertEquals(1, consumer.processedCount());
+        assertEquals(Collections.singletonList("1-0"), template.acked);
+    }
+}
@@ -0,0 +1,167 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.BulkheadProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SwappableConnectionFactoryTest {
+    private RespServer server;
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+    }
+
+    @After
+    public void stop() {
+        server.close();
+    }
+
+    private LettuceConnectionFactory factory() {
+        String[] hostAndPort = server.address().split(":");
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    private static void await(SwappableConnectionFactory factory, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (factory.drainingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void forceClosedConnectionReleasesPermit() throws Exception {
+        BulkheadProperties properties = new BulkheadProperties();
+        properties.enabled = true;
+        properties.maxConcurrent = 2;
+        Bulkhead bulkhead = new Bulkhead("test", properties);
+        SwappableConnectionFactory factory = new SwappableConnectionFactory("test", factory(), 200, bulkhead);
+        try {
+            RedisConnection leaked = factory.getConnection();
+            leaked.ping();
+            assertEquals(1, bulkhead.activeCount());
+            factory.swap(factory());
+            await(factory, 5000);
+            assertEquals(0, factory.drainingCount());
+            assertEquals(0, bulkhead.activeCount());
+            // 强制关闭后再次关闭不会重复归还许可
+            leaked.close();
+            assertEquals(0, bulkhead.activeCount());
+            try (RedisConnection connection = factory.getConnection()) {
+                assertEquals(1, bulkhead.activeCount());
+                assertEquals("PONG", connection.ping());
+            }
+            assertEquals(0, bulkhead.activeCount());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void drainReturnsOnceConnectionsAreBack() throws Exception {
+        SwappableConnectionFactory factory = new SwappableConnectionFactory("test", factory(), 30000);
+        try {
+            RedisConnection connection = factory.getConnection();
+            factory.swap(factory());
+            connection.close();
+            await(factory, 5000);
+            assertEquals(0, factory.drainingCount());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private static Bulkhead bulkhead(int maxConcurrent) {
+        BulkheadProperties properties = new BulkheadProperties();
+        properties.enabled = true;
+        properties.maxConcurrent = maxConcurrent;
+        properties.maxWait = 0;
+        return new Bulkhead("test", properties);
+    }
+
+    @Test(timeout = 20000)
+    public void closeReleasesPermit() {
+        Bulkhead bulkhead = bulkhead(1);
+        SwappableConnectionFactory factory = new SwappableConnectionFactory("test", factory(), 200, bulkhead);
+        try {
+            RedisConnection connection = factory.getConnection();
+            assertEquals(1, bulkhead.activeCount());
+            try {
+                factory.getConnection();
+                fail();
+            } catch (BulkheadFullException e) {
+                assertEquals(1, bulkhead.rejectedCount());
+            }
+            connection.close();
+            assertEquals(0, bulkhead.activeCount());
+            // 重复关闭不会多归还许可
+            connection.close();
+            assertEquals(0, bulkhead.activeCount());
+            try (RedisConnection next = factory.getConnection()) {
+                assertEquals("PONG", next.ping());
+                assertEquals(1, bulkhead.activeCount());
+            }
+            assertEquals(0, bulkhead.activeCount());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void subscribeReleasesPermit() {
+        Bulkhead bulkhead = bulkhead(1);
+        SwappableConnectionFactory factory = new SwappableConnectionFactory("test", factory(), 200, bulkhead);
+        try {
+            RedisConnection subscriber = factory.getConnection();
+            subscriber.subscribe((message, pattern) -> {
+            }, "channel".getBytes(StandardCharsets.UTF_8));
+            // 订阅连接一直占用，开始订阅时提前归还许可
+            assertEquals(0, bulkhead.activeCount());
+            try (RedisConnection connection = factory.getConnection()) {
+                assertEquals("PONG", connection.ping());
+            }
+            subscriber.close();
+            assertEquals(0, bulkhead.activeCount());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void internalThreadsBypassFullBulkhead() throws Exception {
+        Bulkhead bulkhead = bulkhead(1);
+        SwappableConnectionFactory factory = new SwappableConnectionFactory("test", factory(), 200, bulkhead);
+        try (RedisConnection caller = factory.getConnection()) {
+            AtomicReference<Object> res = new AtomicReference<>();
+            Thread internal = new Thread(Bulkhead.internal(() -> {
+                try (RedisConnection connection = factory.getConnection()) {
+                    res.set(connection.ping());
+                } catch (Exception e) {
+                    res.set(e);
+                }
+            }));
+            internal.start();
+            internal.join();
+            assertEquals("PONG", res.get());
+            // 内部线程的连接关闭时不归还调用方的许可
+            assertEquals(1, bulkhead.activeCount());
+            assertEquals(1, bulkhead.internalCount());
+            assertEquals(0, bulkhead.rejectedCount());
+        } finally {
+            factory.destroy();
+        }
+        assertEquals(0, bulkhead.activeCount());
+    }
+}
@@ -0,0 +1,113 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.NegativeCacheProperties;
+import com.touchfish.tools.structure.RedisFactoryType;
+import com.touchfish.tools.structure.TieredStorageProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class TieredValueStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private RespServer server;
+    private RedisUtil redis;
+    private TieredValueStore tiered;
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+        TieredStorageProperties properties = new TieredStorageProperties();
+        properties.enabled = true;
+        properties.type = "file";
+        properties.directory = folder.getRoot().getPath();
+        properties.threshold = 16;
+        NegativeCacheProperties negativeCache = new NegativeCacheProperties();
+        negativeCache.enabled = true;
+        negativeCache.ttl = 60000;
+        redis = RedisUtil.builder().address(server.address()).factory(RedisFactoryType.JEDIS)
+                .keySerializer("StringRedisSerializer").valueSerializer("StringRedisSerializer")
+                .tieredStorage(properties).negativeCache(negativeCache).build("tiered");
+        tiered = redis.tiered();
+    }
+
+    @After
+    public void stop() {
+        if (redis != null) {
+            redis.close();
+        }
+        server.close();
+    }
+
+    private long objects() throws IOException {
+        try (Stream<java.nio.file.Path> files = Files.walk(folder.getRoot().toPath())) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static String large(char c) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    @Test(timeout = 20000)
+    public void writeAndRead() throws Exception {
+        tiered.set("small", "v");
+        assertFalse(tiered.isOffloaded("small"));
+        assertEquals("v", tiered.get("small"));
+
+        tiered.set("large", large('a'), 60000);
+        assertTrue(tiered.isOffloaded("large"));
+        assertEquals(large('a'), tiered.get("large"));
+        assertEquals(1, objects());
+        assertTrue(redis.connect().getExpire("large") > 0);
+        assertEquals(1, tiered.inlineCount());
+        assertEquals(1, tiered.offloadedCount());
+        assertNull(tiered.get("missing"));
+    }
+
+    @Test(timeout = 20000)
+    public void overwriteRemovesPreviousObject() throws Exception {
+        tiered.set("k", large('a'), 60000);
+        tiered.set("k", large('b'));
+        assertEquals(large('b'), tiered.get("k"));
+        assertEquals(1, objects());
+        // 不过期的写入清除之前的过期时间
+        assertEquals(-1L, (long) redis.connect().getExpire("k"));
+
+        tiered.set("k", "small");
+        assertFalse(tiered.isOffloaded("k"));
+        assertEquals("small", tiered.get("k"));
+        assertEquals(0, objects());
+    }
+
+    @Test(timeout = 20000)
+    public void deleteRemovesObject() throws Exception {
+        tiered.set("k", large('a'));
+        assertTrue(tiered.delete("k"));
+        assertNull(tiered.get("k"));
+        assertEquals(0, objects());
+        assertFalse(tiered.delete("k"));
+    }
+
+    @Test(timeout = 20000)
+    public void writeInvalidatesNegativeCache() {
+        assertNull(redis.get("k"));
+        assertTrue(redis.negativeCache().isAbsent("k"));
+        tiered.set("k", large('a'));
+        assertFalse(redis.negativeCache().isAbsent("k"));
+        assertEquals(large('a'), tiered.get("k"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespCluster;
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.TopologyProperties;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.exceptions.JedisClusterMaxAttemptsException;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TopologyAwareJedisClusterTest {
+    private RespCluster cluster;
+
+    @Before
+    public void start() throws Exception {
+        cluster = new RespCluster(3).start();
+    }
+
+    @After
+    public void stop() {
+        cluster.close();
+    }
+
+    private TopologyAwareJedisCluster connect(int maxAttempts, RedirectStats stats) {
+        RespServer first = cluster.nodes().get(0);
+        TopologyProperties properties = new TopologyProperties();
+        properties.refreshPeriod = 0L;
+        return new TopologyAwareJedisCluster("test", Collections.singleton(new HostAndPort(first.host(), first.port())),
+                2000, 2000, maxAttempts, null, null, new GenericObjectPoolConfig(), properties, stats);
+    }
+
+    private int next(int slot) {
+        return (cluster.nodes().indexOf(cluster.owner(slot)) + 1) % 3;
+    }
+
+    @Test(timeout = 20000)
+    public void movedFlagDoesNotLeakIntoNextCommand() {
+        RedirectStats exhausted = new RedirectStats();
+        try (TopologyAwareJedisCluster jedis = connect(1, exhausted)) {
+            int slot = RespCluster.slot("moved-key");
+            cluster.moveSlot(slot, next(slot));
+            try {
+                jedis.get("moved-key");
+                fail("expected max attempts");
+            } catch (JedisClusterMaxAttemptsException expected) {
+            }
+            assertEquals(0, exhausted.movedCount());
+        }
+        RedirectStats stats = new RedirectStats();
+        try (TopologyAwareJedisCluster jedis = connect(5, stats)) {
+            int slot = RespCluster.slot("ask-key");
+            cluster.migrate(slot, next(slot));
+            assertNull(jedis.get("ask-key"));
+            assertEquals(1, stats.askCount());
+            assertEquals(0, stats.movedCount());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.server.RespServer;
+import com.touchfish.tools.structure.RedisFactoryType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class TrackedHashMapperTest {
+    private RespServer server;
+    private RedisUtil redis;
+    private TrackedHashMapper<User> mapper;
+
+    public static class User {
+        String name;
+        Integer age;
+        String city;
+    }
+
+    @Before
+    public void start() throws Exception {
+        server = new RespServer().start();
+        redis = RedisUtil.builder().address(server.address()).factory(RedisFactoryType.JEDIS)
+                .keySerializer("StringRedisSerializer").hashKeySerializer("StringRedisSerializer").build("mapper");
+        mapper = redis.hashMapper(User.class);
+        User user = new User();
+        user.name = "a";
+        user.age = 1;
+        user.city = "x";
+        mapper.save("u", user);
+    }
+
+    @After
+    public void stop() {
+        if (redis != null) {
+            redis.close();
+        }
+        server.close();
+    }
+
+    @Test(timeout = 20000)
+    public void unchangedObjectWritesNothing() {
+        TrackedObject<User> tracked = mapper.load("u");
+        assertFalse(tracked.isDirty());
+        long processed = server.processedCount();
+        assertEquals(0, tracked.save());
+        assertEquals(processed, server.processedCount());
+    }
+
+    @Test(timeout = 20000)
+    public void onlyChangedFieldIsWritten() {
+        TrackedObject<User> tracked = mapper.load("u");
+        // 另一个写入方在加载之后修改了city，只写入name时不会覆盖它
+        TrackedObject<User> other = mapper.load("u");
+        other.get().city = "y";
+        assertEquals(1, other.save());
+
+        tracked.get().name = "b";
+        assertTrue(tracked.isDirty());
+        assertEquals(1, tracked.save());
+        assertFalse(tracked.isDirty());
+        User saved = mapper.load("u").get();
+        assertEquals("b", saved.name);
+        assertEquals(Integer.valueOf(1), saved.age);
+        assertEquals("y", saved.city);
+    }
+
+    @Test(timeout = 20000)
+    public void nullFieldIsDeleted() {
+        TrackedObject<User> tracked = mapper.load("u");
+        tracked.get().city = null;
+        assertEquals(1, tracked.save());
+        assertEquals(new HashSet<>(Arrays.asList("name", "age")), redis.connect().opsForHash().keys("u"));
+        assertNull(mapper.load("u").get().city);
+    }
+
+    @Test(timeout = 20000)
+    public void projectionFillsOnlyRequestedFields() {
+        User user = mapper.project("u", "name", "age");
+        assertEquals("a", user.name);
+        assertEquals(Integer.valueOf(1), user.age);
+        assertNull(user.city);
+        assertNull(mapper.project("missing", "name"));
+        try {
+            mapper.project("u", "unknown");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 预期
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.touchfish.tools.util;
+
+import com.touchfish.tools.structure.WriteBehindProperties;
+import org.junit.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindBufferTest {
+
+    private static WriteBehindProperties properties(int batchSize, int maxPending) {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.enabled = true;
+        properties.batchSize = batchSize;
+        properties.maxPending = maxPending;
+        properties.flushInterval = 60000;
+        return properties;
+    }
+
+    @Test
+    public void deleteDuringFlushIsNotOverwrittenByStaleValue() throws Exception {
+        Map<String, Object> store = new ConcurrentHashMap<>();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", properties(10, 100), (sets, deletes) -> {
+            if (!sets.isEmpty()) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            store.putAll(sets);
+            deletes.forEach(store::remove);
+        });
+        buffer.put("k", "v1");
+        Thread flusher = new Thread(buffer::flush);
+        flusher.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // 刷写已取到旧值，此时删除
+        buffer.remove("k");
+        store.remove("k");
+        assertSame(WriteBehindBuffer.DELETED, buffer.get("k"));
+        release.countDown();
+        flusher.join();
+        assertEquals("v1", store.get("k"));
+        assertSame(WriteBehindBuffer.DELETED, buffer.get("k"));
+        buffer.flush();
+        assertNull(store.get("k"));
+        assertNull(buffer.get("k"));
+        assertEquals(1, buffer.deletedCount());
+        buffer.close();
+    }
+
+    @Test
+    public void fullBufferFlushesOnCallerThread() {
+        List<Map<String, Object>> batches = new ArrayList<>();
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", properties(100, 100), (sets, deletes) -> batches.add(new LinkedHashMap<>(sets)));
+        for (int i = 0; i < 150; i++) {
+            buffer.put("k" + i, i);
+        }
+        assertFalse(batches.isEmpty());
+        assertTrue(buffer.pendingCount() < 100);
+        buffer.close();
+    }
+
+    @Test
+    public void fullBufferRejectsWhenFlushFails() {
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", properties(10, 10), (sets, deletes) -> {
+            throw new IllegalStateException("down");
+        });
+        for (int i = 0; i < 10; i++) {
+            buffer.put("k" + i, i);
+        }
+        // 已缓冲的key仍可覆盖
+        buffer.put("k0", -1);
+        try {
+            buffer.put("other", 1);
+            fail("expected rejection");
+        } catch (TransientDataAccessResourceException expected) {
+        }
+        assertEquals(1, buffer.rejectedCount());
+        assertEquals(-1, buffer.get("k0"));
+        // 删除不受上限限制
+        buffer.remove("k1");
+        assertSame(WriteBehindBuffer.DELETED, buffer.get("k1"));
+    }
+}